@@ -8,6 +8,7 @@ package org.sonatype.aether.connector.async;
  *   http://www.eclipse.org/legal/epl-v10.html
  *******************************************************************************/
 
+import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.AsyncHttpProvider;
@@ -49,6 +50,7 @@ import org.sonatype.aether.transfer.TransferEvent.EventType;
 import org.sonatype.aether.transfer.TransferEvent.RequestType;
 import org.sonatype.aether.transfer.TransferListener;
 import org.sonatype.aether.transfer.TransferResource;
+import org.sonatype.aether.util.ChecksumCalculator;
 import org.sonatype.aether.util.ChecksumUtils;
 import org.sonatype.aether.util.ConfigUtils;
 import org.sonatype.aether.util.StringUtils;
@@ -60,7 +62,6 @@ import org.sonatype.aether.util.listener.DefaultTransferResource;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -81,6 +82,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A repository connector that uses the Async Http Client.
@@ -98,6 +100,10 @@ class AsyncRepositoryConnector
 
     private final AsyncHttpClient httpClient;
 
+    private AsyncHttpClient resumeHttpClient;
+
+    private final ResumeJournal resumeJournal;
+
     private final Map<String, String> checksumAlgos;
 
     private final AtomicBoolean closed = new AtomicBoolean( false );
@@ -158,6 +164,7 @@ class AsyncRepositoryConnector
         checksumAlgos.put( "MD5", ".md5" );
 
         disableResumeSupport = ConfigUtils.getBoolean( session, false, "aether.connector.ahc.disableResumable" );
+        resumeJournal = new ResumeJournal( logger );
         maxIOExceptionRetry = ConfigUtils.getInteger( session, 3, "aether.connector.ahc.resumeRetry" );
 
         this.headers = new FluentCaseInsensitiveStringsMap();
@@ -341,6 +348,23 @@ class AsyncRepositoryConnector
         return configBuilder.build();
     }
 
+    /**
+     * Gets the client used for range requests. Range requests must not be combined with content compression but AHC
+     * only supports compression per client, not per request. Hence all resumed downloads of this connector share a
+     * lazily created client without compression instead of setting up a new client for each of them.
+     *
+     * @return The client for range requests, never {@code null}.
+     */
+    private synchronized AsyncHttpClient getResumeHttpClient()
+    {
+        if ( resumeHttpClient == null )
+        {
+            AsyncHttpClientConfig config = createConfig( session, repository, false );
+            resumeHttpClient = new AsyncHttpClient( getProvider( session, config ), config );
+        }
+        return resumeHttpClient;
+    }
+
     private void await( CountDownLatch latch )
     {
         boolean interrupted = false;
@@ -544,8 +568,10 @@ class AsyncRepositoryConnector
             final boolean ignoreChecksum = RepositoryPolicy.CHECKSUM_POLICY_IGNORE.equals( checksumPolicy );
             CompletionHandler completionHandler = null;
 
+            final ResumeJournal.Entry resumeEntry =
+                ( file != null && allowResumable && !disableResumeSupport ) ? resumeJournal.get( file ) : null;
             final FileLockCompanion fileLockCompanion = ( file != null )
-                ? createOrGetTmpFile( file.getPath(), allowResumable )
+                ? createOrGetTmpFile( file.getPath(), resumeEntry )
                 : new FileLockCompanion( null, null );
 
             try
@@ -575,21 +601,18 @@ class AsyncRepositoryConnector
 
                 Request request = null;
                 final AtomicInteger maxRequestTry = new AtomicInteger();
-                AsyncHttpClient client = httpClient;
-                final AtomicBoolean closeOnComplete = new AtomicBoolean( false );
+                final AtomicReference<String> resumeValidator = new AtomicReference<String>();
 
                 /**
-                 * If length > 0, it means we are resuming a interrupted download. If that's the case,
-                 * we can't re-use the current httpClient because compression is enabled, and supporting
-                 * compression per request is not supported in ahc and may never has it could have
-                 * a performance impact.
+                 * If length > 0, it means we are resuming a interrupted download. The If-Range header makes the
+                 * server send the entire resource again if it has changed since the partial file was written.
                  */
                 if ( length > 0 )
                 {
-                    AsyncHttpClientConfig config = createConfig( session, repository, false );
-                    client = new AsyncHttpClient( new NettyAsyncHttpProvider( config ) );
-                    request = client.prepareGet( uri ).setRangeOffset( length ).setHeaders( headers ).build();
-                    closeOnComplete.set( true );
+                    resumeValidator.set( resumeEntry.getValidator() );
+                    headers.add( "If-Range", resumeEntry.getValidator() );
+                    request =
+                        getResumeHttpClient().prepareGet( uri ).setRangeOffset( length ).setHeaders( headers ).build();
                 }
                 else
                 {
@@ -597,7 +620,7 @@ class AsyncRepositoryConnector
                 }
 
                 final Request activeRequest = request;
-                final AsyncHttpClient activeHttpClient = client;
+                final AsyncHttpClient activeHttpClient = ( length > 0 ) ? getResumeHttpClient() : httpClient;
                 completionHandler = new CompletionHandler( transferResource, httpClient, logger, RequestType.GET )
                 {
                     private final AtomicBoolean handleTmpFile = new AtomicBoolean( true );
@@ -620,7 +643,21 @@ class AsyncRepositoryConnector
                         }
                         else
                         {
+                            resumableFile.setLength( 0 );
                             resumableFile.seek( 0 );
+
+                            if ( status() != null && status().getStatusCode() == HttpURLConnection.HTTP_OK )
+                            {
+                                String etag = h.getFirstValue( "ETag" );
+                                String lastModified = h.getFirstValue( "Last-Modified" );
+                                ResumeJournal.Entry entry =
+                                    new ResumeJournal.Entry( fileLockCompanion.getFile(), etag, lastModified );
+                                resumeValidator.set( entry.getValidator() );
+                                if ( allowResumable && !disableResumeSupport )
+                                {
+                                    resumeJournal.put( file, fileLockCompanion.getFile(), etag, lastModified );
+                                }
+                            }
                         }
                         return super.onHeadersReceived( headers );
                     }
@@ -644,9 +681,13 @@ class AsyncRepositoryConnector
                                 {
                                     logger.debug( "Trying to recover from an IOException " + activeRequest );
                                     maxRequestTry.incrementAndGet();
-                                    Request newRequest =
-                                        new RequestBuilder( activeRequest ).setRangeOffset( resumableFile.length() ).build();
-                                    activeHttpClient.executeRequest( newRequest, this );
+                                    RequestBuilder builder =
+                                        new RequestBuilder( activeRequest ).setRangeOffset( resumableFile.length() );
+                                    if ( resumeValidator.get() != null )
+                                    {
+                                        builder.setHeader( "If-Range", resumeValidator.get() );
+                                    }
+                                    getResumeHttpClient().executeRequest( builder.build(), this );
                                     resume = true;
                                     return;
                                 }
@@ -667,11 +708,6 @@ class AsyncRepositoryConnector
                                 exception = new Exception( t );
                             }
 
-                            if ( closeOnComplete.get() )
-                            {
-                                activeHttpClient.close();
-                            }
-
                             super.onThrowable( t );
 
                             fireTransferFailed();
@@ -744,6 +780,7 @@ class AsyncRepositoryConnector
                             catch ( IOException ex )
                             {
                             }
+                            resumeJournal.remove( file, fileLockCompanion.getFile() );
 
                             final Response response = super.onCompleted( r );
 
@@ -751,7 +788,7 @@ class AsyncRepositoryConnector
 
                             if ( !ignoreChecksum )
                             {
-                                activeHttpClient.getConfig().executorService().execute( new Runnable()
+                                httpClient.getConfig().executorService().execute( new Runnable()
                                 {
                                     public void run()
                                     {
@@ -809,10 +846,6 @@ class AsyncRepositoryConnector
                                             }
 
                                             latch.countDown();
-                                            if ( closeOnComplete.get() )
-                                            {
-                                                activeHttpClient.close();
-                                            }
                                         }
                                     }
                                 } );
@@ -824,13 +857,7 @@ class AsyncRepositoryConnector
                                 releaseLock( fileLockCompanion );
                                 handleTmpFile.set( false );
 
-                                // asyncHttpClient.close may takes time before all connections get closed.
-                                // We unlatch first.
                                 latch.countDown();
-                                if ( closeOnComplete.get() )
-                                {
-                                    activeHttpClient.close();
-                                }
                             }
                             removeListeners();
 
@@ -954,6 +981,10 @@ class AsyncRepositoryConnector
                 releaseLock( fileLockCompanion );
                 activeDownloadFiles.remove( fileLockCompanion.getFile() );
                 fileLockCompanion.getFile().delete();
+                if ( file != null )
+                {
+                    resumeJournal.remove( file, fileLockCompanion.getFile() );
+                }
             }
         }
 
@@ -1083,6 +1114,8 @@ class AsyncRepositoryConnector
             {
                 final String uri = validateUri( path );
 
+                final ChecksumCalculator checksums = new ChecksumCalculator( checksumAlgos.keySet() );
+
                 final CompletionHandler completionHandler =
                     new CompletionHandler( transferResource, httpClient, logger, RequestType.PUT )
                     {
@@ -1122,24 +1155,22 @@ class AsyncRepositoryConnector
                                 Response response = super.onCompleted( r );
                                 handleResponseCode( uri, response.getStatusCode(), response.getStatusText() );
 
-                                httpClient.getConfig().executorService().execute( new Runnable()
+                                final Map<String, Object> sums = checksums.get( file.length() );
+                                if ( sums != null )
                                 {
-                                    public void run()
+                                    uploadChecksums( file, uri, sums );
+                                }
+                                else
+                                {
+                                    // the body was not streamed through the generator, need to read the file again
+                                    httpClient.getConfig().executorService().execute( new Runnable()
                                     {
-                                        try
-                                        {
-                                            uploadChecksums( file, uri );
-                                        }
-                                        catch ( Exception ex )
-                                        {
-                                            exception = ex;
-                                        }
-                                        finally
+                                        public void run()
                                         {
-                                            latch.countDown();
+                                            uploadChecksums( file, uri, null );
                                         }
-                                    }
-                                } );
+                                    } );
+                                }
 
                                 return r;
                             }
@@ -1168,7 +1199,7 @@ class AsyncRepositoryConnector
                 transferResource.setContentLength( file.length() );
 
                 httpClient.preparePut( uri ).setHeaders( headers ).setBody(
-                    new ProgressingFileBodyGenerator( file, completionHandler ) ).execute( completionHandler );
+                    new ProgressingFileBodyGenerator( file, completionHandler, checksums ) ).execute( completionHandler );
             }
             catch ( Exception e )
             {
@@ -1193,23 +1224,40 @@ class AsyncRepositoryConnector
             upload.setState( Transfer.State.DONE );
         }
 
-        private void uploadChecksums( File file, String path )
+        /**
+         * Uploads the checksums for the specified file in parallel. The upload task is completed once all checksum
+         * uploads have finished, failures to upload checksums are only logged.
+         *
+         * @param file The uploaded file, must not be {@code null}.
+         * @param path The URL of the uploaded file, must not be {@code null}.
+         * @param checksums The checksums of the file, may be {@code null} to calculate them from the file.
+         */
+        private void uploadChecksums( File file, String path, Map<String, Object> checksums )
         {
             try
             {
-                Map<String, Object> checksums = ChecksumUtils.calc( file, checksumAlgos.keySet() );
-                for ( Map.Entry<String, Object> entry : checksums.entrySet() )
+                if ( checksums == null )
                 {
-                    uploadChecksum( file, path, entry.getKey(), entry.getValue() );
+                    checksums = ChecksumUtils.calc( file, checksumAlgos.keySet() );
                 }
             }
             catch ( IOException e )
             {
                 logger.debug( "Failed to upload checksums for " + file + ": " + e.getMessage(), e );
+                latch.countDown();
+                return;
             }
+
+            AtomicInteger pending = new AtomicInteger( checksums.size() + 1 );
+            for ( Map.Entry<String, Object> entry : checksums.entrySet() )
+            {
+                uploadChecksum( file, path, entry.getKey(), entry.getValue(), pending );
+            }
+            checksumUploaded( pending );
         }
 
-        private void uploadChecksum( File file, String path, String algo, Object checksum )
+        private void uploadChecksum( final File file, final String path, final String algo, Object checksum,
+                                     final AtomicInteger pending )
         {
             try
             {
@@ -1218,23 +1266,57 @@ class AsyncRepositoryConnector
                     throw (Exception) checksum;
                 }
 
-                String ext = checksumAlgos.get( algo );
+                final String ext = checksumAlgos.get( algo );
 
-                // Here we go blocking as this is a simple request.
-                Response response =
-                    httpClient.preparePut( path + ext ).setHeaders( headers ).setBody( String.valueOf( checksum ) ).execute().get();
+                httpClient.preparePut( path + ext ).setHeaders( headers ).setBody( String.valueOf( checksum ) ).execute(
+                    new AsyncCompletionHandler<Response>()
+                    {
+                        @Override
+                        public Response onCompleted( Response response )
+                        {
+                            try
+                            {
+                                if ( response.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST )
+                                {
+                                    logger.debug( "Failed to upload " + algo + " checksum for " + file + ": "
+                                        + String.format( "Checksum failed for %s with status code %s", path + ext,
+                                                         response.getStatusCode() ) );
+                                }
+                            }
+                            finally
+                            {
+                                checksumUploaded( pending );
+                            }
+                            return response;
+                        }
 
-                if ( response == null || response.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST )
-                {
-                    throw new TransferException(
-                        String.format( "Checksum failed for %s with status code %s", path + ext, response == null
-                            ? HttpURLConnection.HTTP_INTERNAL_ERROR
-                            : response.getStatusCode() ) );
-                }
+                        @Override
+                        public void onThrowable( Throwable t )
+                        {
+                            try
+                            {
+                                logger.debug( "Failed to upload " + algo + " checksum for " + file + ": "
+                                    + t.getMessage(), t );
+                            }
+                            finally
+                            {
+                                checksumUploaded( pending );
+                            }
+                        }
+                    } );
             }
             catch ( Exception e )
             {
                 logger.debug( "Failed to upload " + algo + " checksum for " + file + ": " + e.getMessage(), e );
+                checksumUploaded( pending );
+            }
+        }
+
+        private void checksumUploaded( AtomicInteger pending )
+        {
+            if ( pending.decrementAndGet() <= 0 )
+            {
+                latch.countDown();
             }
         }
 
@@ -1314,6 +1396,13 @@ class AsyncRepositoryConnector
     {
         closed.set( true );
         httpClient.close();
+        synchronized ( this )
+        {
+            if ( resumeHttpClient != null )
+            {
+                resumeHttpClient.close();
+            }
+        }
     }
 
     private <T> Collection<T> safe( Collection<T> items )
@@ -1323,62 +1412,31 @@ class AsyncRepositoryConnector
 
     /**
      * Create a {@link FileLockCompanion} containing a reference to a temporary {@link File} used when downloading
-     * a remote file. If a local and incomplete version of a file is available, use that file and resume bytes downloading.
-     * To prevent multiple process trying to resume the same file, a {@link FileLock} companion to the tmeporary file is
-     * created and used to prevent concurrency issue.
+     * a remote file. If the resume journal denotes a local and incomplete version of the file, use that file and resume
+     * bytes downloading. To prevent multiple process trying to resume the same file, a {@link FileLock} companion to the
+     * temporary file is created and used to prevent concurrency issue.
      *
-     * @param path           The downloaded path
-     * @param allowResumable Allow resumable download, or not.
+     * @param path        The downloaded path
+     * @param resumeEntry The journal entry for an incomplete download of the path, may be {@code null}.
      * @return
      */
-    private FileLockCompanion createOrGetTmpFile( String path, boolean allowResumable )
+    private FileLockCompanion createOrGetTmpFile( String path, ResumeJournal.Entry resumeEntry )
     {
-        if ( !disableResumeSupport && allowResumable )
+        if ( resumeEntry != null )
         {
-            File f = new File( path );
-            File parentFile = f.getParentFile();
-            if ( parentFile.isDirectory() )
+            synchronized ( activeDownloadFiles )
             {
-                for ( File tmpFile : parentFile.listFiles( new FilenameFilter()
-                {
-                    public boolean accept( File dir, String name )
-                    {
-                        if ( name.indexOf( "." ) > 0 && name.lastIndexOf( "." ) == name.indexOf( ".ahc" ) )
-                        {
-                            return true;
-                        }
-                        return false;
-                    }
-                } ) )
-                {
-
-                    if ( tmpFile.length() > 0 )
-                    {
-                        String realPath = tmpFile.getPath().substring( 0, tmpFile.getPath().lastIndexOf( "." ) );
-
-                        FileLockCompanion fileLockCompanion = null;
-                        if ( realPath.equals( path ) )
-                        {
-                            File newFile = tmpFile;
-                            synchronized ( activeDownloadFiles )
-                            {
-                                fileLockCompanion = lockFile( tmpFile );
-                                logger.debug( String.format( "Found an incomplete download for file %s.", path ) );
+                FileLockCompanion fileLockCompanion = lockFile( resumeEntry.getFile() );
+                logger.debug( String.format( "Found an incomplete download for file %s.", path ) );
 
-                                if ( fileLockCompanion.getLock() == null )
-                                {
-                                    /**
-                                     * Lock failed so we need to regenerate a new tmp file.
-                                     */
-                                    newFile = getTmpFile( path );
-                                    fileLockCompanion = lockFile( newFile );
-
-                                }
-                                return fileLockCompanion;
-                            }
-                        }
-                    }
+                if ( fileLockCompanion.getLock() == null )
+                {
+                    /**
+                     * Lock failed so we need to regenerate a new tmp file.
+                     */
+                    fileLockCompanion = lockFile( getTmpFile( path ) );
                 }
+                return fileLockCompanion;
             }
         }
         return new FileLockCompanion( getTmpFile( path ), null );
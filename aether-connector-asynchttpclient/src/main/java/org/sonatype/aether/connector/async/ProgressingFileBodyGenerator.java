@@ -15,6 +15,7 @@ import java.nio.channels.WritableByteChannel;
 
 import com.ning.http.client.generators.FileBodyGenerator;
 import org.sonatype.aether.transfer.TransferCancelledException;
+import org.sonatype.aether.util.ChecksumCalculator;
 
 import com.ning.http.client.RandomAccessBody;
 
@@ -24,16 +25,28 @@ class ProgressingFileBodyGenerator
 
     private final CompletionHandler completionHandler;
 
+    private final ChecksumCalculator checksums;
+
     public ProgressingFileBodyGenerator( File file, CompletionHandler completionHandler )
+    {
+        this( file, completionHandler, null );
+    }
+
+    public ProgressingFileBodyGenerator( File file, CompletionHandler completionHandler, ChecksumCalculator checksums )
     {
         super( file );
         this.completionHandler = completionHandler;
+        this.checksums = checksums;
     }
 
     @Override
     public RandomAccessBody createBody()
         throws IOException
     {
+        if ( checksums != null )
+        {
+            checksums.reset();
+        }
         return new ProgressingBody( super.createBody() );
     }
 
@@ -65,6 +78,10 @@ class ProgressingFileBodyGenerator
                 try
                 {
                     event.limit( (int) read );
+                    if ( checksums != null )
+                    {
+                        checksums.update( event );
+                    }
                     completionHandler.fireTransferProgressed( event );
                 }
                 catch ( TransferCancelledException e )
@@ -83,6 +100,10 @@ class ProgressingFileBodyGenerator
             {
                 channel = dst = new ProgressingWritableByteChannel( target );
             }
+            if ( checksums != null )
+            {
+                checksums.seek( position );
+            }
             return delegate.transferTo( position, Math.min( count, 1024 * 16 ), dst );
         }
 
@@ -126,6 +147,10 @@ class ProgressingFileBodyGenerator
                 try
                 {
                     event.limit( written );
+                    if ( checksums != null )
+                    {
+                        checksums.update( event );
+                    }
                     completionHandler.fireTransferProgressed( event );
                 }
                 catch ( TransferCancelledException e )
@@ -0,0 +1,235 @@
+package org.sonatype.aether.connector.async;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.sonatype.aether.spi.log.Logger;
+
+/**
+ * Keeps track of partially downloaded files such that an interrupted download can be resumed without scanning the
+ * target directory for candidates. For each target file, the journal records the name of the partial file along with
+ * the validators of the remote resource, i.e. its entity tag and/or last modification date. The journal entry is
+ * stored next to the target file and hence survives an abnormal termination of the JVM.
+ */
+class ResumeJournal
+{
+
+    static final String EXTENSION = ".ahc-resume";
+
+    private static final String KEY_FILE = "file";
+
+    private static final String KEY_ETAG = "etag";
+
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+
+    private final Logger logger;
+
+    public ResumeJournal( Logger logger )
+    {
+        this.logger = logger;
+    }
+
+    private File getJournalFile( File target )
+    {
+        return new File( target.getPath() + EXTENSION );
+    }
+
+    /**
+     * Looks up the partial file for the specified target file.
+     *
+     * @param target The target file of the download, must not be {@code null}.
+     * @return The journal entry or {@code null} if there is no usable partial file for the target.
+     */
+    public Entry get( File target )
+    {
+        File journalFile = getJournalFile( target );
+        if ( !journalFile.isFile() )
+        {
+            return null;
+        }
+
+        Properties props = new Properties();
+        InputStream is = null;
+        try
+        {
+            is = new FileInputStream( journalFile );
+            props.load( is );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to read resume journal " + journalFile + ": " + e.getMessage(), e );
+            return null;
+        }
+        finally
+        {
+            close( is );
+        }
+
+        String name = props.getProperty( KEY_FILE, "" );
+        if ( !name.startsWith( target.getName() + ".ahc" ) || name.indexOf( '/' ) >= 0 || name.indexOf( '\\' ) >= 0 )
+        {
+            return null;
+        }
+
+        Entry entry =
+            new Entry( new File( target.getParentFile(), name ), props.getProperty( KEY_ETAG ),
+                       props.getProperty( KEY_LAST_MODIFIED ) );
+        if ( entry.getValidator() == null || entry.getFile().length() <= 0 )
+        {
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Records the partial file for the specified target file. If the remote resource provides neither a strong entity
+     * tag nor a last modification date, the download cannot be safely resumed and any existing entry is removed
+     * instead.
+     *
+     * @param target The target file of the download, must not be {@code null}.
+     * @param partialFile The file receiving the downloaded bytes, must not be {@code null}.
+     * @param etag The entity tag of the remote resource, may be {@code null}.
+     * @param lastModified The last modification date of the remote resource, may be {@code null}.
+     */
+    public void put( File target, File partialFile, String etag, String lastModified )
+    {
+        if ( new Entry( partialFile, etag, lastModified ).getValidator() == null )
+        {
+            remove( target, null );
+            return;
+        }
+
+        Properties props = new Properties();
+        props.setProperty( KEY_FILE, partialFile.getName() );
+        if ( etag != null )
+        {
+            props.setProperty( KEY_ETAG, etag );
+        }
+        if ( lastModified != null )
+        {
+            props.setProperty( KEY_LAST_MODIFIED, lastModified );
+        }
+
+        File journalFile = getJournalFile( target );
+        OutputStream os = null;
+        try
+        {
+            os = new FileOutputStream( journalFile );
+            props.store( os, null );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to write resume journal " + journalFile + ": " + e.getMessage(), e );
+        }
+        finally
+        {
+            close( os );
+        }
+    }
+
+    /**
+     * Removes the journal entry for the specified target file.
+     *
+     * @param target The target file of the download, must not be {@code null}.
+     * @param partialFile The partial file whose entry should be removed, may be {@code null} to remove any entry.
+     */
+    public void remove( File target, File partialFile )
+    {
+        File journalFile = getJournalFile( target );
+        if ( !journalFile.exists() )
+        {
+            return;
+        }
+        if ( partialFile != null )
+        {
+            Entry entry = get( target );
+            if ( entry != null && !entry.getFile().equals( partialFile ) )
+            {
+                return;
+            }
+        }
+        journalFile.delete();
+    }
+
+    private static void close( Closeable closeable )
+    {
+        if ( closeable != null )
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch ( IOException e )
+            {
+                // irrelevant
+            }
+        }
+    }
+
+    /**
+     * A partial download along with the validators of the remote resource it was retrieved from.
+     */
+    static final class Entry
+    {
+
+        private final File file;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        Entry( File file, String etag, String lastModified )
+        {
+            this.file = file;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public String getEtag()
+        {
+            return etag;
+        }
+
+        public String getLastModified()
+        {
+            return lastModified;
+        }
+
+        /**
+         * Gets the value for the {@code If-Range} header of a request resuming this download. Strong entity tags are
+         * preferred over the last modification date.
+         *
+         * @return The validator or {@code null} if none.
+         */
+        public String getValidator()
+        {
+            if ( etag != null && !etag.startsWith( "W/" ) )
+            {
+                return etag;
+            }
+            return lastModified;
+        }
+
+    }
+
+}
@@ -14,7 +14,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
@@ -129,6 +132,133 @@ public class ResumeGetTest
         assertContentPattern( file );
     }
 
+    private void writePartialDownload( File file, int length, String etag )
+        throws IOException
+    {
+        File partial = new File( file.getPath() + ".ahc0123456789abcdef" );
+        byte[] content = new byte[length];
+        for ( int i = 0; i < length; i++ )
+        {
+            content[i] = (byte) CONTENT_PATTERN[i % CONTENT_PATTERN.length];
+        }
+        TestFileUtils.write( content, 1, partial );
+
+        new ResumeJournal( new SysoutLogger() ).put( file, partial, etag, null );
+    }
+
+    private void download( File file )
+        throws Exception
+    {
+        ArtifactDownload download = new ArtifactDownload( artifact, "", file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE );
+
+        RemoteRepository repo = new RemoteRepository( "test", "default", url() );
+        RepositoryConnector connector = factory.newInstance( session, repo );
+        try
+        {
+            connector.get( Arrays.asList( download ), null );
+        }
+        finally
+        {
+            connector.close();
+        }
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+    }
+
+    @Test
+    public void testResumePartialDownloadFromJournal()
+        throws Exception
+    {
+        EtagHandler handler = new EtagHandler( "\"v1\"" );
+        server.setHandler( handler );
+        server.start();
+
+        File file = TestFileUtils.createTempFile( "" );
+        file.delete();
+        writePartialDownload( file, 1000, "\"v1\"" );
+
+        download( file );
+
+        assertEquals( Arrays.asList( "bytes=1000-" ), handler.ranges );
+        assertEquals( handler.totalSize, file.length() );
+        assertContentPattern( file );
+        assertFalse( new File( file.getPath() + ResumeJournal.EXTENSION ).exists() );
+    }
+
+    @Test
+    public void testRestartPartialDownloadOfChangedResource()
+        throws Exception
+    {
+        EtagHandler handler = new EtagHandler( "\"v2\"" );
+        server.setHandler( handler );
+        server.start();
+
+        File file = TestFileUtils.createTempFile( "" );
+        file.delete();
+        writePartialDownload( file, 1000, "\"v1\"" );
+
+        download( file );
+
+        assertEquals( Arrays.asList( "bytes=1000-" ), handler.ranges );
+        assertEquals( handler.totalSize, file.length() );
+        assertContentPattern( file );
+    }
+
+    private static class EtagHandler
+        extends AbstractHandler
+    {
+
+        private final String etag;
+
+        private final int totalSize = 1024 * 16;
+
+        final List<String> ranges = Collections.synchronizedList( new ArrayList<String>() );
+
+        public EtagHandler( String etag )
+        {
+            this.etag = etag;
+        }
+
+        public void handle( String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response )
+            throws IOException
+        {
+            if ( target.endsWith( ".sha1" ) || target.endsWith( ".md5" ) )
+            {
+                response.setStatus( HttpURLConnection.HTTP_NOT_FOUND );
+                return;
+            }
+
+            int lb = 0;
+
+            String range = request.getHeader( "Range" );
+            if ( range != null )
+            {
+                ranges.add( range );
+                Matcher m = Pattern.compile( "bytes=([0-9]+)-" ).matcher( range );
+                if ( m.matches() && etag.equals( request.getHeader( "If-Range" ) ) )
+                {
+                    lb = Integer.parseInt( m.group( 1 ) );
+                }
+            }
+
+            response.setStatus( ( lb > 0 ) ? HttpURLConnection.HTTP_PARTIAL : HttpURLConnection.HTTP_OK );
+            response.setContentLength( totalSize - lb );
+            response.setHeader( "ETag", etag );
+            if ( lb > 0 )
+            {
+                response.setHeader( "Content-Range", "bytes " + lb + "-" + ( totalSize - 1 ) + "/" + totalSize );
+            }
+
+            OutputStream out = response.getOutputStream();
+            for ( int i = lb; i < totalSize; i++ )
+            {
+                out.write( CONTENT_PATTERN[i % CONTENT_PATTERN.length] );
+            }
+            out.close();
+        }
+
+    }
+
     private static class FlakyHandler
         extends AbstractHandler
     {
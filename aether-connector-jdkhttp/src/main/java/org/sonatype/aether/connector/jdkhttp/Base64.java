@@ -0,0 +1,42 @@
+package org.sonatype.aether.connector.jdkhttp;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+/**
+ * Encodes binary data using the Base64 alphabet as defined by RFC 2045, which the Java 5 class library offers no public
+ * API for.
+ */
+final class Base64
+{
+
+    private static final char[] ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private Base64()
+    {
+        // hide constructor
+    }
+
+    public static String encode( byte[] bytes )
+    {
+        StringBuilder buffer = new StringBuilder( ( bytes.length + 2 ) / 3 * 4 );
+        for ( int i = 0; i < bytes.length; i += 3 )
+        {
+            int b0 = bytes[i] & 0xFF;
+            int b1 = ( i + 1 < bytes.length ) ? bytes[i + 1] & 0xFF : 0;
+            int b2 = ( i + 2 < bytes.length ) ? bytes[i + 2] & 0xFF : 0;
+            buffer.append( ALPHABET[b0 >> 2] );
+            buffer.append( ALPHABET[( ( b0 & 0x03 ) << 4 ) | ( b1 >> 4 )] );
+            buffer.append( ( i + 1 < bytes.length ) ? ALPHABET[( ( b1 & 0x0F ) << 2 ) | ( b2 >> 6 )] : '=' );
+            buffer.append( ( i + 2 < bytes.length ) ? ALPHABET[b2 & 0x3F] : '=' );
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.sonatype.aether.connector.jdkhttp;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.IOException;
+
+/**
+ * Signals an HTTP response with an unexpected status code.
+ */
+class HttpResponseException
+    extends IOException
+{
+
+    private final int statusCode;
+
+    public HttpResponseException( String url, int statusCode, String reason )
+    {
+        super( getPrefix( statusCode ) + url + ", status code " + statusCode
+            + ( reason != null && reason.length() > 0 ? ", " + reason : "" ) );
+        this.statusCode = statusCode;
+    }
+
+    private static String getPrefix( int statusCode )
+    {
+        switch ( statusCode )
+        {
+            case 401:
+            case 403:
+            case 407:
+                return "Access denied to ";
+            case 404:
+            case 410:
+                return "Could not find ";
+            default:
+                return "Failed to transfer ";
+        }
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public boolean isNotFound()
+    {
+        return statusCode == 404 || statusCode == 410;
+    }
+
+}
@@ -0,0 +1,1049 @@
+package org.sonatype.aether.connector.jdkhttp;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.aether.ConfigurationProperties;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.repository.Authentication;
+import org.sonatype.aether.repository.Proxy;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.spi.connector.ArtifactDownload;
+import org.sonatype.aether.spi.connector.ArtifactTransfer;
+import org.sonatype.aether.spi.connector.ArtifactUpload;
+import org.sonatype.aether.spi.connector.MetadataDownload;
+import org.sonatype.aether.spi.connector.MetadataTransfer;
+import org.sonatype.aether.spi.connector.MetadataUpload;
+import org.sonatype.aether.spi.connector.RepositoryConnector;
+import org.sonatype.aether.spi.connector.Transfer;
+import org.sonatype.aether.spi.io.FileProcessor;
+import org.sonatype.aether.spi.log.Logger;
+import org.sonatype.aether.transfer.ArtifactNotFoundException;
+import org.sonatype.aether.transfer.ArtifactTransferException;
+import org.sonatype.aether.transfer.ChecksumFailureException;
+import org.sonatype.aether.transfer.MetadataNotFoundException;
+import org.sonatype.aether.transfer.MetadataTransferException;
+import org.sonatype.aether.transfer.NoRepositoryConnectorException;
+import org.sonatype.aether.transfer.TransferCancelledException;
+import org.sonatype.aether.transfer.TransferEvent.EventType;
+import org.sonatype.aether.transfer.TransferEvent.RequestType;
+import org.sonatype.aether.transfer.TransferListener;
+import org.sonatype.aether.util.ChecksumCalculator;
+import org.sonatype.aether.util.ChecksumUtils;
+import org.sonatype.aether.util.ConfigUtils;
+import org.sonatype.aether.util.concurrency.RunnableErrorForwarder;
+import org.sonatype.aether.util.layout.MavenDefaultLayout;
+import org.sonatype.aether.util.layout.RepositoryLayout;
+import org.sonatype.aether.util.listener.DefaultTransferEvent;
+import org.sonatype.aether.util.listener.DefaultTransferResource;
+
+/**
+ * A repository connector for http://, https:// and dav: URLs which uses {@link HttpURLConnection} and hence needs no
+ * third-party HTTP client. The connector keeps the number of TCP connections per repository low: transfers are run by
+ * a small pool of threads (configurable via {@code aether.connector.jdkhttp.threads}) and every response body is read
+ * completely, so the underlying connections are returned to the keep-alive cache of the runtime and reused by
+ * subsequent requests. Downloads are streamed into a temporary file while their checksums are calculated, uploads
+ * calculate the checksums to deploy while the file is sent. Credentials are sent preemptively using basic
+ * authentication, but only to the host of the repository, redirects to other hosts are followed without them.
+ */
+public class JdkHttpRepositoryConnector
+    implements RepositoryConnector
+{
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private static final int MAX_REDIRECTS = 5;
+
+    private static final int MAX_THREADS = 5;
+
+    private final Logger logger;
+
+    private final FileProcessor fileProcessor;
+
+    private final RemoteRepository repository;
+
+    private final TransferListener listener;
+
+    private final RepositoryLayout layout = new MavenDefaultLayout();
+
+    private final Map<String, String> checksumAlgos;
+
+    private final URL baseUrl;
+
+    private final java.net.Proxy proxy;
+
+    private final Map<String, String> headers;
+
+    private final String authorization;
+
+    private final String proxyAuthorization;
+
+    private final int connectTimeout;
+
+    private final int requestTimeout;
+
+    private final Executor executor;
+
+    private final AtomicBoolean closed = new AtomicBoolean( false );
+
+    public JdkHttpRepositoryConnector( RemoteRepository repository, RepositorySystemSession session,
+                                       FileProcessor fileProcessor, Logger logger )
+        throws NoRepositoryConnectorException
+    {
+        if ( !"default".equals( repository.getContentType() ) )
+        {
+            throw new NoRepositoryConnectorException( repository );
+        }
+
+        String protocol = repository.getProtocol();
+        if ( !protocol.regionMatches( true, 0, "http", 0, "http".length() )
+            && !protocol.regionMatches( true, 0, "dav", 0, "dav".length() ) )
+        {
+            throw new NoRepositoryConnectorException( repository );
+        }
+
+        try
+        {
+            baseUrl = new URL( toHttpUrl( repository.getUrl() ) );
+        }
+        catch ( MalformedURLException e )
+        {
+            throw new NoRepositoryConnectorException( repository );
+        }
+
+        this.repository = repository;
+        this.fileProcessor = fileProcessor;
+        this.logger = logger;
+        this.listener = session.getTransferListener();
+
+        checksumAlgos = new LinkedHashMap<String, String>();
+        checksumAlgos.put( "SHA-1", ".sha1" );
+        checksumAlgos.put( "MD5", ".md5" );
+
+        connectTimeout =
+            ConfigUtils.getInteger( session, ConfigurationProperties.DEFAULT_CONNECT_TIMEOUT,
+                                    ConfigurationProperties.CONNECT_TIMEOUT );
+        requestTimeout =
+            ConfigUtils.getInteger( session, ConfigurationProperties.DEFAULT_REQUEST_TIMEOUT,
+                                    ConfigurationProperties.REQUEST_TIMEOUT );
+
+        String credentialEncoding =
+            ConfigUtils.getString( session, ConfigurationProperties.DEFAULT_HTTP_CREDENTIAL_ENCODING,
+                                   ConfigurationProperties.HTTP_CREDENTIAL_ENCODING + "." + repository.getId(),
+                                   ConfigurationProperties.HTTP_CREDENTIAL_ENCODING );
+
+        authorization = getBasicAuthorization( repository.getAuthentication(), credentialEncoding );
+
+        Proxy p = repository.getProxy();
+        if ( p != null )
+        {
+            proxy = new java.net.Proxy( java.net.Proxy.Type.HTTP, new InetSocketAddress( p.getHost(), p.getPort() ) );
+            proxyAuthorization = getBasicAuthorization( p.getAuthentication(), credentialEncoding );
+        }
+        else
+        {
+            proxy = null;
+            proxyAuthorization = null;
+        }
+
+        headers = new LinkedHashMap<String, String>();
+        String userAgent =
+            ConfigUtils.getString( session, ConfigurationProperties.DEFAULT_USER_AGENT,
+                                   ConfigurationProperties.USER_AGENT );
+        if ( userAgent != null && userAgent.length() > 0 )
+        {
+            headers.put( "User-Agent", userAgent );
+        }
+        Map<?, ?> configHeaders =
+            ConfigUtils.getMap( session, null, ConfigurationProperties.HTTP_HEADERS + "." + repository.getId(),
+                                ConfigurationProperties.HTTP_HEADERS );
+        if ( configHeaders != null )
+        {
+            for ( Map.Entry<?, ?> entry : configHeaders.entrySet() )
+            {
+                if ( entry.getKey() instanceof String && entry.getValue() instanceof String )
+                {
+                    headers.put( entry.getKey().toString(), entry.getValue().toString() );
+                }
+            }
+        }
+
+        int threads =
+            ConfigUtils.getInteger( session, MAX_THREADS, JdkHttpRepositoryConnectorFactory.CFG_PREFIX + ".threads" );
+        if ( threads <= 1 )
+        {
+            executor = new Executor()
+            {
+                public void execute( Runnable command )
+                {
+                    command.run();
+                }
+            };
+        }
+        else
+        {
+            executor =
+                new ThreadPoolExecutor( threads, threads, 3, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                        new ConnectorThreadFactory( repository.getId() ) );
+        }
+    }
+
+    private static String toHttpUrl( String url )
+    {
+        // WebDAV is only relevant for directory creation which a plain PUT handles just as well nowadays
+        if ( url.regionMatches( true, 0, "dav:", 0, "dav:".length() ) )
+        {
+            url = url.substring( "dav:".length() );
+        }
+        else if ( url.regionMatches( true, 0, "dav", 0, "dav".length() ) )
+        {
+            url = "http" + url.substring( "dav".length() );
+        }
+        if ( !url.endsWith( "/" ) )
+        {
+            url += '/';
+        }
+        return url;
+    }
+
+    private static String getBasicAuthorization( Authentication auth, String encoding )
+    {
+        if ( auth == null || auth.getUsername() == null )
+        {
+            return null;
+        }
+        String credentials = auth.getUsername() + ':' + ( auth.getPassword() != null ? auth.getPassword() : "" );
+        byte[] bytes;
+        try
+        {
+            bytes = credentials.getBytes( encoding );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            bytes = credentials.getBytes();
+        }
+        return "Basic " + Base64.encode( bytes );
+    }
+
+    public void get( Collection<? extends ArtifactDownload> artifactDownloads,
+                     Collection<? extends MetadataDownload> metadataDownloads )
+    {
+        checkClosed();
+
+        artifactDownloads = safe( artifactDownloads );
+        metadataDownloads = safe( metadataDownloads );
+
+        Collection<GetTask<?>> tasks = new ArrayList<GetTask<?>>();
+
+        for ( MetadataDownload download : metadataDownloads )
+        {
+            String path = layout.getPath( download.getMetadata() ).getRawPath();
+            tasks.add( new GetTask<MetadataTransfer>( path, download.getFile(), download.getChecksumPolicy(),
+                                                      download, METADATA ) );
+        }
+
+        for ( ArtifactDownload download : artifactDownloads )
+        {
+            String path = layout.getPath( download.getArtifact() ).getRawPath();
+            tasks.add( new GetTask<ArtifactTransfer>( path, download.isExistenceCheck() ? null : download.getFile(),
+                                                      download.getChecksumPolicy(), download, ARTIFACT ) );
+        }
+
+        RunnableErrorForwarder errorForwarder = new RunnableErrorForwarder();
+        for ( GetTask<?> task : tasks )
+        {
+            executor.execute( errorForwarder.wrap( task ) );
+        }
+        errorForwarder.await();
+
+        for ( GetTask<?> task : tasks )
+        {
+            task.flush();
+        }
+    }
+
+    public void put( Collection<? extends ArtifactUpload> artifactUploads,
+                     Collection<? extends MetadataUpload> metadataUploads )
+    {
+        checkClosed();
+
+        artifactUploads = safe( artifactUploads );
+        metadataUploads = safe( metadataUploads );
+
+        Collection<PutTask<?>> tasks = new ArrayList<PutTask<?>>();
+
+        for ( ArtifactUpload upload : artifactUploads )
+        {
+            String path = layout.getPath( upload.getArtifact() ).getRawPath();
+            tasks.add( new PutTask<ArtifactTransfer>( path, upload.getFile(), upload, ARTIFACT ) );
+        }
+
+        for ( MetadataUpload upload : metadataUploads )
+        {
+            String path = layout.getPath( upload.getMetadata() ).getRawPath();
+            tasks.add( new PutTask<MetadataTransfer>( path, upload.getFile(), upload, METADATA ) );
+        }
+
+        RunnableErrorForwarder errorForwarder = new RunnableErrorForwarder();
+        for ( PutTask<?> task : tasks )
+        {
+            executor.execute( errorForwarder.wrap( task ) );
+        }
+        errorForwarder.await();
+
+        for ( PutTask<?> task : tasks )
+        {
+            task.flush();
+        }
+    }
+
+    public void close()
+    {
+        if ( closed.compareAndSet( false, true ) && executor instanceof ExecutorService )
+        {
+            ( (ExecutorService) executor ).shutdown();
+        }
+    }
+
+    private void checkClosed()
+    {
+        if ( closed.get() )
+        {
+            throw new IllegalStateException( "connector closed" );
+        }
+    }
+
+    private static <T> Collection<T> safe( Collection<T> items )
+    {
+        return ( items != null ) ? items : Collections.<T> emptyList();
+    }
+
+    private HttpURLConnection newConnection( URL url, String method )
+        throws IOException
+    {
+        HttpURLConnection conn =
+            (HttpURLConnection) ( ( proxy != null ) ? url.openConnection( proxy ) : url.openConnection() );
+        conn.setRequestMethod( method );
+        conn.setConnectTimeout( connectTimeout );
+        conn.setReadTimeout( requestTimeout );
+        conn.setInstanceFollowRedirects( false );
+        conn.setUseCaches( false );
+        for ( Map.Entry<String, String> header : headers.entrySet() )
+        {
+            conn.setRequestProperty( header.getKey(), header.getValue() );
+        }
+        if ( authorization != null && isSameServer( url, baseUrl ) )
+        {
+            conn.setRequestProperty( "Authorization", authorization );
+        }
+        if ( proxyAuthorization != null )
+        {
+            conn.setRequestProperty( "Proxy-Authorization", proxyAuthorization );
+        }
+        return conn;
+    }
+
+    private static boolean isSameServer( URL url1, URL url2 )
+    {
+        return url1.getProtocol().equalsIgnoreCase( url2.getProtocol() )
+            && url1.getHost().equalsIgnoreCase( url2.getHost() ) && getPort( url1 ) == getPort( url2 );
+    }
+
+    private static int getPort( URL url )
+    {
+        return ( url.getPort() < 0 ) ? url.getDefaultPort() : url.getPort();
+    }
+
+    /**
+     * Sends a request without body, following redirects.
+     */
+    private HttpURLConnection execute( URL url, String method )
+        throws IOException
+    {
+        for ( int redirects = 0;; redirects++ )
+        {
+            HttpURLConnection conn = newConnection( url, method );
+            int status = conn.getResponseCode();
+            if ( status >= 300 && status < 400 && status != HttpURLConnection.HTTP_NOT_MODIFIED
+                && redirects < MAX_REDIRECTS )
+            {
+                String location = conn.getHeaderField( "Location" );
+                if ( location != null )
+                {
+                    discard( conn );
+                    url = new URL( url, location );
+                    continue;
+                }
+            }
+            return conn;
+        }
+    }
+
+    private void checkStatus( HttpURLConnection conn )
+        throws IOException
+    {
+        int status = conn.getResponseCode();
+        if ( status >= HttpURLConnection.HTTP_MULT_CHOICE )
+        {
+            String reason = conn.getResponseMessage();
+            discard( conn );
+            throw new HttpResponseException( conn.getURL().toString(), status, reason );
+        }
+    }
+
+    /**
+     * Consumes the remaining response body, which allows the runtime to reuse the connection for another request.
+     */
+    private void discard( HttpURLConnection conn )
+    {
+        InputStream is = null;
+        try
+        {
+            is = ( conn.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ) ? conn.getErrorStream()
+                            : conn.getInputStream();
+            if ( is != null )
+            {
+                byte[] buffer = new byte[1024];
+                while ( is.read( buffer ) >= 0 )
+                {
+                    // skip
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            conn.disconnect();
+        }
+        finally
+        {
+            close( is );
+        }
+    }
+
+    private static long getContentLength( HttpURLConnection conn )
+    {
+        String length = conn.getHeaderField( "Content-Length" );
+        if ( length != null )
+        {
+            try
+            {
+                return Long.parseLong( length.trim() );
+            }
+            catch ( NumberFormatException e )
+            {
+                // ignored
+            }
+        }
+        return -1;
+    }
+
+    private void close( InputStream is )
+    {
+        if ( is != null )
+        {
+            try
+            {
+                is.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+        }
+    }
+
+    private void close( OutputStream os )
+    {
+        if ( os != null )
+        {
+            try
+            {
+                os.close();
+            }
+            catch ( IOException e )
+            {
+                // ignored
+            }
+        }
+    }
+
+    private static File newTempFile( File file )
+    {
+        return new File( file.getPath() + ".tmp" + UUID.randomUUID().toString().replace( "-", "" ).substring( 0, 16 ) );
+    }
+
+    private DefaultTransferEvent newEvent( DefaultTransferResource resource, RequestType requestType, EventType type )
+    {
+        DefaultTransferEvent event = new DefaultTransferEvent();
+        event.setResource( resource );
+        event.setRequestType( requestType );
+        event.setType( type );
+        return event;
+    }
+
+    private void fireInitiated( DefaultTransferResource resource, RequestType requestType )
+        throws TransferCancelledException
+    {
+        if ( listener != null )
+        {
+            listener.transferInitiated( newEvent( resource, requestType, EventType.INITIATED ) );
+        }
+    }
+
+    private void fireStarted( DefaultTransferResource resource, RequestType requestType )
+        throws TransferCancelledException
+    {
+        if ( listener != null )
+        {
+            listener.transferStarted( newEvent( resource, requestType, EventType.STARTED ) );
+        }
+    }
+
+    private void fireProgressed( DefaultTransferResource resource, RequestType requestType, byte[] buffer, int length,
+                                 long transferred )
+        throws TransferCancelledException
+    {
+        if ( listener != null )
+        {
+            DefaultTransferEvent event = newEvent( resource, requestType, EventType.PROGRESSED );
+            event.setDataBuffer( ByteBuffer.wrap( buffer, 0, length ) );
+            event.setTransferredBytes( transferred );
+            listener.transferProgressed( event );
+        }
+    }
+
+    private void fireCorrupted( DefaultTransferResource resource, RequestType requestType, Exception exception )
+        throws TransferCancelledException
+    {
+        if ( listener != null )
+        {
+            DefaultTransferEvent event = newEvent( resource, requestType, EventType.CORRUPTED );
+            event.setException( exception );
+            listener.transferCorrupted( event );
+        }
+    }
+
+    private void fireSucceeded( DefaultTransferResource resource, RequestType requestType, long transferred )
+    {
+        if ( listener != null )
+        {
+            DefaultTransferEvent event = newEvent( resource, requestType, EventType.SUCCEEDED );
+            event.setTransferredBytes( transferred );
+            listener.transferSucceeded( event );
+        }
+    }
+
+    private void fireFailed( DefaultTransferResource resource, RequestType requestType, Exception exception )
+    {
+        if ( listener != null )
+        {
+            DefaultTransferEvent event = newEvent( resource, requestType, EventType.FAILED );
+            event.setException( exception );
+            listener.transferFailed( event );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf( repository );
+    }
+
+    class GetTask<T extends Transfer>
+        implements Runnable
+    {
+
+        private final String path;
+
+        private final File file;
+
+        private final String checksumPolicy;
+
+        private final T download;
+
+        private final ExceptionWrapper<T> wrapper;
+
+        private volatile Exception exception;
+
+        public GetTask( String path, File file, String checksumPolicy, T download, ExceptionWrapper<T> wrapper )
+        {
+            this.path = path;
+            this.file = file;
+            this.checksumPolicy = checksumPolicy;
+            this.download = download;
+            this.wrapper = wrapper;
+        }
+
+        public void run()
+        {
+            download.setState( Transfer.State.ACTIVE );
+            DefaultTransferResource resource =
+                new DefaultTransferResource( repository.getUrl(), path, file, download.getTrace() );
+            File tmp = null;
+            Map<String, File> checksumFiles = new LinkedHashMap<String, File>();
+            try
+            {
+                fireInitiated( resource, RequestType.GET );
+
+                URL url = new URL( baseUrl, path );
+                long transferred = 0;
+
+                if ( file == null )
+                {
+                    HttpURLConnection conn = execute( url, "HEAD" );
+                    checkStatus( conn );
+                    resource.setContentLength( getContentLength( conn ) );
+                    discard( conn );
+                    fireStarted( resource, RequestType.GET );
+                }
+                else
+                {
+                    HttpURLConnection conn = execute( url, "GET" );
+                    checkStatus( conn );
+                    resource.setContentLength( getContentLength( conn ) );
+                    fireStarted( resource, RequestType.GET );
+
+                    fileProcessor.mkdirs( file.getAbsoluteFile().getParentFile() );
+                    tmp = newTempFile( file );
+                    ChecksumCalculator checksums = new ChecksumCalculator( checksumAlgos.keySet() );
+                    transferred = receive( conn, tmp, resource, checksums );
+
+                    if ( !RepositoryPolicy.CHECKSUM_POLICY_IGNORE.equals( checksumPolicy ) )
+                    {
+                        try
+                        {
+                            verifyChecksums( conn.getURL(), checksums.get( transferred ), checksumFiles );
+                        }
+                        catch ( ChecksumFailureException e )
+                        {
+                            if ( RepositoryPolicy.CHECKSUM_POLICY_FAIL.equals( checksumPolicy ) )
+                            {
+                                throw e;
+                            }
+                            fireCorrupted( resource, RequestType.GET, e );
+                        }
+                    }
+
+                    fileProcessor.move( tmp, file );
+                    for ( Map.Entry<String, File> entry : checksumFiles.entrySet() )
+                    {
+                        try
+                        {
+                            fileProcessor.move( entry.getValue(), new File( file.getPath() + entry.getKey() ) );
+                        }
+                        catch ( IOException e )
+                        {
+                            // ignored, non-critical
+                        }
+                    }
+                }
+
+                fireSucceeded( resource, RequestType.GET, transferred );
+            }
+            catch ( Exception e )
+            {
+                exception = e;
+                fireFailed( resource, RequestType.GET, e );
+            }
+            finally
+            {
+                if ( tmp != null )
+                {
+                    tmp.delete();
+                }
+                for ( File checksumFile : checksumFiles.values() )
+                {
+                    checksumFile.delete();
+                }
+            }
+        }
+
+        private long receive( HttpURLConnection conn, File tmp, DefaultTransferResource resource,
+                              ChecksumCalculator checksums )
+            throws IOException, TransferCancelledException
+        {
+            long transferred = 0;
+            boolean completed = false;
+            InputStream is = null;
+            OutputStream os = null;
+            try
+            {
+                is = conn.getInputStream();
+                os = new FileOutputStream( tmp );
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+                {
+                    if ( n > 0 )
+                    {
+                        os.write( buffer, 0, n );
+                        checksums.update( buffer, 0, n );
+                        transferred += n;
+                        fireProgressed( resource, RequestType.GET, buffer, n, transferred );
+                    }
+                }
+                os.close();
+                os = null;
+                completed = true;
+            }
+            finally
+            {
+                close( os );
+                close( is );
+                if ( !completed )
+                {
+                    // don't leave a partially read response for the next request on this connection
+                    conn.disconnect();
+                }
+            }
+            return transferred;
+        }
+
+        /**
+         * Verifies the calculated checksums against the first checksum the repository provides. A checksum file that
+         * matches the calculated checksum is put into the specified map, keyed by its extension, while checksum files
+         * that could not be downloaded completely or do not match are deleted right away so they never get installed.
+         */
+        private void verifyChecksums( URL url, Map<String, Object> actuals, Map<String, File> checksumFiles )
+            throws ChecksumFailureException
+        {
+            for ( Map.Entry<String, String> entry : checksumAlgos.entrySet() )
+            {
+                Object actual = actuals.get( entry.getKey() );
+                if ( !( actual instanceof String ) )
+                {
+                    continue;
+                }
+
+                String ext = entry.getValue();
+                File checksumFile = newTempFile( new File( file.getPath() + ext ) );
+
+                String expected;
+                try
+                {
+                    HttpURLConnection conn = execute( new URL( url, url.getPath() + ext ), "GET" );
+                    if ( conn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND )
+                    {
+                        discard( conn );
+                        continue;
+                    }
+                    checkStatus( conn );
+                    download( conn, checksumFile );
+                    expected = ChecksumUtils.read( checksumFile );
+                }
+                catch ( IOException e )
+                {
+                    checksumFile.delete();
+                    throw new ChecksumFailureException( e );
+                }
+
+                if ( !expected.equalsIgnoreCase( (String) actual ) )
+                {
+                    checksumFile.delete();
+                    throw new ChecksumFailureException( expected, (String) actual );
+                }
+                checksumFiles.put( ext, checksumFile );
+                return;
+            }
+
+            throw new ChecksumFailureException( "Checksum validation failed"
+                + ", no checksums available from the repository" );
+        }
+
+        private void download( HttpURLConnection conn, File target )
+            throws IOException
+        {
+            InputStream is = conn.getInputStream();
+            try
+            {
+                OutputStream os = new FileOutputStream( target );
+                try
+                {
+                    byte[] buffer = new byte[1024];
+                    for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+                    {
+                        os.write( buffer, 0, n );
+                    }
+                }
+                finally
+                {
+                    os.close();
+                }
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+
+        public void flush()
+        {
+            wrapper.wrap( download, exception, repository );
+            download.setState( Transfer.State.DONE );
+        }
+
+    }
+
+    class PutTask<T extends Transfer>
+        implements Runnable
+    {
+
+        private final String path;
+
+        private final File file;
+
+        private final T upload;
+
+        private final ExceptionWrapper<T> wrapper;
+
+        private volatile Exception exception;
+
+        public PutTask( String path, File file, T upload, ExceptionWrapper<T> wrapper )
+        {
+            this.path = path;
+            this.file = file;
+            this.upload = upload;
+            this.wrapper = wrapper;
+        }
+
+        public void run()
+        {
+            upload.setState( Transfer.State.ACTIVE );
+            DefaultTransferResource resource =
+                new DefaultTransferResource( repository.getUrl(), path, file, upload.getTrace() );
+            try
+            {
+                fireInitiated( resource, RequestType.PUT );
+
+                if ( file == null || !file.isFile() )
+                {
+                    throw new FileNotFoundException( "Could not find file " + file + " to upload" );
+                }
+
+                resource.setContentLength( file.length() );
+                fireStarted( resource, RequestType.PUT );
+
+                URL url = new URL( baseUrl, path );
+                ChecksumCalculator checksums = new ChecksumCalculator( checksumAlgos.keySet() );
+                long transferred = send( url, resource, checksums );
+
+                uploadChecksums( url, checksums.get( transferred ) );
+
+                fireSucceeded( resource, RequestType.PUT, transferred );
+            }
+            catch ( Exception e )
+            {
+                exception = e;
+                fireFailed( resource, RequestType.PUT, e );
+            }
+        }
+
+        private long send( URL url, DefaultTransferResource resource, ChecksumCalculator checksums )
+            throws IOException, TransferCancelledException
+        {
+            long length = file.length();
+            HttpURLConnection conn = newConnection( url, "PUT" );
+            conn.setDoOutput( true );
+            if ( length <= Integer.MAX_VALUE )
+            {
+                conn.setFixedLengthStreamingMode( (int) length );
+            }
+            else
+            {
+                conn.setChunkedStreamingMode( BUFFER_SIZE );
+            }
+
+            long transferred = 0;
+            boolean completed = false;
+            InputStream is = null;
+            OutputStream os = null;
+            try
+            {
+                is = new FileInputStream( file );
+                os = conn.getOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for ( int n = is.read( buffer ); n >= 0; n = is.read( buffer ) )
+                {
+                    if ( n > 0 )
+                    {
+                        os.write( buffer, 0, n );
+                        checksums.update( buffer, 0, n );
+                        transferred += n;
+                        fireProgressed( resource, RequestType.PUT, buffer, n, transferred );
+                    }
+                }
+                os.close();
+                os = null;
+                completed = true;
+            }
+            finally
+            {
+                close( is );
+                close( os );
+                if ( !completed )
+                {
+                    conn.disconnect();
+                }
+            }
+
+            checkStatus( conn );
+            discard( conn );
+
+            return transferred;
+        }
+
+        /**
+         * Uploads the checksums for the uploaded file, failures to do so are only logged.
+         */
+        private void uploadChecksums( URL url, Map<String, Object> checksums )
+        {
+            for ( Map.Entry<String, String> entry : checksumAlgos.entrySet() )
+            {
+                Object checksum = checksums.get( entry.getKey() );
+                if ( !( checksum instanceof String ) )
+                {
+                    continue;
+                }
+                URL checksumUrl = null;
+                try
+                {
+                    checksumUrl = new URL( url, url.getPath() + entry.getValue() );
+                    byte[] bytes = ( (String) checksum ).getBytes( "UTF-8" );
+                    HttpURLConnection conn = newConnection( checksumUrl, "PUT" );
+                    conn.setDoOutput( true );
+                    conn.setFixedLengthStreamingMode( bytes.length );
+                    OutputStream os = conn.getOutputStream();
+                    try
+                    {
+                        os.write( bytes );
+                    }
+                    finally
+                    {
+                        os.close();
+                    }
+                    checkStatus( conn );
+                    discard( conn );
+                }
+                catch ( IOException e )
+                {
+                    logger.warn( "Failed to upload checksum " + checksumUrl + ": " + e.getMessage() );
+                }
+            }
+        }
+
+        public void flush()
+        {
+            wrapper.wrap( upload, exception, repository );
+            upload.setState( Transfer.State.DONE );
+        }
+
+    }
+
+    static interface ExceptionWrapper<T>
+    {
+        void wrap( T transfer, Exception e, RemoteRepository repository );
+    }
+
+    private static boolean isNotFound( Exception e )
+    {
+        return e instanceof HttpResponseException && ( (HttpResponseException) e ).isNotFound();
+    }
+
+    private static final ExceptionWrapper<MetadataTransfer> METADATA = new ExceptionWrapper<MetadataTransfer>()
+    {
+        public void wrap( MetadataTransfer transfer, Exception e, RemoteRepository repository )
+        {
+            MetadataTransferException ex = null;
+            if ( e instanceof MetadataTransferException )
+            {
+                ex = (MetadataTransferException) e;
+            }
+            else if ( isNotFound( e ) && transfer instanceof MetadataDownload )
+            {
+                ex = new MetadataNotFoundException( transfer.getMetadata(), repository );
+            }
+            else if ( e != null )
+            {
+                ex = new MetadataTransferException( transfer.getMetadata(), repository, e );
+            }
+            transfer.setException( ex );
+        }
+    };
+
+    private static final ExceptionWrapper<ArtifactTransfer> ARTIFACT = new ExceptionWrapper<ArtifactTransfer>()
+    {
+        public void wrap( ArtifactTransfer transfer, Exception e, RemoteRepository repository )
+        {
+            ArtifactTransferException ex = null;
+            if ( e instanceof ArtifactTransferException )
+            {
+                ex = (ArtifactTransferException) e;
+            }
+            else if ( isNotFound( e ) && transfer instanceof ArtifactDownload )
+            {
+                ex = new ArtifactNotFoundException( transfer.getArtifact(), repository );
+            }
+            else if ( e != null )
+            {
+                ex = new ArtifactTransferException( transfer.getArtifact(), repository, e );
+            }
+            transfer.setException( ex );
+        }
+    };
+
+    static class ConnectorThreadFactory
+        implements ThreadFactory
+    {
+
+        private final AtomicInteger counter = new AtomicInteger( 1 );
+
+        private final String name;
+
+        public ConnectorThreadFactory( String repositoryId )
+        {
+            this.name = "JdkHttpRepositoryConnector-" + repositoryId + "-";
+        }
+
+        public Thread newThread( Runnable r )
+        {
+            Thread t = new Thread( r, name + counter.getAndIncrement() );
+            t.setDaemon( true );
+            return t;
+        }
+
+    }
+
+}
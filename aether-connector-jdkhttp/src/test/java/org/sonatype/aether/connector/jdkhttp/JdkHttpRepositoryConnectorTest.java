@@ -0,0 +1,329 @@
+package org.sonatype.aether.connector.jdkhttp;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.Authentication;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.spi.connector.ArtifactDownload;
+import org.sonatype.aether.spi.connector.ArtifactUpload;
+import org.sonatype.aether.spi.connector.RepositoryConnector;
+import org.sonatype.aether.spi.log.NullLogger;
+import org.sonatype.aether.test.impl.RecordingTransferListener;
+import org.sonatype.aether.test.impl.TestFileProcessor;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+import org.sonatype.aether.test.util.TestFileUtils;
+import org.sonatype.aether.test.util.impl.StubArtifact;
+import org.sonatype.aether.transfer.ArtifactNotFoundException;
+import org.sonatype.aether.transfer.ChecksumFailureException;
+import org.sonatype.aether.transfer.NoRepositoryConnectorException;
+import org.sonatype.aether.transfer.TransferEvent;
+import org.sonatype.aether.util.ChecksumUtils;
+import org.sonatype.tests.http.server.api.Behaviour;
+import org.sonatype.tests.http.server.jetty.behaviour.Provide;
+import org.sonatype.tests.http.server.jetty.behaviour.Record;
+import org.sonatype.tests.http.server.jetty.behaviour.ResourceServer;
+import org.sonatype.tests.http.server.jetty.impl.JettyServerProvider;
+
+/**
+ */
+public class JdkHttpRepositoryConnectorTest
+{
+
+    private static final String PATH = "gid/aid/version/aid-version-classifier.extension";
+
+    private JettyServerProvider provider;
+
+    private Record record;
+
+    private Provide provide;
+
+    private Set<String> provided = Collections.synchronizedSet( new HashSet<String>() );
+
+    private TestRepositorySystemSession session;
+
+    private RemoteRepository repository;
+
+    private Artifact artifact;
+
+    private RepositoryConnector connector;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        record = new Record();
+        provide = new Provide();
+        provider = new JettyServerProvider();
+        provider.initServer();
+        provider.addBehaviour( "/repo/*", record, new Behaviour()
+        {
+            public boolean execute( HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx )
+                throws Exception
+            {
+                // the provide behaviour would answer unknown paths with an empty body
+                if ( !provided.contains( request.getPathInfo().substring( 1 ) ) )
+                {
+                    response.sendError( HttpServletResponse.SC_NOT_FOUND );
+                    return false;
+                }
+                return true;
+            }
+        }, provide );
+        provider.addBehaviour( "/dav/*", record, new ResourceServer() );
+        provider.start();
+
+        session = new TestRepositorySystemSession();
+        repository = new RemoteRepository( "jdk-test-repo", "default", provider.getUrl() + "/repo" );
+        artifact = new StubArtifact( "gid", "aid", "classifier", "extension", "version" );
+    }
+
+    @After
+    public void teardown()
+        throws Exception
+    {
+        if ( connector != null )
+        {
+            connector.close();
+        }
+        provider.stop();
+        TestFileUtils.deleteTempFiles();
+    }
+
+    private RepositoryConnector connector()
+        throws NoRepositoryConnectorException
+    {
+        if ( connector == null )
+        {
+            connector =
+                new JdkHttpRepositoryConnectorFactory( NullLogger.INSTANCE, new TestFileProcessor() ).newInstance( session,
+                                                                                                                  repository );
+        }
+        return connector;
+    }
+
+    private static String digest( String content, String algo )
+        throws Exception
+    {
+        byte[] bytes = MessageDigest.getInstance( algo ).digest( content.getBytes( "UTF-8" ) );
+        StringBuilder buffer = new StringBuilder();
+        for ( byte b : bytes )
+        {
+            buffer.append( String.format( "%02x", b & 0xFF ) );
+        }
+        return buffer.toString();
+    }
+
+    private void deliver( String path, String content )
+        throws Exception
+    {
+        provide.addPath( path, content.getBytes( "UTF-8" ) );
+        provided.add( path );
+    }
+
+    @Test
+    public void testUnsupportedRepository()
+    {
+        try
+        {
+            new JdkHttpRepositoryConnectorFactory( NullLogger.INSTANCE, new TestFileProcessor() ).newInstance( session,
+                                                                                                              new RemoteRepository(
+                                                                                                                                    "id",
+                                                                                                                                    "default",
+                                                                                                                                    "file:///tmp" ) );
+            fail( "expected exception" );
+        }
+        catch ( NoRepositoryConnectorException e )
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDownloadArtifact()
+        throws Exception
+    {
+        deliver( PATH, "artifact" );
+        deliver( PATH + ".sha1", digest( "artifact", "SHA-1" ) );
+
+        File file = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download = new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+        TestFileUtils.assertContent( "artifact", file );
+        TestFileUtils.assertContent( digest( "artifact", "SHA-1" ), new File( file.getPath() + ".sha1" ) );
+    }
+
+    @Test
+    public void testDownloadArtifactNotFound()
+        throws Exception
+    {
+        File file = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download = new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL );
+        connector().get( Arrays.asList( download ), null );
+
+        assertTrue( String.valueOf( download.getException() ),
+                    download.getException() instanceof ArtifactNotFoundException );
+    }
+
+    @Test
+    public void testExistenceCheck()
+        throws Exception
+    {
+        deliver( PATH, "artifact" );
+
+        File file = TestFileUtils.createTempFile( "local" );
+        ArtifactDownload download = new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL );
+        download.setExistenceCheck( true );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+        TestFileUtils.assertContent( "local", file );
+    }
+
+    @Test
+    public void testChecksumFailure()
+        throws Exception
+    {
+        deliver( PATH, "artifact" );
+        deliver( PATH + ".sha1", "foo" );
+
+        File file = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download = new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNotNull( download.getException() );
+        assertTrue( String.valueOf( download.getException().getCause() ),
+                    download.getException().getCause() instanceof ChecksumFailureException );
+        TestFileUtils.assertContent( "", file );
+    }
+
+    @Test
+    public void testChecksumFallbackAndWarning()
+        throws Exception
+    {
+        RecordingTransferListener listener = new RecordingTransferListener();
+        session.setTransferListener( listener );
+
+        deliver( PATH, "artifact" );
+        deliver( PATH + ".md5", "bar" );
+
+        File file = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download = new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_WARN );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+        TestFileUtils.assertContent( "artifact", file );
+
+        TransferEvent corrupted = null;
+        for ( TransferEvent event : listener.getEvents() )
+        {
+            if ( TransferEvent.EventType.CORRUPTED.equals( event.getType() ) )
+            {
+                corrupted = event;
+            }
+        }
+        assertNotNull( corrupted );
+        assertTrue( corrupted.getException().getMessage(), corrupted.getException().getMessage().contains( "bar" ) );
+        assertFalse( new File( file.getPath() + ".md5" ).exists() );
+        assertFalse( new File( file.getPath() + ".sha1" ).exists() );
+    }
+
+    @Test
+    public void testMatchingChecksumFileIsKept()
+        throws Exception
+    {
+        deliver( PATH, "artifact" );
+        String sha1 = (String) ChecksumUtils.calc( TestFileUtils.createTempFile( "artifact" ),
+                                                   Arrays.asList( "SHA-1" ) ).get( "SHA-1" );
+        deliver( PATH + ".sha1", sha1 );
+
+        File file = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download = new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+        TestFileUtils.assertContent( sha1, new File( file.getPath() + ".sha1" ) );
+    }
+
+    @Test
+    public void testPreemptiveAuthentication()
+        throws Exception
+    {
+        repository.setAuthentication( new Authentication( "user", "password" ) );
+        deliver( PATH, "artifact" );
+
+        File file = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download =
+            new ArtifactDownload( artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+        Map<String, String> headers = record.getRequestHeaders().values().iterator().next();
+        String authorization = null;
+        for ( Map.Entry<String, String> header : headers.entrySet() )
+        {
+            if ( "Authorization".equalsIgnoreCase( header.getKey() ) )
+            {
+                authorization = header.getValue();
+            }
+        }
+        assertEquals( "Basic dXNlcjpwYXNzd29yZA==", authorization );
+    }
+
+    @Test
+    public void testUploadCalculatesChecksums()
+        throws Exception
+    {
+        repository = new RemoteRepository( "jdk-test-repo", "default", "dav:" + provider.getUrl() + "/dav" );
+
+        File file = TestFileUtils.createTempFile( "upload" );
+        ArtifactUpload upload = new ArtifactUpload( artifact, file );
+        connector().put( Arrays.asList( upload ), null );
+        assertNull( String.valueOf( upload.getException() ), upload.getException() );
+
+        File target = TestFileUtils.createTempFile( "" );
+        ArtifactDownload download =
+            new ArtifactDownload( artifact, null, target, RepositoryPolicy.CHECKSUM_POLICY_FAIL );
+        connector().get( Arrays.asList( download ), null );
+
+        assertNull( String.valueOf( download.getException() ), download.getException() );
+        TestFileUtils.assertContent( "upload", target );
+        TestFileUtils.assertContent( digest( "upload", "SHA-1" ), new File( target.getPath() + ".sha1" ) );
+    }
+
+    @Test
+    public void testBase64()
+    {
+        assertEquals( "", Base64.encode( new byte[0] ) );
+        assertEquals( "YQ==", Base64.encode( new byte[] { 'a' } ) );
+        assertEquals( "YWI=", Base64.encode( new byte[] { 'a', 'b' } ) );
+        assertEquals( "YWJj", Base64.encode( new byte[] { 'a', 'b', 'c' } ) );
+        assertEquals( "/+8=", Base64.encode( new byte[] { (byte) 0xFF, (byte) 0xEF } ) );
+    }
+
+}
@@ -0,0 +1,391 @@
+package org.sonatype.aether.impl;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.SessionData;
+
+/**
+ * Collects counters and latency histograms for the phases of the repository system. Metrics are disabled by default
+ * and are only recorded for sessions whose {@link SessionData} holds an instance of this class, as done by
+ * {@link #enable(RepositorySystemSession)}. The components check for the instance once per operation, so disabled
+ * metrics cost a single lookup. All methods of this class are thread-safe.
+ *
+ * <pre>
+ * RepositoryMetrics metrics = RepositoryMetrics.enable( session );
+ * system.collectDependencies( session, request );
+ * for ( RepositoryMetrics.Statistic stat : metrics.getStatistics().values() )
+ * {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class RepositoryMetrics
+{
+
+    /**
+     * The latency of {@link DependencyCollector#collectDependencies} invocations.
+     */
+    public static final String COLLECT_DEPENDENCIES = "collectDependencies";
+
+    /**
+     * The latency of {@link ArtifactDescriptorReader#readArtifactDescriptor} invocations.
+     */
+    public static final String READ_ARTIFACT_DESCRIPTOR = "readArtifactDescriptor";
+
+    /**
+     * The latency of {@link VersionRangeResolver#resolveVersionRange} invocations.
+     */
+    public static final String RESOLVE_VERSION_RANGE = "resolveVersionRange";
+
+    /**
+     * The latency of {@code RepositoryConnector.get()} invocations.
+     */
+    public static final String CONNECTOR_GET = "connector.get";
+
+    /**
+     * The latency of {@code RepositoryConnector.put()} invocations.
+     */
+    public static final String CONNECTOR_PUT = "connector.put";
+
+    /**
+     * The number of update checks which required a remote access.
+     */
+    public static final String UPDATE_CHECK_REQUIRED = "updateCheck.required";
+
+    /**
+     * The number of update checks which allowed to skip a remote access.
+     */
+    public static final String UPDATE_CHECK_SKIPPED = "updateCheck.skipped";
+
+    /**
+     * The number of downloads skipped because the artifact is known to be absent from the remote repository.
+     */
+    public static final String NEGATIVE_CACHE_HIT = "negativeCache.hit";
+
+    /**
+     * The number of artifacts found in the local repository.
+     */
+    public static final String LOCAL_REPOSITORY_HIT = "localRepository.hit";
+
+    /**
+     * The number of artifacts not found in the local repository.
+     */
+    public static final String LOCAL_REPOSITORY_MISS = "localRepository.miss";
+
+    /**
+     * The number of lookups answered by the data pool of the dependency collector.
+     */
+    public static final String DATA_POOL_HIT = "dataPool.hit";
+
+    /**
+     * The number of lookups not answered by the data pool of the dependency collector.
+     */
+    public static final String DATA_POOL_MISS = "dataPool.miss";
+
+    private static final Object KEY = RepositoryMetrics.class.getName();
+
+    private final ConcurrentMap<String, Statistic> statistics = new ConcurrentHashMap<String, Statistic>();
+
+    /**
+     * Gets the metrics of the specified session.
+     *
+     * @param session The repository system session, must not be {@code null}.
+     * @return The metrics or {@code null} if metrics are not enabled for the session.
+     */
+    public static RepositoryMetrics get( RepositorySystemSession session )
+    {
+        SessionData data = session.getData();
+        if ( data == null )
+        {
+            return null;
+        }
+        Object metrics = data.get( KEY );
+        return ( metrics instanceof RepositoryMetrics ) ? (RepositoryMetrics) metrics : null;
+    }
+
+    /**
+     * Enables metrics for the specified session. If metrics are already enabled, the existing instance is returned.
+     *
+     * @param session The repository system session, must not be {@code null}.
+     * @return The metrics of the session, never {@code null}.
+     */
+    public static RepositoryMetrics enable( RepositorySystemSession session )
+    {
+        SessionData data = session.getData();
+        while ( true )
+        {
+            Object metrics = data.get( KEY );
+            if ( metrics instanceof RepositoryMetrics )
+            {
+                return (RepositoryMetrics) metrics;
+            }
+            RepositoryMetrics created = new RepositoryMetrics();
+            if ( data.set( KEY, metrics, created ) )
+            {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Disables metrics for the specified session.
+     *
+     * @param session The repository system session, must not be {@code null}.
+     */
+    public static void disable( RepositorySystemSession session )
+    {
+        session.getData().set( KEY, null );
+    }
+
+    private Statistic getOrCreate( String name )
+    {
+        Statistic statistic = statistics.get( name );
+        if ( statistic == null )
+        {
+            statistic = new Statistic( name );
+            Statistic existing = statistics.putIfAbsent( name, statistic );
+            if ( existing != null )
+            {
+                statistic = existing;
+            }
+        }
+        return statistic;
+    }
+
+    /**
+     * Increments the specified counter.
+     *
+     * @param name The name of the counter, must not be {@code null}.
+     */
+    public void count( String name )
+    {
+        getOrCreate( name ).count.incrementAndGet();
+    }
+
+    /**
+     * Records the duration of an operation.
+     *
+     * @param name The name of the operation, must not be {@code null}.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    public void record( String name, long nanos )
+    {
+        getOrCreate( name ).record( nanos );
+    }
+
+    /**
+     * Starts timing an operation. The duration is recorded once {@link Timer#stop()} is called, usually from a
+     * {@code finally} block.
+     *
+     * @param name The name of the operation, must not be {@code null}.
+     * @return The started timer, never {@code null}.
+     */
+    public Timer start( String name )
+    {
+        return new Timer( getOrCreate( name ) );
+    }
+
+    /**
+     * Starts timing an operation if metrics are enabled.
+     *
+     * @param metrics The metrics to record the duration with, may be {@code null} if metrics are disabled.
+     * @param name The name of the operation, must not be {@code null}.
+     * @return The started timer, never {@code null}. If metrics are disabled, the timer does nothing.
+     * @see #start(String)
+     */
+    public static Timer start( RepositoryMetrics metrics, String name )
+    {
+        return ( metrics != null ) ? metrics.start( name ) : Timer.DISABLED;
+    }
+
+    /**
+     * Gets the statistic with the specified name.
+     *
+     * @param name The name of the statistic, must not be {@code null}.
+     * @return The statistic or {@code null} if nothing was recorded under the name yet.
+     */
+    public Statistic getStatistic( String name )
+    {
+        return statistics.get( name );
+    }
+
+    /**
+     * Gets all statistics recorded so far.
+     *
+     * @return The (read-only) statistics sorted by name, never {@code null}.
+     */
+    public Map<String, Statistic> getStatistics()
+    {
+        return new TreeMap<String, Statistic>( statistics );
+    }
+
+    /**
+     * Discards all statistics recorded so far.
+     */
+    public void reset()
+    {
+        statistics.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getStatistics().values().toString();
+    }
+
+    /**
+     * Measures the duration of a single operation.
+     */
+    public static final class Timer
+    {
+
+        static final Timer DISABLED = new Timer( null );
+
+        private final Statistic statistic;
+
+        private final long start;
+
+        Timer( Statistic statistic )
+        {
+            this.statistic = statistic;
+            this.start = ( statistic != null ) ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Records the time elapsed since this timer was started.
+         */
+        public void stop()
+        {
+            if ( statistic != null )
+            {
+                statistic.record( System.nanoTime() - start );
+            }
+        }
+
+    }
+
+    /**
+     * A counter along with the latency histogram of timed operations. The histogram uses buckets of exponentially
+     * growing size, bucket {@code i} holds the number of operations that took less than {@code 2^i} microseconds (but
+     * not less than {@code 2^(i-1)} microseconds).
+     */
+    public static final class Statistic
+    {
+
+        static final int BUCKETS = 40;
+
+        private final String name;
+
+        final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private final AtomicLongArray histogram = new AtomicLongArray( BUCKETS );
+
+        Statistic( String name )
+        {
+            this.name = name;
+        }
+
+        void record( long nanos )
+        {
+            count.incrementAndGet();
+            totalNanos.addAndGet( nanos );
+            for ( long max = maxNanos.get(); nanos > max; max = maxNanos.get() )
+            {
+                if ( maxNanos.compareAndSet( max, nanos ) )
+                {
+                    break;
+                }
+            }
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros( micros );
+            histogram.incrementAndGet( Math.min( bucket, BUCKETS - 1 ) );
+        }
+
+        /**
+         * Gets the name of this statistic.
+         *
+         * @return The name, never {@code null}.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Gets the number of recorded events/operations.
+         *
+         * @return The number of events/operations.
+         */
+        public long getCount()
+        {
+            return count.get();
+        }
+
+        /**
+         * Gets the accumulated duration of the recorded operations.
+         *
+         * @return The total duration in nanoseconds, {@code 0} for mere counters.
+         */
+        public long getTotalNanos()
+        {
+            return totalNanos.get();
+        }
+
+        /**
+         * Gets the duration of the slowest recorded operation.
+         *
+         * @return The maximum duration in nanoseconds, {@code 0} for mere counters.
+         */
+        public long getMaxNanos()
+        {
+            return maxNanos.get();
+        }
+
+        /**
+         * Gets the latency histogram of the recorded operations.
+         *
+         * @return A copy of the histogram buckets, never {@code null}.
+         */
+        public long[] getHistogram()
+        {
+            long[] buckets = new long[histogram.length()];
+            for ( int i = 0; i < buckets.length; i++ )
+            {
+                buckets[i] = histogram.get( i );
+            }
+            return buckets;
+        }
+
+        @Override
+        public String toString()
+        {
+            long count = getCount();
+            if ( totalNanos.get() <= 0 )
+            {
+                return name + ": " + count;
+            }
+            return name + ": " + count + " in " + ( getTotalNanos() / 1000000 ) + " ms (max "
+                + ( getMaxNanos() / 1000000 ) + " ms)";
+        }
+
+    }
+
+}
@@ -0,0 +1,362 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sonatype.aether.spi.log.Logger;
+import org.sonatype.aether.spi.log.NullLogger;
+
+/**
+ * A file of records that is only ever appended to, guarded by file locks against concurrent access from other
+ * processes. The log starts with a magic number, is memory-mapped and replayed when loaded and compacted once the
+ * number of records has grown well beyond the number of live entries.
+ */
+class AppendOnlyLog
+{
+
+    /**
+     * File locks are held by the JVM and must not overlap, so different instances of a log for the same file need to
+     * synchronize on the same object.
+     */
+    private static final Map<String, Object> MUTEXES = new HashMap<String, Object>();
+
+    private final File file;
+
+    private final int magic;
+
+    private final int recordSize;
+
+    private final String description;
+
+    private final Object mutex;
+
+    private Logger logger = NullLogger.INSTANCE;
+
+    private long lastRecordOffset;
+
+    private byte[] lastRecord;
+
+    /**
+     * Creates a new log.
+     * 
+     * @param file The log file, must not be {@code null}.
+     * @param magic The magic number identifying the format of the log.
+     * @param recordSize The size of the records in bytes or {@code 0} if the records are prefixed with their length as
+     *            a 4-byte integer.
+     * @param description The description of the log used in log messages, must not be {@code null}.
+     * @param logger The logger to use, may be {@code null}.
+     */
+    public AppendOnlyLog( File file, int magic, int recordSize, String description, Logger logger )
+    {
+        this.file = file;
+        this.magic = magic;
+        this.recordSize = recordSize;
+        this.description = description;
+        this.logger = ( logger != null ) ? logger : NullLogger.INSTANCE;
+        this.mutex = getMutex( file );
+    }
+
+    private static Object getMutex( File file )
+    {
+        String path;
+        try
+        {
+            path = file.getCanonicalPath();
+        }
+        catch ( IOException e )
+        {
+            path = file.getAbsolutePath();
+        }
+
+        synchronized ( MUTEXES )
+        {
+            Object mutex = MUTEXES.get( path );
+            if ( mutex == null )
+            {
+                mutex = new Object();
+                MUTEXES.put( path, mutex );
+            }
+            return mutex;
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Replays the records of the log and compacts the log if it holds many more records than live entries.
+     * 
+     * @param records The callback to replay the records with, must not be {@code null}.
+     */
+    public void load( Records records )
+    {
+        if ( !file.isFile() )
+        {
+            return;
+        }
+
+        synchronized ( mutex )
+        {
+            int count = 0;
+            long length = 0;
+            RandomAccessFile raf = null;
+            FileLock lock = null;
+            try
+            {
+                raf = new RandomAccessFile( file, "r" );
+                FileChannel channel = raf.getChannel();
+                lock = channel.lock( 0, Long.MAX_VALUE, true );
+
+                length = channel.size();
+                MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, length );
+                if ( buffer.remaining() < 4 || buffer.getInt() != magic )
+                {
+                    logger.debug( "Ignoring invalid " + description + " " + file );
+                    return;
+                }
+
+                count = records.read( buffer );
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Failed to read " + description + " " + file + ": " + e.getMessage(), e );
+                return;
+            }
+            finally
+            {
+                release( lock );
+                close( raf );
+            }
+
+            if ( count > 1024 && count > records.size() * 2 )
+            {
+                compact( records, length );
+            }
+        }
+    }
+
+    /**
+     * Appends the specified record to the log.
+     * 
+     * @param record The bytes of the record, must not be {@code null}.
+     */
+    public void append( byte[] record )
+    {
+        synchronized ( mutex )
+        {
+            RandomAccessFile raf = null;
+            FileLock lock = null;
+            try
+            {
+                file.getParentFile().mkdirs();
+                raf = new RandomAccessFile( file, "rw" );
+                FileChannel channel = raf.getChannel();
+                lock = channel.lock();
+
+                long size = channel.size();
+                long length;
+                if ( size <= 0 )
+                {
+                    channel.write( (ByteBuffer) ByteBuffer.allocate( 4 ).putInt( magic ).flip(), 0 );
+                    length = 4;
+                }
+                else
+                {
+                    length = getCompleteLength( channel, size );
+                    if ( length < size )
+                    {
+                        // drop an incomplete trailing record, e.g. after a crash, readers would stop there
+                        channel.truncate( length );
+                    }
+                }
+                channel.write( ByteBuffer.wrap( record ), length );
+                lastRecordOffset = length;
+                lastRecord = record;
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Failed to update " + description + " " + file + ": " + e.getMessage(), e );
+            }
+            finally
+            {
+                release( lock );
+                close( raf );
+            }
+        }
+    }
+
+    /**
+     * Gets the length of the log up to the end of its last complete record.
+     */
+    private long getCompleteLength( FileChannel channel, long size )
+        throws IOException
+    {
+        if ( recordSize > 0 )
+        {
+            return size - ( size - 4 ) % recordSize;
+        }
+
+        // the records up to the last one appended by this instance are complete unless the log has been compacted since
+        long length = isLastRecord( channel, size ) ? lastRecordOffset + lastRecord.length : 4;
+        ByteBuffer prefix = ByteBuffer.allocate( 4 );
+        while ( length + 4 <= size )
+        {
+            prefix.clear();
+            read( channel, prefix, length );
+            int recordLength = prefix.getInt( 0 );
+            if ( recordLength <= 0 || length + 4 + recordLength > size )
+            {
+                break;
+            }
+            length += 4 + recordLength;
+        }
+        return length;
+    }
+
+    private boolean isLastRecord( FileChannel channel, long size )
+        throws IOException
+    {
+        if ( lastRecord == null || lastRecordOffset + lastRecord.length > size )
+        {
+            return false;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate( lastRecord.length );
+        read( channel, bytes, lastRecordOffset );
+        return Arrays.equals( lastRecord, bytes.array() );
+    }
+
+    private static void read( FileChannel channel, ByteBuffer buffer, long position )
+        throws IOException
+    {
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer, position + buffer.position() ) < 0 )
+            {
+                throw new IOException( "Unexpected end of file" );
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with the live entries, unless another process appended to the log since it was loaded.
+     */
+    private void compact( Records records, long loadedLength )
+    {
+        RandomAccessFile raf = null;
+        FileLock lock = null;
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 4 + records.size() * 128 );
+            DataOutputStream out = new DataOutputStream( bytes );
+            out.writeInt( magic );
+            records.write( out );
+            out.close();
+
+            raf = new RandomAccessFile( file, "rw" );
+            FileChannel channel = raf.getChannel();
+            lock = channel.lock();
+
+            if ( channel.size() != loadedLength )
+            {
+                return;
+            }
+
+            channel.truncate( 0 );
+            channel.write( ByteBuffer.wrap( bytes.toByteArray() ), 0 );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to compact " + description + " " + file + ": " + e.getMessage(), e );
+        }
+        finally
+        {
+            release( lock );
+            close( raf );
+        }
+    }
+
+    private void release( FileLock lock )
+    {
+        if ( lock != null )
+        {
+            try
+            {
+                lock.release();
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Failed to release lock on " + description + " " + file, e );
+            }
+        }
+    }
+
+    private void close( RandomAccessFile raf )
+    {
+        if ( raf != null )
+        {
+            try
+            {
+                raf.close();
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Failed to close " + description + " " + file, e );
+            }
+        }
+    }
+
+    /**
+     * The in-memory state backed by a log.
+     */
+    interface Records
+    {
+
+        /**
+         * Replays the records of the log. An incomplete trailing record, e.g. after a crash, is to be ignored.
+         *
+         * @param buffer The buffer positioned at the first record, must not be {@code null}.
+         * @return The number of records read.
+         * @throws IOException If a record could not be read.
+         */
+        int read( ByteBuffer buffer )
+            throws IOException;
+
+        /**
+         * Gets the number of live entries.
+         *
+         * @return The number of live entries.
+         */
+        int size();
+
+        /**
+         * Writes one record for each live entry.
+         *
+         * @param out The output stream to write the records to, must not be {@code null}.
+         * @throws IOException If the records could not be written.
+         */
+        void write( DataOutputStream out )
+            throws IOException;
+
+    }
+
+}
@@ -0,0 +1,366 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.UpdateCheckManager;
+import org.sonatype.aether.impl.VersionRangeResolver;
+import org.sonatype.aether.metadata.Metadata;
+import org.sonatype.aether.repository.ArtifactRepository;
+import org.sonatype.aether.repository.LocalRepositoryManager;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.repository.WorkspaceReader;
+import org.sonatype.aether.repository.WorkspaceRepository;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResolutionException;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.util.metadata.DefaultMetadata;
+import org.sonatype.aether.version.Version;
+import org.sonatype.aether.version.VersionConstraint;
+
+/**
+ * A version range resolver that remembers the results of another resolver across requests and sessions. Results are
+ * keyed by the group id, artifact id and version (range) of the artifact, the remote repositories, the local repository,
+ * the workspace repository, the offline mode and the request context. A cached result is discarded as soon as one of the local copies of the version metadata
+ * (i.e. {@code maven-metadata.xml}) has been modified or the update policy of one of the remote repositories demands a
+ * fresh check. Results carrying exceptions are never cached.
+ * <p>
+ * This resolver is not registered as a component but meant to wrap the actual resolver, e.g.
+ * 
+ * <pre>
+ * locator.setServices( VersionRangeResolver.class, new CachingVersionRangeResolver( resolver, remoteRepositoryManager,
+ *                                                                                   updateCheckManager ) );
+ * </pre>
+ */
+public class CachingVersionRangeResolver
+    implements VersionRangeResolver
+{
+
+    static final String METADATA_TYPE = "maven-metadata.xml";
+
+    private static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private VersionRangeResolver versionRangeResolver;
+
+    private RemoteRepositoryManager remoteRepositoryManager;
+
+    private UpdateCheckManager updateCheckManager;
+
+    private final Map<Key, Entry> entries;
+
+    public CachingVersionRangeResolver( VersionRangeResolver versionRangeResolver,
+                                        RemoteRepositoryManager remoteRepositoryManager,
+                                        UpdateCheckManager updateCheckManager )
+    {
+        this( versionRangeResolver, remoteRepositoryManager, updateCheckManager, DEFAULT_MAX_ENTRIES );
+    }
+
+    public CachingVersionRangeResolver( VersionRangeResolver versionRangeResolver,
+                                        RemoteRepositoryManager remoteRepositoryManager,
+                                        UpdateCheckManager updateCheckManager, final int maxEntries )
+    {
+        setVersionRangeResolver( versionRangeResolver );
+        setRemoteRepositoryManager( remoteRepositoryManager );
+        setUpdateCheckManager( updateCheckManager );
+        if ( maxEntries <= 0 )
+        {
+            throw new IllegalArgumentException( "maximum number of cache entries must be positive: " + maxEntries );
+        }
+        entries = new LinkedHashMap<Key, Entry>( 256, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, Entry> eldest )
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public CachingVersionRangeResolver setVersionRangeResolver( VersionRangeResolver versionRangeResolver )
+    {
+        if ( versionRangeResolver == null )
+        {
+            throw new IllegalArgumentException( "version range resolver has not been specified" );
+        }
+        this.versionRangeResolver = versionRangeResolver;
+        return this;
+    }
+
+    public CachingVersionRangeResolver setRemoteRepositoryManager( RemoteRepositoryManager remoteRepositoryManager )
+    {
+        if ( remoteRepositoryManager == null )
+        {
+            throw new IllegalArgumentException( "remote repository manager has not been specified" );
+        }
+        this.remoteRepositoryManager = remoteRepositoryManager;
+        return this;
+    }
+
+    public CachingVersionRangeResolver setUpdateCheckManager( UpdateCheckManager updateCheckManager )
+    {
+        if ( updateCheckManager == null )
+        {
+            throw new IllegalArgumentException( "update check manager has not been specified" );
+        }
+        this.updateCheckManager = updateCheckManager;
+        return this;
+    }
+
+    public VersionRangeResult resolveVersionRange( RepositorySystemSession session, VersionRangeRequest request )
+        throws VersionRangeResolutionException
+    {
+        Key key = new Key( session, request );
+
+        Entry entry;
+        synchronized ( entries )
+        {
+            entry = entries.get( key );
+        }
+
+        if ( entry != null )
+        {
+            if ( entry.isValid( session, updateCheckManager ) )
+            {
+                return entry.toResult( request );
+            }
+            synchronized ( entries )
+            {
+                entries.remove( key );
+            }
+        }
+
+        VersionRangeResult result = versionRangeResolver.resolveVersionRange( session, request );
+
+        if ( result.getExceptions().isEmpty() )
+        {
+            entry = new Entry( result, getMetadataFiles( session, request ), getUpdatePolicies( session, request ) );
+            synchronized ( entries )
+            {
+                entries.put( key, entry );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void clear()
+    {
+        synchronized ( entries )
+        {
+            entries.clear();
+        }
+    }
+
+    private List<File> getMetadataFiles( RepositorySystemSession session, VersionRangeRequest request )
+    {
+        Artifact artifact = request.getArtifact();
+        Metadata metadata =
+            new DefaultMetadata( artifact.getGroupId(), artifact.getArtifactId(), METADATA_TYPE,
+                                 Metadata.Nature.RELEASE_OR_SNAPSHOT );
+
+        LocalRepositoryManager lrm = session.getLocalRepositoryManager();
+        File basedir = lrm.getRepository().getBasedir();
+
+        List<File> files = new ArrayList<File>( request.getRepositories().size() + 1 );
+        files.add( new File( basedir, lrm.getPathForLocalMetadata( metadata ) ) );
+        for ( RemoteRepository repository : request.getRepositories() )
+        {
+            String path = lrm.getPathForRemoteMetadata( metadata, repository, request.getRequestContext() );
+            files.add( new File( basedir, path ) );
+        }
+        return files;
+    }
+
+    private List<String> getUpdatePolicies( RepositorySystemSession session, VersionRangeRequest request )
+    {
+        List<String> policies = new ArrayList<String>( request.getRepositories().size() );
+        for ( RemoteRepository repository : request.getRepositories() )
+        {
+            RepositoryPolicy policy = remoteRepositoryManager.getPolicy( session, repository, true, true );
+            if ( policy.isEnabled() )
+            {
+                policies.add( policy.getUpdatePolicy() );
+            }
+        }
+        return policies;
+    }
+
+    static final class Key
+    {
+
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String version;
+
+        private final RepositoryKey[] repositories;
+
+        private final File localRepository;
+
+        private final WorkspaceRepository workspace;
+
+        private final boolean offline;
+
+        private final String context;
+
+        private final int hashCode;
+
+        public Key( RepositorySystemSession session, VersionRangeRequest request )
+        {
+            Artifact artifact = request.getArtifact();
+            groupId = artifact.getGroupId();
+            artifactId = artifact.getArtifactId();
+            version = artifact.getVersion();
+            repositories = toKeys( request.getRepositories() );
+            localRepository = session.getLocalRepository().getBasedir();
+            WorkspaceReader reader = session.getWorkspaceReader();
+            workspace = ( reader != null ) ? reader.getRepository() : null;
+            offline = session.isOffline();
+            context = request.getRequestContext();
+
+            int hash = 17;
+            hash = hash * 31 + groupId.hashCode();
+            hash = hash * 31 + artifactId.hashCode();
+            hash = hash * 31 + version.hashCode();
+            hash = hash * 31 + RepositoryKey.hash( repositories );
+            hash = hash * 31 + localRepository.hashCode();
+            hash = hash * 31 + ( workspace != null ? workspace.hashCode() : 0 );
+            hash = hash * 31 + ( offline ? 1 : 0 );
+            hash = hash * 31 + context.hashCode();
+            hashCode = hash;
+        }
+
+        private static RepositoryKey[] toKeys( List<RemoteRepository> repositories )
+        {
+            RepositoryKey[] keys = new RepositoryKey[repositories.size()];
+            for ( int i = 0; i < keys.length; i++ )
+            {
+                RemoteRepository repository = repositories.get( i );
+                keys[i] = new RepositoryKey( repository, toKeys( repository.getMirroredRepositories() ) );
+            }
+            return keys;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+            else if ( !( obj instanceof Key ) )
+            {
+                return false;
+            }
+            Key that = (Key) obj;
+            return hashCode == that.hashCode && groupId.equals( that.groupId )
+                && artifactId.equals( that.artifactId ) && version.equals( that.version )
+                && RepositoryKey.equals( repositories, that.repositories )
+                && localRepository.equals( that.localRepository ) && eq( workspace, that.workspace )
+                && offline == that.offline && context.equals( that.context );
+        }
+
+        private static <T> boolean eq( T s1, T s2 )
+        {
+            return s1 != null ? s1.equals( s2 ) : s2 == null;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+    }
+
+    static final class Entry
+    {
+
+        private final List<Version> versions;
+
+        private final Map<Version, ArtifactRepository> repositories;
+
+        private final VersionConstraint versionConstraint;
+
+        private final File[] files;
+
+        private final long[] timestamps;
+
+        private final List<String> policies;
+
+        private final long created;
+
+        public Entry( VersionRangeResult result, List<File> files, List<String> policies )
+        {
+            versions = new ArrayList<Version>( result.getVersions() );
+            repositories = new LinkedHashMap<Version, ArtifactRepository>();
+            for ( Version version : versions )
+            {
+                repositories.put( version, result.getRepository( version ) );
+            }
+            versionConstraint = result.getVersionConstraint();
+            this.files = files.toArray( new File[files.size()] );
+            timestamps = new long[this.files.length];
+            for ( int i = 0; i < timestamps.length; i++ )
+            {
+                timestamps[i] = this.files[i].lastModified();
+            }
+            this.policies = policies;
+            created = System.currentTimeMillis();
+        }
+
+        public boolean isValid( RepositorySystemSession session, UpdateCheckManager updateCheckManager )
+        {
+            for ( int i = 0; i < files.length; i++ )
+            {
+                if ( files[i].lastModified() != timestamps[i] )
+                {
+                    return false;
+                }
+            }
+            for ( String policy : policies )
+            {
+                if ( updateCheckManager.isUpdatedRequired( session, created, policy ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public VersionRangeResult toResult( VersionRangeRequest request )
+        {
+            VersionRangeResult result = new VersionRangeResult( request );
+            for ( Version version : versions )
+            {
+                result.addVersion( version );
+                result.setRepository( version, repositories.get( version ) );
+            }
+            result.setVersionConstraint( versionConstraint );
+            return result;
+        }
+
+    }
+
+}
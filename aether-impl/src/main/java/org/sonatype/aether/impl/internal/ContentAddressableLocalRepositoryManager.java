@@ -0,0 +1,234 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.LocalArtifactRegistration;
+import org.sonatype.aether.spi.log.Logger;
+import org.sonatype.aether.spi.log.NullLogger;
+import org.sonatype.aether.util.ChecksumUtils;
+
+/**
+ * A local repository manager that stores byte-identical artifacts only once. Artifacts keep their usual location in the
+ * Maven repository layout as provided by {@link EnhancedLocalRepositoryManager}, but on registration, each artifact
+ * file is replaced by a hard link to a blob in the directory {@code .cas} of the repository which is named after the
+ * SHA-1 checksum of the contents. An artifact file that has other links besides its repository path, e.g. to the build
+ * output it was installed from, is copied into a new blob rather than turned into one, so modifications of the build
+ * output never reach the blob. If the runtime or the file system does not support hard links, the artifacts are simply
+ * kept as regular files.
+ * <p>
+ * Note that the linked files share their contents, so an artifact file must never be modified in place but only be
+ * replaced by a new file. Blobs that are no longer linked from any artifact file are deleted by
+ * {@link #reclaimBlobs()} which runs automatically at most once a day during registration.
+ */
+public class ContentAddressableLocalRepositoryManager
+    extends EnhancedLocalRepositoryManager
+{
+
+    static final String BLOB_DIR = ".cas";
+
+    static final String RECLAIM_MARKER = "reclaimed";
+
+    static final long RECLAIM_INTERVAL = 24L * 60 * 60 * 1000;
+
+    private static final Collection<String> ALGOS = Collections.singleton( "SHA-1" );
+
+    private final DefaultFileProcessor fileProcessor = new DefaultFileProcessor();
+
+    private Logger logger = NullLogger.INSTANCE;
+
+    public ContentAddressableLocalRepositoryManager( File basedir )
+    {
+        super( basedir, "cas" );
+    }
+
+    @Override
+    public ContentAddressableLocalRepositoryManager setLogger( Logger logger )
+    {
+        super.setLogger( logger );
+        this.logger = ( logger != null ) ? logger : NullLogger.INSTANCE;
+        return this;
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, LocalArtifactRegistration request )
+    {
+        super.add( session, request );
+        store( request );
+        reclaimBlobsIfDue();
+    }
+
+    @Override
+    public void add( RepositorySystemSession session, Collection<? extends LocalArtifactRegistration> requests )
+    {
+        super.add( session, requests );
+        for ( LocalArtifactRegistration request : requests )
+        {
+            store( request );
+        }
+        reclaimBlobsIfDue();
+    }
+
+    /**
+     * Deletes all blobs that are no longer linked from any artifact file, e.g. because the artifact file was deleted or
+     * replaced by a new download. Blobs are kept if the runtime or the file system cannot tell their link count.
+     *
+     * @return The number of deleted blobs.
+     */
+    public int reclaimBlobs()
+    {
+        int reclaimed = 0;
+
+        File[] dirs = new File( getRepository().getBasedir(), BLOB_DIR ).listFiles();
+        if ( dirs == null )
+        {
+            return reclaimed;
+        }
+
+        for ( File dir : dirs )
+        {
+            File[] blobs = dir.isDirectory() ? dir.listFiles() : null;
+            if ( blobs == null )
+            {
+                continue;
+            }
+            synchronized ( this )
+            {
+                for ( File blob : blobs )
+                {
+                    if ( blob.isFile() && HardLinker.getLinkCount( blob ) == 1 && blob.delete() )
+                    {
+                        reclaimed++;
+                        logger.debug( "Reclaimed unused blob " + blob );
+                    }
+                }
+                // only succeeds if the directory is empty
+                dir.delete();
+            }
+        }
+
+        return reclaimed;
+    }
+
+    private void reclaimBlobsIfDue()
+    {
+        File marker = new File( getRepository().getBasedir(), BLOB_DIR + '/' + RECLAIM_MARKER );
+
+        synchronized ( this )
+        {
+            long now = System.currentTimeMillis();
+            if ( marker.isFile() && now - marker.lastModified() < RECLAIM_INTERVAL )
+            {
+                return;
+            }
+            if ( !marker.getParentFile().isDirectory() )
+            {
+                return;
+            }
+            try
+            {
+                if ( !marker.createNewFile() )
+                {
+                    marker.setLastModified( now );
+                }
+            }
+            catch ( IOException e )
+            {
+                logger.debug( "Failed to update " + marker + ": " + e.getMessage(), e );
+                return;
+            }
+        }
+
+        reclaimBlobs();
+    }
+
+    /**
+     * Gets the blob file for the specified SHA-1 checksum.
+     *
+     * @param sha1 The SHA-1 checksum of the contents, must not be {@code null}.
+     * @return The blob file, never {@code null}.
+     */
+    File getBlobFile( String sha1 )
+    {
+        return new File( getRepository().getBasedir(), BLOB_DIR + '/' + sha1.substring( 0, 2 ) + '/'
+            + sha1.substring( 2 ) );
+    }
+
+    private void store( LocalArtifactRegistration request )
+    {
+        if ( !HardLinker.isSupported() )
+        {
+            return;
+        }
+
+        Artifact artifact = request.getArtifact();
+        String path = getPathForArtifact( artifact, request.getRepository() == null );
+        File file = new File( getRepository().getBasedir(), path );
+        if ( !file.isFile() )
+        {
+            return;
+        }
+
+        try
+        {
+            // hash the file itself, a checksum file next to it is not necessarily in sync with its contents
+            Object sha1 = ChecksumUtils.calc( file, ALGOS ).get( "SHA-1" );
+            if ( !( sha1 instanceof String ) )
+            {
+                return;
+            }
+            File blob = getBlobFile( (String) sha1 );
+
+            synchronized ( this )
+            {
+                if ( blob.isFile() )
+                {
+                    if ( !HardLinker.isSameFile( blob, file ) && HardLinker.link( blob, file ) )
+                    {
+                        logger.debug( "Linked " + file + " to existing blob " + blob );
+                    }
+                }
+                else if ( HardLinker.getLinkCount( file ) == 1 )
+                {
+                    blob.getParentFile().mkdirs();
+                    HardLinker.link( file, blob );
+                }
+                else
+                {
+                    // the file is not owned by the repository, e.g. linked to the build output by the installer
+                    blob.getParentFile().mkdirs();
+                    File tmp = File.createTempFile( "blob", ".tmp", blob.getParentFile() );
+                    try
+                    {
+                        fileProcessor.copy( file, tmp, null );
+                        if ( tmp.renameTo( blob ) && HardLinker.link( blob, file ) )
+                        {
+                            logger.debug( "Linked " + file + " to copied blob " + blob );
+                        }
+                    }
+                    finally
+                    {
+                        tmp.delete();
+                    }
+                }
+            }
+        }
+        catch ( Exception e )
+        {
+            logger.debug( "Failed to de-duplicate " + file + ": " + e.getMessage(), e );
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.sonatype.aether.repository.LocalRepository;
+import org.sonatype.aether.repository.LocalRepositoryManager;
+import org.sonatype.aether.repository.NoLocalRepositoryManagerException;
+import org.sonatype.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.sonatype.aether.spi.locator.Service;
+import org.sonatype.aether.spi.locator.ServiceLocator;
+import org.sonatype.aether.spi.log.Logger;
+import org.sonatype.aether.spi.log.NullLogger;
+
+/**
+ * Creates {@link ContentAddressableLocalRepositoryManager}s for repository type {@code "cas"}.
+ */
+@Component( role = LocalRepositoryManagerFactory.class, hint = "cas" )
+public class ContentAddressableLocalRepositoryManagerFactory
+    implements LocalRepositoryManagerFactory, Service
+{
+
+    @Requirement
+    private Logger logger = NullLogger.INSTANCE;
+
+    public LocalRepositoryManager newInstance( LocalRepository repository )
+        throws NoLocalRepositoryManagerException
+    {
+        if ( "cas".equals( repository.getContentType() ) )
+        {
+            return new ContentAddressableLocalRepositoryManager( repository.getBasedir() ).setLogger( logger );
+        }
+        else
+        {
+            throw new NoLocalRepositoryManagerException( repository );
+        }
+    }
+
+    public void initService( ServiceLocator locator )
+    {
+        setLogger( locator.getService( Logger.class ) );
+    }
+
+    public ContentAddressableLocalRepositoryManagerFactory setLogger( Logger logger )
+    {
+        this.logger = ( logger != null ) ? logger : NullLogger.INSTANCE;
+        return this;
+    }
+
+    public int getPriority()
+    {
+        return 5;
+    }
+
+}
@@ -9,11 +9,9 @@ package org.sonatype.aether.impl.internal;
  *******************************************************************************/
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -25,7 +23,7 @@ import org.sonatype.aether.collection.DependencyManager;
 import org.sonatype.aether.collection.DependencySelector;
 import org.sonatype.aether.collection.DependencyTraverser;
 import org.sonatype.aether.graph.Dependency;
-import org.sonatype.aether.repository.ArtifactRepository;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.repository.RemoteRepository;
 import org.sonatype.aether.resolution.ArtifactDescriptorException;
 import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
@@ -33,7 +31,6 @@ import org.sonatype.aether.resolution.ArtifactDescriptorResult;
 import org.sonatype.aether.resolution.VersionRangeRequest;
 import org.sonatype.aether.resolution.VersionRangeResult;
 import org.sonatype.aether.version.Version;
-import org.sonatype.aether.version.VersionConstraint;
 
 /**
  * @author Benjamin Bentmann
@@ -47,6 +44,8 @@ final class DataPool
 
     private static final String DESCRIPTORS = DataPool.class.getName() + "$Descriptors";
 
+    private static final String REPOSITORY_POOL = DataPool.class.getName() + "$Repository";
+
     public static final ArtifactDescriptorResult NO_DESCRIPTOR =
         new ArtifactDescriptorResult( new ArtifactDescriptorRequest() );
 
@@ -56,13 +55,33 @@ final class DataPool
 
     private Map<Object, Descriptor> descriptors;
 
+    private ObjectPool<RepositoryKey> repositoryKeys;
+
+    private Map<RemoteRepository, RepositoryKey> repositoryKeysByInstance =
+        new IdentityHashMap<RemoteRepository, RepositoryKey>();
+
+    /*
+     * NOTE: Lookups use these mutable probes to avoid allocating a key per visited dependency, immutable keys are only
+     * created when an entry is inserted. Like the node map, the probes are not thread-safe.
+     */
+
+    private final ConstraintKey constraintProbe = new ConstraintKey();
+
+    private final NodeKey nodeProbe = new NodeKey();
+
+    private final GraphKey graphProbe = new GraphKey();
+
     private Map<Object, Constraint> constraints = new WeakHashMap<Object, Constraint>();
 
     private Map<Object, GraphNode> nodes = new HashMap<Object, GraphNode>( 256 );
 
+    private final RepositoryMetrics metrics;
+
     @SuppressWarnings( "unchecked" )
     public DataPool( RepositorySystemSession session )
     {
+        metrics = RepositoryMetrics.get( session );
+
         RepositoryCache cache = session.getCache();
 
         if ( cache != null )
@@ -70,6 +89,7 @@ final class DataPool
             artifacts = (ObjectPool<Artifact>) cache.get( session, ARTIFACT_POOL );
             dependencies = (ObjectPool<Dependency>) cache.get( session, DEPENDENCY_POOL );
             descriptors = (Map<Object, Descriptor>) cache.get( session, DESCRIPTORS );
+            repositoryKeys = (ObjectPool<RepositoryKey>) cache.get( session, REPOSITORY_POOL );
         }
 
         if ( artifacts == null )
@@ -98,6 +118,15 @@ final class DataPool
                 cache.put( session, DESCRIPTORS, descriptors );
             }
         }
+
+        if ( repositoryKeys == null )
+        {
+            repositoryKeys = new ObjectPool<RepositoryKey>();
+            if ( cache != null )
+            {
+                cache.put( session, REPOSITORY_POOL, repositoryKeys );
+            }
+        }
     }
 
     public Artifact intern( Artifact artifact )
@@ -110,17 +139,62 @@ final class DataPool
         return dependencies.intern( dependency );
     }
 
+    /**
+     * Creates an immutable snapshot of the specified repositories for use in lookup keys. The snapshots are interned
+     * per session, and within this pool, the snapshot of a given repository instance is only created once, i.e. the
+     * repositories are assumed to not change during the collection. The lists themselves are read on every call.
+     * 
+     * @param repositories The repositories to snapshot, must not be {@code null}.
+     * @return The interned repository keys, never {@code null}. The returned array must not be modified.
+     */
+    public RepositoryKey[] toKeys( List<RemoteRepository> repositories )
+    {
+        if ( repositories.isEmpty() )
+        {
+            return RepositoryKey.EMPTY;
+        }
+        RepositoryKey[] keys = new RepositoryKey[repositories.size()];
+        int index = 0;
+        for ( RemoteRepository repository : repositories )
+        {
+            keys[index++] = toKey( repository );
+        }
+        return keys;
+    }
+
+    private RepositoryKey toKey( RemoteRepository repository )
+    {
+        RepositoryKey key = repositoryKeysByInstance.get( repository );
+        if ( key == null )
+        {
+            key = new RepositoryKey( repository, toKeys( repository.getMirroredRepositories() ) );
+            key = repositoryKeys.intern( key );
+            repositoryKeysByInstance.put( repository, key );
+        }
+        return key;
+    }
+
     public Object toKey( ArtifactDescriptorRequest request )
     {
         return request.getArtifact();
     }
 
-    public ArtifactDescriptorResult getDescriptor( Object key, ArtifactDescriptorRequest request )
+    /**
+     * Looks up the descriptor of the specified artifact. Pooled descriptors are shared and must not be modified, in
+     * particular, their request only denotes the artifact and not the request context, trace or repositories of the
+     * lookup.
+     * 
+     * @param artifact The artifact whose descriptor should be looked up, must not be {@code null}.
+     * @return The descriptor result, {@link #NO_DESCRIPTOR} if the descriptor is known to be bad or {@code null} if the
+     *         descriptor is not pooled.
+     */
+    public ArtifactDescriptorResult getDescriptor( Artifact artifact )
     {
-        Descriptor descriptor = descriptors.get( key );
+        Descriptor descriptor = descriptors.get( artifact );
+        countLookup( descriptor );
         if ( descriptor != null )
         {
-            return descriptor.toResult( request );
+            return descriptor.toResult();
         }
         return null;
     }
@@ -137,15 +211,25 @@ final class DataPool
 
     public Object toKey( VersionRangeRequest request )
     {
-        return new ConstraintKey( request );
+        return new ConstraintKey( request.getArtifact(), toKeys( request.getRepositories() ) );
     }
 
-    public VersionRangeResult getConstraint( Object key, VersionRangeRequest request )
+    /**
+     * Looks up the resolved version range of the specified artifact. Pooled version ranges are shared and must not be
+     * modified, in particular, their request only denotes the artifact.
+     * 
+     * @param artifact The artifact whose version range should be looked up, must not be {@code null}.
+     * @param repositories The repositories of the version range request, must not be {@code null}.
+     * @return The version range result or {@code null} if the range is not pooled.
+     */
+    public VersionRangeResult getConstraint( Artifact artifact, List<RemoteRepository> repositories )
     {
-        Constraint constraint = constraints.get( key );
+        constraintProbe.set( artifact, toKeys( repositories ) );
+        Constraint constraint = constraints.get( constraintProbe );
+        countLookup( constraint );
         if ( constraint != null )
         {
-            return constraint.toResult( request );
+            return constraint.toResult();
         }
         return null;
     }
@@ -157,18 +241,38 @@ final class DataPool
 
     public Object toKey( Artifact artifact, List<RemoteRepository> repositories )
     {
-        return new NodeKey( artifact, repositories );
+        return new NodeKey( artifact, toKeys( repositories ) );
     }
 
     public Object toKey( Artifact artifact, List<RemoteRepository> repositories, DependencySelector selector,
                          DependencyManager manager, DependencyTraverser traverser )
     {
-        return new GraphKey( artifact, repositories, selector, manager, traverser );
+        return new GraphKey( artifact, toKeys( repositories ), selector, manager, traverser );
     }
 
-    public GraphNode getNode( Object key )
+    public GraphNode getNode( Artifact artifact, List<RemoteRepository> repositories )
     {
-        return nodes.get( key );
+        nodeProbe.set( artifact, toKeys( repositories ) );
+        GraphNode node = nodes.get( nodeProbe );
+        countLookup( node );
+        return node;
+    }
+
+    public GraphNode getNode( Artifact artifact, List<RemoteRepository> repositories, DependencySelector selector,
+                              DependencyManager manager, DependencyTraverser traverser )
+    {
+        graphProbe.set( artifact, toKeys( repositories ), selector, manager, traverser );
+        GraphNode node = nodes.get( graphProbe );
+        countLookup( node );
+        return node;
+    }
+
+    private void countLookup( Object value )
+    {
+        if ( metrics != null )
+        {
+            metrics.count( ( value != null ) ? RepositoryMetrics.DATA_POOL_HIT : RepositoryMetrics.DATA_POOL_MISS );
+        }
     }
 
     public void putNode( Object key, GraphNode node )
@@ -179,7 +283,7 @@ final class DataPool
     static abstract class Descriptor
     {
 
-        public abstract ArtifactDescriptorResult toResult( ArtifactDescriptorRequest request );
+        public abstract ArtifactDescriptorResult toResult();
 
     }
 
@@ -187,37 +291,25 @@ final class DataPool
         extends Descriptor
     {
 
-        final Artifact artifact;
-
-        final Map<String, Object> properties;
-
-        final List<Artifact> relocations;
-
-        final List<RemoteRepository> repositories;
-
-        final List<Dependency> dependencies;
-
-        final List<Dependency> managedDependencies;
+        final ArtifactDescriptorResult result;
 
         public GoodDescriptor( ArtifactDescriptorResult result )
         {
-            artifact = result.getArtifact();
-            properties = result.getProperties();
-            relocations = result.getRelocations();
-            dependencies = result.getDependencies();
-            managedDependencies = result.getManagedDependencies();
-            repositories = clone( result.getRepositories() );
+            ArtifactDescriptorRequest request = new ArtifactDescriptorRequest();
+            request.setArtifact( result.getRequest().getArtifact() );
+
+            this.result = new ArtifactDescriptorResult( request );
+            this.result.setArtifact( result.getArtifact() );
+            this.result.setProperties( Collections.unmodifiableMap( result.getProperties() ) );
+            this.result.setRelocations( Collections.unmodifiableList( result.getRelocations() ) );
+            this.result.setAliases( Collections.unmodifiableCollection( result.getAliases() ) );
+            this.result.setDependencies( Collections.unmodifiableList( result.getDependencies() ) );
+            this.result.setManagedDependencies( Collections.unmodifiableList( result.getManagedDependencies() ) );
+            this.result.setRepositories( Collections.unmodifiableList( clone( result.getRepositories() ) ) );
         }
 
-        public ArtifactDescriptorResult toResult( ArtifactDescriptorRequest request )
+        public ArtifactDescriptorResult toResult()
         {
-            ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
-            result.setArtifact( artifact );
-            result.setProperties( properties );
-            result.setRelocations( relocations );
-            result.setDependencies( dependencies );
-            result.setManagedDependencies( dependencies );
-            result.setRepositories( clone( repositories ) );
             return result;
         }
 
@@ -241,7 +333,7 @@ final class DataPool
 
         static final BadDescriptor INSTANCE = new BadDescriptor();
 
-        public ArtifactDescriptorResult toResult( ArtifactDescriptorRequest request )
+        public ArtifactDescriptorResult toResult()
         {
             return NO_DESCRIPTOR;
         }
@@ -251,29 +343,25 @@ final class DataPool
     static class Constraint
     {
 
-        final Map<Version, ArtifactRepository> repositories;
-
-        final VersionConstraint versionConstraint;
+        final VersionRangeResult result;
 
         public Constraint( VersionRangeResult result )
         {
-            versionConstraint = result.getVersionConstraint();
-            repositories = new LinkedHashMap<Version, ArtifactRepository>();
+            VersionRangeRequest request = new VersionRangeRequest();
+            request.setArtifact( result.getRequest().getArtifact() );
+
+            this.result = new VersionRangeResult( request );
             for ( Version version : result.getVersions() )
             {
-                repositories.put( version, result.getRepository( version ) );
+                this.result.addVersion( version );
+                this.result.setRepository( version, result.getRepository( version ) );
             }
+            this.result.setVersions( Collections.unmodifiableList( this.result.getVersions() ) );
+            this.result.setVersionConstraint( result.getVersionConstraint() );
         }
 
-        public VersionRangeResult toResult( VersionRangeRequest request )
+        public VersionRangeResult toResult()
         {
-            VersionRangeResult result = new VersionRangeResult( request );
-            for ( Map.Entry<Version, ArtifactRepository> entry : repositories.entrySet() )
-            {
-                result.addVersion( entry.getKey() );
-                result.setRepository( entry.getKey(), entry.getValue() );
-            }
-            result.setVersionConstraint( versionConstraint );
             return result;
         }
 
@@ -282,16 +370,26 @@ final class DataPool
     static class ConstraintKey
     {
 
-        private final Artifact artifact;
+        private Artifact artifact;
 
-        private final List<RemoteRepository> repositories;
+        private RepositoryKey[] repositories;
 
-        private final int hashCode;
+        private int hashCode;
 
-        public ConstraintKey( VersionRangeRequest request )
+        ConstraintKey()
         {
-            artifact = request.getArtifact();
-            repositories = request.getRepositories();
+            // probe
+        }
+
+        public ConstraintKey( Artifact artifact, RepositoryKey[] repositories )
+        {
+            set( artifact, repositories );
+        }
+
+        void set( Artifact artifact, RepositoryKey[] repositories )
+        {
+            this.artifact = artifact;
+            this.repositories = repositories;
             hashCode = artifact.hashCode();
         }
 
@@ -310,36 +408,44 @@ final class DataPool
             return artifact.equals( that.artifact ) && equals( repositories, that.repositories );
         }
 
-        private static boolean equals( Collection<RemoteRepository> repos1, Collection<RemoteRepository> repos2 )
+        private static boolean equals( RepositoryKey[] repos1, RepositoryKey[] repos2 )
         {
-            if ( repos1.size() != repos2.size() )
+            if ( repos1 == repos2 )
+            {
+                return true;
+            }
+            if ( repos1.length != repos2.length )
             {
                 return false;
             }
-            for ( Iterator<RemoteRepository> it1 = repos1.iterator(), it2 = repos2.iterator(); it1.hasNext(); )
+            for ( int i = 0; i < repos1.length; i++ )
             {
-                RemoteRepository repo1 = it1.next();
-                RemoteRepository repo2 = it2.next();
-                if ( repo1.isRepositoryManager() != repo2.isRepositoryManager() )
+                RepositoryKey repo1 = repos1[i];
+                RepositoryKey repo2 = repos2[i];
+                if ( repo1 == repo2 )
+                {
+                    continue;
+                }
+                if ( repo1.repositoryManager != repo2.repositoryManager )
                 {
                     return false;
                 }
-                if ( repo1.isRepositoryManager() )
+                if ( repo1.repositoryManager )
                 {
-                    if ( !equals( repo1.getMirroredRepositories(), repo2.getMirroredRepositories() ) )
+                    if ( !equals( repo1.mirroredRepositories, repo2.mirroredRepositories ) )
                     {
                         return false;
                     }
                 }
-                else if ( !repo1.getUrl().equals( repo2.getUrl() ) )
+                else if ( !repo1.url.equals( repo2.url ) )
                 {
                     return false;
                 }
-                else if ( repo1.getPolicy( true ).isEnabled() != repo2.getPolicy( true ).isEnabled() )
+                else if ( repo1.snapshotPolicy.isEnabled() != repo2.snapshotPolicy.isEnabled() )
                 {
                     return false;
                 }
-                else if ( repo1.getPolicy( false ).isEnabled() != repo2.getPolicy( false ).isEnabled() )
+                else if ( repo1.releasePolicy.isEnabled() != repo2.releasePolicy.isEnabled() )
                 {
                     return false;
                 }
@@ -358,20 +464,30 @@ final class DataPool
     static class NodeKey
     {
 
-        private final Artifact artifact;
+        private Artifact artifact;
 
-        private final List<RemoteRepository> repositories;
+        private RepositoryKey[] repositories;
 
-        private final int hashCode;
+        private int hashCode;
 
-        public NodeKey( Artifact artifact, List<RemoteRepository> repositories )
+        NodeKey()
+        {
+            // probe
+        }
+
+        public NodeKey( Artifact artifact, RepositoryKey[] repositories )
+        {
+            set( artifact, repositories );
+        }
+
+        void set( Artifact artifact, RepositoryKey[] repositories )
         {
             this.artifact = artifact;
             this.repositories = repositories;
 
             int hash = 17;
             hash = hash * 31 + artifact.hashCode();
-            hash = hash * 31 + repositories.hashCode();
+            hash = hash * 31 + RepositoryKey.hash( repositories );
             hashCode = hash;
         }
 
@@ -387,7 +503,7 @@ final class DataPool
                 return false;
             }
             NodeKey that = (NodeKey) obj;
-            return artifact.equals( that.artifact ) && repositories.equals( that.repositories );
+            return artifact.equals( that.artifact ) && RepositoryKey.equals( repositories, that.repositories );
         }
 
         @Override
@@ -401,20 +517,31 @@ final class DataPool
     static class GraphKey
     {
 
-        private final Artifact artifact;
+        private Artifact artifact;
 
-        private final List<RemoteRepository> repositories;
+        private RepositoryKey[] repositories;
 
-        private final DependencySelector selector;
+        private DependencySelector selector;
 
-        private final DependencyManager manager;
+        private DependencyManager manager;
 
-        private final DependencyTraverser traverser;
+        private DependencyTraverser traverser;
 
-        private final int hashCode;
+        private int hashCode;
+
+        GraphKey()
+        {
+            // probe
+        }
 
-        public GraphKey( Artifact artifact, List<RemoteRepository> repositories, DependencySelector selector,
+        public GraphKey( Artifact artifact, RepositoryKey[] repositories, DependencySelector selector,
                          DependencyManager manager, DependencyTraverser traverser )
+        {
+            set( artifact, repositories, selector, manager, traverser );
+        }
+
+        void set( Artifact artifact, RepositoryKey[] repositories, DependencySelector selector,
+                  DependencyManager manager, DependencyTraverser traverser )
         {
             this.artifact = artifact;
             this.repositories = repositories;
@@ -424,7 +551,7 @@ final class DataPool
 
             int hash = 17;
             hash = hash * 31 + artifact.hashCode();
-            hash = hash * 31 + repositories.hashCode();
+            hash = hash * 31 + RepositoryKey.hash( repositories );
             hash = hash * 31 + selector.hashCode();
             hash = hash * 31 + manager.hashCode();
             hash = hash * 31 + traverser.hashCode();
@@ -443,7 +570,7 @@ final class DataPool
                 return false;
             }
             GraphKey that = (GraphKey) obj;
-            return artifact.equals( that.artifact ) && repositories.equals( that.repositories )
+            return artifact.equals( that.artifact ) && RepositoryKey.equals( repositories, that.repositories )
                 && selector.equals( that.selector ) && manager.equals( that.manager )
                 && traverser.equals( that.traverser );
         }
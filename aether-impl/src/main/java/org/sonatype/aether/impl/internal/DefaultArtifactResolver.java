@@ -26,6 +26,7 @@ import org.sonatype.aether.SyncContext;
 import org.sonatype.aether.artifact.Artifact;
 import org.sonatype.aether.impl.ArtifactResolver;
 import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.RepositoryEventDispatcher;
 import org.sonatype.aether.impl.SyncContextFactory;
 import org.sonatype.aether.impl.UpdateCheck;
@@ -69,6 +70,14 @@ public class DefaultArtifactResolver
     implements ArtifactResolver, Service
 {
 
+    static final String CONFIG_PROP_SNAPSHOT_LINKS = "aether.artifactResolver.snapshotNormalization.links";
+
+    static final String CONFIG_PROP_NEGATIVE_CACHE = "aether.artifactResolver.negativeCache";
+
+    static final String CONFIG_PROP_ROUTING = "aether.artifactResolver.routing";
+
+    static final String CONFIG_PROP_ROUTING_PREFIXES = "aether.artifactResolver.routing.prefixes";
+
     @Requirement
     private Logger logger = NullLogger.INSTANCE;
 
@@ -230,7 +239,14 @@ public class DefaultArtifactResolver
 
         LocalRepositoryManager lrm = session.getLocalRepositoryManager();
         WorkspaceReader workspace = session.getWorkspaceReader();
+        RepositoryMetrics metrics = RepositoryMetrics.get( session );
 
+        RepositoryRouting routing =
+            ConfigUtils.getBoolean( session, false, CONFIG_PROP_ROUTING ) ? RepositoryRouting.get( session, logger )
+                            : null;
+        boolean routingByPrefix = ConfigUtils.getBoolean( session, false, CONFIG_PROP_ROUTING_PREFIXES );
+
+        List<ResolutionGroup> preferredGroups = new ArrayList<ResolutionGroup>();
         List<ResolutionGroup> groups = new ArrayList<ResolutionGroup>();
 
         for ( ArtifactRequest request : requests )
@@ -306,7 +322,13 @@ public class DefaultArtifactResolver
 
             LocalArtifactResult local =
                 lrm.find( session, new LocalArtifactRequest( artifact, repos, request.getRequestContext() ) );
-            if ( isLocallyInstalled( local, versionResult ) )
+            boolean locallyInstalled = isLocallyInstalled( local, versionResult );
+            if ( metrics != null )
+            {
+                metrics.count( locallyInstalled ? RepositoryMetrics.LOCAL_REPOSITORY_HIT
+                                : RepositoryMetrics.LOCAL_REPOSITORY_MISS );
+            }
+            if ( locallyInstalled )
             {
                 if ( local.getRepository() != null )
                 {
@@ -354,35 +376,33 @@ public class DefaultArtifactResolver
             }
 
             AtomicBoolean resolved = new AtomicBoolean( false );
-            Iterator<ResolutionGroup> groupIt = groups.iterator();
-            for ( RemoteRepository repo : repos )
+            if ( routing != null && repos.size() > 1 )
             {
-                if ( !repo.getPolicy( artifact.isSnapshot() ).isEnabled() )
-                {
-                    continue;
-                }
-                ResolutionGroup group = null;
-                while ( groupIt.hasNext() )
-                {
-                    ResolutionGroup t = groupIt.next();
-                    if ( t.matches( repo ) )
-                    {
-                        group = t;
-                        break;
-                    }
-                }
-                if ( group == null )
-                {
-                    group = new ResolutionGroup( repo );
-                    groups.add( group );
-                    groupIt = Collections.<ResolutionGroup> emptyList().iterator();
-                }
-                group.items.add( new ResolutionItem( trace, artifact, resolved, result, local, repo ) );
+                RepositoryRouting.Route route = routing.route( artifact.getGroupId(), repos, routingByPrefix );
+                addItems( preferredGroups, route.preferred, trace, artifact, resolved, result, local );
+                addItems( groups, route.fallback, trace, artifact, resolved, result, local );
             }
+            else
+            {
+                addItems( groups, repos, trace, artifact, resolved, result, local );
+            }
+        }
+
+        if ( !preferredGroups.isEmpty() )
+        {
+            // repositories known to serve an artifact's group go first, the others only act as fallback
+            preferredGroups.addAll( groups );
+            groups = preferredGroups;
         }
 
+        boolean negativeCaching =
+            session.isNotFoundCachingEnabled() && ConfigUtils.getBoolean( session, false, CONFIG_PROP_NEGATIVE_CACHE );
+
         for ( ResolutionGroup group : groups )
         {
+            NegativeLookupCache absent =
+                negativeCaching ? NegativeLookupCache.get( session, group.repository, logger ) : null;
+
             List<ArtifactDownload> downloads = new ArrayList<ArtifactDownload>();
             for ( ResolutionItem item : group.items )
             {
@@ -414,6 +434,21 @@ public class DefaultArtifactResolver
                 RepositoryPolicy policy =
                     remoteRepositoryManager.getPolicy( session, group.repository, !snapshot, snapshot );
 
+                if ( absent != null )
+                {
+                    long missed = absent.get( artifact );
+                    if ( missed != 0
+                        && !updateCheckManager.isUpdatedRequired( session, missed, policy.getUpdatePolicy() ) )
+                    {
+                        if ( metrics != null )
+                        {
+                            metrics.count( RepositoryMetrics.NEGATIVE_CACHE_HIT );
+                        }
+                        item.result.addException( new ArtifactNotFoundException( artifact, group.repository ) );
+                        continue;
+                    }
+                }
+
                 if ( session.isNotFoundCachingEnabled() || session.isTransferErrorCachingEnabled() )
                 {
                     UpdateCheck<Artifact, ArtifactTransferException> check =
@@ -425,6 +460,11 @@ public class DefaultArtifactResolver
                     check.setPolicy( policy.getUpdatePolicy() );
                     item.updateCheck = check;
                     updateCheckManager.checkArtifact( session, check );
+                    if ( metrics != null )
+                    {
+                        metrics.count( check.isRequired() ? RepositoryMetrics.UPDATE_CHECK_REQUIRED
+                                        : RepositoryMetrics.UPDATE_CHECK_SKIPPED );
+                    }
                     if ( !check.isRequired() )
                     {
                         item.result.addException( check.getException() );
@@ -483,6 +523,30 @@ public class DefaultArtifactResolver
                     updateCheckManager.touchArtifact( session, item.updateCheck );
                 }
 
+                if ( absent != null )
+                {
+                    if ( download.getException() instanceof ArtifactNotFoundException )
+                    {
+                        absent.add( download.getArtifact() );
+                    }
+                    else if ( download.getException() == null )
+                    {
+                        absent.remove( download.getArtifact() );
+                    }
+                }
+
+                if ( routing != null )
+                {
+                    if ( download.getException() instanceof ArtifactNotFoundException )
+                    {
+                        routing.miss( download.getArtifact().getGroupId(), group.repository );
+                    }
+                    else if ( download.getException() == null )
+                    {
+                        routing.hit( download.getArtifact().getGroupId(), group.repository );
+                    }
+                }
+
                 if ( download.getException() == null )
                 {
                     item.resolved.set( true );
@@ -515,6 +579,11 @@ public class DefaultArtifactResolver
             }
         }
 
+        if ( routing != null )
+        {
+            routing.flush();
+        }
+
         for ( ArtifactResult result : results )
         {
             ArtifactRequest request = result.getRequest();
@@ -541,6 +610,36 @@ public class DefaultArtifactResolver
         return results;
     }
 
+    private void addItems( List<ResolutionGroup> groups, List<RemoteRepository> repos, RequestTrace trace,
+                           Artifact artifact, AtomicBoolean resolved, ArtifactResult result, LocalArtifactResult local )
+    {
+        Iterator<ResolutionGroup> groupIt = groups.iterator();
+        for ( RemoteRepository repo : repos )
+        {
+            if ( !repo.getPolicy( artifact.isSnapshot() ).isEnabled() )
+            {
+                continue;
+            }
+            ResolutionGroup group = null;
+            while ( groupIt.hasNext() )
+            {
+                ResolutionGroup t = groupIt.next();
+                if ( t.matches( repo ) )
+                {
+                    group = t;
+                    break;
+                }
+            }
+            if ( group == null )
+            {
+                group = new ResolutionGroup( repo );
+                groups.add( group );
+                groupIt = Collections.<ResolutionGroup> emptyList().iterator();
+            }
+            group.items.add( new ResolutionItem( trace, artifact, resolved, result, local, repo ) );
+        }
+    }
+
     private boolean isLocallyInstalled( LocalArtifactResult lar, VersionResult vr )
     {
         if ( lar.isAvailable() )
@@ -573,10 +672,17 @@ public class DefaultArtifactResolver
             File dst = new File( file.getParent(), name );
 
             boolean copy = dst.length() != file.length() || dst.lastModified() != file.lastModified();
-            if ( copy )
+            if ( copy && ConfigUtils.getBoolean( session, false, CONFIG_PROP_SNAPSHOT_LINKS )
+                && HardLinker.link( file, dst ) )
+            {
+                logger.debug( "Linked " + dst + " to " + file );
+            }
+            else if ( copy )
             {
                 try
                 {
+                    // the target might be a hard link to another snapshot, don't overwrite that in place
+                    dst.delete();
                     fileProcessor.copy( file, dst, null );
                     dst.setLastModified( file.lastModified() );
                 }
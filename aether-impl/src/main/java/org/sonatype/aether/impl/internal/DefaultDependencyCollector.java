@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 
 import org.codehaus.plexus.component.annotations.Component;
@@ -32,6 +33,7 @@ import org.sonatype.aether.graph.Dependency;
 import org.sonatype.aether.impl.ArtifactDescriptorReader;
 import org.sonatype.aether.impl.DependencyCollector;
 import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.VersionRangeResolver;
 import org.sonatype.aether.repository.ArtifactRepository;
 import org.sonatype.aether.repository.RemoteRepository;
@@ -132,6 +134,22 @@ public class DefaultDependencyCollector
 
     public CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request )
         throws DependencyCollectionException
+    {
+        RepositoryMetrics metrics = RepositoryMetrics.get( session );
+        RepositoryMetrics.Timer timer = RepositoryMetrics.start( metrics, RepositoryMetrics.COLLECT_DEPENDENCIES );
+        try
+        {
+            return collectDependencies( session, request, metrics );
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    private CollectResult collectDependencies( RepositorySystemSession session, CollectRequest request,
+                                               RepositoryMetrics metrics )
+        throws DependencyCollectionException
     {
         session = optimizeSession( session );
 
@@ -157,7 +175,7 @@ public class DefaultDependencyCollector
                 VersionRangeRequest rangeRequest =
                     new VersionRangeRequest( root.getArtifact(), request.getRepositories(), request.getRequestContext() );
                 rangeRequest.setTrace( trace );
-                rangeResult = versionRangeResolver.resolveVersionRange( session, rangeRequest );
+                rangeResult = resolveVersionRange( session, rangeRequest, metrics );
 
                 if ( rangeResult.getVersions().isEmpty() )
                 {
@@ -188,7 +206,7 @@ public class DefaultDependencyCollector
                 }
                 else
                 {
-                    descriptorResult = descriptorReader.readArtifactDescriptor( session, descriptorRequest );
+                    descriptorResult = readArtifactDescriptor( session, descriptorRequest, metrics );
                 }
             }
             catch ( ArtifactDescriptorException e )
@@ -235,7 +253,7 @@ public class DefaultDependencyCollector
             DefaultDependencyCollectionContext context =
                 new DefaultDependencyCollectionContext( session, root, managedDependencies );
 
-            Args args = new Args( result, session, trace, pool, edges, context );
+            Args args = new Args( result, session, trace, pool, edges, context, metrics );
 
             process( args, dependencies, repositories, depSelector.deriveChildSelector( context ),
                      depManager.deriveChildManager( context ), depTraverser.deriveChildTraverser( context ) );
@@ -261,6 +279,37 @@ public class DefaultDependencyCollector
         return result;
     }
 
+    private ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                             ArtifactDescriptorRequest request,
+                                                             RepositoryMetrics metrics )
+        throws ArtifactDescriptorException
+    {
+        RepositoryMetrics.Timer timer = RepositoryMetrics.start( metrics, RepositoryMetrics.READ_ARTIFACT_DESCRIPTOR );
+        try
+        {
+            return descriptorReader.readArtifactDescriptor( session, request );
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    private VersionRangeResult resolveVersionRange( RepositorySystemSession session, VersionRangeRequest request,
+                                                    RepositoryMetrics metrics )
+        throws VersionRangeResolutionException
+    {
+        RepositoryMetrics.Timer timer = RepositoryMetrics.start( metrics, RepositoryMetrics.RESOLVE_VERSION_RANGE );
+        try
+        {
+            return versionRangeResolver.resolveVersionRange( session, request );
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
     private RepositorySystemSession optimizeSession( RepositorySystemSession session )
     {
         DefaultRepositorySystemSession optimized = new DefaultRepositorySystemSession( session );
@@ -308,249 +357,286 @@ public class DefaultDependencyCollector
                           DependencySelector depSelector, DependencyManager depManager, DependencyTraverser depTraverser )
         throws DependencyCollectionException
     {
-        nextDependency: for ( Dependency dependency : dependencies )
+        /*
+         * NOTE: The dependency graph is walked using an explicit stack of frames rather than recursion to support
+         * arbitrarily deep graphs, each frame holds the state of the loops over the dependencies of one node.
+         */
+        FrameStack frames = args.frames;
+        int bottom = frames.size();
+        frames.push( dependencies, repositories, depSelector, depManager, depTraverser );
+
+        while ( frames.size() > bottom )
         {
-            boolean disableVersionManagement = false;
-
-            List<Artifact> relocations = Collections.emptyList();
+            Frame frame = frames.top();
 
-            thisDependency: while ( true )
+            if ( frame.versions == null || !frame.versions.hasNext() )
             {
-                if ( !depSelector.selectDependency( dependency ) )
+                if ( !frame.dependencies.hasNext() )
                 {
-                    continue nextDependency;
-                }
-
-                DependencyManagement depMngt = depManager.manageDependency( dependency );
-                String premanagedVersion = null;
-                String premanagedScope = null;
-
-                if ( depMngt != null )
-                {
-                    if ( depMngt.getVersion() != null && !disableVersionManagement )
-                    {
-                        Artifact artifact = dependency.getArtifact();
-                        premanagedVersion = artifact.getVersion();
-                        dependency = dependency.setArtifact( artifact.setVersion( depMngt.getVersion() ) );
-                    }
-                    if ( depMngt.getProperties() != null )
-                    {
-                        Artifact artifact = dependency.getArtifact();
-                        dependency = dependency.setArtifact( artifact.setProperties( depMngt.getProperties() ) );
-                    }
-                    if ( depMngt.getScope() != null )
+                    frames.pop();
+                    if ( frames.size() > bottom )
                     {
-                        premanagedScope = dependency.getScope();
-                        dependency = dependency.setScope( depMngt.getScope() );
-                    }
-                    if ( depMngt.getExclusions() != null )
-                    {
-                        dependency = dependency.setExclusions( depMngt.getExclusions() );
+                        args.edges.pop();
                     }
+                    continue;
                 }
-                disableVersionManagement = false;
 
-                boolean noDescriptor = isLackingDescriptor( dependency.getArtifact() );
+                frame.disableVersionManagement = false;
+                frame.relocations = Collections.emptyList();
+                startDependency( args, frame, frame.dependencies.next() );
+                continue;
+            }
 
-                boolean traverse = !noDescriptor && depTraverser.traverseDependency( dependency );
+            Version version = frame.versions.next();
+            Dependency dependency = frame.dependency;
+            VersionRangeResult rangeResult = frame.rangeResult;
+            repositories = frame.repositories;
 
-                VersionRangeResult rangeResult;
-                try
-                {
-                    VersionRangeRequest rangeRequest = new VersionRangeRequest();
-                    rangeRequest.setArtifact( dependency.getArtifact() );
-                    rangeRequest.setRepositories( repositories );
-                    rangeRequest.setRequestContext( args.result.getRequest().getRequestContext() );
-                    rangeRequest.setTrace( args.trace );
-
-                    Object key = args.pool.toKey( rangeRequest );
-                    rangeResult = args.pool.getConstraint( key, rangeRequest );
-                    if ( rangeResult == null )
-                    {
-                        rangeResult = versionRangeResolver.resolveVersionRange( args.session, rangeRequest );
-                        args.pool.putConstraint( key, rangeResult );
-                    }
+            Artifact originalArtifact = dependency.getArtifact().setVersion( version.toString() );
+            Dependency d = dependency.setArtifact( originalArtifact );
 
-                    if ( rangeResult.getVersions().isEmpty() )
-                    {
-                        throw new VersionRangeResolutionException( rangeResult, "No versions available for "
-                            + dependency.getArtifact() + " within specified range" );
-                    }
-                }
-                catch ( VersionRangeResolutionException e )
+            ArtifactDescriptorResult descriptorResult;
+            {
+                String context = args.result.getRequest().getRequestContext();
+
+                descriptorResult = frame.noDescriptor ? null : args.pool.getDescriptor( d.getArtifact() );
+                if ( descriptorResult == DataPool.NO_DESCRIPTOR )
                 {
-                    addException( args.result, e );
-                    continue nextDependency;
+                    continue;
                 }
-
-                List<Version> versions = rangeResult.getVersions();
-                for ( Version version : versions )
+                else if ( descriptorResult == null )
                 {
-                    Artifact originalArtifact = dependency.getArtifact().setVersion( version.toString() );
-                    Dependency d = dependency.setArtifact( originalArtifact );
+                    ArtifactDescriptorRequest descriptorRequest = new ArtifactDescriptorRequest();
+                    descriptorRequest.setArtifact( d.getArtifact() );
+                    descriptorRequest.setRepositories( repositories );
+                    descriptorRequest.setRequestContext( context );
+                    descriptorRequest.setTrace( args.trace );
 
-                    ArtifactDescriptorResult descriptorResult;
+                    if ( frame.noDescriptor )
                     {
-                        ArtifactDescriptorRequest descriptorRequest = new ArtifactDescriptorRequest();
-                        descriptorRequest.setArtifact( d.getArtifact() );
-                        descriptorRequest.setRepositories( repositories );
-                        descriptorRequest.setRequestContext( args.result.getRequest().getRequestContext() );
-                        descriptorRequest.setTrace( args.trace );
-
-                        if ( noDescriptor )
+                        descriptorResult = new ArtifactDescriptorResult( descriptorRequest );
+                    }
+                    else
+                    {
+                        Object key = args.pool.toKey( descriptorRequest );
+                        try
                         {
-                            descriptorResult = new ArtifactDescriptorResult( descriptorRequest );
+                            descriptorResult =
+                                readArtifactDescriptor( args.session, descriptorRequest, args.metrics );
+                            args.pool.putDescriptor( key, descriptorResult );
                         }
-                        else
+                        catch ( ArtifactDescriptorException e )
                         {
-                            Object key = args.pool.toKey( descriptorRequest );
-                            descriptorResult = args.pool.getDescriptor( key, descriptorRequest );
-                            if ( descriptorResult == null )
-                            {
-                                try
-                                {
-                                    descriptorResult =
-                                        descriptorReader.readArtifactDescriptor( args.session, descriptorRequest );
-                                    args.pool.putDescriptor( key, descriptorResult );
-                                }
-                                catch ( ArtifactDescriptorException e )
-                                {
-                                    addException( args.result, e );
-                                    args.pool.putDescriptor( key, e );
-                                    continue;
-                                }
-                            }
-                            else if ( descriptorResult == DataPool.NO_DESCRIPTOR )
-                            {
-                                continue;
-                            }
+                            addException( args.result, e );
+                            args.pool.putDescriptor( key, e );
+                            continue;
                         }
                     }
+                }
+            }
 
-                    d = d.setArtifact( descriptorResult.getArtifact() );
+            d = d.setArtifact( descriptorResult.getArtifact() );
 
-                    GraphNode node = args.edges.top().getTarget();
+            GraphNode node = args.edges.top().getTarget();
 
-                    GraphEdge cycleEdge = args.edges.find( d.getArtifact() );
-                    if ( cycleEdge != null )
-                    {
-                        GraphEdge edge = new GraphEdge( cycleEdge.getTarget() );
-                        edge.setDependency( d );
-                        edge.setScope( d.getScope() );
-                        edge.setPremanagedScope( premanagedScope );
-                        edge.setPremanagedVersion( premanagedVersion );
-                        edge.setRelocations( relocations );
-                        edge.setVersionConstraint( rangeResult.getVersionConstraint() );
-                        edge.setVersion( version );
-                        edge.setRequestContext( args.result.getRequest().getRequestContext() );
-
-                        node.getOutgoingEdges().add( edge );
-
-                        continue;
-                    }
+            GraphEdge cycleEdge = args.edges.find( d.getArtifact() );
+            if ( cycleEdge != null )
+            {
+                GraphEdge edge = new GraphEdge( cycleEdge.getTarget() );
+                edge.setDependency( d );
+                edge.setScope( d.getScope() );
+                edge.setPremanagedScope( frame.premanagedScope );
+                edge.setPremanagedVersion( frame.premanagedVersion );
+                edge.setRelocations( frame.relocations );
+                edge.setVersionConstraint( rangeResult.getVersionConstraint() );
+                edge.setVersion( version );
+                edge.setRequestContext( args.result.getRequest().getRequestContext() );
+
+                node.getOutgoingEdges().add( edge );
+
+                continue;
+            }
 
-                    if ( !descriptorResult.getRelocations().isEmpty() )
-                    {
-                        relocations = descriptorResult.getRelocations();
+            if ( !descriptorResult.getRelocations().isEmpty() )
+            {
+                frame.relocations = descriptorResult.getRelocations();
 
-                        disableVersionManagement =
-                            originalArtifact.getGroupId().equals( d.getArtifact().getGroupId() )
-                                && originalArtifact.getArtifactId().equals( d.getArtifact().getArtifactId() );
+                frame.disableVersionManagement =
+                    originalArtifact.getGroupId().equals( d.getArtifact().getGroupId() )
+                        && originalArtifact.getArtifactId().equals( d.getArtifact().getArtifactId() );
 
-                        dependency = d;
-                        continue thisDependency;
-                    }
+                startDependency( args, frame, d );
+                continue;
+            }
 
-                    d = args.pool.intern( d.setArtifact( args.pool.intern( d.getArtifact() ) ) );
+            d = args.pool.intern( d.setArtifact( args.pool.intern( d.getArtifact() ) ) );
 
-                    DependencySelector childSelector = null;
-                    DependencyManager childManager = null;
-                    DependencyTraverser childTraverser = null;
-                    List<RemoteRepository> childRepos = null;
-                    Object key = null;
+            DependencySelector childSelector = null;
+            DependencyManager childManager = null;
+            DependencyTraverser childTraverser = null;
+            List<RemoteRepository> childRepos = null;
 
-                    boolean recurse = traverse && !descriptorResult.getDependencies().isEmpty();
-                    if ( recurse )
-                    {
-                        DefaultDependencyCollectionContext context = args.collectionContext;
-                        context.set( d, descriptorResult.getManagedDependencies() );
+            boolean recurse = frame.traverse && !descriptorResult.getDependencies().isEmpty();
+            if ( recurse )
+            {
+                DefaultDependencyCollectionContext context = args.collectionContext;
+                context.set( d, descriptorResult.getManagedDependencies() );
 
-                        childSelector = depSelector.deriveChildSelector( context );
-                        childManager = depManager.deriveChildManager( context );
-                        childTraverser = depTraverser.deriveChildTraverser( context );
+                childSelector = frame.depSelector.deriveChildSelector( context );
+                childManager = frame.depManager.deriveChildManager( context );
+                childTraverser = frame.depTraverser.deriveChildTraverser( context );
 
-                        childRepos =
-                            remoteRepositoryManager.aggregateRepositories( args.session, repositories,
-                                                                           descriptorResult.getRepositories(), true );
+                childRepos =
+                    remoteRepositoryManager.aggregateRepositories( args.session, repositories,
+                                                                   descriptorResult.getRepositories(), true );
 
-                        key =
-                            args.pool.toKey( d.getArtifact(), childRepos, childSelector, childManager, childTraverser );
-                    }
-                    else
-                    {
-                        key = args.pool.toKey( d.getArtifact(), repositories );
-                    }
+            }
 
-                    List<RemoteRepository> repos;
-                    ArtifactRepository repo = rangeResult.getRepository( version );
-                    if ( repo instanceof RemoteRepository )
-                    {
-                        repos = Collections.singletonList( (RemoteRepository) repo );
-                    }
-                    else if ( repo == null )
-                    {
-                        repos = repositories;
-                    }
-                    else
-                    {
-                        repos = Collections.emptyList();
-                    }
+            List<RemoteRepository> repos;
+            ArtifactRepository repo = rangeResult.getRepository( version );
+            if ( repo instanceof RemoteRepository )
+            {
+                repos = Collections.singletonList( (RemoteRepository) repo );
+            }
+            else if ( repo == null )
+            {
+                repos = repositories;
+            }
+            else
+            {
+                repos = Collections.emptyList();
+            }
 
-                    GraphNode child = args.pool.getNode( key );
-                    if ( child == null )
-                    {
-                        child = new GraphNode();
-                        child.setAliases( descriptorResult.getAliases() );
-                        child.setRepositories( repos );
+            GraphNode child =
+                recurse ? args.pool.getNode( d.getArtifact(), childRepos, childSelector, childManager, childTraverser )
+                                : args.pool.getNode( d.getArtifact(), repositories );
+            if ( child == null )
+            {
+                child = new GraphNode();
+                child.setAliases( descriptorResult.getAliases() );
+                child.setRepositories( repos );
+
+                Object key =
+                    recurse ? args.pool.toKey( d.getArtifact(), childRepos, childSelector, childManager, childTraverser )
+                                    : args.pool.toKey( d.getArtifact(), repositories );
+                args.pool.putNode( key, child );
+            }
+            else
+            {
+                recurse = false;
 
-                        args.pool.putNode( key, child );
-                    }
-                    else
-                    {
-                        recurse = false;
+                if ( repos.size() < child.getRepositories().size() )
+                {
+                    child.setRepositories( repos );
+                }
+            }
 
-                        if ( repos.size() < child.getRepositories().size() )
-                        {
-                            child.setRepositories( repos );
-                        }
-                    }
+            GraphEdge edge = new GraphEdge( child );
+            edge.setDependency( d );
+            edge.setScope( d.getScope() );
+            edge.setPremanagedScope( frame.premanagedScope );
+            edge.setPremanagedVersion( frame.premanagedVersion );
+            edge.setRelocations( frame.relocations );
+            edge.setVersionConstraint( rangeResult.getVersionConstraint() );
+            edge.setVersion( version );
+            edge.setRequestContext( args.result.getRequest().getRequestContext() );
 
-                    GraphEdge edge = new GraphEdge( child );
-                    edge.setDependency( d );
-                    edge.setScope( d.getScope() );
-                    edge.setPremanagedScope( premanagedScope );
-                    edge.setPremanagedVersion( premanagedVersion );
-                    edge.setRelocations( relocations );
-                    edge.setVersionConstraint( rangeResult.getVersionConstraint() );
-                    edge.setVersion( version );
-                    edge.setRequestContext( args.result.getRequest().getRequestContext() );
+            node.getOutgoingEdges().add( edge );
 
-                    node.getOutgoingEdges().add( edge );
+            if ( recurse )
+            {
+                args.edges.push( edge );
 
-                    if ( recurse )
-                    {
-                        args.edges.push( edge );
+                frames.push( descriptorResult.getDependencies(), childRepos, childSelector, childManager,
+                             childTraverser );
+            }
+        }
+    }
 
-                        process( args, descriptorResult.getDependencies(), childRepos, childSelector, childManager,
-                                 childTraverser );
+    /**
+     * Applies selection and management to the specified dependency and resolves its version range. Upon success, the
+     * versions of the frame are set to iterate the matching versions of the dependency, otherwise they are cleared such
+     * that processing continues with the next dependency of the frame.
+     */
+    private void startDependency( Args args, Frame frame, Dependency dependency )
+    {
+        frame.versions = null;
 
-                        args.edges.pop();
-                    }
-                }
+        if ( !frame.depSelector.selectDependency( dependency ) )
+        {
+            return;
+        }
+
+        DependencyManagement depMngt = frame.depManager.manageDependency( dependency );
+        String premanagedVersion = null;
+        String premanagedScope = null;
 
-                break;
+        if ( depMngt != null )
+        {
+            if ( depMngt.getVersion() != null && !frame.disableVersionManagement )
+            {
+                Artifact artifact = dependency.getArtifact();
+                premanagedVersion = artifact.getVersion();
+                dependency = dependency.setArtifact( artifact.setVersion( depMngt.getVersion() ) );
+            }
+            if ( depMngt.getProperties() != null )
+            {
+                Artifact artifact = dependency.getArtifact();
+                dependency = dependency.setArtifact( artifact.setProperties( depMngt.getProperties() ) );
+            }
+            if ( depMngt.getScope() != null )
+            {
+                premanagedScope = dependency.getScope();
+                dependency = dependency.setScope( depMngt.getScope() );
+            }
+            if ( depMngt.getExclusions() != null )
+            {
+                dependency = dependency.setExclusions( depMngt.getExclusions() );
+            }
+        }
+        frame.disableVersionManagement = false;
+
+        boolean noDescriptor = isLackingDescriptor( dependency.getArtifact() );
+
+        boolean traverse = !noDescriptor && frame.depTraverser.traverseDependency( dependency );
+
+        VersionRangeResult rangeResult;
+        try
+        {
+            String context = args.result.getRequest().getRequestContext();
+
+            rangeResult = args.pool.getConstraint( dependency.getArtifact(), frame.repositories );
+            if ( rangeResult == null )
+            {
+                VersionRangeRequest rangeRequest = new VersionRangeRequest();
+                rangeRequest.setArtifact( dependency.getArtifact() );
+                rangeRequest.setRepositories( frame.repositories );
+                rangeRequest.setRequestContext( context );
+                rangeRequest.setTrace( args.trace );
+
+                rangeResult = resolveVersionRange( args.session, rangeRequest, args.metrics );
+                args.pool.putConstraint( args.pool.toKey( rangeRequest ), rangeResult );
+            }
+
+            if ( rangeResult.getVersions().isEmpty() )
+            {
+                throw new VersionRangeResolutionException( rangeResult, "No versions available for "
+                    + dependency.getArtifact() + " within specified range" );
             }
         }
+        catch ( VersionRangeResolutionException e )
+        {
+            addException( args.result, e );
+            return;
+        }
+
+        frame.dependency = dependency;
+        frame.premanagedVersion = premanagedVersion;
+        frame.premanagedScope = premanagedScope;
+        frame.noDescriptor = noDescriptor;
+        frame.traverse = traverse;
+        frame.rangeResult = rangeResult;
+        frame.versions = rangeResult.getVersions().iterator();
     }
 
     private boolean isLackingDescriptor( Artifact artifact )
@@ -581,9 +667,14 @@ public class DefaultDependencyCollector
 
         final DefaultDependencyCollectionContext collectionContext;
 
+        final FrameStack frames = new FrameStack();
+
+        final RepositoryMetrics metrics;
+
         public Args( CollectResult result, RepositorySystemSession session, RequestTrace trace, DataPool pool,
-                     EdgeStack edges, DefaultDependencyCollectionContext collectionContext )
+                     EdgeStack edges, DefaultDependencyCollectionContext collectionContext, RepositoryMetrics metrics )
         {
+            this.metrics = metrics;
             this.result = result;
             this.session = session;
             this.trace = trace;
@@ -594,4 +685,105 @@ public class DefaultDependencyCollector
 
     }
 
+    /**
+     * The processing state for the dependencies of a single node in the graph.
+     */
+    static final class Frame
+    {
+
+        Iterator<Dependency> dependencies;
+
+        List<RemoteRepository> repositories;
+
+        DependencySelector depSelector;
+
+        DependencyManager depManager;
+
+        DependencyTraverser depTraverser;
+
+        Dependency dependency;
+
+        boolean disableVersionManagement;
+
+        List<Artifact> relocations;
+
+        String premanagedVersion;
+
+        String premanagedScope;
+
+        boolean noDescriptor;
+
+        boolean traverse;
+
+        VersionRangeResult rangeResult;
+
+        Iterator<Version> versions;
+
+        void clear()
+        {
+            dependencies = null;
+            repositories = null;
+            depSelector = null;
+            depManager = null;
+            depTraverser = null;
+            dependency = null;
+            relocations = null;
+            rangeResult = null;
+            versions = null;
+        }
+
+    }
+
+    /**
+     * A stack of frames that recycles the frame objects of popped entries.
+     */
+    static final class FrameStack
+    {
+
+        private Frame[] frames = new Frame[64];
+
+        private int size;
+
+        public int size()
+        {
+            return size;
+        }
+
+        public Frame top()
+        {
+            return frames[size - 1];
+        }
+
+        public void push( List<Dependency> dependencies, List<RemoteRepository> repositories,
+                          DependencySelector depSelector, DependencyManager depManager,
+                          DependencyTraverser depTraverser )
+        {
+            if ( size >= frames.length )
+            {
+                Frame[] tmp = new Frame[size + 64];
+                System.arraycopy( frames, 0, tmp, 0, frames.length );
+                frames = tmp;
+            }
+            Frame frame = frames[size];
+            if ( frame == null )
+            {
+                frame = new Frame();
+                frames[size] = frame;
+            }
+            size++;
+
+            frame.dependencies = dependencies.iterator();
+            frame.repositories = repositories;
+            frame.depSelector = depSelector;
+            frame.depManager = depManager;
+            frame.depTraverser = depTraverser;
+        }
+
+        public void pop()
+        {
+            frames[--size].clear();
+        }
+
+    }
+
 }
@@ -13,8 +13,20 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -54,6 +66,7 @@ import org.sonatype.aether.transfer.ArtifactTransferException;
 import org.sonatype.aether.transfer.MetadataNotFoundException;
 import org.sonatype.aether.transfer.MetadataTransferException;
 import org.sonatype.aether.transfer.NoRepositoryConnectorException;
+import org.sonatype.aether.util.ConfigUtils;
 import org.sonatype.aether.util.DefaultRequestTrace;
 import org.sonatype.aether.util.listener.DefaultRepositoryEvent;
 
@@ -65,6 +78,8 @@ public class DefaultDeployer
     implements Deployer, Service
 {
 
+    static final String CONFIG_PROP_THREADS = "aether.deployer.threads";
+
     @SuppressWarnings( "unused" )
     @Requirement
     private Logger logger = NullLogger.INSTANCE;
@@ -204,85 +219,267 @@ public class DefaultDeployer
             throw new DeploymentException( "The repository system is in offline mode, deployment impossible" );
         }
 
-        SyncContext syncContext = syncContextFactory.newInstance( session, false );
+        int threads = ConfigUtils.getInteger( session, 1, CONFIG_PROP_THREADS );
+        ExecutorService executor = ( threads > 1 ) ? newExecutor( 1 ) : null;
 
+        ConnectorPool connectors = new ConnectorPool( session );
         try
         {
-            return deploy( syncContext, session, request );
+            return deploy( session, request, connectors, executor );
         }
         finally
         {
-            syncContext.release();
+            shutdown( executor );
+            connectors.close();
         }
     }
 
-    private DeployResult deploy( SyncContext syncContext, RepositorySystemSession session, DeployRequest request )
+    /**
+     * Uploads the artifacts and metadata of several deployment requests. If the configuration property
+     * {@code aether.deployer.threads} is greater than one, the requests are deployed concurrently, except for requests
+     * whose artifacts or metadata share a group id which are still deployed one after the other in the given order as
+     * they might update the same metadata. Once a request failed, no further requests are started.
+     * <p>
+     * All requests draw their repository connectors from one pool per target repository. Connectors must not be called
+     * concurrently, so rather than a single connector per repository, the pool hands out an idle connector and only
+     * opens another one while all others are busy, i.e. a repository never gets more connectors than there are
+     * concurrent uploads to it. The metadata of a request is uploaded as soon as the artifacts of that request have
+     * been deployed, before the next request of the same lane is started. It cannot go out any earlier since the remote
+     * metadata must never refer to artifacts that are not yet available.
+     * 
+     * @param session The repository session, must not be {@code null}.
+     * @param requests The deployment requests, must not be {@code null}.
+     * @return The deployment results in the order of the requests, never {@code null}.
+     * @throws DeploymentException If any artifact/metadata from the requests could not be deployed. If several
+     *             requests failed, the exception of the first failed request is thrown.
+     */
+    public List<DeployResult> deploy( RepositorySystemSession session, Collection<? extends DeployRequest> requests )
         throws DeploymentException
     {
-        DeployResult result = new DeployResult( request );
+        if ( session.isOffline() )
+        {
+            throw new DeploymentException( "The repository system is in offline mode, deployment impossible" );
+        }
 
-        RequestTrace trace = DefaultRequestTrace.newChild( request.getTrace(), request );
+        final List<DeployRequest> reqs = new ArrayList<DeployRequest>( requests );
+        final DeployResult[] results = new DeployResult[reqs.size()];
+        final DeploymentException[] errors = new DeploymentException[reqs.size()];
 
-        RemoteRepository repository = request.getRepository();
+        int threads = ConfigUtils.getInteger( session, 1, CONFIG_PROP_THREADS );
+        ExecutorService laneExecutor = ( threads > 1 && reqs.size() > 1 ) ? newExecutor( threads ) : null;
+        ExecutorService putExecutor = ( threads > 1 ) ? newExecutor( threads ) : null;
 
-        RepositoryConnector connector;
+        ConnectorPool connectors = new ConnectorPool( session );
         try
         {
-            connector = remoteRepositoryManager.getRepositoryConnector( session, repository );
+            if ( laneExecutor == null )
+            {
+                for ( int i = 0; i < reqs.size(); i++ )
+                {
+                    results[i] = deploy( session, reqs.get( i ), connectors, putExecutor );
+                }
+            }
+            else
+            {
+                AtomicBoolean failed = new AtomicBoolean();
+                List<Future<?>> lanes = new ArrayList<Future<?>>();
+                for ( List<Integer> lane : getLanes( reqs ) )
+                {
+                    lanes.add( laneExecutor.submit( new DeployLane( session, lane, reqs, connectors, putExecutor,
+                                                                    results, errors, failed ) ) );
+                }
+                for ( Future<?> lane : lanes )
+                {
+                    await( lane );
+                }
+                for ( DeploymentException error : errors )
+                {
+                    if ( error != null )
+                    {
+                        throw error;
+                    }
+                }
+            }
         }
-        catch ( NoRepositoryConnectorException e )
+        finally
         {
-            throw new DeploymentException( "Failed to deploy artifacts/metadata: " + e.getMessage(), e );
+            shutdown( putExecutor );
+            shutdown( laneExecutor );
+            connectors.close();
         }
 
-        List<MetadataGenerator> generators = getMetadataGenerators( session, request );
+        return Arrays.asList( results );
+    }
 
-        try
+    /**
+     * Partitions the specified requests into lanes that can be deployed concurrently. Requests sharing a group id end
+     * up in the same lane, in their original order.
+     */
+    private List<List<Integer>> getLanes( List<DeployRequest> requests )
+    {
+        Map<String, List<Integer>> lanesByGroup = new HashMap<String, List<Integer>>();
+        List<List<Integer>> lanes = new ArrayList<List<Integer>>();
+
+        for ( int i = 0; i < requests.size(); i++ )
         {
-            List<ArtifactUpload> artifactUploads = new ArrayList<ArtifactUpload>();
-            List<MetadataUpload> metadataUploads = new ArrayList<MetadataUpload>();
-            IdentityHashMap<Metadata, Object> processedMetadata = new IdentityHashMap<Metadata, Object>();
+            DeployRequest request = requests.get( i );
 
-            EventCatapult catapult = new EventCatapult( session, trace, repository, repositoryEventDispatcher );
+            Set<String> groupIds = new HashSet<String>();
+            for ( Artifact artifact : request.getArtifacts() )
+            {
+                groupIds.add( artifact.getGroupId() );
+            }
+            for ( Metadata metadata : request.getMetadata() )
+            {
+                groupIds.add( metadata.getGroupId() );
+            }
 
-            List<Artifact> artifacts = new ArrayList<Artifact>( request.getArtifacts() );
+            List<Integer> lane = null;
+            for ( String groupId : groupIds )
+            {
+                List<Integer> other = lanesByGroup.get( groupId );
+                if ( other == null || other == lane )
+                {
+                    continue;
+                }
+                if ( lane == null )
+                {
+                    lane = other;
+                }
+                else
+                {
+                    lane.addAll( other );
+                    Collections.sort( lane );
+                    lanes.remove( other );
+                    for ( Map.Entry<String, List<Integer>> entry : lanesByGroup.entrySet() )
+                    {
+                        if ( entry.getValue() == other )
+                        {
+                            entry.setValue( lane );
+                        }
+                    }
+                }
+            }
+            if ( lane == null )
+            {
+                lane = new ArrayList<Integer>();
+                lanes.add( lane );
+            }
+            lane.add( Integer.valueOf( i ) );
+            for ( String groupId : groupIds )
+            {
+                lanesByGroup.put( groupId, lane );
+            }
+        }
 
-            List<Metadata> metadatas = Utils.prepareMetadata( generators, artifacts );
+        return lanes;
+    }
 
-            syncContext.acquire( artifacts, Utils.combine( request.getMetadata(), metadatas ) );
+    private DeployResult deploy( RepositorySystemSession session, DeployRequest request, ConnectorPool connectors,
+                                 ExecutorService executor )
+        throws DeploymentException
+    {
+        SyncContext syncContext = syncContextFactory.newInstance( session, false );
 
-            for ( Metadata metadata : metadatas )
+        try
+        {
+            RepositoryConnector connector = connectors.acquire( request.getRepository() );
+            try
             {
-                upload( metadataUploads, session, metadata, repository, connector, catapult );
-                processedMetadata.put( metadata, null );
+                return deploy( syncContext, session, request, connector, connectors, executor );
             }
-
-            for ( int i = 0; i < artifacts.size(); i++ )
+            finally
             {
-                Artifact artifact = artifacts.get( i );
+                connectors.release( request.getRepository(), connector );
+            }
+        }
+        finally
+        {
+            syncContext.release();
+        }
+    }
 
-                for ( MetadataGenerator generator : generators )
-                {
-                    artifact = generator.transformArtifact( artifact );
-                }
+    private DeployResult deploy( SyncContext syncContext, RepositorySystemSession session, DeployRequest request,
+                                 RepositoryConnector connector, final ConnectorPool connectors,
+                                 ExecutorService executor )
+        throws DeploymentException
+    {
+        DeployResult result = new DeployResult( request );
+
+        RequestTrace trace = DefaultRequestTrace.newChild( request.getTrace(), request );
+
+        RemoteRepository repository = request.getRepository();
+
+        List<MetadataGenerator> generators = getMetadataGenerators( session, request );
+
+        final List<ArtifactUpload> artifactUploads = new ArrayList<ArtifactUpload>();
+        List<MetadataUpload> metadataUploads = new ArrayList<MetadataUpload>();
+        IdentityHashMap<Metadata, Object> processedMetadata = new IdentityHashMap<Metadata, Object>();
+
+        EventCatapult catapult = new EventCatapult( session, trace, repository, repositoryEventDispatcher );
+
+        List<Artifact> artifacts = new ArrayList<Artifact>( request.getArtifacts() );
+
+        List<Metadata> metadatas = Utils.prepareMetadata( generators, artifacts );
+
+        syncContext.acquire( artifacts, Utils.combine( request.getMetadata(), metadatas ) );
+
+        for ( Metadata metadata : metadatas )
+        {
+            upload( metadataUploads, session, metadata, repository, connector, catapult );
+            processedMetadata.put( metadata, null );
+        }
 
-                artifacts.set( i, artifact );
+        for ( int i = 0; i < artifacts.size(); i++ )
+        {
+            Artifact artifact = artifacts.get( i );
 
-                artifactUploads.add( new ArtifactUploadEx( artifact, artifact.getFile(), catapult ) );
+            for ( MetadataGenerator generator : generators )
+            {
+                artifact = generator.transformArtifact( artifact );
             }
 
-            connector.put( artifactUploads, null );
+            artifacts.set( i, artifact );
+
+            artifactUploads.add( new ArtifactUploadEx( artifact, artifact.getFile(), catapult ) );
+        }
 
-            for ( ArtifactUpload upload : artifactUploads )
+        /*
+         * When pipelined, the artifacts are uploaded in the background while the remaining metadata is merged with its
+         * remote copy. Connectors must not be used concurrently, so the background upload borrows another connector
+         * from the pool. The metadata itself is still uploaded only after all artifacts have been successfully
+         * deployed.
+         */
+        Future<?> artifactsPut = null;
+        if ( executor != null && !artifactUploads.isEmpty() )
+        {
+            final RemoteRepository putRepository = repository;
+            final RepositoryConnector putConnector = connectors.acquire( putRepository );
+            artifactsPut = executor.submit( new Runnable()
             {
-                if ( upload.getException() != null )
+                public void run()
                 {
-                    throw new DeploymentException( "Failed to deploy artifacts: " + upload.getException().getMessage(),
-                                                   upload.getException() );
+                    try
+                    {
+                        putConnector.put( artifactUploads, null );
+                    }
+                    finally
+                    {
+                        connectors.release( putRepository, putConnector );
+                    }
                 }
-                result.addArtifact( upload.getArtifact() );
-            }
+            } );
+        }
+        else
+        {
+            connector.put( artifactUploads, null );
+            checkArtifactUploads( artifactUploads, result );
+        }
 
+        int pipelinedMetadata = metadataUploads.size();
+
+        try
+        {
             metadatas = Utils.finishMetadata( generators, artifacts );
 
             syncContext.acquire( null, metadatas );
@@ -301,27 +498,114 @@ public class DefaultDeployer
                     processedMetadata.put( metadata, null );
                 }
             }
+        }
+        finally
+        {
+            if ( artifactsPut != null )
+            {
+                await( artifactsPut );
+            }
+        }
 
-            connector.put( null, metadataUploads );
-
-            for ( MetadataUpload upload : metadataUploads )
+        if ( artifactsPut != null )
+        {
+            try
             {
-                if ( upload.getException() != null )
+                checkArtifactUploads( artifactUploads, result );
+            }
+            catch ( DeploymentException e )
+            {
+                // the local copies have already been merged with metadata that is not going to be deployed
+                for ( MetadataUpload upload : metadataUploads.subList( pipelinedMetadata, metadataUploads.size() ) )
                 {
-                    throw new DeploymentException( "Failed to deploy metadata: " + upload.getException().getMessage(),
-                                                   upload.getException() );
+                    upload.getFile().delete();
                 }
-                result.addMetadata( upload.getMetadata() );
+                throw e;
             }
         }
-        finally
+
+        connector.put( null, metadataUploads );
+
+        for ( MetadataUpload upload : metadataUploads )
         {
-            connector.close();
+            if ( upload.getException() != null )
+            {
+                throw new DeploymentException( "Failed to deploy metadata: " + upload.getException().getMessage(),
+                                               upload.getException() );
+            }
+            result.addMetadata( upload.getMetadata() );
         }
 
         return result;
     }
 
+    private void checkArtifactUploads( List<ArtifactUpload> artifactUploads, DeployResult result )
+        throws DeploymentException
+    {
+        for ( ArtifactUpload upload : artifactUploads )
+        {
+            if ( upload.getException() != null )
+            {
+                throw new DeploymentException( "Failed to deploy artifacts: " + upload.getException().getMessage(),
+                                               upload.getException() );
+            }
+            result.addArtifact( upload.getArtifact() );
+        }
+    }
+
+    private static ExecutorService newExecutor( int threads )
+    {
+        return new ThreadPoolExecutor( threads, threads, 3, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>() );
+    }
+
+    private static void shutdown( ExecutorService executor )
+    {
+        if ( executor != null )
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void await( Future<?> future )
+    {
+        boolean interrupted = false;
+        try
+        {
+            while ( true )
+            {
+                try
+                {
+                    future.get();
+                    return;
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+                catch ( ExecutionException e )
+                {
+                    Throwable cause = e.getCause();
+                    if ( cause instanceof RuntimeException )
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    else if ( cause instanceof Error )
+                    {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException( cause );
+                }
+            }
+        }
+        finally
+        {
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     private List<MetadataGenerator> getMetadataGenerators( RepositorySystemSession session, DeployRequest request )
     {
         List<MetadataGeneratorFactory> factories = Utils.sortMetadataGeneratorFactories( this.metadataFactories );
@@ -448,6 +732,134 @@ public class DefaultDeployer
         return remoteRepositoryManager.getPolicy( session, repository, releases, snapshots );
     }
 
+    class DeployLane
+        implements Runnable
+    {
+
+        private final RepositorySystemSession session;
+
+        private final List<Integer> indices;
+
+        private final List<DeployRequest> requests;
+
+        private final ConnectorPool connectors;
+
+        private final ExecutorService executor;
+
+        private final DeployResult[] results;
+
+        private final DeploymentException[] errors;
+
+        private final AtomicBoolean failed;
+
+        public DeployLane( RepositorySystemSession session, List<Integer> indices, List<DeployRequest> requests,
+                           ConnectorPool connectors, ExecutorService executor, DeployResult[] results,
+                           DeploymentException[] errors, AtomicBoolean failed )
+        {
+            this.session = session;
+            this.indices = indices;
+            this.requests = requests;
+            this.connectors = connectors;
+            this.executor = executor;
+            this.results = results;
+            this.errors = errors;
+            this.failed = failed;
+        }
+
+        public void run()
+        {
+            for ( Integer index : indices )
+            {
+                if ( failed.get() )
+                {
+                    return;
+                }
+                int i = index.intValue();
+                try
+                {
+                    results[i] = deploy( session, requests.get( i ), connectors, executor );
+                }
+                catch ( DeploymentException e )
+                {
+                    errors[i] = e;
+                    failed.set( true );
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The repository connectors of a deployment. Connectors are handed out to one thread at a time and are kept for
+     * reuse when released, so a repository only gets another connector while all of its connectors are busy.
+     */
+    class ConnectorPool
+    {
+
+        private final RepositorySystemSession session;
+
+        private final Map<RemoteRepository, List<RepositoryConnector>> idle =
+            new HashMap<RemoteRepository, List<RepositoryConnector>>();
+
+        private final List<RepositoryConnector> all = new ArrayList<RepositoryConnector>();
+
+        public ConnectorPool( RepositorySystemSession session )
+        {
+            this.session = session;
+        }
+
+        public RepositoryConnector acquire( RemoteRepository repository )
+            throws DeploymentException
+        {
+            synchronized ( this )
+            {
+                List<RepositoryConnector> connectors = idle.get( repository );
+                if ( connectors != null && !connectors.isEmpty() )
+                {
+                    return connectors.remove( connectors.size() - 1 );
+                }
+            }
+
+            RepositoryConnector connector;
+            try
+            {
+                connector = remoteRepositoryManager.getRepositoryConnector( session, repository );
+            }
+            catch ( NoRepositoryConnectorException e )
+            {
+                throw new DeploymentException( "Failed to deploy artifacts/metadata: " + e.getMessage(), e );
+            }
+
+            synchronized ( this )
+            {
+                all.add( connector );
+            }
+            return connector;
+        }
+
+        public synchronized void release( RemoteRepository repository, RepositoryConnector connector )
+        {
+            List<RepositoryConnector> connectors = idle.get( repository );
+            if ( connectors == null )
+            {
+                connectors = new ArrayList<RepositoryConnector>();
+                idle.put( repository, connectors );
+            }
+            connectors.add( connector );
+        }
+
+        public synchronized void close()
+        {
+            for ( RepositoryConnector connector : all )
+            {
+                connector.close();
+            }
+            all.clear();
+            idle.clear();
+        }
+
+    }
+
     static class EventCatapult
     {
 
@@ -8,14 +8,13 @@ package org.sonatype.aether.impl.internal;
  *   http://www.eclipse.org/legal/epl-v10.html
  *******************************************************************************/
 
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.sonatype.aether.spi.io.FileProcessor;
@@ -31,6 +30,25 @@ public class DefaultFileProcessor
     implements FileProcessor
 {
 
+    private int bufferSize = 1024 * 32;
+
+    /**
+     * Sets the size of the buffer used to copy files whose contents need to be passed to a {@link ProgressListener}.
+     * Copies without a listener are delegated to the operating system and do not use this buffer.
+     * 
+     * @param bufferSize The size of the buffer in bytes, must be positive.
+     * @return This component for chaining, never {@code null}.
+     */
+    public DefaultFileProcessor setBufferSize( int bufferSize )
+    {
+        if ( bufferSize <= 0 )
+        {
+            throw new IllegalArgumentException( "buffer size must be positive: " + bufferSize );
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
     private static void close( Closeable closeable )
     {
         if ( closeable != null )
@@ -109,39 +127,46 @@ public class DefaultFileProcessor
     public long copy( File source, File target, ProgressListener listener )
         throws IOException
     {
+        if ( listener == null )
+        {
+            return transfer( source, target );
+        }
+
         long total = 0;
 
         FileInputStream fis = null;
-        OutputStream fos = null;
+        FileOutputStream fos = null;
         try
         {
             fis = new FileInputStream( source );
 
             mkdirs( target.getParentFile() );
 
-            fos = new BufferedOutputStream( new FileOutputStream( target ) );
+            fos = new FileOutputStream( target );
+
+            FileChannel in = fis.getChannel();
+            FileChannel out = fos.getChannel();
 
-            ByteBuffer buffer = ByteBuffer.allocate( 1024 * 32 );
-            byte[] array = buffer.array();
+            ByteBuffer buffer = ByteBuffer.allocate( (int) Math.max( 1, Math.min( bufferSize, in.size() ) ) );
 
-            while ( true )
+            while ( in.read( buffer ) >= 0 )
             {
-                int bytes = fis.read( array );
-                if ( bytes < 0 )
+                buffer.flip();
+
+                int bytes = buffer.remaining();
+
+                while ( buffer.hasRemaining() )
                 {
-                    break;
+                    out.write( buffer );
                 }
 
-                fos.write( array, 0, bytes );
-
                 total += bytes;
 
-                if ( listener != null && bytes > 0 )
+                if ( bytes > 0 )
                 {
                     try
                     {
                         buffer.rewind();
-                        buffer.limit( bytes );
                         listener.progressed( buffer );
                     }
                     catch ( Exception e )
@@ -149,6 +174,8 @@ public class DefaultFileProcessor
                         // too bad
                     }
                 }
+
+                buffer.clear();
             }
         }
         finally
@@ -160,17 +187,93 @@ public class DefaultFileProcessor
         return total;
     }
 
+    /**
+     * Copies the specified file by means of {@link FileChannel#transferTo}, allowing the operating system to move the
+     * bytes without passing them through the JVM heap.
+     */
+    private long transfer( File source, File target )
+        throws IOException
+    {
+        long total = 0;
+
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
+        try
+        {
+            fis = new FileInputStream( source );
+
+            mkdirs( target.getParentFile() );
+
+            fos = new FileOutputStream( target );
+
+            FileChannel in = fis.getChannel();
+            FileChannel out = fos.getChannel();
+
+            for ( long size = in.size(); total < size; )
+            {
+                long bytes = in.transferTo( total, size - total, out );
+                if ( bytes <= 0 )
+                {
+                    break;
+                }
+                total += bytes;
+            }
+        }
+        finally
+        {
+            close( fis );
+            close( fos );
+        }
+
+        return total;
+    }
+
+    /**
+     * Moves the specified file. If the file cannot simply be renamed, e.g. because the target resides on another file
+     * system, the file is first copied into a temporary file next to the target which is then renamed. Hence the target
+     * is never observable in a partially written state. Note that the replacement is only atomic if the platform allows
+     * renaming onto an existing file, otherwise the existing target is deleted before the rename and is briefly
+     * missing.
+     */
     public void move( File source, File target )
         throws IOException
     {
-        if ( !source.renameTo( target ) )
+        if ( rename( source, target ) )
         {
-            copy( source, target, null );
+            return;
+        }
+
+        File parent = target.getAbsoluteFile().getParentFile();
+        mkdirs( parent );
 
-            target.setLastModified( source.lastModified() );
+        File tmp = File.createTempFile( target.getName(), ".tmp", parent );
+        try
+        {
+            copy( source, tmp, null );
 
-            source.delete();
+            tmp.setLastModified( source.lastModified() );
+
+            if ( !rename( tmp, target ) )
+            {
+                // some platforms refuse to rename onto an existing file, not atomic anymore
+                target.delete();
+                if ( !rename( tmp, target ) )
+                {
+                    throw new IOException( "Failed to move " + source + " to " + target );
+                }
+            }
+        }
+        finally
+        {
+            tmp.delete();
         }
+
+        source.delete();
+    }
+
+    boolean rename( File source, File target )
+    {
+        return source.renameTo( target );
     }
 
 }
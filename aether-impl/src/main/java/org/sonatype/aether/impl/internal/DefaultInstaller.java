@@ -9,9 +9,17 @@ package org.sonatype.aether.impl.internal;
  *******************************************************************************/
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -34,10 +42,12 @@ import org.sonatype.aether.repository.LocalArtifactRegistration;
 import org.sonatype.aether.repository.LocalMetadataRegistration;
 import org.sonatype.aether.repository.LocalRepositoryManager;
 import org.sonatype.aether.spi.io.FileProcessor;
+import org.sonatype.aether.spi.localrepo.BatchLocalRepositoryManager;
 import org.sonatype.aether.spi.locator.Service;
 import org.sonatype.aether.spi.locator.ServiceLocator;
 import org.sonatype.aether.spi.log.Logger;
 import org.sonatype.aether.spi.log.NullLogger;
+import org.sonatype.aether.util.ConfigUtils;
 import org.sonatype.aether.util.DefaultRequestTrace;
 import org.sonatype.aether.util.listener.DefaultRepositoryEvent;
 
@@ -49,6 +59,15 @@ public class DefaultInstaller
     implements Installer, Service
 {
 
+    static final String CONFIG_PROP_THREADS = "aether.installer.threads";
+
+    /**
+     * Enables installing artifact files as hard links to their source files instead of copies. This saves the I/O of
+     * copying large files but any later in-place modification of a source file also alters the installed artifact, so
+     * it is off by default. Files are still copied if the runtime or file system does not support hard links.
+     */
+    static final String CONFIG_PROP_HARD_LINKS = "aether.installer.hardLinks";
+
     @Requirement
     private Logger logger = NullLogger.INSTANCE;
 
@@ -187,6 +206,8 @@ public class DefaultInstaller
             result.addMetadata( metadata );
         }
 
+        int threads = Math.min( ConfigUtils.getInteger( session, 1, CONFIG_PROP_THREADS ), artifacts.size() );
+
         for ( int i = 0; i < artifacts.size(); i++ )
         {
             Artifact artifact = artifacts.get( i );
@@ -198,8 +219,20 @@ public class DefaultInstaller
 
             artifacts.set( i, artifact );
 
-            install( session, trace, artifact );
-            result.addArtifact( artifact );
+            if ( threads <= 1 )
+            {
+                install( session, trace, artifact );
+                result.addArtifact( artifact );
+            }
+        }
+
+        if ( threads > 1 )
+        {
+            install( session, trace, artifacts, threads );
+            for ( Artifact artifact : artifacts )
+            {
+                result.addArtifact( artifact );
+            }
         }
 
         metadatas = Utils.finishMetadata( generators, artifacts );
@@ -257,30 +290,200 @@ public class DefaultInstaller
         Exception exception = null;
         try
         {
-            boolean copy =
-                "pom".equals( artifact.getExtension() ) || srcFile.lastModified() != dstFile.lastModified()
-                    || srcFile.length() != dstFile.length();
+            copy( session, artifact, srcFile, dstFile );
+
+            lrm.add( session, new LocalArtifactRegistration( artifact ) );
+        }
+        catch ( Exception e )
+        {
+            exception = e;
+            throw new InstallationException( "Failed to install artifact " + artifact + ": " + e.getMessage(), e );
+        }
+        finally
+        {
+            artifactInstalled( session, trace, artifact, dstFile, exception );
+        }
+    }
 
-            if ( copy )
+    /**
+     * Installs the specified artifacts by copying their files concurrently. The artifacts are registered with the local
+     * repository in one go once all copies are done. The repository events are still dispatched from the calling
+     * thread and in the order of the artifacts.
+     */
+    private void install( final RepositorySystemSession session, RequestTrace trace, List<Artifact> artifacts,
+                          int threads )
+        throws InstallationException
+    {
+        LocalRepositoryManager lrm = session.getLocalRepositoryManager();
+
+        List<File> dstFiles = new ArrayList<File>( artifacts.size() );
+        List<Future<Exception>> copies = new ArrayList<Future<Exception>>( artifacts.size() );
+
+        ExecutorService executor =
+            new ThreadPoolExecutor( threads, threads, 3, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>() );
+        try
+        {
+            for ( final Artifact artifact : artifacts )
             {
-                fileProcessor.copy( srcFile, dstFile, null );
-                dstFile.setLastModified( srcFile.lastModified() );
+                final File dstFile =
+                    new File( lrm.getRepository().getBasedir(), lrm.getPathForLocalArtifact( artifact ) );
+                dstFiles.add( dstFile );
+
+                artifactInstalling( session, trace, artifact, dstFile );
+
+                copies.add( executor.submit( new Callable<Exception>()
+                {
+                    public Exception call()
+                    {
+                        try
+                        {
+                            copy( session, artifact, artifact.getFile(), dstFile );
+                            return null;
+                        }
+                        catch ( Exception e )
+                        {
+                            return e;
+                        }
+                    }
+                } ) );
             }
-            else
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Exception[] exceptions = new Exception[artifacts.size()];
+        List<LocalArtifactRegistration> registrations = new ArrayList<LocalArtifactRegistration>();
+        for ( int i = 0; i < artifacts.size(); i++ )
+        {
+            exceptions[i] = await( copies.get( i ) );
+            if ( exceptions[i] == null )
             {
-                logger.debug( "Skipped re-installing " + srcFile + " to " + dstFile + ", seems unchanged" );
+                registrations.add( new LocalArtifactRegistration( artifacts.get( i ) ) );
             }
+        }
 
-            lrm.add( session, new LocalArtifactRegistration( artifact ) );
+        try
+        {
+            if ( lrm instanceof BatchLocalRepositoryManager )
+            {
+                ( (BatchLocalRepositoryManager) lrm ).add( session, registrations );
+            }
+            else
+            {
+                for ( LocalArtifactRegistration registration : registrations )
+                {
+                    lrm.add( session, registration );
+                }
+            }
         }
         catch ( Exception e )
         {
-            exception = e;
-            throw new InstallationException( "Failed to install artifact " + artifact + ": " + e.getMessage(), e );
+            for ( int i = 0; i < exceptions.length; i++ )
+            {
+                if ( exceptions[i] == null )
+                {
+                    exceptions[i] = e;
+                }
+            }
+        }
+
+        InstallationException exception = null;
+        for ( int i = 0; i < artifacts.size(); i++ )
+        {
+            Artifact artifact = artifacts.get( i );
+            Exception e = exceptions[i];
+
+            artifactInstalled( session, trace, artifact, dstFiles.get( i ), e );
+
+            if ( e != null && exception == null )
+            {
+                exception =
+                    new InstallationException( "Failed to install artifact " + artifact + ": " + e.getMessage(), e );
+            }
+        }
+        if ( exception != null )
+        {
+            throw exception;
+        }
+    }
+
+    private void copy( RepositorySystemSession session, Artifact artifact, File srcFile, File dstFile )
+        throws IOException
+    {
+        boolean hardLinks = ConfigUtils.getBoolean( session, false, CONFIG_PROP_HARD_LINKS );
+
+        boolean copy =
+            "pom".equals( artifact.getExtension() ) || srcFile.lastModified() != dstFile.lastModified()
+                || srcFile.length() != dstFile.length();
+
+        if ( HardLinker.isSameFile( srcFile, dstFile ) )
+        {
+            logger.debug( "Skipped re-installing " + srcFile + " to " + dstFile + ", already linked" );
+        }
+        else if ( hardLinks && link( srcFile, dstFile ) )
+        {
+            logger.debug( "Installed " + srcFile + " to " + dstFile + " as hard link" );
+        }
+        else if ( copy )
+        {
+            if ( dstFile.isFile() )
+            {
+                // the target might be a hard link to a snapshot or blob, don't overwrite that in place
+                dstFile.delete();
+            }
+            fileProcessor.copy( srcFile, dstFile, null );
+            dstFile.setLastModified( srcFile.lastModified() );
+        }
+        else
+        {
+            logger.debug( "Skipped re-installing " + srcFile + " to " + dstFile + ", seems unchanged" );
+        }
+    }
+
+    private boolean link( File srcFile, File dstFile )
+    {
+        if ( !srcFile.isFile() )
+        {
+            return false;
+        }
+        fileProcessor.mkdirs( dstFile.getAbsoluteFile().getParentFile() );
+        return HardLinker.link( srcFile, dstFile );
+    }
+
+    private static Exception await( Future<Exception> copy )
+    {
+        boolean interrupted = false;
+        try
+        {
+            while ( true )
+            {
+                try
+                {
+                    return copy.get();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+                catch ( ExecutionException e )
+                {
+                    Throwable cause = e.getCause();
+                    if ( cause instanceof Error )
+                    {
+                        throw (Error) cause;
+                    }
+                    return ( cause instanceof Exception ) ? (Exception) cause : e;
+                }
+            }
         }
         finally
         {
-            artifactInstalled( session, trace, artifact, dstFile, exception );
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
@@ -30,6 +30,7 @@ import org.sonatype.aether.RepositoryEvent.EventType;
 import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.impl.MetadataResolver;
 import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.RepositoryEventDispatcher;
 import org.sonatype.aether.impl.SyncContextFactory;
 import org.sonatype.aether.impl.UpdateCheck;
@@ -187,6 +188,8 @@ public class DefaultMetadataResolver
 
         Map<File, Long> localLastUpdates = new HashMap<File, Long>();
 
+        RepositoryMetrics metrics = RepositoryMetrics.get( session );
+
         for ( MetadataRequest request : requests )
         {
             RequestTrace trace = DefaultRequestTrace.newChild( request.getTrace(), request );
@@ -293,6 +296,11 @@ public class DefaultMetadataResolver
                 else
                 {
                     updateCheckManager.checkMetadata( session, check );
+                    if ( metrics != null )
+                    {
+                        metrics.count( check.isRequired() ? RepositoryMetrics.UPDATE_CHECK_REQUIRED
+                                        : RepositoryMetrics.UPDATE_CHECK_SKIPPED );
+                    }
                     if ( check.isRequired() )
                     {
                         checks.add( check );
@@ -18,6 +18,7 @@ import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.UpdateCheckManager;
 import org.sonatype.aether.repository.Authentication;
 import org.sonatype.aether.repository.AuthenticationSelector;
@@ -183,14 +184,19 @@ public class DefaultRemoteRepositoryManager
             if ( recessiveIsRaw )
             {
                 Authentication auth = authSelector.getAuthentication( repository );
-                if ( auth != null )
-                {
-                    repository.setAuthentication( auth );
-                }
                 Proxy proxy = proxySelector.getProxy( repository );
-                if ( proxy != null )
+                if ( auth != null || proxy != null )
                 {
-                    repository.setProxy( proxy );
+                    // the raw repositories may be shared, e.g. by pooled artifact descriptors
+                    repository = new RemoteRepository( repository );
+                    if ( auth != null )
+                    {
+                        repository.setAuthentication( auth );
+                    }
+                    if ( proxy != null )
+                    {
+                        repository.setProxy( proxy );
+                    }
                 }
             }
 
@@ -373,6 +379,12 @@ public class DefaultRemoteRepositoryManager
                     logger.debug( buffer.toString() );
                 }
 
+                RepositoryMetrics metrics = RepositoryMetrics.get( session );
+                if ( metrics != null )
+                {
+                    connector = new MeteredRepositoryConnector( connector, metrics );
+                }
+
                 return connector;
             }
             catch ( NoRepositoryConnectorException e )
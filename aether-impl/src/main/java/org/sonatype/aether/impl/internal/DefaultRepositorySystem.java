@@ -10,6 +10,8 @@ package org.sonatype.aether.impl.internal;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
@@ -34,7 +36,10 @@ import org.sonatype.aether.impl.Deployer;
 import org.sonatype.aether.impl.Installer;
 import org.sonatype.aether.impl.LocalRepositoryProvider;
 import org.sonatype.aether.impl.MetadataResolver;
+import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.SyncContextFactory;
+import org.sonatype.aether.impl.UpdateCheckManager;
 import org.sonatype.aether.impl.VersionRangeResolver;
 import org.sonatype.aether.impl.VersionResolver;
 import org.sonatype.aether.installation.InstallRequest;
@@ -110,6 +115,12 @@ public class DefaultRepositorySystem
     @Requirement
     private SyncContextFactory syncContextFactory;
 
+    @Requirement
+    private RemoteRepositoryManager remoteRepositoryManager;
+
+    @Requirement
+    private UpdateCheckManager updateCheckManager;
+
     public DefaultRepositorySystem()
     {
         // enables default constructor
@@ -149,6 +160,8 @@ public class DefaultRepositorySystem
         setDeployer( locator.getService( Deployer.class ) );
         setLocalRepositoryProvider( locator.getService( LocalRepositoryProvider.class ) );
         setSyncContextFactory( locator.getService( SyncContextFactory.class ) );
+        setRemoteRepositoryManager( locator.getService( RemoteRepositoryManager.class ) );
+        setUpdateCheckManager( locator.getService( UpdateCheckManager.class ) );
     }
 
     public DefaultRepositorySystem setLogger( Logger logger )
@@ -257,6 +270,26 @@ public class DefaultRepositorySystem
         return this;
     }
 
+    public DefaultRepositorySystem setRemoteRepositoryManager( RemoteRepositoryManager remoteRepositoryManager )
+    {
+        if ( remoteRepositoryManager == null )
+        {
+            throw new IllegalArgumentException( "remote repository manager has not been specified" );
+        }
+        this.remoteRepositoryManager = remoteRepositoryManager;
+        return this;
+    }
+
+    public DefaultRepositorySystem setUpdateCheckManager( UpdateCheckManager updateCheckManager )
+    {
+        if ( updateCheckManager == null )
+        {
+            throw new IllegalArgumentException( "update check manager has not been specified" );
+        }
+        this.updateCheckManager = updateCheckManager;
+        return this;
+    }
+
     public VersionResult resolveVersion( RepositorySystemSession session, VersionRequest request )
         throws VersionResolutionException
     {
@@ -268,7 +301,17 @@ public class DefaultRepositorySystem
         throws VersionRangeResolutionException
     {
         validateSession( session );
-        return versionRangeResolver.resolveVersionRange( session, request );
+
+        RepositoryMetrics.Timer timer =
+            RepositoryMetrics.start( RepositoryMetrics.get( session ), RepositoryMetrics.RESOLVE_VERSION_RANGE );
+        try
+        {
+            return versionRangeResolver.resolveVersionRange( session, request );
+        }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
@@ -276,7 +319,17 @@ public class DefaultRepositorySystem
         throws ArtifactDescriptorException
     {
         validateSession( session );
-        return artifactDescriptorReader.readArtifactDescriptor( session, request );
+
+        RepositoryMetrics.Timer timer =
+            RepositoryMetrics.start( RepositoryMetrics.get( session ), RepositoryMetrics.READ_ARTIFACT_DESCRIPTOR );
+        try
+        {
+            return artifactDescriptorReader.readArtifactDescriptor( session, request );
+        }
+        finally
+        {
+            timer.stop();
+        }
     }
 
     public ArtifactResult resolveArtifact( RepositorySystemSession session, ArtifactRequest request )
@@ -305,6 +358,7 @@ public class DefaultRepositorySystem
         throws DependencyCollectionException
     {
         validateSession( session );
+        awaitPrefetch( session, request );
         return dependencyCollector.collectDependencies( session, request );
     }
 
@@ -312,9 +366,76 @@ public class DefaultRepositorySystem
         throws DependencyResolutionException
     {
         validateSession( session );
+        if ( request.getRoot() == null && request.getCollectRequest() != null )
+        {
+            awaitPrefetch( session, request.getCollectRequest() );
+        }
+        return resolve( session, request );
+    }
 
+    /**
+     * Collects and resolves the transitive dependencies of an artifact in the background. The descriptors and artifacts
+     * are downloaded into the local repository of the session such that a later call to
+     * {@link #resolveDependencies(RepositorySystemSession, DependencyRequest)} for the same dependencies can be served
+     * locally. Per session, at most {@code aether.prefetch.threads} (default 2) prefetches run concurrently on
+     * low-priority daemon threads, further prefetches are queued. A prefetch of a request that equals one which is
+     * still queued or running is not started again. Likewise, a foreground collection or resolution of an equal request
+     * waits for a running prefetch, or runs a queued one right away, instead of duplicating its downloads. The threads
+     * of a session are released once all its prefetches have completed. Descriptors read by the prefetch are shared
+     * with later foreground collections via the {@link org.sonatype.aether.RepositoryCache} of the session.
+     * 
+     * @param session The repository session, must not be {@code null}. The session must remain usable until the
+     *            prefetch has completed.
+     * @param request The collection request, must not be {@code null}.
+     * @return The future result of the prefetch, never {@code null}. Failures are reported by {@link Future#get()}
+     *         which throws an exception wrapping the {@link DependencyResolutionException}.
+     */
+    public Future<DependencyResult> prefetchDependencies( final RepositorySystemSession session,
+                                                          CollectRequest request )
+    {
+        validateSession( session );
+
+        final DependencyRequest dependencyRequest = new DependencyRequest( request, null );
+        dependencyRequest.setTrace( request.getTrace() );
+
+        Callable<DependencyResult> prefetch = new Callable<DependencyResult>()
+        {
+            public DependencyResult call()
+                throws DependencyResolutionException
+            {
+                return resolve( session, dependencyRequest );
+            }
+        };
+
+        return DependencyPrefetcher.get( session ).submit( DependencyPrefetcher.getKey( request ), prefetch );
+    }
+
+    private void awaitPrefetch( RepositorySystemSession session, CollectRequest request )
+    {
+        DependencyPrefetcher prefetcher = DependencyPrefetcher.find( session );
+        if ( prefetcher != null )
+        {
+            prefetcher.await( DependencyPrefetcher.getKey( request ) );
+        }
+    }
+
+    private DependencyResult resolve( RepositorySystemSession session, DependencyRequest request )
+        throws DependencyResolutionException
+    {
         RequestTrace trace = DefaultRequestTrace.newChild( request.getTrace(), request );
 
+        ResolutionReplayCache replay = null;
+        DependencyResult replayed = null;
+        if ( request.getRoot() == null && ResolutionReplayCache.isEnabled( session ) )
+        {
+            replay = new ResolutionReplayCache( session, request, remoteRepositoryManager, updateCheckManager, logger );
+            replayed = replay.load( request, trace );
+            if ( replayed != null && !replay.isVerificationDue() )
+            {
+                return replayed;
+            }
+        }
+
         DependencyResult result = new DependencyResult( request );
 
         DependencyCollectionException dce = null;
@@ -345,17 +466,10 @@ public class DefaultRepositorySystem
             throw new IllegalArgumentException( "dependency node or collect request missing" );
         }
 
-        ArtifactRequestBuilder builder = new ArtifactRequestBuilder( trace );
-        DependencyFilter filter = request.getFilter();
-        DependencyVisitor visitor = ( filter != null ) ? new FilteringDependencyVisitor( builder, filter ) : builder;
-        visitor = new TreeDependencyVisitor( visitor );
-        result.getRoot().accept( visitor );
-        List<ArtifactRequest> requests = builder.getRequests();
-
         List<ArtifactResult> results;
         try
         {
-            results = artifactResolver.resolveArtifacts( session, requests );
+            results = resolveArtifacts( session, result.getRoot(), request.getFilter(), trace );
         }
         catch ( ArtifactResolutionException e )
         {
@@ -375,6 +489,16 @@ public class DefaultRepositorySystem
             throw new DependencyResolutionException( result, are );
         }
 
+        if ( replay != null )
+        {
+            if ( replayed != null && !replay.matches( replayed, result ) )
+            {
+                logger.warn( "Resolution replay " + replay.getFingerprint() + " of " + result.getRoot()
+                    + " does not match the actual resolution, replacing it" );
+            }
+            replay.store( result );
+        }
+
         return result;
     }
 
@@ -386,15 +510,9 @@ public class DefaultRepositorySystem
 
         RequestTrace trace = DefaultRequestTrace.newChild( null, node );
 
-        ArtifactRequestBuilder builder = new ArtifactRequestBuilder( trace );
-        DependencyVisitor visitor = ( filter != null ) ? new FilteringDependencyVisitor( builder, filter ) : builder;
-        visitor = new TreeDependencyVisitor( visitor );
-        node.accept( visitor );
-        List<ArtifactRequest> requests = builder.getRequests();
-
         try
         {
-            List<ArtifactResult> results = resolveArtifacts( session, requests );
+            List<ArtifactResult> results = resolveArtifacts( session, node, filter, trace );
 
             updateNodesWithResolvedArtifacts( results );
 
@@ -408,6 +526,24 @@ public class DefaultRepositorySystem
         }
     }
 
+    private List<ArtifactResult> resolveArtifacts( RepositorySystemSession session, DependencyNode node,
+                                                   DependencyFilter filter, RequestTrace trace )
+        throws ArtifactResolutionException
+    {
+        if ( ParallelArtifactResolver.isEnabled( session ) )
+        {
+            return new ParallelArtifactResolver( artifactResolver, session, trace ).resolve( node, filter );
+        }
+
+        ArtifactRequestBuilder builder = new ArtifactRequestBuilder( trace );
+        DependencyVisitor visitor = ( filter != null ) ? new FilteringDependencyVisitor( builder, filter ) : builder;
+        visitor = new TreeDependencyVisitor( visitor );
+        node.accept( visitor );
+        List<ArtifactRequest> requests = builder.getRequests();
+
+        return artifactResolver.resolveArtifacts( session, requests );
+    }
+
     private void updateNodesWithResolvedArtifacts( List<ArtifactResult> results )
     {
         for ( ArtifactResult result : results )
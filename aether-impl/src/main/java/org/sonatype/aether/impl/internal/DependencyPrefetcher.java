@@ -0,0 +1,287 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.SessionData;
+import org.sonatype.aether.collection.CollectRequest;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.DependencyResult;
+import org.sonatype.aether.util.ConfigUtils;
+
+/**
+ * Runs the background prefetches of a session. Each prefetcher runs at most as many prefetches as configured by
+ * {@code aether.prefetch.threads} (default 2) concurrently on its own pool of daemon threads with minimum priority
+ * while further prefetches are queued. The pool is started when a prefetch is dispatched and shut down once no
+ * prefetch is left, so an abandoned session does not retain any threads. Prefetches are identified by the contents of
+ * their collect request such that an equal request joins the prefetch that is already queued or running, and a
+ * caller awaiting a prefetch which is still queued cancels it and does the work itself rather than waiting for
+ * unrelated prefetches.
+ */
+class DependencyPrefetcher
+{
+
+    static final String CONFIG_PROP_THREADS = "aether.prefetch.threads";
+
+    private static final Object KEY = DependencyPrefetcher.class.getName();
+
+    private final int threads;
+
+    private final Map<Object, Prefetch> inFlight = new HashMap<Object, Prefetch>();
+
+    private final LinkedList<Prefetch> pending = new LinkedList<Prefetch>();
+
+    private ExecutorService executor;
+
+    private int running;
+
+    DependencyPrefetcher( int threads )
+    {
+        this.threads = Math.max( 1, threads );
+    }
+
+    /**
+     * Gets the prefetcher of the specified session, creating it if necessary.
+     * 
+     * @param session The repository system session, must not be {@code null}.
+     * @return The prefetcher of the session, never {@code null}.
+     */
+    public static DependencyPrefetcher get( RepositorySystemSession session )
+    {
+        SessionData data = session.getData();
+        while ( true )
+        {
+            Object prefetcher = data.get( KEY );
+            if ( prefetcher instanceof DependencyPrefetcher )
+            {
+                return (DependencyPrefetcher) prefetcher;
+            }
+            DependencyPrefetcher created =
+                new DependencyPrefetcher( ConfigUtils.getInteger( session, 2, CONFIG_PROP_THREADS ) );
+            if ( data.set( KEY, prefetcher, created ) )
+            {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Gets the prefetcher of the specified session if any prefetch was requested for it.
+     * 
+     * @param session The repository system session, must not be {@code null}.
+     * @return The prefetcher of the session or {@code null} if none.
+     */
+    public static DependencyPrefetcher find( RepositorySystemSession session )
+    {
+        SessionData data = session.getData();
+        Object prefetcher = ( data != null ) ? data.get( KEY ) : null;
+        return ( prefetcher instanceof DependencyPrefetcher ) ? (DependencyPrefetcher) prefetcher : null;
+    }
+
+    /**
+     * Gets the key identifying prefetches of equal collect requests.
+     * 
+     * @param request The collect request, must not be {@code null}.
+     * @return The key, never {@code null}.
+     */
+    public static Object getKey( CollectRequest request )
+    {
+        return Arrays.asList( request.getRoot(), new ArrayList<Dependency>( request.getDependencies() ),
+                              new ArrayList<Dependency>( request.getManagedDependencies() ),
+                              new ArrayList<RemoteRepository>( request.getRepositories() ),
+                              request.getRequestContext() );
+    }
+
+    /**
+     * Schedules the specified prefetch unless an equal prefetch is already queued or running.
+     * 
+     * @param key The key of the prefetch as given by {@link #getKey(CollectRequest)}, must not be {@code null}.
+     * @param prefetch The actual prefetch, must not be {@code null}.
+     * @return The future result of the prefetch, never {@code null}.
+     */
+    public synchronized Future<DependencyResult> submit( Object key, Callable<DependencyResult> prefetch )
+    {
+        Future<DependencyResult> future = inFlight.get( key );
+        if ( future != null )
+        {
+            return future;
+        }
+
+        Prefetch task = new Prefetch( key, prefetch );
+        inFlight.put( key, task );
+        pending.add( task );
+        dispatch();
+
+        return task;
+    }
+
+    /**
+     * Waits for the prefetch with the specified key if it is running. A prefetch that is still queued is removed from
+     * the queue and cancelled instead, so the caller never waits for other prefetches but simply does the work itself.
+     * Failures of the prefetch are ignored, the caller is supposed to repeat the work and deal with errors itself.
+     * 
+     * @param key The key of the prefetch as given by {@link #getKey(CollectRequest)}, must not be {@code null}.
+     */
+    public void await( Object key )
+    {
+        Prefetch future;
+        boolean queued;
+        synchronized ( this )
+        {
+            future = inFlight.get( key );
+            queued = future != null && pending.remove( future );
+        }
+        if ( future == null )
+        {
+            return;
+        }
+        if ( queued )
+        {
+            future.cancel( false );
+            return;
+        }
+
+        boolean interrupted = false;
+        while ( true )
+        {
+            try
+            {
+                future.get();
+                break;
+            }
+            catch ( InterruptedException e )
+            {
+                interrupted = true;
+            }
+            catch ( ExecutionException e )
+            {
+                break;
+            }
+            catch ( RuntimeException e )
+            {
+                // cancelled
+                break;
+            }
+        }
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void finished( Prefetch prefetch )
+    {
+        if ( inFlight.get( prefetch.key ) == prefetch )
+        {
+            inFlight.remove( prefetch.key );
+        }
+    }
+
+    private synchronized void completed()
+    {
+        running--;
+        dispatch();
+    }
+
+    private void dispatch()
+    {
+        while ( running < threads && !pending.isEmpty() )
+        {
+            if ( executor == null )
+            {
+                executor =
+                    new ThreadPoolExecutor( threads, threads, 3, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                            new PrefetchThreadFactory() );
+            }
+            running++;
+            final Prefetch prefetch = pending.removeFirst();
+            executor.execute( new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        prefetch.run();
+                    }
+                    finally
+                    {
+                        completed();
+                    }
+                }
+            } );
+        }
+        if ( running <= 0 && executor != null )
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Gets whether the prefetcher currently holds a thread pool, for testing only.
+     */
+    synchronized boolean isActive()
+    {
+        return executor != null;
+    }
+
+    private final class Prefetch
+        extends FutureTask<DependencyResult>
+    {
+
+        final Object key;
+
+        Prefetch( Object key, Callable<DependencyResult> prefetch )
+        {
+            super( prefetch );
+            this.key = key;
+        }
+
+        @Override
+        protected void done()
+        {
+            finished( this );
+        }
+
+    }
+
+    static class PrefetchThreadFactory
+        implements ThreadFactory
+    {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "aether-prefetch-" + counter.incrementAndGet() );
+            thread.setDaemon( true );
+            thread.setPriority( Thread.MIN_PRIORITY );
+            return thread;
+        }
+
+    }
+
+}
@@ -9,10 +9,13 @@ package org.sonatype.aether.impl.internal;
  *******************************************************************************/
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -23,12 +26,21 @@ import org.sonatype.aether.repository.LocalArtifactRequest;
 import org.sonatype.aether.repository.LocalArtifactResult;
 import org.sonatype.aether.repository.RemoteRepository;
 import org.sonatype.aether.spi.log.Logger;
+import org.sonatype.aether.spi.log.NullLogger;
+import org.sonatype.aether.util.ConfigUtils;
 
 /**
  * A local repository manager that builds upon the classical Maven 2.0 local repository structure but additionally keeps
  * track of from what repositories a cached artifact was resolved. Resolution of locally cached artifacts will be
  * rejected in case the current resolution request does not match the known source repositories of an artifact, thereby
  * emulating physically separated artifact caches per remote repository.
+ * <p>
+ * If the configuration property {@link #CONFIG_PROP_INDEX} is set, the presence and origin of artifacts are also
+ * recorded in a {@link LocalRepositoryIndex} such that lookups of indexed artifacts only need a single {@code stat} to
+ * get the size of the artifact file but do not read the tracking files. This one check is kept since artifacts are
+ * commonly deleted from the local repository by other means than this manager, such artifacts or artifacts whose size
+ * changed no longer match their index entry and are looked up in the file system again. Replacing an artifact file by
+ * another one of the same size without this manager is not detected though.
  * 
  * @author Benjamin Bentmann
  */
@@ -36,13 +48,27 @@ public class EnhancedLocalRepositoryManager
     extends SimpleLocalRepositoryManager
 {
 
+    /**
+     * The name of the configuration property that enables the index of the local repository contents.
+     */
+    public static final String CONFIG_PROP_INDEX = "aether.enhancedLocalRepository.index";
+
     private static final String LOCAL_REPO_ID = "";
 
     private TrackingFileManager trackingFileManager;
 
+    private Logger logger = NullLogger.INSTANCE;
+
+    private volatile LocalRepositoryIndex index;
+
     public EnhancedLocalRepositoryManager( File basedir )
     {
-        super( basedir, "enhanced" );
+        this( basedir, "enhanced" );
+    }
+
+    EnhancedLocalRepositoryManager( File basedir, String type )
+    {
+        super( basedir, type );
         trackingFileManager = new TrackingFileManager();
     }
 
@@ -51,9 +77,32 @@ public class EnhancedLocalRepositoryManager
     {
         super.setLogger( logger );
         trackingFileManager.setLogger( logger );
+        this.logger = ( logger != null ) ? logger : NullLogger.INSTANCE;
         return this;
     }
 
+    private LocalRepositoryIndex getIndex( RepositorySystemSession session )
+    {
+        if ( !ConfigUtils.getBoolean( session, false, CONFIG_PROP_INDEX ) )
+        {
+            return null;
+        }
+        LocalRepositoryIndex index = this.index;
+        if ( index == null )
+        {
+            synchronized ( this )
+            {
+                index = this.index;
+                if ( index == null )
+                {
+                    index = new LocalRepositoryIndex( getRepository().getBasedir(), logger );
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
     @Override
     public LocalArtifactResult find( RepositorySystemSession session, LocalArtifactRequest request )
     {
@@ -62,52 +111,162 @@ public class EnhancedLocalRepositoryManager
 
         LocalArtifactResult result = new LocalArtifactResult( request );
 
+        LocalRepositoryIndex index = getIndex( session );
+        if ( index != null )
+        {
+            LocalRepositoryIndex.Entry entry = index.get( path );
+            if ( entry != null )
+            {
+                long size = file.length();
+                if ( size == entry.size && ( size > 0 || file.isFile() ) )
+                {
+                    result.setFile( file );
+                    checkAvailability( result, request, entry.repositories );
+                    return result;
+                }
+                index.remove( path );
+            }
+        }
+
         if ( file.isFile() )
         {
             result.setFile( file );
 
-            Properties props = readRepos( file );
+            Collection<String> repositories = getRepos( readRepos( file ), file );
+
+            checkAvailability( result, request, repositories );
 
-            if ( props.get( getKey( file, LOCAL_REPO_ID ) ) != null )
+            if ( index != null )
             {
-                result.setAvailable( true );
+                index.put( path, file.length(), file.lastModified(), repositories );
             }
-            else
+        }
+
+        return result;
+    }
+
+    private void checkAvailability( LocalArtifactResult result, LocalArtifactRequest request,
+                                    Collection<String> repositories )
+    {
+        if ( repositories.contains( LOCAL_REPO_ID ) )
+        {
+            result.setAvailable( true );
+        }
+        else
+        {
+            String context = request.getContext();
+            for ( RemoteRepository repository : request.getRepositories() )
             {
-                String context = request.getContext();
-                for ( RemoteRepository repository : request.getRepositories() )
-                {
-                    if ( props.get( getKey( file, getRepositoryKey( repository, context ) ) ) != null )
-                    {
-                        result.setAvailable( true );
-                        result.setRepository( repository );
-                        break;
-                    }
-                }
-                if ( !result.isAvailable() && !isTracked( props, file ) )
+                if ( repositories.contains( getRepositoryKey( repository, context ) ) )
                 {
-                    /*
-                     * NOTE: The artifact is present but not tracked at all, for inter-op with Maven 2.x, assume the
-                     * artifact was locally installed.
-                     */
                     result.setAvailable( true );
+                    result.setRepository( repository );
+                    break;
                 }
             }
+            if ( !result.isAvailable() && repositories.isEmpty() )
+            {
+                /*
+                 * NOTE: The artifact is present but not tracked at all, for inter-op with Maven 2.x, assume the
+                 * artifact was locally installed.
+                 */
+                result.setAvailable( true );
+            }
         }
-
-        return result;
     }
 
     @Override
     public void add( RepositorySystemSession session, LocalArtifactRegistration request )
     {
+        Properties props;
         if ( request.getRepository() == null )
         {
-            addArtifact( request.getArtifact(), Collections.singleton( LOCAL_REPO_ID ) );
+            props = addArtifact( request.getArtifact(), Collections.singleton( LOCAL_REPO_ID ) );
+        }
+        else
+        {
+            Collection<String> repositories = getRepositoryKeys( request.getRepository(), request.getContexts() );
+            props = addArtifact( request.getArtifact(), repositories );
+        }
+
+        LocalRepositoryIndex index = getIndex( session );
+        if ( index != null )
+        {
+            updateIndex( index, getPathForLocalArtifact( request.getArtifact() ), props );
+        }
+    }
+
+    private void updateIndex( LocalRepositoryIndex index, String path, Properties props )
+    {
+        File file = new File( getRepository().getBasedir(), path );
+        if ( file.isFile() )
+        {
+            index.put( path, file.length(), file.lastModified(), getRepos( props, file ) );
         }
         else
         {
-            addArtifact( request.getArtifact(), getRepositoryKeys( request.getRepository(), request.getContexts() ) );
+            index.remove( path );
+        }
+    }
+
+    /**
+     * Registers the specified artifacts, updating the tracking file of each directory only once.
+     */
+    @Override
+    public void add( RepositorySystemSession session, Collection<? extends LocalArtifactRegistration> requests )
+    {
+        Map<File, Map<String, String>> updates = new LinkedHashMap<File, Map<String, String>>();
+        List<String> paths = new ArrayList<String>( requests.size() );
+
+        for ( LocalArtifactRegistration request : requests )
+        {
+            Artifact artifact = request.getArtifact();
+            if ( artifact == null )
+            {
+                throw new IllegalArgumentException( "artifact to register not specified" );
+            }
+
+            Collection<String> repositories;
+            if ( request.getRepository() == null )
+            {
+                repositories = Collections.singleton( LOCAL_REPO_ID );
+            }
+            else
+            {
+                repositories = getRepositoryKeys( request.getRepository(), request.getContexts() );
+            }
+
+            String path = getPathForLocalArtifact( artifact );
+            paths.add( path );
+            File file = new File( getRepository().getBasedir(), path );
+            File trackingFile = getTrackingFile( file );
+
+            Map<String, String> fileUpdates = updates.get( trackingFile );
+            if ( fileUpdates == null )
+            {
+                fileUpdates = new HashMap<String, String>();
+                updates.put( trackingFile, fileUpdates );
+            }
+            for ( String repository : repositories )
+            {
+                fileUpdates.put( getKey( file, repository ), "" );
+            }
+        }
+
+        Map<File, Properties> props = new HashMap<File, Properties>();
+        for ( Map.Entry<File, Map<String, String>> entry : updates.entrySet() )
+        {
+            props.put( entry.getKey(), trackingFileManager.update( entry.getKey(), entry.getValue() ) );
+        }
+
+        LocalRepositoryIndex index = getIndex( session );
+        if ( index != null )
+        {
+            for ( String path : paths )
+            {
+                File trackingFile = getTrackingFile( new File( getRepository().getBasedir(), path ) );
+                updateIndex( index, path, props.get( trackingFile ) );
+            }
         }
     }
 
@@ -126,7 +285,7 @@ public class EnhancedLocalRepositoryManager
         return keys;
     }
 
-    private void addArtifact( Artifact artifact, Collection<String> repositories )
+    private Properties addArtifact( Artifact artifact, Collection<String> repositories )
     {
         if ( artifact == null )
         {
@@ -134,7 +293,7 @@ public class EnhancedLocalRepositoryManager
         }
         String path = getPathForLocalArtifact( artifact );
         File file = new File( getRepository().getBasedir(), path );
-        addRepo( file, repositories );
+        return addRepo( file, repositories );
     }
 
     private Properties readRepos( File artifactFile )
@@ -145,7 +304,7 @@ public class EnhancedLocalRepositoryManager
         return ( props != null ) ? props : new Properties();
     }
 
-    private void addRepo( File artifactFile, Collection<String> repositories )
+    private Properties addRepo( File artifactFile, Collection<String> repositories )
     {
         Map<String, String> updates = new HashMap<String, String>();
         for ( String repository : repositories )
@@ -155,7 +314,7 @@ public class EnhancedLocalRepositoryManager
 
         File trackingFile = getTrackingFile( artifactFile );
 
-        trackingFileManager.update( trackingFile, updates );
+        return trackingFileManager.update( trackingFile, updates );
     }
 
     private File getTrackingFile( File artifactFile )
@@ -168,20 +327,25 @@ public class EnhancedLocalRepositoryManager
         return file.getName() + '>' + repository;
     }
 
-    private boolean isTracked( Properties props, File file )
+    /**
+     * Gets the keys of the repositories from which the specified artifact file has been cached.
+     */
+    private Collection<String> getRepos( Properties props, File file )
     {
+        Collection<String> repositories = new HashSet<String>();
         if ( props != null )
         {
             String keyPrefix = file.getName() + '>';
             for ( Object key : props.keySet() )
             {
-                if ( key.toString().startsWith( keyPrefix ) )
+                String k = key.toString();
+                if ( k.startsWith( keyPrefix ) )
                 {
-                    return true;
+                    repositories.add( k.substring( keyPrefix.length() ) );
                 }
             }
         }
-        return false;
+        return repositories;
     }
 
 }
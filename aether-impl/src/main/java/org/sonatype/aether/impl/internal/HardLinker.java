@@ -0,0 +1,203 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+
+/**
+ * Creates hard links between files. The Java 5 class library provides no means to create links, so this helper uses
+ * {@code java.nio.file.Files.createLink()} if the runtime provides it and otherwise reports links as unsupported,
+ * leaving it to the caller to fall back to a copy.
+ */
+final class HardLinker
+{
+
+    private static final Method TO_PATH;
+
+    private static final Method CREATE_LINK;
+
+    private static final Method IS_SAME_FILE;
+
+    private static final Method GET_ATTRIBUTE;
+
+    private static final Object NO_LINK_OPTIONS;
+
+    static
+    {
+        Method toPath = null;
+        Method createLink = null;
+        Method isSameFile = null;
+        try
+        {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            Class<?> filesClass = Class.forName( "java.nio.file.Files" );
+            toPath = File.class.getMethod( "toPath" );
+            createLink = filesClass.getMethod( "createLink", pathClass, pathClass );
+            isSameFile = filesClass.getMethod( "isSameFile", pathClass, pathClass );
+        }
+        catch ( Exception e )
+        {
+            toPath = null;
+            createLink = null;
+            isSameFile = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+        IS_SAME_FILE = isSameFile;
+
+        Method getAttribute = null;
+        Object noLinkOptions = null;
+        try
+        {
+            Class<?> pathClass = Class.forName( "java.nio.file.Path" );
+            Class<?> filesClass = Class.forName( "java.nio.file.Files" );
+            Class<?> linkOptionClass = Class.forName( "java.nio.file.LinkOption" );
+            noLinkOptions = Array.newInstance( linkOptionClass, 0 );
+            getAttribute = filesClass.getMethod( "getAttribute", pathClass, String.class, noLinkOptions.getClass() );
+        }
+        catch ( Exception e )
+        {
+            getAttribute = null;
+            noLinkOptions = null;
+        }
+        GET_ATTRIBUTE = ( toPath != null ) ? getAttribute : null;
+        NO_LINK_OPTIONS = noLinkOptions;
+    }
+
+    private HardLinker()
+    {
+        // hide constructor
+    }
+
+    /**
+     * Indicates whether the current runtime supports the creation of hard links.
+     *
+     * @return {@code true} if hard links can be requested, {@code false} otherwise.
+     */
+    public static boolean isSupported()
+    {
+        return CREATE_LINK != null;
+    }
+
+    /**
+     * Determines whether the specified paths denote the same file, e.g. because one is a hard link to the other.
+     *
+     * @param file1 The first file, must not be {@code null}.
+     * @param file2 The second file, must not be {@code null}.
+     * @return {@code true} if both paths are known to denote the same file, {@code false} otherwise.
+     */
+    public static boolean isSameFile( File file1, File file2 )
+    {
+        if ( !isSupported() )
+        {
+            return false;
+        }
+        try
+        {
+            return Boolean.TRUE.equals( IS_SAME_FILE.invoke( null, TO_PATH.invoke( file1 ), TO_PATH.invoke( file2 ) ) );
+        }
+        catch ( Exception e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of hard links to the specified file.
+     *
+     * @param file The file to query, must not be {@code null}.
+     * @return The number of links to the file or {@code -1} if the runtime or the file system cannot tell.
+     */
+    public static int getLinkCount( File file )
+    {
+        if ( GET_ATTRIBUTE == null )
+        {
+            return -1;
+        }
+        try
+        {
+            Object count = GET_ATTRIBUTE.invoke( null, TO_PATH.invoke( file ), "unix:nlink", NO_LINK_OPTIONS );
+            return ( count instanceof Number ) ? ( (Number) count ).intValue() : -1;
+        }
+        catch ( Exception e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Makes the specified target a hard link to the source file, replacing any existing target file. The link is
+     * created under a temporary name next to the target and then renamed, so the target is never observed missing on
+     * platforms that support atomic replacement. Elsewhere, the existing target is moved aside before the rename and
+     * moved back if the rename fails.
+     *
+     * @param source The existing file to link to, must not be {@code null}.
+     * @param target The link to create, must not be {@code null}.
+     * @return {@code true} if the link was created, {@code false} if links are not supported by the runtime or the
+     *         file system, in which case the target is left untouched.
+     */
+    public static boolean link( File source, File target )
+    {
+        if ( !isSupported() )
+        {
+            return false;
+        }
+
+        File dir = target.getAbsoluteFile().getParentFile();
+
+        File tmp;
+        try
+        {
+            tmp = File.createTempFile( target.getName(), ".tmp", dir );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+
+        try
+        {
+            tmp.delete();
+
+            CREATE_LINK.invoke( null, TO_PATH.invoke( tmp ), TO_PATH.invoke( source ) );
+
+            if ( tmp.renameTo( target ) )
+            {
+                return true;
+            }
+
+            // some platforms refuse to rename onto an existing file
+            File backup = File.createTempFile( target.getName(), ".bak", dir );
+            backup.delete();
+            if ( !target.renameTo( backup ) )
+            {
+                return false;
+            }
+            if ( tmp.renameTo( target ) )
+            {
+                backup.delete();
+                return true;
+            }
+            backup.renameTo( target );
+            return false;
+        }
+        catch ( Exception e )
+        {
+            return false;
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sonatype.aether.spi.log.Logger;
+
+/**
+ * An index of the artifacts present in a local repository, mapping the relative path of an artifact to its size,
+ * modification timestamp and origin repositories. The index is persisted as an append-only log of records which is
+ * memory-mapped and replayed when the index is opened and compacted once it has grown well beyond the number of live
+ * entries. Updates from other processes are only seen when an index is opened, so callers should fall back to the file
+ * system for paths which are not indexed.
+ */
+class LocalRepositoryIndex
+    implements AppendOnlyLog.Records
+{
+
+    static final String INDEX_FILE = ".index/artifacts.idx";
+
+    private static final int MAGIC = 0x4c524958;
+
+    private static final long REMOVED = -1;
+
+    private final AppendOnlyLog log;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>( 1024 );
+
+    public LocalRepositoryIndex( File basedir, Logger logger )
+    {
+        this.log = new AppendOnlyLog( new File( basedir, INDEX_FILE ), MAGIC, 0, "local repository index", logger );
+        log.load( this );
+    }
+
+    File getFile()
+    {
+        return log.getFile();
+    }
+
+    /**
+     * Gets the index entry for the specified path.
+     * 
+     * @param path The path of the artifact relative to the local repository, must not be {@code null}.
+     * @return The entry or {@code null} if the path is not indexed.
+     */
+    public Entry get( String path )
+    {
+        return entries.get( path );
+    }
+
+    /**
+     * Adds or updates the entry for the specified path.
+     * 
+     * @param path The path of the artifact relative to the local repository, must not be {@code null}.
+     * @param size The size of the artifact file in bytes.
+     * @param lastModified The modification timestamp of the artifact file.
+     * @param repositories The keys of the origin repositories, must not be {@code null}.
+     */
+    public void put( String path, long size, long lastModified, Collection<String> repositories )
+    {
+        Entry entry = new Entry( size, lastModified, repositories );
+        entries.put( path, entry );
+        append( path, entry );
+    }
+
+    /**
+     * Removes the entry for the specified path.
+     * 
+     * @param path The path of the artifact relative to the local repository, must not be {@code null}.
+     */
+    public void remove( String path )
+    {
+        if ( entries.remove( path ) != null )
+        {
+            append( path, null );
+        }
+    }
+
+    public int read( ByteBuffer buffer )
+        throws IOException
+    {
+        int records = 0;
+        while ( buffer.remaining() >= 4 )
+        {
+            int length = buffer.getInt();
+            if ( length <= 0 || length > buffer.remaining() )
+            {
+                // incomplete trailing record, e.g. after a crash
+                break;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get( bytes );
+            readRecord( bytes );
+            records++;
+        }
+        return records;
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public void write( DataOutputStream out )
+        throws IOException
+    {
+        for ( Map.Entry<String, Entry> entry : entries.entrySet() )
+        {
+            out.write( newRecord( entry.getKey(), entry.getValue() ) );
+        }
+    }
+
+    private void readRecord( byte[] bytes )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes ) );
+        String path = in.readUTF();
+        long size = in.readLong();
+        if ( size == REMOVED )
+        {
+            entries.remove( path );
+            return;
+        }
+        long lastModified = in.readLong();
+        int count = in.readShort();
+        Set<String> repositories = new HashSet<String>( count * 2 );
+        for ( int i = 0; i < count; i++ )
+        {
+            repositories.add( in.readUTF() );
+        }
+        entries.put( path, new Entry( size, lastModified, repositories ) );
+    }
+
+    private static byte[] newRecord( String path, Entry entry )
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 128 );
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeInt( 0 );
+        out.writeUTF( path );
+        if ( entry == null )
+        {
+            out.writeLong( REMOVED );
+        }
+        else
+        {
+            out.writeLong( entry.size );
+            out.writeLong( entry.lastModified );
+            out.writeShort( entry.repositories.size() );
+            for ( String repository : entry.repositories )
+            {
+                out.writeUTF( repository );
+            }
+        }
+        out.close();
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap( record ).putInt( 0, record.length - 4 );
+        return record;
+    }
+
+    private void append( String path, Entry entry )
+    {
+        try
+        {
+            log.append( newRecord( path, entry ) );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * An entry of the index.
+     */
+    static final class Entry
+    {
+
+        final long size;
+
+        final long lastModified;
+
+        final Collection<String> repositories;
+
+        public Entry( long size, long lastModified, Collection<String> repositories )
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.repositories = Collections.unmodifiableSet( new HashSet<String>( repositories ) );
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.Collection;
+
+import org.sonatype.aether.impl.RepositoryMetrics;
+import org.sonatype.aether.spi.connector.ArtifactDownload;
+import org.sonatype.aether.spi.connector.ArtifactUpload;
+import org.sonatype.aether.spi.connector.MetadataDownload;
+import org.sonatype.aether.spi.connector.MetadataUpload;
+import org.sonatype.aether.spi.connector.RepositoryConnector;
+
+/**
+ * A repository connector that records the latency of the transfers of another connector.
+ */
+final class MeteredRepositoryConnector
+    implements RepositoryConnector
+{
+
+    private final RepositoryConnector delegate;
+
+    private final RepositoryMetrics metrics;
+
+    public MeteredRepositoryConnector( RepositoryConnector delegate, RepositoryMetrics metrics )
+    {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public void get( Collection<? extends ArtifactDownload> artifactDownloads,
+                     Collection<? extends MetadataDownload> metadataDownloads )
+    {
+        RepositoryMetrics.Timer timer = metrics.start( RepositoryMetrics.CONNECTOR_GET );
+        try
+        {
+            delegate.get( artifactDownloads, metadataDownloads );
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    public void put( Collection<? extends ArtifactUpload> artifactUploads,
+                     Collection<? extends MetadataUpload> metadataUploads )
+    {
+        RepositoryMetrics.Timer timer = metrics.start( RepositoryMetrics.CONNECTOR_PUT );
+        try
+        {
+            delegate.put( artifactUploads, metadataUploads );
+        }
+        finally
+        {
+            timer.stop();
+        }
+    }
+
+    public void close()
+    {
+        delegate.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf( delegate );
+    }
+
+}
@@ -0,0 +1,277 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.sonatype.aether.RepositoryCache;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.spi.log.Logger;
+
+/**
+ * A persistent set of the artifacts known to be absent from a remote repository. Unlike the {@code .lastUpdated} files
+ * of the {@code UpdateCheckManager}, which are written next to each missing artifact file, the set of a repository is
+ * kept in a single file below {@code .index/absent} of the local repository and held in memory as an open-addressing
+ * hash table of 64-bit artifact fingerprints along with the time of the failed lookup. The file is an append-only log
+ * of fixed-size records that is compacted once it has grown well beyond the number of live entries. Evaluating whether
+ * a recorded miss has expired is left to the caller, i.e. the update policy of the repository.
+ */
+class NegativeLookupCache
+    implements AppendOnlyLog.Records
+{
+
+    static final String CACHE_DIR = ".index/absent";
+
+    private static final int MAGIC = 0x4e4c4331;
+
+    private static final int RECORD_SIZE = 16;
+
+    private static final long REMOVED = 0;
+
+    private final AppendOnlyLog log;
+
+    private long[] fingerprints = new long[64];
+
+    private long[] timestamps = new long[64];
+
+    private int used;
+
+    private int size;
+
+    /**
+     * Gets the cache for the specified repository, reusing a previously opened instance from the session cache if
+     * possible.
+     * 
+     * @param session The repository system session, must not be {@code null}.
+     * @param repository The remote repository, must not be {@code null}.
+     * @param logger The logger to use, may be {@code null}.
+     * @return The cache, never {@code null}.
+     */
+    public static NegativeLookupCache get( RepositorySystemSession session, RemoteRepository repository,
+                                           Logger logger )
+    {
+        File basedir = session.getLocalRepository().getBasedir();
+        String name = getName( repository );
+
+        RepositoryCache cache = session.getCache();
+        if ( cache == null )
+        {
+            return new NegativeLookupCache( new File( basedir, CACHE_DIR + '/' + name ), logger );
+        }
+
+        Object key = NegativeLookupCache.class.getName() + '/' + basedir.getAbsolutePath() + '/' + name;
+        synchronized ( cache )
+        {
+            Object value = cache.get( session, key );
+            if ( value instanceof NegativeLookupCache )
+            {
+                return (NegativeLookupCache) value;
+            }
+            NegativeLookupCache absent = new NegativeLookupCache( new File( basedir, CACHE_DIR + '/' + name ), logger );
+            cache.put( session, key, absent );
+            return absent;
+        }
+    }
+
+    static String getName( RemoteRepository repository )
+    {
+        String url = repository.getUrl();
+        if ( !url.endsWith( "/" ) )
+        {
+            url += '/';
+        }
+        SimpleDigest digest = new SimpleDigest();
+        digest.update( repository.getContentType() + '|' + url );
+        return digest.digest() + ".idx";
+    }
+
+    static long getFingerprint( Artifact artifact )
+    {
+        SimpleDigest digest = new SimpleDigest();
+        digest.update( artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getExtension() + ':'
+            + artifact.getClassifier() + ':' + artifact.getVersion() );
+        String hex = digest.digest();
+        long fingerprint = 0;
+        for ( int i = 0, n = Math.min( 16, hex.length() ); i < n; i++ )
+        {
+            fingerprint = ( fingerprint << 4 ) | Character.digit( hex.charAt( i ), 16 );
+        }
+        // zero marks empty slots of the table
+        return ( fingerprint != 0 ) ? fingerprint : 1;
+    }
+
+    public NegativeLookupCache( File file, Logger logger )
+    {
+        this.log = new AppendOnlyLog( file, MAGIC, RECORD_SIZE, "negative lookup cache", logger );
+        log.load( this );
+    }
+
+    File getFile()
+    {
+        return log.getFile();
+    }
+
+    /**
+     * Gets the time of the last failed lookup of the specified artifact.
+     * 
+     * @param artifact The artifact, must not be {@code null}.
+     * @return The timestamp of the recorded miss or {@code 0} if the artifact is not known to be absent.
+     */
+    public synchronized long get( Artifact artifact )
+    {
+        int slot = find( getFingerprint( artifact ) );
+        return ( fingerprints[slot] != 0 ) ? timestamps[slot] : REMOVED;
+    }
+
+    /**
+     * Records the artifact as absent from the repository as of now.
+     * 
+     * @param artifact The missing artifact, must not be {@code null}.
+     */
+    public void add( Artifact artifact )
+    {
+        long fingerprint = getFingerprint( artifact );
+        long timestamp = System.currentTimeMillis();
+        synchronized ( this )
+        {
+            set( fingerprint, timestamp );
+        }
+        append( fingerprint, timestamp );
+    }
+
+    /**
+     * Forgets about a previously recorded miss of the specified artifact, e.g. after it has been found. The removal is
+     * logged even if no miss is known in memory since another process might have recorded one in the meantime.
+     * 
+     * @param artifact The artifact, must not be {@code null}.
+     */
+    public void remove( Artifact artifact )
+    {
+        long fingerprint = getFingerprint( artifact );
+        synchronized ( this )
+        {
+            set( fingerprint, REMOVED );
+        }
+        append( fingerprint, REMOVED );
+    }
+
+    /**
+     * Gets the number of artifacts known to be absent.
+     * 
+     * @return The number of recorded misses.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    private int find( long fingerprint )
+    {
+        int mask = fingerprints.length - 1;
+        int slot = (int) ( fingerprint ^ ( fingerprint >>> 32 ) ) & mask;
+        while ( fingerprints[slot] != 0 && fingerprints[slot] != fingerprint )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Updates the timestamp of the fingerprint. Removed fingerprints keep their slot with a timestamp of zero, so
+     * probing sequences of other fingerprints stay intact.
+     */
+    private boolean set( long fingerprint, long timestamp )
+    {
+        int slot = find( fingerprint );
+        if ( fingerprints[slot] == 0 )
+        {
+            if ( timestamp == REMOVED )
+            {
+                return false;
+            }
+            if ( ( used + 1 ) * 4 > fingerprints.length * 3 )
+            {
+                rehash();
+                slot = find( fingerprint );
+            }
+            fingerprints[slot] = fingerprint;
+            used++;
+        }
+        boolean live = timestamps[slot] != REMOVED;
+        if ( live == ( timestamp != REMOVED ) )
+        {
+            timestamps[slot] = timestamp;
+            return live;
+        }
+        timestamps[slot] = timestamp;
+        size += live ? -1 : 1;
+        return true;
+    }
+
+    private void rehash()
+    {
+        long[] oldFingerprints = fingerprints;
+        long[] oldTimestamps = timestamps;
+        int capacity = 64;
+        while ( capacity < size * 2 + 2 )
+        {
+            capacity <<= 1;
+        }
+        fingerprints = new long[capacity];
+        timestamps = new long[capacity];
+        used = size;
+        for ( int i = 0; i < oldFingerprints.length; i++ )
+        {
+            if ( oldFingerprints[i] != 0 && oldTimestamps[i] != REMOVED )
+            {
+                int slot = find( oldFingerprints[i] );
+                fingerprints[slot] = oldFingerprints[i];
+                timestamps[slot] = oldTimestamps[i];
+            }
+        }
+    }
+
+    public synchronized int read( ByteBuffer buffer )
+    {
+        int records = 0;
+        // an incomplete trailing record, e.g. after a crash, is ignored
+        while ( buffer.remaining() >= RECORD_SIZE )
+        {
+            set( buffer.getLong(), buffer.getLong() );
+            records++;
+        }
+        return records;
+    }
+
+    public synchronized void write( DataOutputStream out )
+        throws IOException
+    {
+        for ( int i = 0; i < fingerprints.length; i++ )
+        {
+            if ( fingerprints[i] != 0 && timestamps[i] != REMOVED )
+            {
+                out.writeLong( fingerprints[i] );
+                out.writeLong( timestamps[i] );
+            }
+        }
+    }
+
+    private void append( long fingerprint, long timestamp )
+    {
+        ByteBuffer record = ByteBuffer.allocate( RECORD_SIZE );
+        record.putLong( fingerprint ).putLong( timestamp );
+        log.append( record.array() );
+    }
+
+}
@@ -9,24 +9,30 @@ package org.sonatype.aether.impl.internal;
  *******************************************************************************/
 
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Pool of immutable object instances, used to avoid excessive memory consumption of (dirty) dependency graph which
- * tends to have many duplicate artifacts/dependencies.
+ * tends to have many duplicate artifacts/dependencies. The pool is safe for concurrent use and does not block readers,
+ * pooled objects are only weakly referenced and purged from the pool once they have been garbage collected.
  * 
  * @author Benjamin Bentmann
  */
 class ObjectPool<T>
 {
 
-    private final Map<Object, Reference<T>> objects = new WeakHashMap<Object, Reference<T>>( 256 );
+    private final ConcurrentMap<Object, WeakKey<T>> objects = new ConcurrentHashMap<Object, WeakKey<T>>( 256 );
 
-    public synchronized T intern( T object )
+    private final ReferenceQueue<T> queue = new ReferenceQueue<T>();
+
+    public T intern( T object )
     {
-        Reference<T> pooledRef = objects.get( object );
+        purge();
+
+        WeakKey<T> pooledRef = objects.get( new LookupKey( object ) );
         if ( pooledRef != null )
         {
             T pooled = pooledRef.get();
@@ -36,8 +42,114 @@ class ObjectPool<T>
             }
         }
 
-        objects.put( object, new WeakReference<T>( object ) );
-        return object;
+        WeakKey<T> ref = new WeakKey<T>( object, queue );
+        while ( true )
+        {
+            pooledRef = objects.putIfAbsent( ref, ref );
+            if ( pooledRef == null )
+            {
+                return object;
+            }
+            T pooled = pooledRef.get();
+            if ( pooled != null )
+            {
+                return pooled;
+            }
+            objects.remove( pooledRef, pooledRef );
+        }
+    }
+
+    private void purge()
+    {
+        for ( Reference<? extends T> ref; ( ref = queue.poll() ) != null; )
+        {
+            objects.remove( ref, ref );
+        }
+    }
+
+    /**
+     * The weak reference to a pooled object, doubling as the map key. A cleared key only equals itself.
+     */
+    static final class WeakKey<T>
+        extends WeakReference<T>
+    {
+
+        private final int hashCode;
+
+        public WeakKey( T object, ReferenceQueue<T> queue )
+        {
+            super( object, queue );
+            hashCode = object.hashCode();
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+            Object object = get();
+            if ( object == null )
+            {
+                return false;
+            }
+            if ( obj instanceof WeakKey<?> )
+            {
+                return object.equals( ( (WeakKey<?>) obj ).get() );
+            }
+            if ( obj instanceof LookupKey )
+            {
+                return object.equals( ( (LookupKey) obj ).object );
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+    }
+
+    /**
+     * A strong, short-lived key used to query the pool without allocating a weak reference.
+     */
+    static final class LookupKey
+    {
+
+        final Object object;
+
+        public LookupKey( Object object )
+        {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+            if ( obj instanceof WeakKey<?> )
+            {
+                return object.equals( ( (WeakKey<?>) obj ).get() );
+            }
+            if ( obj instanceof LookupKey )
+            {
+                return object.equals( ( (LookupKey) obj ).object );
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return object.hashCode();
+        }
+
     }
 
 }
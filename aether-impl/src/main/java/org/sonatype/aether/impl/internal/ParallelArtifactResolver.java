@@ -0,0 +1,333 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.RequestTrace;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.graph.DependencyFilter;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.graph.DependencyVisitor;
+import org.sonatype.aether.impl.ArtifactResolver;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResolutionException;
+import org.sonatype.aether.resolution.ArtifactResult;
+import org.sonatype.aether.util.ConfigUtils;
+import org.sonatype.aether.util.graph.FilteringDependencyVisitor;
+import org.sonatype.aether.util.graph.TreeDependencyVisitor;
+
+/**
+ * Resolves the artifacts of a (collected and transformed) dependency graph in parallel batches. While the graph is
+ * visited, each completed batch of artifact requests is handed to a thread pool such that the local checks of one batch
+ * overlap with the downloads of another. An artifact that is referenced by several nodes is only requested once, the
+ * other nodes receive a copy of its result, so no two threads download into the same local file. Should the artifact
+ * fail to resolve from the repositories of its first node, the nodes with other repositories retry it one after the
+ * other once all batches have completed. The results are reported in the same order as the requests were created, i.e. in the same order as a single
+ * call to {@link ArtifactResolver#resolveArtifacts(RepositorySystemSession, java.util.Collection)} would. Note that
+ * repository and transfer listeners are notified from the threads of the pool.
+ */
+class ParallelArtifactResolver
+{
+
+    static final String CONFIG_PROP_THREADS = "aether.dependencyResolver.threads";
+
+    static final String CONFIG_PROP_BATCH_SIZE = "aether.dependencyResolver.batchSize";
+
+    private final ArtifactResolver artifactResolver;
+
+    private final RepositorySystemSession session;
+
+    private final RequestTrace trace;
+
+    private ArtifactRequestBuilder builder;
+
+    private final int batchSize;
+
+    private final ExecutorService executor;
+
+    private final List<Future<List<ArtifactResult>>> batches = new ArrayList<Future<List<ArtifactResult>>>();
+
+    private final Map<Artifact, ArtifactRequest> primaries = new HashMap<Artifact, ArtifactRequest>();
+
+    private final List<ArtifactRequest> unique = new ArrayList<ArtifactRequest>();
+
+    private int visited;
+
+    private int submitted;
+
+    /**
+     * Determines whether parallel artifact resolution has been enabled for the specified session.
+     * 
+     * @param session The repository system session, must not be {@code null}.
+     * @return {@code true} if artifact resolution should use multiple threads, {@code false} otherwise.
+     */
+    public static boolean isEnabled( RepositorySystemSession session )
+    {
+        return ConfigUtils.getInteger( session, 1, CONFIG_PROP_THREADS ) > 1;
+    }
+
+    public ParallelArtifactResolver( ArtifactResolver artifactResolver, RepositorySystemSession session,
+                                      RequestTrace trace )
+    {
+        this.artifactResolver = artifactResolver;
+        this.session = session;
+        this.trace = trace;
+
+        int threads = ConfigUtils.getInteger( session, 1, CONFIG_PROP_THREADS );
+        batchSize = Math.max( 1, ConfigUtils.getInteger( session, 16, CONFIG_PROP_BATCH_SIZE ) );
+        executor =
+            new ThreadPoolExecutor( threads, threads, 3, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>() );
+    }
+
+    /**
+     * Resolves the artifacts of the specified dependency graph.
+     * 
+     * @param root The root node of the dependency graph, must not be {@code null}.
+     * @param filter The filter to select the nodes whose artifacts should be resolved, may be {@code null}.
+     * @return The artifact results in the order of the artifact requests, never {@code null}.
+     * @throws ArtifactResolutionException If any artifact could not be resolved.
+     */
+    public List<ArtifactResult> resolve( DependencyNode root, DependencyFilter filter )
+        throws ArtifactResolutionException
+    {
+        builder = new ArtifactRequestBuilder( trace );
+        DependencyVisitor visitor = new DependencyVisitor()
+        {
+            public boolean visitEnter( DependencyNode node )
+            {
+                boolean result = builder.visitEnter( node );
+                dedupe();
+                if ( unique.size() - submitted >= batchSize )
+                {
+                    submit();
+                }
+                return result;
+            }
+
+            public boolean visitLeave( DependencyNode node )
+            {
+                return builder.visitLeave( node );
+            }
+        };
+        visitor = ( filter != null ) ? new FilteringDependencyVisitor( visitor, filter ) : visitor;
+        visitor = new TreeDependencyVisitor( visitor );
+
+        try
+        {
+            root.accept( visitor );
+
+            if ( unique.size() > submitted )
+            {
+                submit();
+            }
+
+            return getResults();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void dedupe()
+    {
+        List<ArtifactRequest> requests = builder.getRequests();
+        for ( ; visited < requests.size(); visited++ )
+        {
+            ArtifactRequest request = requests.get( visited );
+            if ( !primaries.containsKey( request.getArtifact() ) )
+            {
+                primaries.put( request.getArtifact(), request );
+                unique.add( request );
+            }
+        }
+    }
+
+    private ArtifactRequest getPrimary( ArtifactRequest request )
+    {
+        return primaries.get( request.getArtifact() );
+    }
+
+    private void submit()
+    {
+        final List<ArtifactRequest> batch = new ArrayList<ArtifactRequest>( unique.subList( submitted, unique.size() ) );
+        submitted = unique.size();
+
+        batches.add( executor.submit( new Callable<List<ArtifactResult>>()
+        {
+            public List<ArtifactResult> call()
+            {
+                try
+                {
+                    return artifactResolver.resolveArtifacts( session, batch );
+                }
+                catch ( ArtifactResolutionException e )
+                {
+                    throw new BatchFailure( e );
+                }
+            }
+        } ) );
+    }
+
+    private List<ArtifactResult> getResults()
+        throws ArtifactResolutionException
+    {
+        Map<ArtifactRequest, ArtifactResult> primaryResults = new IdentityHashMap<ArtifactRequest, ArtifactResult>();
+        boolean failures = false;
+        boolean interrupted = false;
+
+        for ( Future<List<ArtifactResult>> batch : batches )
+        {
+            List<ArtifactResult> batchResults;
+            while ( true )
+            {
+                try
+                {
+                    batchResults = batch.get();
+                    break;
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+                catch ( ExecutionException e )
+                {
+                    Throwable cause = e.getCause();
+                    if ( cause instanceof BatchFailure )
+                    {
+                        failures = true;
+                        batchResults = ( (BatchFailure) cause ).exception.getResults();
+                        break;
+                    }
+                    else if ( cause instanceof RuntimeException )
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    else if ( cause instanceof Error )
+                    {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException( cause );
+                }
+            }
+            for ( ArtifactResult result : batchResults )
+            {
+                primaryResults.put( result.getRequest(), result );
+            }
+        }
+
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        List<ArtifactRequest> requests = builder.getRequests();
+        List<ArtifactResult> results = new ArrayList<ArtifactResult>( requests.size() );
+        List<ArtifactRequest> retries = new ArrayList<ArtifactRequest>();
+        for ( ArtifactRequest request : requests )
+        {
+            ArtifactResult result = primaryResults.get( request );
+            if ( result == null )
+            {
+                ArtifactRequest primary = getPrimary( request );
+                result = primaryResults.get( primary );
+                if ( !result.isResolved() && !primary.getRepositories().equals( request.getRepositories() ) )
+                {
+                    retries.add( request );
+                }
+                result = copy( result, request );
+            }
+            results.add( result );
+        }
+
+        if ( !retries.isEmpty() )
+        {
+            retry( retries, results );
+        }
+
+        if ( failures )
+        {
+            throw new ArtifactResolutionException( results );
+        }
+
+        return results;
+    }
+
+    /**
+     * Resolves the specified requests in the calling thread, one after the other, and substitutes their results.
+     */
+    private void retry( List<ArtifactRequest> retries, List<ArtifactResult> results )
+    {
+        Map<ArtifactRequest, ArtifactResult> retryResults = new IdentityHashMap<ArtifactRequest, ArtifactResult>();
+        for ( ArtifactRequest request : retries )
+        {
+            ArtifactResult result;
+            try
+            {
+                result = artifactResolver.resolveArtifact( session, request );
+            }
+            catch ( ArtifactResolutionException e )
+            {
+                result = e.getResults().get( 0 );
+            }
+            retryResults.put( request, result );
+        }
+
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            ArtifactResult result = retryResults.get( results.get( i ).getRequest() );
+            if ( result != null )
+            {
+                results.set( i, result );
+            }
+        }
+    }
+
+    private static ArtifactResult copy( ArtifactResult primary, ArtifactRequest request )
+    {
+        ArtifactResult result = new ArtifactResult( request );
+        result.setArtifact( primary.getArtifact() );
+        result.setRepository( primary.getRepository() );
+        for ( Exception e : primary.getExceptions() )
+        {
+            result.addException( e );
+        }
+        return result;
+    }
+
+    static class BatchFailure
+        extends RuntimeException
+    {
+
+        private static final long serialVersionUID = 1;
+
+        final ArtifactResolutionException exception;
+
+        public BatchFailure( ArtifactResolutionException exception )
+        {
+            super( exception );
+            this.exception = exception;
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.List;
+
+import org.sonatype.aether.repository.Authentication;
+import org.sonatype.aether.repository.Proxy;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+
+/**
+ * An immutable snapshot of a {@link RemoteRepository} with a precomputed hash code. The remote repository itself is
+ * mutable and deeply compares its policies, proxy, authentication and mirrored repositories on every call to
+ * {@link Object#equals(Object)} or {@link Object#hashCode()}. Keys are meant to be interned (see
+ * {@link DataPool#toKeys(List)}), such that comparing lists of keys mostly reduces to identity checks.
+ */
+final class RepositoryKey
+{
+
+    static final RepositoryKey[] EMPTY = {};
+
+    final String id;
+
+    final String type;
+
+    final String url;
+
+    final RepositoryPolicy releasePolicy;
+
+    final RepositoryPolicy snapshotPolicy;
+
+    final Proxy proxy;
+
+    final Authentication authentication;
+
+    final RepositoryKey[] mirroredRepositories;
+
+    final boolean repositoryManager;
+
+    private final int hashCode;
+
+    public RepositoryKey( RemoteRepository repository, RepositoryKey[] mirroredRepositories )
+    {
+        id = repository.getId();
+        type = repository.getContentType();
+        url = repository.getUrl();
+        releasePolicy = repository.getPolicy( false );
+        snapshotPolicy = repository.getPolicy( true );
+        proxy = repository.getProxy();
+        authentication = repository.getAuthentication();
+        repositoryManager = repository.isRepositoryManager();
+        this.mirroredRepositories = mirroredRepositories;
+
+        int hash = 17;
+        hash = hash * 31 + hash( url );
+        hash = hash * 31 + hash( type );
+        hash = hash * 31 + hash( id );
+        hash = hash * 31 + hash( releasePolicy );
+        hash = hash * 31 + hash( snapshotPolicy );
+        hash = hash * 31 + hash( proxy );
+        hash = hash * 31 + hash( authentication );
+        hash = hash * 31 + hash( mirroredRepositories );
+        hash = hash * 31 + ( repositoryManager ? 1 : 0 );
+        hashCode = hash;
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( obj == this )
+        {
+            return true;
+        }
+        else if ( !( obj instanceof RepositoryKey ) )
+        {
+            return false;
+        }
+        RepositoryKey that = (RepositoryKey) obj;
+        return hashCode == that.hashCode && eq( url, that.url ) && eq( type, that.type ) && eq( id, that.id )
+            && eq( releasePolicy, that.releasePolicy ) && eq( snapshotPolicy, that.snapshotPolicy )
+            && eq( proxy, that.proxy ) && eq( authentication, that.authentication )
+            && equals( mirroredRepositories, that.mirroredRepositories ) && repositoryManager == that.repositoryManager;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return id + " (" + url + ", " + type + ")";
+    }
+
+    /**
+     * Compares the specified key arrays element-wise, using identity checks before falling back to equality.
+     */
+    static boolean equals( RepositoryKey[] keys1, RepositoryKey[] keys2 )
+    {
+        if ( keys1 == keys2 )
+        {
+            return true;
+        }
+        if ( keys1.length != keys2.length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < keys1.length; i++ )
+        {
+            if ( keys1[i] != keys2[i] && !keys1[i].equals( keys2[i] ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int hash( RepositoryKey[] keys )
+    {
+        int hash = 1;
+        for ( RepositoryKey key : keys )
+        {
+            hash = hash * 31 + key.hashCode;
+        }
+        return hash;
+    }
+
+    private static <T> boolean eq( T s1, T s2 )
+    {
+        return s1 != null ? s1.equals( s2 ) : s2 == null;
+    }
+
+    private static int hash( Object obj )
+    {
+        return obj != null ? obj.hashCode() : 0;
+    }
+
+}
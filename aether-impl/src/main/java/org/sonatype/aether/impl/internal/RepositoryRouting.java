@@ -0,0 +1,374 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.sonatype.aether.RepositoryCache;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.spi.log.Logger;
+
+/**
+ * A routing table that learns which remote repositories serve the artifacts of which groups. For each group id and its
+ * parent prefixes (down to two segments like {@code org.apache}), the table counts the successful downloads (hits) and
+ * the not-found responses (misses) per repository URL. Given the repositories of a request, the routing prefers those
+ * repositories that are known to serve the group with data and demotes those that have only ever missed for it.
+ * Repositories are never dropped from the route, so a wrong guess merely costs an extra request. By default, only the
+ * counters of the exact group id are considered: were a repository preferred because it served another group with the
+ * same prefix, it could take precedence over the declared order for groups it should not serve, inviting dependency
+ * confusion. Routing by prefix needs to be requested explicitly. The table is persisted in the file
+ * {@code .index/routing.properties} of the local repository, concurrent updates from other processes are merged.
+ */
+class RepositoryRouting
+{
+
+    static final String ROUTING_FILE = ".index/routing.properties";
+
+    /**
+     * The minimum number of misses before a repository without hits is demoted.
+     */
+    static final int DEMOTION_THRESHOLD = 3;
+
+    /**
+     * The number of observations after which the counters of an entry are halved, so the table keeps adapting.
+     */
+    static final int MAX_COUNT = 1000;
+
+    private final File file;
+
+    private final TrackingFileManager fileManager;
+
+    private final Map<String, int[]> counters = new HashMap<String, int[]>();
+
+    private final Map<String, int[]> updates = new HashMap<String, int[]>();
+
+    RepositoryRouting( File file, Logger logger )
+    {
+        this.file = file;
+        this.fileManager = new TrackingFileManager().setLogger( logger );
+
+        Properties props = fileManager.read( file );
+        if ( props != null )
+        {
+            for ( Map.Entry<Object, Object> entry : props.entrySet() )
+            {
+                int[] counter = parse( entry.getValue().toString() );
+                if ( counter != null )
+                {
+                    counters.put( entry.getKey().toString(), counter );
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the routing table for the local repository of the specified session. The table is shared via the session's
+     * cache if available.
+     *
+     * @param session The repository system session, must not be {@code null}.
+     * @param logger The logger to use, may be {@code null}.
+     * @return The routing table, never {@code null}.
+     */
+    public static RepositoryRouting get( RepositorySystemSession session, Logger logger )
+    {
+        File file = new File( session.getLocalRepository().getBasedir(), ROUTING_FILE );
+
+        RepositoryCache cache = session.getCache();
+        if ( cache == null )
+        {
+            return new RepositoryRouting( file, logger );
+        }
+
+        Object key = RepositoryRouting.class.getName() + '/' + file.getAbsolutePath();
+        synchronized ( cache )
+        {
+            Object value = cache.get( session, key );
+            if ( value instanceof RepositoryRouting )
+            {
+                return (RepositoryRouting) value;
+            }
+            RepositoryRouting routing = new RepositoryRouting( file, logger );
+            cache.put( session, key, routing );
+            return routing;
+        }
+    }
+
+    /**
+     * Determines the route for an artifact of the specified group.
+     *
+     * @param groupId The group id of the artifact, must not be {@code null}.
+     * @param repositories The repositories to route across in their declared order, must not be {@code null}.
+     * @param prefixes {@code true} to fall back to the counters of the parent prefixes of the group id if the group id
+     *            itself is unknown, {@code false} to only consider the exact group id.
+     * @return The route, never {@code null}.
+     */
+    public synchronized Route route( String groupId, List<RemoteRepository> repositories, boolean prefixes )
+    {
+        List<String> keys = prefixes ? getPrefixes( groupId ) : Collections.singletonList( groupId );
+        for ( String prefix : keys )
+        {
+            final Map<RemoteRepository, int[]> known = new HashMap<RemoteRepository, int[]>();
+            for ( RemoteRepository repository : repositories )
+            {
+                int[] counter = counters.get( getKey( prefix, repository ) );
+                if ( counter != null )
+                {
+                    known.put( repository, counter );
+                }
+            }
+            if ( known.isEmpty() )
+            {
+                continue;
+            }
+
+            List<RemoteRepository> preferred = new ArrayList<RemoteRepository>();
+            List<RemoteRepository> fallback = new ArrayList<RemoteRepository>();
+            List<RemoteRepository> demoted = new ArrayList<RemoteRepository>();
+            for ( RemoteRepository repository : repositories )
+            {
+                int[] counter = known.get( repository );
+                if ( counter == null )
+                {
+                    fallback.add( repository );
+                }
+                else if ( counter[0] > 0 )
+                {
+                    preferred.add( repository );
+                }
+                else if ( counter[1] >= DEMOTION_THRESHOLD )
+                {
+                    demoted.add( repository );
+                }
+                else
+                {
+                    fallback.add( repository );
+                }
+            }
+
+            Collections.sort( preferred, new Comparator<RemoteRepository>()
+            {
+                public int compare( RemoteRepository o1, RemoteRepository o2 )
+                {
+                    int[] c1 = known.get( o1 );
+                    int[] c2 = known.get( o2 );
+                    long diff = (long) c2[0] * ( c1[0] + c1[1] ) - (long) c1[0] * ( c2[0] + c2[1] );
+                    return ( diff < 0 ) ? -1 : ( ( diff > 0 ) ? 1 : 0 );
+                }
+            } );
+
+            fallback.addAll( demoted );
+
+            return new Route( preferred, fallback );
+        }
+
+        return new Route( Collections.<RemoteRepository> emptyList(), repositories );
+    }
+
+    /**
+     * Records that the specified repository served an artifact of the given group.
+     *
+     * @param groupId The group id of the artifact, must not be {@code null}.
+     * @param repository The repository that served the artifact, must not be {@code null}.
+     */
+    public void hit( String groupId, RemoteRepository repository )
+    {
+        record( groupId, repository, 0 );
+    }
+
+    /**
+     * Records that the specified repository does not contain an artifact of the given group.
+     *
+     * @param groupId The group id of the artifact, must not be {@code null}.
+     * @param repository The repository that lacks the artifact, must not be {@code null}.
+     */
+    public void miss( String groupId, RemoteRepository repository )
+    {
+        record( groupId, repository, 1 );
+    }
+
+    private synchronized void record( String groupId, RemoteRepository repository, int index )
+    {
+        for ( String prefix : getPrefixes( groupId ) )
+        {
+            String key = getKey( prefix, repository );
+            int[] counter = counters.get( key );
+            if ( counter == null )
+            {
+                counter = new int[2];
+                counters.put( key, counter );
+            }
+            counter[index]++;
+            decay( counter );
+
+            int[] delta = updates.get( key );
+            if ( delta == null )
+            {
+                delta = new int[2];
+                updates.put( key, delta );
+            }
+            delta[index]++;
+        }
+    }
+
+    private static void decay( int[] counter )
+    {
+        while ( counter[0] + counter[1] > MAX_COUNT )
+        {
+            counter[0] = ( counter[0] + 1 ) / 2;
+            counter[1] = ( counter[1] + 1 ) / 2;
+        }
+    }
+
+    /**
+     * Adds the observations recorded since the last flush to the counters in the routing file. The counters are merged
+     * with the current contents of the file while holding its lock, so observations of other processes are preserved
+     * and picked up by this table.
+     */
+    public void flush()
+    {
+        final Map<String, int[]> pending;
+        synchronized ( this )
+        {
+            if ( updates.isEmpty() )
+            {
+                return;
+            }
+            pending = new HashMap<String, int[]>( updates );
+            updates.clear();
+        }
+
+        Properties props = fileManager.update( file, new TrackingFileManager.Updater()
+        {
+            public void update( Properties props )
+            {
+                for ( Map.Entry<String, int[]> entry : pending.entrySet() )
+                {
+                    String value = props.getProperty( entry.getKey() );
+                    int[] counter = ( value != null ) ? parse( value ) : null;
+                    if ( counter == null )
+                    {
+                        counter = new int[2];
+                    }
+                    counter[0] += entry.getValue()[0];
+                    counter[1] += entry.getValue()[1];
+                    decay( counter );
+                    props.setProperty( entry.getKey(), counter[0] + "," + counter[1] );
+                }
+            }
+        } );
+
+        synchronized ( this )
+        {
+            for ( Map.Entry<Object, Object> entry : props.entrySet() )
+            {
+                int[] counter = parse( entry.getValue().toString() );
+                if ( counter == null )
+                {
+                    continue;
+                }
+                // observations recorded during the flush are still to be written
+                int[] delta = updates.get( entry.getKey() );
+                if ( delta != null )
+                {
+                    counter[0] += delta[0];
+                    counter[1] += delta[1];
+                    decay( counter );
+                }
+                counters.put( entry.getKey().toString(), counter );
+            }
+        }
+    }
+
+    /**
+     * Gets the group id and its parent prefixes with at least two segments, starting with the most specific one.
+     */
+    static List<String> getPrefixes( String groupId )
+    {
+        List<String> prefixes = new ArrayList<String>( 4 );
+        for ( String prefix = groupId;; )
+        {
+            prefixes.add( prefix );
+            int dot = prefix.lastIndexOf( '.' );
+            if ( dot <= 0 || prefix.indexOf( '.' ) == dot )
+            {
+                break;
+            }
+            prefix = prefix.substring( 0, dot );
+        }
+        return prefixes;
+    }
+
+    private static String getKey( String prefix, RemoteRepository repository )
+    {
+        String url = repository.getUrl();
+        if ( !url.endsWith( "/" ) )
+        {
+            url += '/';
+        }
+        return prefix + '>' + url;
+    }
+
+    private static int[] parse( String value )
+    {
+        int comma = value.indexOf( ',' );
+        if ( comma < 0 )
+        {
+            return null;
+        }
+        try
+        {
+            int hits = Integer.parseInt( value.substring( 0, comma ).trim() );
+            int misses = Integer.parseInt( value.substring( comma + 1 ).trim() );
+            if ( hits < 0 || misses < 0 )
+            {
+                return null;
+            }
+            return new int[] { hits, misses };
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * The order in which the repositories should be tried for an artifact.
+     */
+    static final class Route
+    {
+
+        /**
+         * The repositories known to serve the group of the artifact, best first. These should be tried before all
+         * other repositories.
+         */
+        final List<RemoteRepository> preferred;
+
+        /**
+         * The remaining repositories in their declared order, followed by the repositories that are known to lack the
+         * group.
+         */
+        final List<RemoteRepository> fallback;
+
+        Route( List<RemoteRepository> preferred, List<RemoteRepository> fallback )
+        {
+            this.preferred = preferred;
+            this.fallback = fallback;
+        }
+
+    }
+
+}
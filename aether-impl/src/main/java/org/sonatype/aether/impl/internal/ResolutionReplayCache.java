@@ -0,0 +1,1195 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.RequestTrace;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.collection.CollectRequest;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.graph.Exclusion;
+import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.UpdateCheckManager;
+import org.sonatype.aether.metadata.Metadata;
+import org.sonatype.aether.repository.ArtifactRepository;
+import org.sonatype.aether.repository.LocalRepository;
+import org.sonatype.aether.repository.LocalRepositoryManager;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResult;
+import org.sonatype.aether.resolution.DependencyRequest;
+import org.sonatype.aether.resolution.DependencyResult;
+import org.sonatype.aether.spi.log.Logger;
+import org.sonatype.aether.util.ConfigUtils;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+import org.sonatype.aether.util.metadata.DefaultMetadata;
+import org.sonatype.aether.util.version.GenericVersionScheme;
+import org.sonatype.aether.version.InvalidVersionSpecificationException;
+import org.sonatype.aether.version.Version;
+import org.sonatype.aether.version.VersionConstraint;
+import org.sonatype.aether.version.VersionScheme;
+
+/**
+ * Replays the result of a previous dependency resolution for an identical request. The request is condensed into a
+ * fingerprint covering the collect request, the dependency filter, the graph-related components of the session, its
+ * mirror, proxy and authentication selectors and the session properties. Sessions with a workspace reader are never
+ * replayed since the artifacts of the workspace are beyond the control of the cache. For each successful resolution,
+ * the resolved graph and artifact results are stored in a compressed replay file named after the fingerprint within
+ * the directory {@code .replay} of the local repository,
+ * along with the timestamps of the artifact files, artifact descriptors and version metadata involved. A replay file
+ * is only used as long as none of these files has changed and, for graphs with version ranges or snapshots, as long as
+ * the update policies of the involved repositories do not call for an update check, just like the
+ * {@link CachingVersionRangeResolver} does.
+ * <p>
+ * The components of the session are fingerprinted by their structure, i.e. their class and the values of their fields,
+ * so equivalent components yield the same fingerprint across JVM runs. Components whose structure cannot be captured,
+ * e.g. instances of anonymous classes that refer to their enclosing instance, disable the replay. The custom data of
+ * the dependency nodes is not preserved. The versions of the graph are restored using the
+ * {@link GenericVersionScheme}, graphs using other version schemes are not stored.
+ */
+class ResolutionReplayCache
+{
+
+    static final String CONFIG_PROP_ENABLED = "aether.dependencyResolver.replay";
+
+    static final String CONFIG_PROP_VERIFY = "aether.dependencyResolver.replay.verify";
+
+    static final String REPLAY_DIR = ".replay";
+
+    private static final int MAGIC = 0x52504c59;
+
+    private static final int FORMAT = 1;
+
+    private static final Random RANDOM = new Random();
+
+    private final RepositorySystemSession session;
+
+    private final RemoteRepositoryManager remoteRepositoryManager;
+
+    private final UpdateCheckManager updateCheckManager;
+
+    private final Logger logger;
+
+    private final VersionScheme versionScheme = new GenericVersionScheme();
+
+    private final String fingerprint;
+
+    /**
+     * Determines whether resolution replay has been enabled for the specified session.
+     * 
+     * @param session The repository system session, must not be {@code null}.
+     * @return {@code true} if dependency resolution results should be replayed, {@code false} otherwise.
+     */
+    public static boolean isEnabled( RepositorySystemSession session )
+    {
+        return ConfigUtils.getBoolean( session, false, CONFIG_PROP_ENABLED );
+    }
+
+    /**
+     * Creates a replay cache for the specified request.
+     * 
+     * @param session The repository system session, must not be {@code null}.
+     * @param request The dependency request, must not be {@code null}.
+     * @param remoteRepositoryManager The manager used to determine the update policies of repositories, may be
+     *            {@code null} in which case graphs with version ranges or snapshots are never replayed.
+     * @param updateCheckManager The manager used to evaluate update policies, may be {@code null} in which case graphs
+     *            with version ranges or snapshots are never replayed.
+     * @param logger The logger to use, must not be {@code null}.
+     */
+    public ResolutionReplayCache( RepositorySystemSession session, DependencyRequest request,
+                                  RemoteRepositoryManager remoteRepositoryManager,
+                                  UpdateCheckManager updateCheckManager, Logger logger )
+    {
+        this.session = session;
+        this.remoteRepositoryManager = remoteRepositoryManager;
+        this.updateCheckManager = updateCheckManager;
+        this.logger = logger;
+        this.fingerprint = fingerprint( request );
+    }
+
+    /**
+     * Gets the fingerprint of the dependency request.
+     * 
+     * @return The fingerprint or {@code null} if the request cannot be replayed.
+     */
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    File getReplayFile()
+    {
+        return new File( session.getLocalRepository().getBasedir(), REPLAY_DIR + '/' + fingerprint );
+    }
+
+    /**
+     * Determines whether the result of a replay should be cross-checked against a fresh resolution. The configuration
+     * property {@link #CONFIG_PROP_VERIFY} specifies the percentage of replays to verify.
+     * 
+     * @return {@code true} if the replayed result should be verified, {@code false} otherwise.
+     */
+    public boolean isVerificationDue()
+    {
+        int percentage = ConfigUtils.getInteger( session, 0, CONFIG_PROP_VERIFY );
+        return percentage > 0 && ( percentage >= 100 || RANDOM.nextInt( 100 ) < percentage );
+    }
+
+    private String fingerprint( DependencyRequest request )
+    {
+        CollectRequest collectRequest = request.getCollectRequest();
+        if ( request.getRoot() != null || collectRequest == null )
+        {
+            return null;
+        }
+        if ( session.getWorkspaceReader() != null )
+        {
+            logger.debug( "Not replaying resolution of " + collectRequest.getRoot() + " due to workspace reader" );
+            return null;
+        }
+
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            return null;
+        }
+
+        try
+        {
+            DataOutputStream out = new DataOutputStream( new DigestOutputStream( new NullOutputStream(), digest ) );
+            Writer writer = new Writer( out );
+
+            writer.writeDependency( collectRequest.getRoot() );
+            writer.writeDependencies( collectRequest.getDependencies() );
+            writer.writeDependencies( collectRequest.getManagedDependencies() );
+            writer.writeRepositories( collectRequest.getRepositories() );
+            writer.writeString( collectRequest.getRequestContext() );
+
+            StructureWriter structure = new StructureWriter();
+            structure.write( out, request.getFilter() );
+            structure.write( out, session.getDependencySelector() );
+            structure.write( out, session.getDependencyManager() );
+            structure.write( out, session.getDependencyTraverser() );
+            structure.write( out, session.getDependencyGraphTransformer() );
+            structure.write( out, session.getArtifactTypeRegistry() );
+            structure.write( out, session.getMirrorSelector() );
+            structure.write( out, session.getProxySelector() );
+            structure.write( out, session.getAuthenticationSelector() );
+            out.writeBoolean( session.isOffline() );
+            writer.writeString( session.getLocalRepository().getBasedir().getAbsolutePath() );
+            writer.writeMap( session.getSystemProperties() );
+            writer.writeMap( session.getUserProperties() );
+            writer.writeMap( session.getConfigProperties() );
+
+            out.flush();
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Not replaying resolution of " + collectRequest.getRoot() + ": " + e.getMessage() );
+            return null;
+        }
+
+        StringBuilder buffer = new StringBuilder( 40 );
+        for ( byte b : digest.digest() )
+        {
+            buffer.append( Character.forDigit( ( b >> 4 ) & 0x0F, 16 ) );
+            buffer.append( Character.forDigit( b & 0x0F, 16 ) );
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Loads the replay of the request, provided none of the files involved in the stored resolution has changed.
+     * 
+     * @param request The dependency request being processed, must not be {@code null}.
+     * @param trace The trace information for the artifact requests, may be {@code null}.
+     * @return The replayed result or {@code null} if no valid replay is available.
+     */
+    public DependencyResult load( DependencyRequest request, RequestTrace trace )
+    {
+        if ( fingerprint == null )
+        {
+            return null;
+        }
+
+        File file = getReplayFile();
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+
+        try
+        {
+            DataInputStream in =
+                new DataInputStream( new BufferedInputStream( new GZIPInputStream( new FileInputStream( file ) ) ) );
+            DependencyResult result;
+            try
+            {
+                result = new Reader( in ).readResult( request, trace );
+            }
+            finally
+            {
+                close( in );
+            }
+            if ( result != null && !isUpToDate( result.getRoot(), file.lastModified(),
+                                                new IdentityHashMap<DependencyNode, Object>() ) )
+            {
+                return null;
+            }
+            return result;
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to read resolution replay " + file + ": " + e.getMessage(), e );
+            return null;
+        }
+        catch ( InvalidVersionSpecificationException e )
+        {
+            logger.debug( "Failed to read resolution replay " + file + ": " + e.getMessage(), e );
+            return null;
+        }
+    }
+
+    /**
+     * Determines whether the version ranges and snapshots of the specified graph are still current according to the
+     * update policies of their repositories.
+     */
+    private boolean isUpToDate( DependencyNode node, long timestamp, Map<DependencyNode, Object> visited )
+    {
+        if ( visited.put( node, Boolean.TRUE ) != null )
+        {
+            return true;
+        }
+
+        VersionConstraint constraint = node.getVersionConstraint();
+        boolean range = constraint != null && !constraint.getRanges().isEmpty();
+        Dependency dependency = node.getDependency();
+        boolean snapshot = dependency != null && dependency.getArtifact().isSnapshot();
+
+        if ( range || snapshot )
+        {
+            if ( remoteRepositoryManager == null || updateCheckManager == null )
+            {
+                return false;
+            }
+            for ( RemoteRepository repository : node.getRepositories() )
+            {
+                RepositoryPolicy policy = remoteRepositoryManager.getPolicy( session, repository, range, true );
+                if ( policy.isEnabled()
+                    && updateCheckManager.isUpdatedRequired( session, timestamp, policy.getUpdatePolicy() ) )
+                {
+                    logger.debug( "Discarding resolution replay " + fingerprint + " due to update policy of "
+                        + repository );
+                    return false;
+                }
+            }
+        }
+
+        for ( DependencyNode child : node.getChildren() )
+        {
+            if ( !isUpToDate( child, timestamp, visited ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stores the specified result for future replays. Results whose graph cannot be restored are silently skipped.
+     * 
+     * @param result The successful result of the dependency resolution, must not be {@code null}.
+     */
+    public void store( DependencyResult result )
+    {
+        if ( fingerprint == null )
+        {
+            return;
+        }
+
+        byte[] bytes;
+        try
+        {
+            bytes = serialize( result );
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Not storing resolution replay for " + result.getRoot() + ": " + e.getMessage() );
+            return;
+        }
+
+        File file = getReplayFile();
+        file.getParentFile().mkdirs();
+
+        try
+        {
+            File tmp = File.createTempFile( fingerprint, ".tmp", file.getParentFile() );
+            try
+            {
+                OutputStream out = new FileOutputStream( tmp );
+                try
+                {
+                    out.write( bytes );
+                }
+                finally
+                {
+                    close( out );
+                }
+
+                if ( !tmp.renameTo( file ) )
+                {
+                    file.delete();
+                    if ( !tmp.renameTo( file ) )
+                    {
+                        throw new IOException( "Could not move " + tmp + " to " + file );
+                    }
+                }
+            }
+            finally
+            {
+                tmp.delete();
+            }
+        }
+        catch ( IOException e )
+        {
+            logger.debug( "Failed to write resolution replay " + file + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Determines whether the specified results describe the same graph and artifacts.
+     * 
+     * @param result1 The first result, must not be {@code null}.
+     * @param result2 The second result, must not be {@code null}.
+     * @return {@code true} if both results are equivalent, {@code false} otherwise.
+     */
+    public boolean matches( DependencyResult result1, DependencyResult result2 )
+    {
+        try
+        {
+            return Arrays.equals( serialize( result1 ), serialize( result2 ) );
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    private byte[] serialize( DependencyResult result )
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 1024 * 16 );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new GZIPOutputStream( bytes ) ) );
+        Writer writer = new Writer( out );
+
+        out.writeInt( MAGIC );
+        out.writeInt( FORMAT );
+
+        Collection<File> files = getInvolvedFiles( result );
+        out.writeInt( files.size() );
+        for ( File file : files )
+        {
+            out.writeUTF( file.getAbsolutePath() );
+            out.writeLong( file.length() );
+            out.writeLong( file.lastModified() );
+        }
+
+        writer.writeNode( result.getRoot() );
+
+        List<ArtifactResult> artifactResults = result.getArtifactResults();
+        out.writeInt( artifactResults.size() );
+        for ( ArtifactResult artifactResult : artifactResults )
+        {
+            writer.writeNodeId( artifactResult.getRequest().getDependencyNode() );
+            ArtifactRepository repository = artifactResult.getRepository();
+            if ( repository instanceof RemoteRepository )
+            {
+                out.writeByte( 2 );
+                writer.writeRepository( (RemoteRepository) repository );
+            }
+            else if ( repository instanceof LocalRepository )
+            {
+                out.writeByte( 1 );
+            }
+            else if ( repository == null )
+            {
+                out.writeByte( 0 );
+            }
+            else
+            {
+                throw new IOException( "Unsupported repository " + repository );
+            }
+        }
+
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private Collection<File> getInvolvedFiles( DependencyResult result )
+    {
+        LocalRepositoryManager lrm = session.getLocalRepositoryManager();
+        File basedir = lrm.getRepository().getBasedir();
+
+        Collection<File> files = new LinkedHashSet<File>();
+        for ( ArtifactResult artifactResult : result.getArtifactResults() )
+        {
+            Artifact artifact = artifactResult.getArtifact();
+            if ( artifact != null && artifact.getFile() != null )
+            {
+                files.add( artifact.getFile() );
+            }
+
+            DependencyNode node = artifactResult.getRequest().getDependencyNode();
+            if ( artifact == null || node == null )
+            {
+                continue;
+            }
+
+            Artifact pom =
+                new DefaultArtifact( artifact.getGroupId(), artifact.getArtifactId(), "", "pom",
+                                     artifact.getVersion() );
+            files.add( new File( basedir, lrm.getPathForLocalArtifact( pom ) ) );
+
+            List<Metadata> metadatas = new ArrayList<Metadata>( 2 );
+            VersionConstraint constraint = node.getVersionConstraint();
+            if ( constraint != null && !constraint.getRanges().isEmpty() )
+            {
+                metadatas.add( new DefaultMetadata( artifact.getGroupId(), artifact.getArtifactId(),
+                                                    CachingVersionRangeResolver.METADATA_TYPE,
+                                                    Metadata.Nature.RELEASE_OR_SNAPSHOT ) );
+            }
+            if ( artifact.isSnapshot() )
+            {
+                metadatas.add( new DefaultMetadata( artifact.getGroupId(), artifact.getArtifactId(),
+                                                    artifact.getBaseVersion(),
+                                                    CachingVersionRangeResolver.METADATA_TYPE,
+                                                    Metadata.Nature.SNAPSHOT ) );
+            }
+            for ( Metadata metadata : metadatas )
+            {
+                files.add( new File( basedir, lrm.getPathForLocalMetadata( metadata ) ) );
+                for ( RemoteRepository repository : node.getRepositories() )
+                {
+                    String path = lrm.getPathForRemoteMetadata( metadata, repository, node.getRequestContext() );
+                    files.add( new File( basedir, path ) );
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void close( Closeable closeable )
+    {
+        try
+        {
+            closeable.close();
+        }
+        catch ( IOException e )
+        {
+            // irrelevant
+        }
+    }
+
+    /**
+     * Writes the structure of an object graph, i.e. the classes of the objects and the values of their fields, such
+     * that equivalent graphs yield the same bytes in any JVM. Graphs that cannot be captured are rejected with an
+     * {@link IOException}.
+     */
+    static final class StructureWriter
+    {
+
+        private static final int MAX_OBJECTS = 10000;
+
+        private final Map<Object, Object> stack = new IdentityHashMap<Object, Object>();
+
+        private int objects;
+
+        public void write( DataOutputStream out, Object obj )
+            throws IOException
+        {
+            if ( ++objects > MAX_OBJECTS )
+            {
+                throw new IOException( "Object graph too large" );
+            }
+
+            if ( obj == null )
+            {
+                out.writeByte( 0 );
+            }
+            else if ( obj instanceof String || obj instanceof Number || obj instanceof Boolean
+                || obj instanceof Character )
+            {
+                out.writeByte( 1 );
+                out.writeUTF( obj.getClass().getName() );
+                out.writeUTF( obj.toString() );
+            }
+            else if ( obj instanceof Enum<?> )
+            {
+                out.writeByte( 2 );
+                out.writeUTF( ( (Enum<?>) obj ).getDeclaringClass().getName() );
+                out.writeUTF( ( (Enum<?>) obj ).name() );
+            }
+            else if ( obj instanceof Class<?> )
+            {
+                out.writeByte( 3 );
+                out.writeUTF( ( (Class<?>) obj ).getName() );
+            }
+            else if ( obj instanceof Pattern )
+            {
+                out.writeByte( 4 );
+                out.writeUTF( ( (Pattern) obj ).pattern() );
+                out.writeInt( ( (Pattern) obj ).flags() );
+            }
+            else if ( obj instanceof File )
+            {
+                out.writeByte( 5 );
+                out.writeUTF( ( (File) obj ).getPath() );
+            }
+            else if ( stack.containsKey( obj ) )
+            {
+                out.writeByte( 6 );
+                out.writeUTF( obj.getClass().getName() );
+            }
+            else
+            {
+                stack.put( obj, Boolean.TRUE );
+                try
+                {
+                    writeComposite( out, obj );
+                }
+                finally
+                {
+                    stack.remove( obj );
+                }
+            }
+        }
+
+        private void writeComposite( DataOutputStream out, Object obj )
+            throws IOException
+        {
+            if ( obj.getClass().isArray() )
+            {
+                out.writeByte( 7 );
+                int length = Array.getLength( obj );
+                out.writeInt( length );
+                for ( int i = 0; i < length; i++ )
+                {
+                    write( out, Array.get( obj, i ) );
+                }
+            }
+            else if ( obj instanceof List<?> || obj instanceof SortedSet<?> || obj instanceof LinkedHashSet<?> )
+            {
+                out.writeByte( 8 );
+                out.writeInt( ( (Collection<?>) obj ).size() );
+                for ( Object element : (Collection<?>) obj )
+                {
+                    write( out, element );
+                }
+            }
+            else if ( obj instanceof Collection<?> )
+            {
+                out.writeByte( 9 );
+                List<byte[]> elements = new ArrayList<byte[]>();
+                for ( Object element : (Collection<?>) obj )
+                {
+                    elements.add( toBytes( element, null ) );
+                }
+                writeSorted( out, elements );
+            }
+            else if ( obj instanceof Map<?, ?> )
+            {
+                boolean ordered = obj instanceof SortedMap<?, ?> || obj instanceof LinkedHashMap<?, ?>;
+                out.writeByte( ordered ? 10 : 11 );
+                List<byte[]> entries = new ArrayList<byte[]>();
+                for ( Map.Entry<?, ?> entry : ( (Map<?, ?>) obj ).entrySet() )
+                {
+                    entries.add( toBytes( entry.getKey(), entry.getValue() ) );
+                }
+                if ( ordered )
+                {
+                    out.writeInt( entries.size() );
+                    for ( byte[] entry : entries )
+                    {
+                        out.write( entry );
+                    }
+                }
+                else
+                {
+                    writeSorted( out, entries );
+                }
+            }
+            else
+            {
+                String name = obj.getClass().getName();
+                if ( name.startsWith( "java." ) || name.startsWith( "javax." ) || name.startsWith( "sun." ) )
+                {
+                    throw new IOException( "Unsupported component state " + name );
+                }
+                out.writeByte( 12 );
+                out.writeUTF( name );
+                for ( Class<?> type = obj.getClass(); type != null && type != Object.class; type =
+                    type.getSuperclass() )
+                {
+                    writeFields( out, obj, type );
+                }
+            }
+        }
+
+        private void writeFields( DataOutputStream out, Object obj, Class<?> type )
+            throws IOException
+        {
+            Map<String, Field> fields = new TreeMap<String, Field>();
+            for ( Field field : type.getDeclaredFields() )
+            {
+                int modifiers = field.getModifiers();
+                if ( Modifier.isStatic( modifiers ) || Modifier.isTransient( modifiers ) )
+                {
+                    continue;
+                }
+                if ( field.isSynthetic() )
+                {
+                    throw new IOException( "Unsupported component " + type.getName()
+                        + ", refers to enclosing instance" );
+                }
+                fields.put( field.getName(), field );
+            }
+
+            out.writeInt( fields.size() );
+            for ( Field field : fields.values() )
+            {
+                out.writeUTF( field.getName() );
+                Object value;
+                try
+                {
+                    field.setAccessible( true );
+                    value = field.get( obj );
+                }
+                catch ( Exception e )
+                {
+                    throw new IOException( "Cannot access " + field + ": " + e.getMessage() );
+                }
+                write( out, value );
+            }
+        }
+
+        private byte[] toBytes( Object obj1, Object obj2 )
+            throws IOException
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 );
+            DataOutputStream out = new DataOutputStream( bytes );
+            write( out, obj1 );
+            if ( obj2 != null )
+            {
+                write( out, obj2 );
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private static void writeSorted( DataOutputStream out, List<byte[]> elements )
+            throws IOException
+        {
+            Collections.sort( elements, new BytesComparator() );
+            out.writeInt( elements.size() );
+            for ( byte[] element : elements )
+            {
+                out.writeInt( element.length );
+                out.write( element );
+            }
+        }
+
+    }
+
+    static final class BytesComparator
+        implements Comparator<byte[]>
+    {
+
+        public int compare( byte[] bytes1, byte[] bytes2 )
+        {
+            for ( int i = 0, n = Math.min( bytes1.length, bytes2.length ); i < n; i++ )
+            {
+                int diff = ( bytes1[i] & 0xFF ) - ( bytes2[i] & 0xFF );
+                if ( diff != 0 )
+                {
+                    return diff;
+                }
+            }
+            return bytes1.length - bytes2.length;
+        }
+
+    }
+
+    static final class NullOutputStream
+        extends OutputStream
+    {
+
+        @Override
+        public void write( int b )
+        {
+            // discard
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+            // discard
+        }
+
+    }
+
+    final class Writer
+    {
+
+        private final DataOutputStream out;
+
+        private final Map<DependencyNode, Integer> ids = new IdentityHashMap<DependencyNode, Integer>();
+
+        public Writer( DataOutputStream out )
+        {
+            this.out = out;
+        }
+
+        public void writeString( String string )
+            throws IOException
+        {
+            out.writeBoolean( string != null );
+            if ( string != null )
+            {
+                out.writeUTF( string );
+            }
+        }
+
+        public void writeMap( Map<?, ?> map )
+            throws IOException
+        {
+            Map<String, String> sorted = new TreeMap<String, String>();
+            for ( Map.Entry<?, ?> entry : map.entrySet() )
+            {
+                sorted.put( String.valueOf( entry.getKey() ), String.valueOf( entry.getValue() ) );
+            }
+            out.writeInt( sorted.size() );
+            for ( Map.Entry<String, String> entry : sorted.entrySet() )
+            {
+                out.writeUTF( entry.getKey() );
+                out.writeUTF( entry.getValue() );
+            }
+        }
+
+        public void writeArtifact( Artifact artifact )
+            throws IOException
+        {
+            out.writeUTF( artifact.getGroupId() );
+            out.writeUTF( artifact.getArtifactId() );
+            out.writeUTF( artifact.getClassifier() );
+            out.writeUTF( artifact.getExtension() );
+            out.writeUTF( artifact.getVersion() );
+            writeMap( artifact.getProperties() );
+            File file = artifact.getFile();
+            writeString( ( file != null ) ? file.getAbsolutePath() : null );
+        }
+
+        public void writeArtifacts( Collection<Artifact> artifacts )
+            throws IOException
+        {
+            out.writeInt( artifacts.size() );
+            for ( Artifact artifact : artifacts )
+            {
+                writeArtifact( artifact );
+            }
+        }
+
+        public void writeDependency( Dependency dependency )
+            throws IOException
+        {
+            out.writeBoolean( dependency != null );
+            if ( dependency != null )
+            {
+                writeArtifact( dependency.getArtifact() );
+                out.writeUTF( dependency.getScope() );
+                out.writeBoolean( dependency.isOptional() );
+                out.writeInt( dependency.getExclusions().size() );
+                for ( Exclusion exclusion : dependency.getExclusions() )
+                {
+                    out.writeUTF( exclusion.getGroupId() );
+                    out.writeUTF( exclusion.getArtifactId() );
+                    out.writeUTF( exclusion.getClassifier() );
+                    out.writeUTF( exclusion.getExtension() );
+                }
+            }
+        }
+
+        public void writeDependencies( List<Dependency> dependencies )
+            throws IOException
+        {
+            out.writeInt( dependencies.size() );
+            for ( Dependency dependency : dependencies )
+            {
+                writeDependency( dependency );
+            }
+        }
+
+        public void writeRepository( RemoteRepository repository )
+            throws IOException
+        {
+            writeString( repository.getId() );
+            writeString( repository.getContentType() );
+            writeString( repository.getUrl() );
+            writePolicy( repository.getPolicy( false ) );
+            writePolicy( repository.getPolicy( true ) );
+            out.writeBoolean( repository.isRepositoryManager() );
+            writeRepositories( repository.getMirroredRepositories() );
+        }
+
+        private void writePolicy( RepositoryPolicy policy )
+            throws IOException
+        {
+            out.writeBoolean( policy.isEnabled() );
+            writeString( policy.getUpdatePolicy() );
+            writeString( policy.getChecksumPolicy() );
+        }
+
+        public void writeRepositories( List<RemoteRepository> repositories )
+            throws IOException
+        {
+            out.writeInt( repositories.size() );
+            for ( RemoteRepository repository : repositories )
+            {
+                writeRepository( repository );
+            }
+        }
+
+        public void writeNodeId( DependencyNode node )
+            throws IOException
+        {
+            Integer id = ids.get( node );
+            if ( id == null )
+            {
+                throw new IOException( "Artifact result refers to node outside of graph: " + node );
+            }
+            out.writeInt( id.intValue() );
+        }
+
+        public void writeNode( DependencyNode node )
+            throws IOException
+        {
+            Integer id = ids.get( node );
+            if ( id != null )
+            {
+                out.writeInt( id.intValue() );
+                return;
+            }
+            out.writeInt( -1 );
+            ids.put( node, Integer.valueOf( ids.size() ) );
+
+            writeDependency( node.getDependency() );
+            writeArtifacts( node.getRelocations() );
+            writeArtifacts( node.getAliases() );
+
+            VersionConstraint constraint = node.getVersionConstraint();
+            if ( constraint != null && !parseVersionConstraint( constraint.toString() ).equals( constraint ) )
+            {
+                throw new IOException( "Unsupported version constraint " + constraint );
+            }
+            writeString( ( constraint != null ) ? constraint.toString() : null );
+
+            Version version = node.getVersion();
+            if ( version != null && !parseVersion( version.toString() ).equals( version ) )
+            {
+                throw new IOException( "Unsupported version " + version );
+            }
+            writeString( ( version != null ) ? version.toString() : null );
+
+            writeString( node.getPremanagedVersion() );
+            writeString( node.getPremanagedScope() );
+            writeRepositories( node.getRepositories() );
+            writeString( node.getRequestContext() );
+
+            List<DependencyNode> children = node.getChildren();
+            out.writeInt( children.size() );
+            for ( DependencyNode child : children )
+            {
+                writeNode( child );
+            }
+        }
+
+        private VersionConstraint parseVersionConstraint( String constraint )
+            throws IOException
+        {
+            try
+            {
+                return versionScheme.parseVersionConstraint( constraint );
+            }
+            catch ( InvalidVersionSpecificationException e )
+            {
+                throw new IOException( "Unsupported version constraint " + constraint );
+            }
+        }
+
+        private Version parseVersion( String version )
+            throws IOException
+        {
+            try
+            {
+                return versionScheme.parseVersion( version );
+            }
+            catch ( InvalidVersionSpecificationException e )
+            {
+                throw new IOException( "Unsupported version " + version );
+            }
+        }
+
+    }
+
+    final class Reader
+    {
+
+        private final DataInputStream in;
+
+        private final List<DependencyNode> nodes = new ArrayList<DependencyNode>();
+
+        public Reader( DataInputStream in )
+        {
+            this.in = in;
+        }
+
+        public DependencyResult readResult( DependencyRequest request, RequestTrace trace )
+            throws IOException, InvalidVersionSpecificationException
+        {
+            if ( in.readInt() != MAGIC || in.readInt() != FORMAT )
+            {
+                throw new IOException( "Unsupported replay format" );
+            }
+
+            for ( int i = in.readInt(); i > 0; i-- )
+            {
+                File file = new File( in.readUTF() );
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                if ( file.length() != length || file.lastModified() != lastModified )
+                {
+                    logger.debug( "Discarding resolution replay " + fingerprint + " due to modified file " + file );
+                    return null;
+                }
+            }
+
+            DependencyResult result = new DependencyResult( request );
+            result.setRoot( readNode() );
+
+            List<ArtifactResult> artifactResults = new ArrayList<ArtifactResult>();
+            for ( int i = in.readInt(); i > 0; i-- )
+            {
+                DependencyNode node = nodes.get( in.readInt() );
+                ArtifactRequest artifactRequest = new ArtifactRequest( node );
+                artifactRequest.setTrace( trace );
+                ArtifactResult artifactResult = new ArtifactResult( artifactRequest );
+                artifactResult.setArtifact( node.getDependency().getArtifact() );
+                switch ( in.readByte() )
+                {
+                    case 1:
+                        artifactResult.setRepository( session.getLocalRepository() );
+                        break;
+                    case 2:
+                        artifactResult.setRepository( readRepository() );
+                        break;
+                    default:
+                        break;
+                }
+                artifactResults.add( artifactResult );
+            }
+            result.setArtifactResults( artifactResults );
+
+            return result;
+        }
+
+        private String readString()
+            throws IOException
+        {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        private Map<String, String> readMap()
+            throws IOException
+        {
+            int size = in.readInt();
+            Map<String, String> map = new HashMap<String, String>( size * 2 );
+            for ( int i = 0; i < size; i++ )
+            {
+                map.put( in.readUTF(), in.readUTF() );
+            }
+            return map;
+        }
+
+        private Artifact readArtifact()
+            throws IOException
+        {
+            String groupId = in.readUTF();
+            String artifactId = in.readUTF();
+            String classifier = in.readUTF();
+            String extension = in.readUTF();
+            String version = in.readUTF();
+            Map<String, String> properties = readMap();
+            String file = readString();
+            return new DefaultArtifact( groupId, artifactId, classifier, extension, version, properties,
+                                        ( file != null ) ? new File( file ) : null );
+        }
+
+        private List<Artifact> readArtifacts()
+            throws IOException
+        {
+            int size = in.readInt();
+            List<Artifact> artifacts = new ArrayList<Artifact>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                artifacts.add( readArtifact() );
+            }
+            return artifacts;
+        }
+
+        private Dependency readDependency()
+            throws IOException
+        {
+            if ( !in.readBoolean() )
+            {
+                return null;
+            }
+            Artifact artifact = readArtifact();
+            String scope = in.readUTF();
+            boolean optional = in.readBoolean();
+            int size = in.readInt();
+            List<Exclusion> exclusions = new ArrayList<Exclusion>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                exclusions.add( new Exclusion( in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF() ) );
+            }
+            return new Dependency( artifact, scope, optional, exclusions );
+        }
+
+        private RemoteRepository readRepository()
+            throws IOException
+        {
+            RemoteRepository repository = new RemoteRepository( readString(), readString(), readString() );
+            repository.setPolicy( false, readPolicy() );
+            repository.setPolicy( true, readPolicy() );
+            repository.setRepositoryManager( in.readBoolean() );
+            repository.setMirroredRepositories( readRepositories() );
+            if ( session.getProxySelector() != null )
+            {
+                repository.setProxy( session.getProxySelector().getProxy( repository ) );
+            }
+            if ( session.getAuthenticationSelector() != null )
+            {
+                repository.setAuthentication( session.getAuthenticationSelector().getAuthentication( repository ) );
+            }
+            return repository;
+        }
+
+        private RepositoryPolicy readPolicy()
+            throws IOException
+        {
+            return new RepositoryPolicy( in.readBoolean(), readString(), readString() );
+        }
+
+        private List<RemoteRepository> readRepositories()
+            throws IOException
+        {
+            int size = in.readInt();
+            List<RemoteRepository> repositories = new ArrayList<RemoteRepository>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                repositories.add( readRepository() );
+            }
+            return repositories;
+        }
+
+        private DependencyNode readNode()
+            throws IOException, InvalidVersionSpecificationException
+        {
+            int id = in.readInt();
+            if ( id >= 0 )
+            {
+                return nodes.get( id );
+            }
+
+            DefaultDependencyNode node = new DefaultDependencyNode();
+            nodes.add( node );
+
+            node.setDependency( readDependency() );
+            node.setRelocations( readArtifacts() );
+            node.setAliases( readArtifacts() );
+            String constraint = readString();
+            if ( constraint != null )
+            {
+                node.setVersionConstraint( versionScheme.parseVersionConstraint( constraint ) );
+            }
+            String version = readString();
+            if ( version != null )
+            {
+                node.setVersion( versionScheme.parseVersion( version ) );
+            }
+            node.setPremanagedVersion( readString() );
+            node.setPremanagedScope( readString() );
+            node.setRepositories( readRepositories() );
+            node.setRequestContext( readString() );
+
+            int size = in.readInt();
+            List<DependencyNode> children = node.getChildren();
+            for ( int i = 0; i < size; i++ )
+            {
+                children.add( readNode() );
+            }
+
+            return node;
+        }
+
+    }
+
+}
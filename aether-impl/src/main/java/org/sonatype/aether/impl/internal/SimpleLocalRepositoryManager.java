@@ -9,6 +9,7 @@ package org.sonatype.aether.impl.internal;
  *******************************************************************************/
 
 import java.io.File;
+import java.util.Collection;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -22,8 +23,8 @@ import org.sonatype.aether.repository.LocalMetadataRegistration;
 import org.sonatype.aether.repository.LocalMetadataRequest;
 import org.sonatype.aether.repository.LocalMetadataResult;
 import org.sonatype.aether.repository.LocalRepository;
-import org.sonatype.aether.repository.LocalRepositoryManager;
 import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.spi.localrepo.BatchLocalRepositoryManager;
 import org.sonatype.aether.spi.log.Logger;
 
 /**
@@ -32,7 +33,7 @@ import org.sonatype.aether.spi.log.Logger;
  * @author Benjamin Bentmann
  */
 public class SimpleLocalRepositoryManager
-    implements LocalRepositoryManager
+    implements BatchLocalRepositoryManager
 {
 
     private final LocalRepository repository;
@@ -218,6 +219,14 @@ public class SimpleLocalRepositoryManager
         // noop
     }
 
+    public void add( RepositorySystemSession session, Collection<? extends LocalArtifactRegistration> requests )
+    {
+        for ( LocalArtifactRegistration request : requests )
+        {
+            add( session, request );
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -76,7 +76,35 @@ class TrackingFileManager
         return null;
     }
 
-    public Properties update( File file, Map<String, String> updates )
+    public Properties update( File file, final Map<String, String> updates )
+    {
+        return update( file, new Updater()
+        {
+            public void update( Properties props )
+            {
+                for ( Map.Entry<String, String> update : updates.entrySet() )
+                {
+                    if ( update.getValue() == null )
+                    {
+                        props.remove( update.getKey() );
+                    }
+                    else
+                    {
+                        props.setProperty( update.getKey(), update.getValue() );
+                    }
+                }
+            }
+        } );
+    }
+
+    /**
+     * Updates the properties file while holding its lock, e.g. to merge changes with the current contents.
+     * 
+     * @param file The properties file, must not be {@code null}.
+     * @param updater The callback to modify the current properties with, must not be {@code null}.
+     * @return The updated properties, never {@code null}.
+     */
+    public Properties update( File file, Updater updater )
     {
         Properties props = new Properties();
 
@@ -107,17 +135,7 @@ class TrackingFileManager
                     props.load( stream );
                 }
 
-                for ( Map.Entry<String, String> update : updates.entrySet() )
-                {
-                    if ( update.getValue() == null )
-                    {
-                        props.remove( update.getKey() );
-                    }
-                    else
-                    {
-                        props.setProperty( update.getKey(), update.getValue() );
-                    }
-                }
+                updater.update( props );
 
                 ByteArrayOutputStream stream = new ByteArrayOutputStream( 1024 * 2 );
 
@@ -228,4 +246,19 @@ class TrackingFileManager
         return lock;
     }
 
+    /**
+     * Modifies the contents of a properties file.
+     */
+    interface Updater
+    {
+
+        /**
+         * Modifies the specified properties.
+         * 
+         * @param props The current contents of the file, never {@code null}.
+         */
+        void update( Properties props );
+
+    }
+
 }
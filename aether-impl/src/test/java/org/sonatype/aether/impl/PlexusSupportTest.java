@@ -36,7 +36,7 @@ public class PlexusSupportTest
 
         List<LocalRepositoryManagerFactory> lrmfs = getContainer().lookupList( LocalRepositoryManagerFactory.class );
         assertNotNull( lrmfs );
-        assertEquals( 2, lrmfs.size() );
+        assertEquals( 3, lrmfs.size() );
     }
 
 }
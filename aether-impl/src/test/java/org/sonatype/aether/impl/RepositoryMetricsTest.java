@@ -0,0 +1,92 @@
+package org.sonatype.aether.impl;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.sonatype.aether.impl.RepositoryMetrics.Statistic;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+
+/**
+ * 
+ */
+public class RepositoryMetricsTest
+{
+
+    @Test
+    public void testEnableAndDisable()
+        throws Exception
+    {
+        TestRepositorySystemSession session = new TestRepositorySystemSession();
+        assertNull( RepositoryMetrics.get( session ) );
+
+        RepositoryMetrics metrics = RepositoryMetrics.enable( session );
+        assertNotNull( metrics );
+        assertSame( metrics, RepositoryMetrics.get( session ) );
+        assertSame( metrics, RepositoryMetrics.enable( session ) );
+
+        RepositoryMetrics.disable( session );
+        assertNull( RepositoryMetrics.get( session ) );
+    }
+
+    @Test
+    public void testCountersAndTimers()
+    {
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        assertNull( metrics.getStatistic( "counter" ) );
+
+        metrics.count( "counter" );
+        metrics.count( "counter" );
+        metrics.record( "timer", 1500 * 1000L );
+        metrics.record( "timer", 500 );
+
+        Statistic counter = metrics.getStatistic( "counter" );
+        assertEquals( 2, counter.getCount() );
+        assertEquals( 0, counter.getTotalNanos() );
+
+        Statistic timer = metrics.getStatistic( "timer" );
+        assertEquals( 2, timer.getCount() );
+        assertEquals( 1500 * 1000L + 500, timer.getTotalNanos() );
+        assertEquals( 1500 * 1000L, timer.getMaxNanos() );
+
+        long[] histogram = timer.getHistogram();
+        assertEquals( 1, histogram[0] );
+        assertEquals( 1, histogram[11] );
+
+        Map<String, Statistic> statistics = metrics.getStatistics();
+        assertEquals( 2, statistics.size() );
+        assertSame( counter, statistics.get( "counter" ) );
+
+        metrics.reset();
+        assertTrue( metrics.getStatistics().isEmpty() );
+    }
+
+    @Test
+    public void testTimer()
+    {
+        RepositoryMetrics metrics = new RepositoryMetrics();
+
+        RepositoryMetrics.Timer timer = metrics.start( "timer" );
+        timer.stop();
+
+        Statistic statistic = metrics.getStatistic( "timer" );
+        assertEquals( 1, statistic.getCount() );
+        assertTrue( statistic.getTotalNanos() >= 0 );
+
+        RepositoryMetrics.start( metrics, "timer" ).stop();
+        assertEquals( 2, statistic.getCount() );
+
+        RepositoryMetrics.start( null, "timer" ).stop();
+        assertEquals( 2, statistic.getCount() );
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResolutionException;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+import org.sonatype.aether.test.util.TestFileUtils;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.metadata.DefaultMetadata;
+
+/**
+ */
+public class CachingVersionRangeResolverTest
+{
+
+    private TestRepositorySystemSession session;
+
+    private CountingVersionRangeResolver delegate;
+
+    private CachingVersionRangeResolver resolver;
+
+    private VersionRangeRequest request;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        session = new TestRepositorySystemSession();
+        session.setUpdatePolicy( RepositoryPolicy.UPDATE_POLICY_NEVER );
+
+        delegate = new CountingVersionRangeResolver();
+        resolver =
+            new CachingVersionRangeResolver( delegate, new StubRemoteRepositoryManager(),
+                                             new DefaultUpdateCheckManager() );
+
+        Artifact artifact = new DefaultArtifact( "gid:aid:ext:[1,2)" );
+        RemoteRepository repository = new RemoteRepository( "id", "default", "file:///" );
+        request = new VersionRangeRequest( artifact, Collections.singletonList( repository ), "" );
+    }
+
+    @After
+    public void teardown()
+        throws Exception
+    {
+        TestFileUtils.delete( session.getLocalRepository().getBasedir() );
+    }
+
+    private File getMetadataFile()
+    {
+        Artifact artifact = request.getArtifact();
+        DefaultMetadata metadata =
+            new DefaultMetadata( artifact.getGroupId(), artifact.getArtifactId(),
+                                 CachingVersionRangeResolver.METADATA_TYPE,
+                                 DefaultMetadata.Nature.RELEASE_OR_SNAPSHOT );
+        return new File( session.getLocalRepository().getBasedir(),
+                         session.getLocalRepositoryManager().getPathForLocalMetadata( metadata ) );
+    }
+
+    @Test
+    public void testResultIsCached()
+        throws Exception
+    {
+        VersionRangeResult result1 = resolver.resolveVersionRange( session, request );
+        VersionRangeResult result2 = resolver.resolveVersionRange( session, request );
+
+        assertEquals( 1, delegate.invocations );
+        assertEquals( result1.getVersions(), result2.getVersions() );
+        assertSame( request, result2.getRequest() );
+        assertEquals( request.getRepositories().get( 0 ), result2.getRepository( result2.getVersions().get( 0 ) ) );
+    }
+
+    @Test
+    public void testResultIsSharedAcrossSessions()
+        throws Exception
+    {
+        resolver.resolveVersionRange( session, request );
+
+        TestRepositorySystemSession session2 = new TestRepositorySystemSession();
+        session2.setUpdatePolicy( RepositoryPolicy.UPDATE_POLICY_NEVER );
+        session2.setLocalRepositoryManager( session.getLocalRepositoryManager() );
+        resolver.resolveVersionRange( session2, request );
+
+        assertEquals( 1, delegate.invocations );
+    }
+
+    @Test
+    public void testResultIsNotSharedAcrossOfflineModes()
+        throws Exception
+    {
+        resolver.resolveVersionRange( session, request );
+
+        session.setOffline( true );
+        resolver.resolveVersionRange( session, request );
+        resolver.resolveVersionRange( session, request );
+
+        assertEquals( 2, delegate.invocations );
+    }
+
+    @Test
+    public void testMetadataChangeInvalidatesResult()
+        throws Exception
+    {
+        File metadata = getMetadataFile();
+        TestFileUtils.write( "<metadata/>", metadata );
+        metadata.setLastModified( metadata.lastModified() - 10000 );
+
+        resolver.resolveVersionRange( session, request );
+        metadata.setLastModified( metadata.lastModified() + 5000 );
+        resolver.resolveVersionRange( session, request );
+
+        assertEquals( 2, delegate.invocations );
+    }
+
+    @Test
+    public void testUpdatePolicyInvalidatesResult()
+        throws Exception
+    {
+        session.setUpdatePolicy( RepositoryPolicy.UPDATE_POLICY_ALWAYS );
+
+        resolver.resolveVersionRange( session, request );
+        resolver.resolveVersionRange( session, request );
+
+        assertEquals( 2, delegate.invocations );
+    }
+
+    @Test
+    public void testDifferentRangesAreNotShared()
+        throws Exception
+    {
+        resolver.resolveVersionRange( session, request );
+        request.setArtifact( request.getArtifact().setVersion( "[2,3)" ) );
+        resolver.resolveVersionRange( session, request );
+
+        assertEquals( 2, delegate.invocations );
+    }
+
+    @Test
+    public void testFailedResultIsNotCached()
+        throws Exception
+    {
+        delegate.fail = true;
+
+        resolver.resolveVersionRange( session, request );
+        resolver.resolveVersionRange( session, request );
+
+        assertEquals( 2, delegate.invocations );
+    }
+
+    static class CountingVersionRangeResolver
+        extends StubVersionRangeResolver
+    {
+
+        int invocations;
+
+        boolean fail;
+
+        @Override
+        public VersionRangeResult resolveVersionRange( RepositorySystemSession session, VersionRangeRequest request )
+            throws VersionRangeResolutionException
+        {
+            invocations++;
+            VersionRangeResult result = super.resolveVersionRange( session, request );
+            if ( fail )
+            {
+                result.addException( new IllegalStateException( "failed" ) );
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,218 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.LocalArtifactRegistration;
+import org.sonatype.aether.repository.LocalArtifactRequest;
+import org.sonatype.aether.repository.LocalRepository;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+import org.sonatype.aether.test.util.TestFileUtils;
+import org.sonatype.aether.util.ChecksumUtils;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+public class ContentAddressableLocalRepositoryManagerTest
+{
+
+    private File basedir;
+
+    private ContentAddressableLocalRepositoryManager manager;
+
+    private RepositorySystemSession session;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        basedir = TestFileUtils.createTempDir( "cas-repo" );
+        LocalRepository repository = new LocalRepository( basedir, "cas" );
+        LocalRepositoryManagerFactory factory = new ContentAddressableLocalRepositoryManagerFactory();
+        manager = (ContentAddressableLocalRepositoryManager) factory.newInstance( repository );
+        session = new TestRepositorySystemSession();
+    }
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        TestFileUtils.delete( basedir );
+    }
+
+    private File write( String path, String content )
+        throws Exception
+    {
+        File file = new File( basedir, path );
+        TestFileUtils.write( content, file );
+        return file;
+    }
+
+    private String sha1( File file )
+        throws Exception
+    {
+        return ChecksumUtils.calc( file, Arrays.asList( "SHA-1" ) ).get( "SHA-1" ).toString();
+    }
+
+    @Test
+    public void testIdenticalArtifactsShareBlob()
+        throws Exception
+    {
+        Artifact a = new DefaultArtifact( "gid:a:jar:1" );
+        Artifact b = new DefaultArtifact( "gid:b:jar:1" );
+        RemoteRepository repo = new RemoteRepository( "id", "default", "file:///" );
+
+        File fileA = write( manager.getPathForLocalArtifact( a ), "same" );
+        File fileB = write( manager.getPathForRemoteArtifact( b, repo, "" ), "same" );
+
+        manager.add( session, new LocalArtifactRegistration( a ) );
+        manager.add( session, new LocalArtifactRegistration( b, repo, Arrays.asList( "" ) ) );
+
+        assertTrue( manager.find( session, new LocalArtifactRequest( a, null, null ) ).isAvailable() );
+        assertTrue( manager.find( session, new LocalArtifactRequest( b, Arrays.asList( repo ), "" ) ).isAvailable() );
+        TestFileUtils.assertContent( "same", fileA );
+        TestFileUtils.assertContent( "same", fileB );
+
+        if ( HardLinker.isSupported() )
+        {
+            File blob = manager.getBlobFile( sha1( fileA ) );
+            assertTrue( blob.isFile() );
+
+            // prove the files share their contents by modifying the blob in place
+            TestFileUtils.write( "link", blob );
+            TestFileUtils.assertContent( "link", fileA );
+            TestFileUtils.assertContent( "link", fileB );
+        }
+    }
+
+    @Test
+    public void testDifferentArtifactsUseDifferentBlobs()
+        throws Exception
+    {
+        Artifact a = new DefaultArtifact( "gid:a:jar:1" );
+        Artifact b = new DefaultArtifact( "gid:b:jar:1" );
+
+        File fileA = write( manager.getPathForLocalArtifact( a ), "one" );
+        File fileB = write( manager.getPathForLocalArtifact( b ), "two" );
+
+        manager.add( session, Arrays.asList( new LocalArtifactRegistration( a ), new LocalArtifactRegistration( b ) ) );
+
+        TestFileUtils.assertContent( "one", fileA );
+        TestFileUtils.assertContent( "two", fileB );
+
+        if ( HardLinker.isSupported() )
+        {
+            assertTrue( manager.getBlobFile( sha1( fileA ) ).isFile() );
+            assertTrue( manager.getBlobFile( sha1( fileB ) ).isFile() );
+        }
+    }
+
+    @Test
+    public void testMissingArtifactFileIsIgnored()
+    {
+        manager.add( session, new LocalArtifactRegistration( new DefaultArtifact( "gid:a:jar:1" ) ) );
+
+        assertFalse( new File( basedir, ContentAddressableLocalRepositoryManager.BLOB_DIR ).exists() );
+    }
+
+    @Test
+    public void testUnlinkedBlobsAreReclaimed()
+        throws Exception
+    {
+        Artifact a = new DefaultArtifact( "gid:a:jar:1" );
+        Artifact b = new DefaultArtifact( "gid:b:jar:1" );
+
+        File fileA = write( manager.getPathForLocalArtifact( a ), "one" );
+        File fileB = write( manager.getPathForLocalArtifact( b ), "two" );
+
+        manager.add( session, Arrays.asList( new LocalArtifactRegistration( a ), new LocalArtifactRegistration( b ) ) );
+
+        if ( !HardLinker.isSupported() || HardLinker.getLinkCount( fileA ) < 0 )
+        {
+            return;
+        }
+
+        File blobA = manager.getBlobFile( sha1( fileA ) );
+        File blobB = manager.getBlobFile( sha1( fileB ) );
+        assertTrue( fileA.delete() );
+
+        assertEquals( 1, manager.reclaimBlobs() );
+
+        assertFalse( blobA.exists() );
+        assertTrue( blobB.isFile() );
+        TestFileUtils.assertContent( "two", fileB );
+    }
+
+    @Test
+    public void testChecksumFileOfDownloadIsIgnored()
+        throws Exception
+    {
+        Artifact a = new DefaultArtifact( "gid:a:jar:1" );
+        Artifact b = new DefaultArtifact( "gid:b:jar:1" );
+        RemoteRepository repo = new RemoteRepository( "id", "default", "file:///" );
+
+        File other = write( manager.getPathForLocalArtifact( b ), "DATA" );
+        manager.add( session, new LocalArtifactRegistration( b ) );
+        String checksum = sha1( other );
+
+        // a stale checksum file naming a blob of the same length must not redirect the artifact to that blob
+        File file = write( manager.getPathForRemoteArtifact( a, repo, "" ), "data" );
+        TestFileUtils.write( checksum, new File( file.getPath() + ".sha1" ) );
+
+        manager.add( session, new LocalArtifactRegistration( a, repo, Arrays.asList( "" ) ) );
+
+        TestFileUtils.assertContent( "data", file );
+        TestFileUtils.assertContent( "DATA", other );
+    }
+
+    @Test
+    public void testLinkedBuildOutputIsCopiedIntoBlob()
+        throws Exception
+    {
+        if ( !HardLinker.isSupported() )
+        {
+            return;
+        }
+
+        Artifact a = new DefaultArtifact( "gid:a:jar:1" );
+
+        File output = new File( TestFileUtils.createTempDir( "cas-output" ), "a.jar" );
+        try
+        {
+            TestFileUtils.write( "data", output );
+            File file = new File( basedir, manager.getPathForLocalArtifact( a ) );
+            file.getParentFile().mkdirs();
+            assertTrue( HardLinker.link( output, file ) );
+
+            manager.add( session, new LocalArtifactRegistration( a ) );
+
+            File blob = manager.getBlobFile( sha1( file ) );
+            assertTrue( blob.isFile() );
+
+            // the build output is modified in place by the next build
+            TestFileUtils.write( "next", output );
+            TestFileUtils.assertContent( "data", blob );
+            TestFileUtils.assertContent( "data", file );
+        }
+        finally
+        {
+            TestFileUtils.delete( output.getParentFile() );
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
+import org.sonatype.aether.resolution.ArtifactDescriptorResult;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+import org.sonatype.aether.util.DefaultRequestTrace;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.version.GenericVersionScheme;
+
+/**
+ */
+public class DataPoolTest
+{
+
+    private DataPool newPool()
+        throws IOException
+    {
+        return new DataPool( new TestRepositorySystemSession() );
+    }
+
+    @Test
+    public void testRepositoryKeysAreInterned()
+        throws Exception
+    {
+        DataPool pool = newPool();
+
+        RemoteRepository repo1 = new RemoteRepository( "id", "default", "http://localhost" );
+        RemoteRepository repo2 = new RemoteRepository( repo1 );
+
+        RepositoryKey[] keys1 = pool.toKeys( Collections.singletonList( repo1 ) );
+        RepositoryKey[] keys2 = pool.toKeys( Collections.singletonList( repo2 ) );
+
+        assertEquals( 1, keys1.length );
+        assertSame( keys1[0], keys2[0] );
+        assertEquals( 0, pool.toKeys( Collections.<RemoteRepository> emptyList() ).length );
+    }
+
+    @Test
+    public void testRepositoryKeysDistinguishMirrors()
+        throws Exception
+    {
+        DataPool pool = newPool();
+
+        RemoteRepository central = new RemoteRepository( "central", "default", "http://central" );
+        RemoteRepository mirror1 = new RemoteRepository( "mirror", "default", "http://mirror" );
+        mirror1.setMirroredRepositories( Collections.singletonList( central ) );
+        RemoteRepository mirror2 = new RemoteRepository( "mirror", "default", "http://mirror" );
+
+        RepositoryKey key1 = pool.toKeys( Collections.singletonList( mirror1 ) )[0];
+        RepositoryKey key2 = pool.toKeys( Collections.singletonList( mirror2 ) )[0];
+
+        assertFalse( key1.equals( key2 ) );
+        assertEquals( 1, key1.mirroredRepositories.length );
+        assertEquals( "http://central", key1.mirroredRepositories[0].url );
+    }
+
+    @Test
+    public void testNodeKeys()
+        throws Exception
+    {
+        DataPool pool = newPool();
+
+        Artifact artifact = new DefaultArtifact( "gid:aid:ext:1" );
+        RemoteRepository repo1 = new RemoteRepository( "a", "default", "http://a" );
+        RemoteRepository repo2 = new RemoteRepository( "b", "default", "http://b" );
+
+        List<RemoteRepository> repos = Arrays.asList( repo1, repo2 );
+        Object key1 = pool.toKey( artifact, repos );
+        List<RemoteRepository> copies = Arrays.asList( new RemoteRepository( repo1 ), new RemoteRepository( repo2 ) );
+        Object key2 = pool.toKey( artifact, copies );
+        Object key3 = pool.toKey( artifact, Arrays.asList( repo2, repo1 ) );
+
+        assertEquals( key1, key2 );
+        assertEquals( key1.hashCode(), key2.hashCode() );
+        assertFalse( key1.equals( key3 ) );
+    }
+
+    @Test
+    public void testRepositoryKeysReflectListChanges()
+        throws Exception
+    {
+        DataPool pool = newPool();
+
+        List<RemoteRepository> repos = new ArrayList<RemoteRepository>();
+        repos.add( new RemoteRepository( "a", "default", "http://a" ) );
+        assertEquals( 1, pool.toKeys( repos ).length );
+
+        repos.add( new RemoteRepository( "b", "default", "http://b" ) );
+        RepositoryKey[] keys = pool.toKeys( repos );
+        assertEquals( 2, keys.length );
+        assertEquals( "http://b", keys[1].url );
+    }
+
+    @Test
+    public void testPooledConstraintIsSharedAndDoesNotRetainRequest()
+        throws Exception
+    {
+        DataPool pool = newPool();
+
+        Artifact artifact = new DefaultArtifact( "gid:aid:ext:[1,2)" );
+        List<RemoteRepository> repos = Arrays.asList( new RemoteRepository( "a", "default", "http://a" ) );
+
+        VersionRangeRequest request = new VersionRangeRequest( artifact, repos, "ctx" );
+        request.setTrace( new DefaultRequestTrace( null ) );
+        VersionRangeResult result = new VersionRangeResult( request );
+        result.addVersion( new GenericVersionScheme().parseVersion( "1.5" ) );
+
+        assertNull( pool.getConstraint( artifact, repos ) );
+        pool.putConstraint( pool.toKey( request ), result );
+
+        List<RemoteRepository> copies = Arrays.asList( new RemoteRepository( "a", "default", "http://a" ) );
+        VersionRangeResult pooled = pool.getConstraint( new DefaultArtifact( "gid:aid:ext:[1,2)" ), copies );
+        assertNotSame( result, pooled );
+        assertSame( pooled, pool.getConstraint( artifact, repos ) );
+        assertNull( pooled.getRequest().getTrace() );
+        assertTrue( pooled.getRequest().getRepositories().isEmpty() );
+        assertEquals( result.getVersions(), pooled.getVersions() );
+        try
+        {
+            pooled.getVersions().clear();
+            fail( "pooled versions are modifiable" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPooledDescriptorIsSharedAndDoesNotRetainRequest()
+        throws Exception
+    {
+        DataPool pool = newPool();
+
+        Artifact artifact = new DefaultArtifact( "gid:aid:ext:1" );
+        List<RemoteRepository> repos = Arrays.asList( new RemoteRepository( "a", "default", "http://a" ) );
+
+        ArtifactDescriptorRequest request = new ArtifactDescriptorRequest( artifact, repos, "ctx" );
+        request.setTrace( new DefaultRequestTrace( null ) );
+        ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+        result.setArtifact( artifact );
+        result.addDependency( new Dependency( new DefaultArtifact( "gid:dep:ext:1" ), "compile" ) );
+        result.addManagedDependency( new Dependency( new DefaultArtifact( "gid:managed:ext:1" ), "test" ) );
+        result.addRepository( new RemoteRepository( "b", "default", "http://b" ) );
+        pool.putDescriptor( pool.toKey( request ), result );
+
+        ArtifactDescriptorResult pooled = pool.getDescriptor( artifact );
+        assertNotSame( result, pooled );
+        assertSame( pooled, pool.getDescriptor( artifact ) );
+        assertNull( pooled.getRequest().getTrace() );
+        assertTrue( pooled.getRequest().getRepositories().isEmpty() );
+        assertEquals( result.getDependencies(), pooled.getDependencies() );
+        assertEquals( result.getManagedDependencies(), pooled.getManagedDependencies() );
+
+        RemoteRepository repo = result.getRepositories().get( 0 );
+        assertEquals( repo, pooled.getRepositories().get( 0 ) );
+        assertNotSame( repo, pooled.getRepositories().get( 0 ) );
+        try
+        {
+            pooled.getRepositories().clear();
+            fail( "pooled repositories are modifiable" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+    }
+
+}
@@ -12,8 +12,10 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +25,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.UpdateCheckManager;
 import org.sonatype.aether.impl.VersionResolver;
 import org.sonatype.aether.metadata.Metadata;
@@ -46,6 +49,7 @@ import org.sonatype.aether.resolution.VersionResolutionException;
 import org.sonatype.aether.resolution.VersionResult;
 import org.sonatype.aether.spi.connector.ArtifactDownload;
 import org.sonatype.aether.spi.connector.MetadataDownload;
+import org.sonatype.aether.spi.connector.RepositoryConnector;
 import org.sonatype.aether.spi.log.NullLogger;
 import org.sonatype.aether.test.impl.RecordingRepositoryListener;
 import org.sonatype.aether.test.impl.RecordingRepositoryListener.EventWrapper;
@@ -58,6 +62,7 @@ import org.sonatype.aether.test.util.impl.StubArtifact;
 import org.sonatype.aether.transfer.ArtifactNotFoundException;
 import org.sonatype.aether.transfer.ArtifactTransferException;
 import org.sonatype.aether.util.artifact.ArtifactProperties;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
 
 /**
  * @author Benjamin Hanzelmann
@@ -882,4 +887,231 @@ public class DefaultArtifactResolverTest
         assertEquals( artifact, resolved );
     }
 
+    private File resolveTimestampedSnapshot()
+        throws ArtifactResolutionException
+    {
+        artifact = new DefaultArtifact( "gid:aid:ext:1.0-20110329.221805-4" );
+        connector.setExpectGet( artifact );
+
+        ArtifactRequest request = new ArtifactRequest( artifact, null, "" );
+        request.addRepository( new RemoteRepository( "id", "default", "file:///" ) );
+
+        ArtifactResult result = resolver.resolveArtifact( session, request );
+        assertTrue( result.getExceptions().isEmpty() );
+        connector.assertSeenExpected();
+
+        File file = result.getArtifact().getFile();
+        assertTrue( file.getName(), file.getName().contains( "1.0-SNAPSHOT" ) );
+        return file;
+    }
+
+    @Test
+    public void testSnapshotNormalizationByCopy()
+        throws Exception
+    {
+        File file = resolveTimestampedSnapshot();
+        File timestamped = new File( file.getParentFile(), file.getName().replace( "SNAPSHOT", "20110329.221805-4" ) );
+
+        TestFileUtils.assertContent( TestFileUtils.getContent( timestamped ), file );
+
+        TestFileUtils.write( "changed", timestamped );
+        assertFalse( "changed".equals( new String( TestFileUtils.getContent( file ), "UTF-8" ) ) );
+    }
+
+    @Test
+    public void testSnapshotNormalizationByLink()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultArtifactResolver.CONFIG_PROP_SNAPSHOT_LINKS, Boolean.TRUE );
+        session.setConfigProperties( config );
+
+        File file = resolveTimestampedSnapshot();
+        File timestamped = new File( file.getParentFile(), file.getName().replace( "SNAPSHOT", "20110329.221805-4" ) );
+
+        TestFileUtils.assertContent( TestFileUtils.getContent( timestamped ), file );
+
+        if ( HardLinker.isSupported() )
+        {
+            TestFileUtils.write( "changed", timestamped );
+            TestFileUtils.assertContent( "changed", file );
+        }
+    }
+
+    @Test
+    public void testMetrics()
+        throws Exception
+    {
+        RepositoryMetrics metrics = RepositoryMetrics.enable( session );
+
+        connector.setExpectGet( artifact );
+
+        ArtifactRequest request = new ArtifactRequest( artifact, null, "" );
+        request.addRepository( new RemoteRepository( "id", "default", "file:///" ) );
+
+        resolver.resolveArtifact( session, request );
+
+        assertEquals( 1, metrics.getStatistic( RepositoryMetrics.LOCAL_REPOSITORY_MISS ).getCount() );
+        assertNull( metrics.getStatistic( RepositoryMetrics.LOCAL_REPOSITORY_HIT ) );
+    }
+
+    @Test
+    public void testNegativeLookupCache()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultArtifactResolver.CONFIG_PROP_NEGATIVE_CACHE, Boolean.TRUE );
+        session.setConfigProperties( config );
+        session.setNotFoundCachingEnabled( true );
+
+        StaticUpdateCheckManager noRecheck = new StaticUpdateCheckManager( true )
+        {
+            @Override
+            public boolean isUpdatedRequired( RepositorySystemSession session, long lastModified, String policy )
+            {
+                return false;
+            }
+        };
+        resolver.setUpdateCheckManager( noRecheck );
+
+        final List<Artifact> gets = new ArrayList<Artifact>();
+        RecordingRepositoryConnector connector = new RecordingRepositoryConnector()
+        {
+
+            @Override
+            public void get( Collection<? extends ArtifactDownload> artifactDownloads,
+                             Collection<? extends MetadataDownload> metadataDownloads )
+            {
+                for ( ArtifactDownload download : artifactDownloads )
+                {
+                    gets.add( download.getArtifact() );
+                    download.setException( new ArtifactNotFoundException( download.getArtifact(), null ) );
+                }
+            }
+
+        };
+        remoteRepositoryManager.setConnector( connector );
+
+        RemoteRepository repo = new RemoteRepository( "id", "default", "file:///" );
+        ArtifactRequest request = new ArtifactRequest( artifact, Arrays.asList( repo ), "" );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                resolver.resolveArtifact( session, request );
+                fail( "expected exception" );
+            }
+            catch ( ArtifactResolutionException e )
+            {
+                Exception cause = e.getResults().get( 0 ).getExceptions().get( 0 );
+                assertTrue( cause.toString(), cause instanceof ArtifactNotFoundException );
+            }
+        }
+        assertEquals( 1, gets.size() );
+
+        resolver.setUpdateCheckManager( new StaticUpdateCheckManager( true ) );
+
+        try
+        {
+            resolver.resolveArtifact( session, request );
+            fail( "expected exception" );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            assertEquals( 2, gets.size() );
+        }
+
+        session.setNotFoundCachingEnabled( false );
+        resolver.setUpdateCheckManager( noRecheck );
+
+        try
+        {
+            resolver.resolveArtifact( session, request );
+            fail( "expected exception" );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            assertEquals( 3, gets.size() );
+        }
+    }
+
+    @Test
+    public void testRepositoryRouting()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultArtifactResolver.CONFIG_PROP_ROUTING, Boolean.TRUE );
+        session.setConfigProperties( config );
+
+        resolver.setVersionResolver( new VersionResolver()
+        {
+
+            public VersionResult resolveVersion( RepositorySystemSession session, VersionRequest request )
+            {
+                return new VersionResult( request ).setVersion( request.getArtifact().getVersion() );
+            }
+
+        } );
+
+        final RemoteRepository empty = new RemoteRepository( "empty", "default", "file:///empty" );
+        final RemoteRepository full = new RemoteRepository( "full", "default", "file:///full" );
+
+        final List<String> gets = new ArrayList<String>();
+        resolver.setRemoteRepositoryManager( new StubRemoteRepositoryManager()
+        {
+
+            @Override
+            public RepositoryConnector getRepositoryConnector( RepositorySystemSession session,
+                                                               final RemoteRepository repository )
+            {
+                return new RecordingRepositoryConnector()
+                {
+
+                    @Override
+                    public void get( Collection<? extends ArtifactDownload> artifactDownloads,
+                                     Collection<? extends MetadataDownload> metadataDownloads )
+                    {
+                        for ( ArtifactDownload download : artifactDownloads )
+                        {
+                            String artifactId = download.getArtifact().getArtifactId();
+                            gets.add( repository.getId() + ":" + artifactId );
+                            if ( repository == full && !"aid3".equals( artifactId ) )
+                            {
+                                super.get( Collections.singleton( download ), null );
+                            }
+                            else
+                            {
+                                download.setException( new ArtifactNotFoundException( download.getArtifact(), null ) );
+                            }
+                        }
+                    }
+
+                };
+            }
+
+        } );
+
+        List<RemoteRepository> repos = Arrays.asList( empty, full );
+
+        resolver.resolveArtifact( session, new ArtifactRequest( new StubArtifact( "gid:aid1:ver" ), repos, "" ) );
+        assertEquals( Arrays.asList( "empty:aid1", "full:aid1" ), gets );
+
+        gets.clear();
+        resolver.resolveArtifact( session, new ArtifactRequest( new StubArtifact( "gid:aid2:ver" ), repos, "" ) );
+        assertEquals( Arrays.asList( "full:aid2" ), gets );
+
+        gets.clear();
+        try
+        {
+            resolver.resolveArtifact( session, new ArtifactRequest( new StubArtifact( "gid:aid3:ver" ), repos, "" ) );
+            fail( "expected exception" );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            // falls back to the remaining repositories on a miss
+        }
+        assertEquals( Arrays.asList( "full:aid3", "empty:aid3" ), gets );
+    }
+
 }
@@ -39,6 +39,7 @@ import org.sonatype.aether.resolution.ArtifactDescriptorResult;
 import org.sonatype.aether.test.impl.TestRepositorySystemSession;
 import org.sonatype.aether.test.util.DependencyGraphParser;
 import org.sonatype.aether.util.artifact.ArtifactProperties;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
 import org.sonatype.aether.util.graph.manager.ClassicDependencyManager;
 
 /**
@@ -328,6 +329,45 @@ public class DefaultDependencyCollectorTest
         assertEquals( "test", repos.get( 1 ).getId() );
     }
 
+    @Test
+    public void testDeepChain()
+        throws Exception
+    {
+        final int depth = 10000;
+
+        collector.setArtifactDescriptorReader( new ArtifactDescriptorReader()
+        {
+            public ArtifactDescriptorResult readArtifactDescriptor( RepositorySystemSession session,
+                                                                    ArtifactDescriptorRequest request )
+                throws ArtifactDescriptorException
+            {
+                ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+                result.setArtifact( request.getArtifact() );
+                int index = Integer.parseInt( request.getArtifact().getArtifactId().substring( 3 ) );
+                if ( index < depth )
+                {
+                    Artifact next = new DefaultArtifact( "gid", "aid" + ( index + 1 ), "jar", "1" );
+                    result.addDependency( new Dependency( next, "compile" ) );
+                }
+                return result;
+            }
+        } );
+
+        Dependency root = new Dependency( new DefaultArtifact( "gid", "aid1", "jar", "1" ), "compile" );
+        CollectRequest request = new CollectRequest( root, Arrays.asList( repository ) );
+        CollectResult result = collector.collectDependencies( session, request );
+
+        assertEquals( 0, result.getExceptions().size() );
+
+        int count = 1;
+        for ( DependencyNode node = result.getRoot(); !node.getChildren().isEmpty(); node = node.getChildren().get( 0 ) )
+        {
+            assertEquals( 1, node.getChildren().size() );
+            count++;
+        }
+        assertEquals( depth, count );
+    }
+
     @Test
     public void testManagedVersionScope()
         throws IOException, DependencyCollectionException
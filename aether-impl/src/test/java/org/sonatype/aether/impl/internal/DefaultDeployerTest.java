@@ -13,18 +13,26 @@ import static org.sonatype.aether.test.impl.RecordingRepositoryListener.Type.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonatype.aether.RepositoryEvent;
 import org.sonatype.aether.RepositoryException;
+import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.artifact.Artifact;
 import org.sonatype.aether.deployment.DeployRequest;
+import org.sonatype.aether.deployment.DeployResult;
 import org.sonatype.aether.deployment.DeploymentException;
 import org.sonatype.aether.impl.UpdateCheckManager;
 import org.sonatype.aether.metadata.MergeableMetadata;
@@ -128,6 +136,158 @@ public class DefaultDeployerTest
         connector.assertSeenExpected();
     }
 
+    @Test
+    public void testPipelinedDeploy()
+        throws DeploymentException
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultDeployer.CONFIG_PROP_THREADS, "2" );
+        session.setConfigProperties( config );
+
+        connector.setExpectPut( artifact );
+        connector.setExpectPut( metadata );
+
+        request.addArtifact( artifact );
+        request.addMetadata( metadata );
+
+        DeployResult result = deployer.deploy( session, request );
+
+        connector.assertSeenExpected();
+        assertEquals( Arrays.asList( artifact ), result.getArtifacts() );
+        assertEquals( Arrays.asList( metadata ), result.getMetadata() );
+    }
+
+    @Test( expected = DeploymentException.class )
+    public void testPipelinedDeployWithNullArtifactFile()
+        throws DeploymentException
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultDeployer.CONFIG_PROP_THREADS, "2" );
+        session.setConfigProperties( config );
+
+        request.addArtifact( artifact.setFile( null ) );
+        request.addMetadata( metadata );
+
+        try
+        {
+            deployer.deploy( session, request );
+        }
+        finally
+        {
+            assertEquals( 0, connector.getActualMetadataPutRequests().size() );
+        }
+    }
+
+    @Test
+    public void testConcurrentDeployOfMultipleRequests()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultDeployer.CONFIG_PROP_THREADS, "4" );
+        session.setConfigProperties( config );
+
+        final List<ExclusiveRepositoryConnector> connectors = new Vector<ExclusiveRepositoryConnector>();
+        deployer.setRemoteRepositoryManager( new StubRemoteRepositoryManager()
+        {
+            @Override
+            public RepositoryConnector getRepositoryConnector( RepositorySystemSession session,
+                                                               RemoteRepository repository )
+            {
+                ExclusiveRepositoryConnector connector = new ExclusiveRepositoryConnector();
+                connectors.add( connector );
+                return connector;
+            }
+        } );
+
+        List<DeployRequest> requests = new ArrayList<DeployRequest>();
+        for ( int i = 0; i < 8; i++ )
+        {
+            DeployRequest req = new DeployRequest();
+            req.setRepository( request.getRepository() );
+            String groupId = "gid" + ( i % 3 );
+            req.addArtifact( new DefaultArtifact( groupId, "aid" + i, "jar", "ver" ).setFile( artifact.getFile() ) );
+            req.addMetadata( new DefaultMetadata( groupId, "aid" + i, "ver", "type", Nature.RELEASE_OR_SNAPSHOT,
+                                                  metadata.getFile() ) );
+            requests.add( req );
+        }
+
+        List<DeployResult> results = deployer.deploy( session, requests );
+
+        assertEquals( requests.size(), results.size() );
+        for ( int i = 0; i < requests.size(); i++ )
+        {
+            assertSame( requests.get( i ), results.get( i ).getRequest() );
+            assertEquals( requests.get( i ).getArtifacts(), results.get( i ).getArtifacts() );
+            assertEquals( requests.get( i ).getMetadata(), results.get( i ).getMetadata() );
+        }
+        int artifactPuts = 0;
+        int metadataPuts = 0;
+        for ( ExclusiveRepositoryConnector connector : connectors )
+        {
+            assertFalse( "connector used concurrently", connector.concurrentUse );
+            artifactPuts += connector.getActualArtifactPutRequests().size();
+            metadataPuts += connector.getActualMetadataPutRequests().size();
+        }
+        assertEquals( requests.size(), artifactPuts );
+        assertEquals( requests.size(), metadataPuts );
+        // three lanes, each with at most one background upload
+        assertTrue( "too many connectors: " + connectors.size(), connectors.size() <= 6 );
+    }
+
+    static class ExclusiveRepositoryConnector
+        extends RecordingRepositoryConnector
+    {
+
+        private final AtomicInteger users = new AtomicInteger();
+
+        volatile boolean concurrentUse;
+
+        private void enter()
+        {
+            if ( users.incrementAndGet() > 1 )
+            {
+                concurrentUse = true;
+            }
+            Thread.yield();
+        }
+
+        private void exit()
+        {
+            users.decrementAndGet();
+        }
+
+        @Override
+        public void get( Collection<? extends ArtifactDownload> artifactDownloads,
+                         Collection<? extends MetadataDownload> metadataDownloads )
+        {
+            enter();
+            try
+            {
+                super.get( artifactDownloads, metadataDownloads );
+            }
+            finally
+            {
+                exit();
+            }
+        }
+
+        @Override
+        public void put( Collection<? extends ArtifactUpload> artifactUploads,
+                         Collection<? extends MetadataUpload> metadataUploads )
+        {
+            enter();
+            try
+            {
+                super.put( artifactUploads, metadataUploads );
+            }
+            finally
+            {
+                exit();
+            }
+        }
+
+    }
+
     @Test( expected = DeploymentException.class )
     public void testNullArtifactFile()
         throws DeploymentException
@@ -112,4 +112,82 @@ public class DefaultFileProcessorTest
         target.delete();
     }
 
+    @Test
+    public void testProgressingChannelWithSmallBuffer()
+        throws IOException
+    {
+        byte[] pattern = "0123456789".getBytes( "UTF-8" );
+        File file = TestFileUtils.createTempFile( pattern, 100 );
+        File target = new File( targetDir, "testProgressingChannelWithSmallBuffer" );
+        final AtomicInteger progressed = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        ProgressListener listener = new ProgressListener()
+        {
+            public void progressed( ByteBuffer buffer )
+                throws IOException
+            {
+                calls.incrementAndGet();
+                progressed.addAndGet( buffer.remaining() );
+            }
+        };
+        fileProcessor.setBufferSize( 64 );
+        assertEquals( 1000, fileProcessor.copy( file, target, listener ) );
+        TestFileUtils.assertContent( TestFileUtils.getContent( file ), target );
+        assertEquals( 1000, progressed.intValue() );
+        assertEquals( 16, calls.intValue() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testInvalidBufferSize()
+    {
+        fileProcessor.setBufferSize( 0 );
+    }
+
+    @Test
+    public void testMoveReplacesTarget()
+        throws IOException
+    {
+        File file = TestFileUtils.createTempFile( "new" );
+        File target = new File( targetDir, "sub/testMove.txt" );
+        TestFileUtils.write( "old", target );
+
+        fileProcessor.move( file, target );
+
+        TestFileUtils.assertContent( "new", target );
+        assertFalse( file.exists() );
+        assertEquals( 1, target.getParentFile().list().length );
+    }
+
+    @Test
+    public void testMoveFallsBackToCopyAndDeleteBeforeRename()
+        throws IOException
+    {
+        final File file = TestFileUtils.createTempFile( "new" );
+        final File target = new File( targetDir, "sub/testMove.txt" );
+        TestFileUtils.write( "old", target );
+
+        final AtomicInteger renames = new AtomicInteger();
+        fileProcessor = new DefaultFileProcessor()
+        {
+            @Override
+            boolean rename( File source, File dest )
+            {
+                renames.incrementAndGet();
+                // mimic a move across file systems onto a platform that refuses to rename onto existing files
+                if ( source.equals( file ) || dest.exists() )
+                {
+                    return false;
+                }
+                return super.rename( source, dest );
+            }
+        };
+
+        fileProcessor.move( file, target );
+
+        assertEquals( 3, renames.get() );
+        TestFileUtils.assertContent( "new", target );
+        assertFalse( file.exists() );
+        assertEquals( 1, target.getParentFile().list().length );
+    }
+
 }
@@ -14,18 +14,25 @@ import static org.sonatype.aether.test.impl.RecordingRepositoryListener.Type.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonatype.aether.RepositoryEvent;
+import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.artifact.Artifact;
 import org.sonatype.aether.installation.InstallRequest;
 import org.sonatype.aether.installation.InstallResult;
 import org.sonatype.aether.installation.InstallationException;
 import org.sonatype.aether.metadata.Metadata;
 import org.sonatype.aether.metadata.Metadata.Nature;
+import org.sonatype.aether.repository.LocalArtifactRegistration;
+import org.sonatype.aether.spi.localrepo.BatchLocalRepositoryManager;
 import org.sonatype.aether.test.impl.RecordingRepositoryListener;
 import org.sonatype.aether.test.impl.RecordingRepositoryListener.EventWrapper;
 import org.sonatype.aether.test.impl.TestFileProcessor;
@@ -359,4 +366,177 @@ public class DefaultInstallerTest
         assertEquals( "artifact timestamp was not set to src file", artifact.getFile().lastModified(),
                       localArtifactFile.lastModified() );
     }
+    @Test
+    public void testParallelInstall()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultInstaller.CONFIG_PROP_THREADS, "3" );
+        session.setConfigProperties( config );
+
+        List<Artifact> artifacts = new ArrayList<Artifact>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            Artifact a = new DefaultArtifact( "gid", "aid", "c" + i, "jar", "ver" );
+            a = a.setFile( TestFileUtils.createTempFile( ( "artifact" + i ).getBytes( "UTF-8" ), 1000 ) );
+            artifacts.add( a );
+            request.addArtifact( a );
+        }
+        request.addMetadata( metadata );
+
+        InstallResult result = installer.install( session, request );
+
+        assertEquals( artifacts, new ArrayList<Artifact>( result.getArtifacts() ) );
+        assertEquals( artifacts.size(), lrm.getArtifactRegistration().size() );
+        for ( Artifact a : artifacts )
+        {
+            File file = new File( session.getLocalRepository().getBasedir(), lrm.getPathForLocalArtifact( a ) );
+            TestFileUtils.assertContent( TestFileUtils.getContent( a.getFile() ), file );
+            assertTrue( lrm.getArtifactRegistration().contains( a ) );
+        }
+
+        List<EventWrapper> events = listener.getEvents();
+        assertEquals( 2 * artifacts.size() + 2, events.size() );
+        for ( int i = 0; i < artifacts.size(); i++ )
+        {
+            assertEquals( ARTIFACT_INSTALLING, events.get( i ).getType() );
+            assertEquals( artifacts.get( i ), events.get( i ).getEvent().getArtifact() );
+            assertEquals( ARTIFACT_INSTALLED, events.get( artifacts.size() + i ).getType() );
+            assertEquals( artifacts.get( i ), events.get( artifacts.size() + i ).getEvent().getArtifact() );
+            assertNull( events.get( artifacts.size() + i ).getEvent().getException() );
+        }
+    }
+
+    @Test
+    public void testParallelInstallWithFailingArtifact()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultInstaller.CONFIG_PROP_THREADS, "2" );
+        session.setConfigProperties( config );
+
+        Artifact failing = new DefaultArtifact( "gid", "aid", "failing", "jar", "ver" );
+        request.addArtifact( failing );
+        request.addArtifact( artifact );
+
+        try
+        {
+            installer.install( session, request );
+            fail( "expected exception" );
+        }
+        catch ( InstallationException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().contains( failing.toString() ) );
+        }
+
+        assertTrue( localArtifactFile.isFile() );
+        assertEquals( 1, lrm.getArtifactRegistration().size() );
+        assertTrue( lrm.getArtifactRegistration().contains( artifact ) );
+
+        List<EventWrapper> events = listener.getEvents();
+        assertEquals( 4, events.size() );
+        assertEquals( ARTIFACT_INSTALLED, events.get( 2 ).getType() );
+        assertNotNull( events.get( 2 ).getEvent().getException() );
+        assertEquals( ARTIFACT_INSTALLED, events.get( 3 ).getType() );
+        assertNull( events.get( 3 ).getEvent().getException() );
+    }
+
+    @Test
+    public void testParallelInstallRegistersBatchWithBatchLocalRepositoryManager()
+        throws Exception
+    {
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultInstaller.CONFIG_PROP_THREADS, "2" );
+        session.setConfigProperties( config );
+
+        final List<Integer> batches = new ArrayList<Integer>();
+        session.setLocalRepositoryManager( new BatchTestLocalRepositoryManager( batches ) );
+
+        Artifact other = new DefaultArtifact( "gid", "aid", "other", "jar", "ver" );
+        other = other.setFile( TestFileUtils.createTempFile( "other" ) );
+        request.addArtifact( artifact );
+        request.addArtifact( other );
+
+        installer.install( session, request );
+
+        assertEquals( 1, batches.size() );
+        assertEquals( 2, batches.get( 0 ).intValue() );
+    }
+
+    @Test
+    public void testInstallAsHardLink()
+        throws Exception
+    {
+        if ( !HardLinker.isSupported() )
+        {
+            return;
+        }
+
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( DefaultInstaller.CONFIG_PROP_HARD_LINKS, "true" );
+        session.setConfigProperties( config );
+
+        request.addArtifact( artifact );
+        installer.install( session, request );
+
+        TestFileUtils.assertContent( "artifact".getBytes( "UTF-8" ), localArtifactFile );
+        assertTrue( HardLinker.isSameFile( artifact.getFile(), localArtifactFile ) );
+        assertTrue( lrm.getArtifactRegistration().contains( artifact ) );
+    }
+
+    @Test
+    public void testInstallCopiesByDefault()
+        throws Exception
+    {
+        request.addArtifact( artifact );
+        installer.install( session, request );
+
+        TestFileUtils.assertContent( "artifact".getBytes( "UTF-8" ), localArtifactFile );
+        assertFalse( HardLinker.isSameFile( artifact.getFile(), localArtifactFile ) );
+    }
+
+    @Test
+    public void testInstallDoesNotWriteThroughHardLink()
+        throws Exception
+    {
+        if ( !HardLinker.isSupported() )
+        {
+            return;
+        }
+
+        File snapshot = TestFileUtils.createTempFile( "timestamped snapshot" );
+        localArtifactFile.getParentFile().mkdirs();
+        assertTrue( HardLinker.link( snapshot, localArtifactFile ) );
+
+        request.addArtifact( artifact );
+        installer.install( session, request );
+
+        TestFileUtils.assertContent( "artifact".getBytes( "UTF-8" ), localArtifactFile );
+        TestFileUtils.assertContent( "timestamped snapshot".getBytes( "UTF-8" ), snapshot );
+    }
+
+    static class BatchTestLocalRepositoryManager
+        extends TestLocalRepositoryManager
+        implements BatchLocalRepositoryManager
+    {
+
+        private final List<Integer> batches;
+
+        BatchTestLocalRepositoryManager( List<Integer> batches )
+            throws IOException
+        {
+            this.batches = batches;
+        }
+
+        public void add( RepositorySystemSession session, Collection<? extends LocalArtifactRegistration> requests )
+        {
+            batches.add( Integer.valueOf( requests.size() ) );
+            for ( LocalArtifactRegistration request : requests )
+            {
+                add( session, request );
+            }
+        }
+
+    }
+
 }
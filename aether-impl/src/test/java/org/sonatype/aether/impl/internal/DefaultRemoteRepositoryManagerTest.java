@@ -9,6 +9,7 @@ package org.sonatype.aether.impl.internal;
  *******************************************************************************/
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -19,6 +20,7 @@ import org.junit.Test;
 import org.sonatype.aether.RepositorySystemSession;
 import org.sonatype.aether.artifact.Artifact;
 import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.RepositoryMetrics;
 import org.sonatype.aether.impl.UpdateCheck;
 import org.sonatype.aether.impl.UpdateCheckManager;
 import org.sonatype.aether.metadata.Metadata;
@@ -28,10 +30,13 @@ import org.sonatype.aether.repository.Proxy;
 import org.sonatype.aether.repository.ProxySelector;
 import org.sonatype.aether.repository.RemoteRepository;
 import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.spi.connector.RepositoryConnector;
+import org.sonatype.aether.spi.connector.RepositoryConnectorFactory;
 import org.sonatype.aether.test.impl.SysoutLogger;
 import org.sonatype.aether.test.impl.TestRepositorySystemSession;
 import org.sonatype.aether.transfer.ArtifactTransferException;
 import org.sonatype.aether.transfer.MetadataTransferException;
+import org.sonatype.aether.transfer.NoRepositoryConnectorException;
 
 /**
  * 
@@ -296,4 +301,38 @@ public class DefaultRemoteRepositoryManagerTest
 
     }
 
+    @Test
+    public void testConnectorMetrics()
+        throws Exception
+    {
+        DefaultRemoteRepositoryManager manager = new DefaultRemoteRepositoryManager();
+        manager.setUpdateCheckManager( new StubUpdateCheckManager() );
+        manager.addRepositoryConnectorFactory( new RepositoryConnectorFactory()
+        {
+            public RepositoryConnector newInstance( RepositorySystemSession session, RemoteRepository repository )
+                throws NoRepositoryConnectorException
+            {
+                return new RecordingRepositoryConnector();
+            }
+
+            public int getPriority()
+            {
+                return 0;
+            }
+        } );
+        RemoteRepository repo = new RemoteRepository( "id", "default", "file:///" );
+
+        manager.getRepositoryConnector( session, repo ).get( null, null );
+        assertNull( RepositoryMetrics.get( session ) );
+
+        RepositoryMetrics metrics = RepositoryMetrics.enable( session );
+        RepositoryConnector connector = manager.getRepositoryConnector( session, repo );
+        connector.get( null, null );
+        connector.put( null, null );
+        connector.put( null, null );
+
+        assertEquals( 1, metrics.getStatistic( RepositoryMetrics.CONNECTOR_GET ).getCount() );
+        assertEquals( 2, metrics.getStatistic( RepositoryMetrics.CONNECTOR_PUT ).getCount() );
+    }
+
 }
@@ -0,0 +1,212 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.sonatype.aether.collection.CollectRequest;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.DependencyResult;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+/**
+ */
+public class DependencyPrefetcherTest
+{
+
+    private static CollectRequest newRequest()
+    {
+        Dependency root = new Dependency( new DefaultArtifact( "gid:aid:1" ), "compile" );
+        return new CollectRequest( root, Arrays.asList( new RemoteRepository( "id", "default", "file:///" ) ) );
+    }
+
+    private static Callable<DependencyResult> newPrefetch( final CountDownLatch latch, final AtomicInteger active,
+                                                           final AtomicInteger maxActive )
+    {
+        return new Callable<DependencyResult>()
+        {
+            public DependencyResult call()
+                throws Exception
+            {
+                int current = active.incrementAndGet();
+                synchronized ( maxActive )
+                {
+                    maxActive.set( Math.max( maxActive.get(), current ) );
+                }
+                try
+                {
+                    latch.await( 10, TimeUnit.SECONDS );
+                }
+                finally
+                {
+                    active.decrementAndGet();
+                }
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testGetKey()
+    {
+        assertEquals( DependencyPrefetcher.getKey( newRequest() ), DependencyPrefetcher.getKey( newRequest() ) );
+        Object key = DependencyPrefetcher.getKey( newRequest().setRequestContext( "plugin" ) );
+        assertFalse( DependencyPrefetcher.getKey( newRequest() ).equals( key ) );
+
+        CollectRequest request = newRequest();
+        key = DependencyPrefetcher.getKey( request );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:dep:1" ), "compile" ) );
+        request.addDependency( new Dependency( new DefaultArtifact( "gid:other:1" ), "compile" ) );
+        assertEquals( DependencyPrefetcher.getKey( newRequest() ), key );
+        assertFalse( DependencyPrefetcher.getKey( request ).equals( key ) );
+    }
+
+    @Test
+    public void testBoundedConcurrency()
+        throws Exception
+    {
+        DependencyPrefetcher prefetcher = new DependencyPrefetcher( 2 );
+        CountDownLatch latch = new CountDownLatch( 1 );
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        List<Future<DependencyResult>> futures = new ArrayList<Future<DependencyResult>>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            futures.add( prefetcher.submit( "key" + i, newPrefetch( latch, active, maxActive ) ) );
+        }
+        for ( int i = 0; i < 100 && active.get() < 2; i++ )
+        {
+            Thread.sleep( 50 );
+        }
+        Thread.sleep( 50 );
+        assertEquals( 2, active.get() );
+
+        latch.countDown();
+        for ( Future<DependencyResult> future : futures )
+        {
+            future.get( 10, TimeUnit.SECONDS );
+        }
+        assertEquals( 2, maxActive.get() );
+    }
+
+    @Test
+    public void testEqualPrefetchesAreJoined()
+        throws Exception
+    {
+        DependencyPrefetcher prefetcher = new DependencyPrefetcher( 2 );
+        CountDownLatch latch = new CountDownLatch( 1 );
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        Object key = DependencyPrefetcher.getKey( newRequest() );
+        Future<DependencyResult> future1 = prefetcher.submit( key, newPrefetch( latch, active, maxActive ) );
+        Future<DependencyResult> future2 =
+            prefetcher.submit( DependencyPrefetcher.getKey( newRequest() ), newPrefetch( latch, active, maxActive ) );
+        assertSame( future1, future2 );
+
+        latch.countDown();
+        future1.get( 10, TimeUnit.SECONDS );
+        assertEquals( 1, maxActive.get() );
+    }
+
+    @Test
+    public void testAwaitWaitsForRunningPrefetch()
+        throws Exception
+    {
+        DependencyPrefetcher prefetcher = new DependencyPrefetcher( 1 );
+        final AtomicInteger done = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        prefetcher.submit( "key", new Callable<DependencyResult>()
+        {
+            public DependencyResult call()
+                throws Exception
+            {
+                threads.add( Thread.currentThread() );
+                Thread.sleep( 100 );
+                done.incrementAndGet();
+                throw new IllegalStateException( "failures are ignored by await()" );
+            }
+        } );
+
+        prefetcher.await( "other" );
+        assertEquals( 0, done.get() );
+
+        prefetcher.await( "key" );
+        assertEquals( 1, done.get() );
+
+        assertTrue( threads.get( 0 ).isDaemon() );
+        assertEquals( Thread.MIN_PRIORITY, threads.get( 0 ).getPriority() );
+    }
+
+    @Test
+    public void testAwaitCancelsQueuedPrefetch()
+        throws Exception
+    {
+        DependencyPrefetcher prefetcher = new DependencyPrefetcher( 1 );
+        CountDownLatch latch = new CountDownLatch( 1 );
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        Future<DependencyResult> blocker = prefetcher.submit( "blocker", newPrefetch( latch, active, maxActive ) );
+        Future<DependencyResult> queued = prefetcher.submit( "key", new Callable<DependencyResult>()
+        {
+            public DependencyResult call()
+            {
+                threads.add( Thread.currentThread() );
+                return null;
+            }
+        } );
+
+        prefetcher.await( "key" );
+        assertTrue( queued.isCancelled() );
+        assertFalse( blocker.isDone() );
+
+        latch.countDown();
+        blocker.get( 10, TimeUnit.SECONDS );
+        assertTrue( threads.isEmpty() );
+        assertNotSame( queued, prefetcher.submit( "key", newPrefetch( new CountDownLatch( 0 ), active, maxActive ) ) );
+    }
+
+    @Test
+    public void testThreadPoolIsShutDownWhenIdle()
+        throws Exception
+    {
+        DependencyPrefetcher prefetcher = new DependencyPrefetcher( 2 );
+        CountDownLatch latch = new CountDownLatch( 1 );
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        assertFalse( prefetcher.isActive() );
+        Future<DependencyResult> future = prefetcher.submit( "key", newPrefetch( latch, active, maxActive ) );
+        assertTrue( prefetcher.isActive() );
+
+        latch.countDown();
+        future.get( 10, TimeUnit.SECONDS );
+        for ( int i = 0; i < 100 && prefetcher.isActive(); i++ )
+        {
+            Thread.sleep( 10 );
+        }
+        assertFalse( prefetcher.isActive() );
+    }
+
+}
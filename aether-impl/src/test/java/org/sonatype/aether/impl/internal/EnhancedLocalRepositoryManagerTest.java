@@ -16,6 +16,8 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -307,4 +309,129 @@ public class EnhancedLocalRepositoryManagerTest
         assertFalse( result.toString(), result.isAvailable() );
     }
 
+    @Test
+    public void testAddMultipleArtifacts()
+        throws Exception
+    {
+        Artifact sources =
+            new DefaultArtifact( "gid", "aid", "sources", "jar", "1-test", Collections.<String, String> emptyMap(),
+                                 artifact.getFile() );
+
+        manager.add( session, Arrays.asList( new LocalArtifactRegistration( artifact ),
+                                             new LocalArtifactRegistration( sources, repository,
+                                                                            Arrays.asList( testContext ) ) ) );
+        copy( artifact, manager.getPathForLocalArtifact( artifact ) );
+        copy( sources, manager.getPathForLocalArtifact( sources ) );
+
+        LocalArtifactResult result = manager.find( session, new LocalArtifactRequest( artifact, null, null ) );
+        assertTrue( result.isAvailable() );
+        assertNull( result.getRepository() );
+
+        result = manager.find( session, new LocalArtifactRequest( sources, Arrays.asList( repository ), testContext ) );
+        assertTrue( result.isAvailable() );
+        assertEquals( repository, result.getRepository() );
+
+        result = manager.find( session, new LocalArtifactRequest( sources, Arrays.asList( repository ), "different" ) );
+        assertFalse( result.isAvailable() );
+    }
+
+    private void enableIndex()
+    {
+        Map<String, Object> props = new HashMap<String, Object>();
+        props.put( EnhancedLocalRepositoryManager.CONFIG_PROP_INDEX, "true" );
+        ( (TestRepositorySystemSession) session ).setConfigProperties( props );
+    }
+
+    @Test
+    public void testIndexAnswersFindWithoutTrackingFile()
+        throws Exception
+    {
+        enableIndex();
+
+        copy( artifact, manager.getPathForLocalArtifact( artifact ) );
+        manager.add( session, new LocalArtifactRegistration( artifact, repository, Arrays.asList( testContext ) ) );
+
+        File trackingFile = new File( artifactFile.getParentFile(), "_maven.repositories" );
+        assertTrue( trackingFile.delete() );
+
+        manager = new EnhancedLocalRepositoryManager( basedir );
+
+        LocalArtifactRequest request = new LocalArtifactRequest( artifact, Arrays.asList( repository ), testContext );
+        LocalArtifactResult result = manager.find( session, request );
+        assertTrue( result.isAvailable() );
+        assertEquals( repository, result.getRepository() );
+        assertEquals( artifactFile, result.getFile() );
+
+        request = new LocalArtifactRequest( artifact, Arrays.asList( repository ), "different" );
+        assertFalse( manager.find( session, request ).isAvailable() );
+    }
+
+    @Test
+    public void testIndexIsPopulatedByFind()
+        throws Exception
+    {
+        addLocalArtifact( artifact );
+
+        enableIndex();
+
+        assertTrue( manager.find( session, new LocalArtifactRequest( artifact, null, null ) ).isAvailable() );
+        assertTrue( new File( basedir, LocalRepositoryIndex.INDEX_FILE ).isFile() );
+
+        new File( artifactFile.getParentFile(), "_maven.repositories" ).delete();
+
+        manager = new EnhancedLocalRepositoryManager( basedir );
+        LocalArtifactResult result = manager.find( session, new LocalArtifactRequest( artifact, null, null ) );
+        assertTrue( result.isAvailable() );
+        assertNull( result.getRepository() );
+    }
+
+    @Test
+    public void testIndexIgnoresMissingFiles()
+        throws Exception
+    {
+        enableIndex();
+
+        manager.add( session, new LocalArtifactRegistration( artifact ) );
+
+        assertFalse( manager.find( session, new LocalArtifactRequest( artifact, null, null ) ).isAvailable() );
+    }
+
+    @Test
+    public void testIndexEntryOfDeletedFileIsIgnored()
+        throws Exception
+    {
+        enableIndex();
+
+        copy( artifact, manager.getPathForLocalArtifact( artifact ) );
+        manager.add( session, new LocalArtifactRegistration( artifact ) );
+        assertTrue( manager.find( session, new LocalArtifactRequest( artifact, null, null ) ).isAvailable() );
+
+        assertTrue( artifactFile.delete() );
+
+        manager = new EnhancedLocalRepositoryManager( basedir );
+        LocalArtifactResult result = manager.find( session, new LocalArtifactRequest( artifact, null, null ) );
+        assertFalse( result.isAvailable() );
+        assertNull( result.getFile() );
+    }
+
+    @Test
+    public void testIndexEntryOfModifiedFileIsRefreshed()
+        throws Exception
+    {
+        enableIndex();
+
+        copy( artifact, manager.getPathForLocalArtifact( artifact ) );
+        manager.add( session, new LocalArtifactRegistration( artifact, repository, Arrays.asList( testContext ) ) );
+
+        TestFileUtils.write( "modified by another tool", artifactFile );
+        new File( artifactFile.getParentFile(), "_maven.repositories" ).delete();
+
+        manager = new EnhancedLocalRepositoryManager( basedir );
+        LocalArtifactRequest request = new LocalArtifactRequest( artifact, Arrays.asList( repository ), testContext );
+        LocalArtifactResult result = manager.find( session, request );
+        assertTrue( result.isAvailable() );
+        assertNull( result.getRepository() );
+        assertEquals( artifactFile, result.getFile() );
+    }
+
 }
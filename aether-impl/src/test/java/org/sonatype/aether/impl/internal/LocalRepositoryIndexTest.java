@@ -0,0 +1,161 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.test.util.TestFileUtils;
+
+/**
+ */
+public class LocalRepositoryIndexTest
+{
+
+    private File basedir;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        basedir = TestFileUtils.createTempDir( "index" );
+    }
+
+    @After
+    public void teardown()
+        throws Exception
+    {
+        TestFileUtils.delete( basedir );
+    }
+
+    @Test
+    public void testPutAndReload()
+    {
+        LocalRepositoryIndex index = new LocalRepositoryIndex( basedir, null );
+        assertNull( index.get( "a/b" ) );
+
+        index.put( "a/b", 10, 1000, Arrays.asList( "central", "" ) );
+        index.put( "a/c", 20, 2000, Collections.<String> emptyList() );
+        index.put( "a/b", 11, 1001, Arrays.asList( "central" ) );
+
+        LocalRepositoryIndex.Entry entry = new LocalRepositoryIndex( basedir, null ).get( "a/b" );
+        assertNotNull( entry );
+        assertEquals( 11, entry.size );
+        assertEquals( 1001, entry.lastModified );
+        assertEquals( new HashSet<String>( Arrays.asList( "central" ) ), entry.repositories );
+
+        assertTrue( new LocalRepositoryIndex( basedir, null ).get( "a/c" ).repositories.isEmpty() );
+    }
+
+    @Test
+    public void testRemove()
+    {
+        LocalRepositoryIndex index = new LocalRepositoryIndex( basedir, null );
+        index.put( "a/b", 10, 1000, Arrays.asList( "central" ) );
+        index.remove( "a/b" );
+
+        assertNull( index.get( "a/b" ) );
+        assertNull( new LocalRepositoryIndex( basedir, null ).get( "a/b" ) );
+    }
+
+    @Test
+    public void testIncompleteRecordIsIgnored()
+        throws Exception
+    {
+        LocalRepositoryIndex index = new LocalRepositoryIndex( basedir, null );
+        index.put( "a/b", 10, 1000, Arrays.asList( "central" ) );
+        index.put( "a/c", 20, 2000, Arrays.asList( "central" ) );
+
+        RandomAccessFile raf = new RandomAccessFile( index.getFile(), "rw" );
+        try
+        {
+            raf.setLength( raf.length() - 3 );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        index = new LocalRepositoryIndex( basedir, null );
+        assertNotNull( index.get( "a/b" ) );
+        assertNull( index.get( "a/c" ) );
+    }
+
+    @Test
+    public void testAppendAfterIncompleteRecord()
+        throws Exception
+    {
+        LocalRepositoryIndex index = new LocalRepositoryIndex( basedir, null );
+        index.put( "a/b", 10, 1000, Arrays.asList( "central" ) );
+        index.put( "a/c", 20, 2000, Arrays.asList( "central" ) );
+
+        RandomAccessFile raf = new RandomAccessFile( index.getFile(), "rw" );
+        try
+        {
+            raf.setLength( raf.length() - 3 );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        index = new LocalRepositoryIndex( basedir, null );
+        index.put( "a/d", 30, 3000, Arrays.asList( "central" ) );
+        index.put( "a/e", 40, 4000, Arrays.asList( "central" ) );
+
+        index = new LocalRepositoryIndex( basedir, null );
+        assertNotNull( index.get( "a/b" ) );
+        assertNull( index.get( "a/c" ) );
+        assertEquals( 30, index.get( "a/d" ).size );
+        assertEquals( 40, index.get( "a/e" ).size );
+    }
+
+    @Test
+    public void testAppendAfterCompactionByOtherInstance()
+    {
+        LocalRepositoryIndex index = new LocalRepositoryIndex( basedir, null );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            index.put( "a/b", i, i, Arrays.asList( "central" ) );
+        }
+
+        assertEquals( 1999, new LocalRepositoryIndex( basedir, null ).get( "a/b" ).size );
+
+        index.put( "a/c", 20, 2000, Arrays.asList( "central" ) );
+
+        index = new LocalRepositoryIndex( basedir, null );
+        assertEquals( 1999, index.get( "a/b" ).size );
+        assertEquals( 20, index.get( "a/c" ).size );
+    }
+
+    @Test
+    public void testCompaction()
+    {
+        LocalRepositoryIndex index = new LocalRepositoryIndex( basedir, null );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            index.put( "a/b", i, i, Arrays.asList( "central" ) );
+        }
+        long length = index.getFile().length();
+
+        index = new LocalRepositoryIndex( basedir, null );
+        assertTrue( index.getFile().length() < length );
+        assertEquals( 1999, index.get( "a/b" ).size );
+        assertEquals( 1999, new LocalRepositoryIndex( basedir, null ).get( "a/b" ).size );
+    }
+
+}
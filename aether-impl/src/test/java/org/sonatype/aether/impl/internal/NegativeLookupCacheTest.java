@@ -0,0 +1,156 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.test.util.TestFileUtils;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+/**
+ */
+public class NegativeLookupCacheTest
+{
+
+    private File file;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        file = new File( TestFileUtils.createTempDir( "absent" ), "repo.idx" );
+    }
+
+    @After
+    public void teardown()
+        throws Exception
+    {
+        TestFileUtils.delete( file.getParentFile() );
+    }
+
+    private static Artifact artifact( int i )
+    {
+        return new DefaultArtifact( "gid", "aid", "jar", "1." + i );
+    }
+
+    @Test
+    public void testAddAndReload()
+    {
+        NegativeLookupCache absent = new NegativeLookupCache( file, null );
+        assertEquals( 0, absent.get( artifact( 0 ) ) );
+
+        absent.add( artifact( 0 ) );
+        assertTrue( absent.get( artifact( 0 ) ) > 0 );
+        assertEquals( 0, absent.get( artifact( 1 ) ) );
+
+        NegativeLookupCache reloaded = new NegativeLookupCache( file, null );
+        assertEquals( absent.get( artifact( 0 ) ), reloaded.get( artifact( 0 ) ) );
+        assertEquals( 1, reloaded.size() );
+    }
+
+    @Test
+    public void testRemove()
+    {
+        NegativeLookupCache absent = new NegativeLookupCache( file, null );
+        absent.add( artifact( 0 ) );
+        absent.add( artifact( 1 ) );
+        absent.remove( artifact( 0 ) );
+        absent.remove( artifact( 2 ) );
+
+        assertEquals( 0, absent.get( artifact( 0 ) ) );
+        assertEquals( 1, absent.size() );
+
+        NegativeLookupCache reloaded = new NegativeLookupCache( file, null );
+        assertEquals( 0, reloaded.get( artifact( 0 ) ) );
+        assertTrue( reloaded.get( artifact( 1 ) ) > 0 );
+        assertEquals( 1, reloaded.size() );
+    }
+
+    @Test
+    public void testRemoveOfMissRecordedByOtherInstance()
+    {
+        NegativeLookupCache absent = new NegativeLookupCache( file, null );
+        NegativeLookupCache other = new NegativeLookupCache( file, null );
+        other.add( artifact( 0 ) );
+
+        absent.remove( artifact( 0 ) );
+
+        NegativeLookupCache reloaded = new NegativeLookupCache( file, null );
+        assertEquals( 0, reloaded.get( artifact( 0 ) ) );
+        assertEquals( 0, reloaded.size() );
+    }
+
+    @Test
+    public void testManyEntries()
+    {
+        NegativeLookupCache absent = new NegativeLookupCache( file, null );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            absent.add( artifact( i ) );
+        }
+        for ( int i = 0; i < 2000; i += 2 )
+        {
+            absent.remove( artifact( i ) );
+        }
+        assertEquals( 1000, absent.size() );
+
+        NegativeLookupCache reloaded = new NegativeLookupCache( file, null );
+        assertEquals( 1000, reloaded.size() );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            assertEquals( String.valueOf( i ), i % 2 != 0, reloaded.get( artifact( i ) ) > 0 );
+        }
+
+        // the reload compacted the log down to the live entries
+        assertEquals( 4 + 1000 * 16, file.length() );
+    }
+
+    @Test
+    public void testIncompleteRecordIsIgnored()
+        throws Exception
+    {
+        NegativeLookupCache absent = new NegativeLookupCache( file, null );
+        absent.add( artifact( 0 ) );
+
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.setLength( raf.length() + 5 );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        absent.add( artifact( 1 ) );
+
+        NegativeLookupCache reloaded = new NegativeLookupCache( file, null );
+        assertTrue( reloaded.get( artifact( 0 ) ) > 0 );
+        assertTrue( reloaded.get( artifact( 1 ) ) > 0 );
+    }
+
+    @Test
+    public void testNamePerRepository()
+    {
+        RemoteRepository repo1 = new RemoteRepository( "a", "default", "http://localhost/repo" );
+        RemoteRepository repo2 = new RemoteRepository( "b", "default", "http://localhost/repo/" );
+        RemoteRepository repo3 = new RemoteRepository( "a", "default", "http://localhost/other" );
+        assertEquals( NegativeLookupCache.getName( repo1 ), NegativeLookupCache.getName( repo2 ) );
+        assertFalse( NegativeLookupCache.getName( repo1 ).equals( NegativeLookupCache.getName( repo3 ) ) );
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Test;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+/**
+ */
+public class ObjectPoolTest
+{
+
+    @Test
+    public void testIntern()
+    {
+        ObjectPool<Artifact> pool = new ObjectPool<Artifact>();
+
+        Artifact a1 = new DefaultArtifact( "gid:aid:ext:1" );
+        Artifact a2 = new DefaultArtifact( "gid:aid:ext:1" );
+        Artifact b = new DefaultArtifact( "gid:aid:ext:2" );
+
+        assertSame( a1, pool.intern( a1 ) );
+        assertSame( a1, pool.intern( a2 ) );
+        assertSame( b, pool.intern( b ) );
+    }
+
+    @Test
+    public void testConcurrentIntern()
+        throws Exception
+    {
+        final ObjectPool<String> pool = new ObjectPool<String>();
+        final int threadCount = 16;
+        final AtomicReferenceArray<String> results = new AtomicReferenceArray<String>( threadCount );
+        final CountDownLatch start = new CountDownLatch( 1 );
+
+        Thread[] threads = new Thread[threadCount];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        return;
+                    }
+                    results.set( index, pool.intern( new String( "shared" ) ) );
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        String pooled = results.get( 0 );
+        assertEquals( "shared", pooled );
+        for ( int i = 1; i < threadCount; i++ )
+        {
+            assertSame( pooled, results.get( i ) );
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.RequestTrace;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.impl.ArtifactResolver;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResolutionException;
+import org.sonatype.aether.resolution.ArtifactResult;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+import org.sonatype.aether.transfer.ArtifactNotFoundException;
+import org.sonatype.aether.util.DefaultRequestTrace;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+
+public class ParallelArtifactResolverTest
+{
+
+    private TestRepositorySystemSession session;
+
+    private List<Integer> batchSizes;
+
+    private ArtifactResolver resolver;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        session = new TestRepositorySystemSession();
+        Map<String, Object> config = new HashMap<String, Object>();
+        config.put( ParallelArtifactResolver.CONFIG_PROP_THREADS, "3" );
+        config.put( ParallelArtifactResolver.CONFIG_PROP_BATCH_SIZE, "2" );
+        session.setConfigProperties( config );
+
+        batchSizes = Collections.synchronizedList( new ArrayList<Integer>() );
+
+        resolver = new ArtifactResolver()
+        {
+            public ArtifactResult resolveArtifact( RepositorySystemSession session, ArtifactRequest request )
+                throws ArtifactResolutionException
+            {
+                return resolveArtifacts( session, Collections.singleton( request ) ).get( 0 );
+            }
+
+            public List<ArtifactResult> resolveArtifacts( RepositorySystemSession session,
+                                                          Collection<? extends ArtifactRequest> requests )
+                throws ArtifactResolutionException
+            {
+                batchSizes.add( requests.size() );
+                List<ArtifactResult> results = new ArrayList<ArtifactResult>();
+                boolean failures = false;
+                for ( ArtifactRequest request : requests )
+                {
+                    ArtifactResult result = new ArtifactResult( request );
+                    if ( request.getArtifact().getArtifactId().startsWith( "missing" )
+                        && request.getRepositories().isEmpty() )
+                    {
+                        result.addException( new ArtifactNotFoundException( request.getArtifact(), null ) );
+                        failures = true;
+                    }
+                    else
+                    {
+                        result.setArtifact( request.getArtifact().setFile( new File( "target" ) ) );
+                    }
+                    results.add( result );
+                }
+                if ( failures )
+                {
+                    throw new ArtifactResolutionException( results );
+                }
+                return results;
+            }
+        };
+    }
+
+    private DependencyNode newGraph( String... artifactIds )
+    {
+        DefaultDependencyNode root = new DefaultDependencyNode();
+        for ( String artifactId : artifactIds )
+        {
+            Dependency dependency = new Dependency( new DefaultArtifact( "gid", artifactId, "jar", "1" ), "compile" );
+            root.getChildren().add( new DefaultDependencyNode( dependency ) );
+        }
+        return root;
+    }
+
+    @Test
+    public void testResultsInRequestOrder()
+        throws Exception
+    {
+        DependencyNode root = newGraph( "a", "b", "c", "d", "e" );
+
+        RequestTrace trace = DefaultRequestTrace.newChild( null, root );
+        List<ArtifactResult> results = new ParallelArtifactResolver( resolver, session, trace ).resolve( root, null );
+
+        assertEquals( 5, results.size() );
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            assertSame( root.getChildren().get( i ), results.get( i ).getRequest().getDependencyNode() );
+            assertTrue( results.get( i ).isResolved() );
+        }
+        assertEquals( 3, batchSizes.size() );
+    }
+
+    @Test
+    public void testDuplicateArtifactsAreResolvedOnce()
+        throws Exception
+    {
+        DependencyNode root = newGraph( "a", "b", "a", "c", "b" );
+
+        List<ArtifactResult> results = new ParallelArtifactResolver( resolver, session, null ).resolve( root, null );
+
+        assertEquals( 5, results.size() );
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            assertSame( root.getChildren().get( i ), results.get( i ).getRequest().getDependencyNode() );
+            assertTrue( results.get( i ).isResolved() );
+        }
+        int requested = 0;
+        for ( int size : batchSizes )
+        {
+            requested += size;
+        }
+        assertEquals( 3, requested );
+    }
+
+    @Test
+    public void testDuplicateArtifactsWithOtherRepositoriesAreRetriedOnFailure()
+        throws Exception
+    {
+        DefaultDependencyNode root = (DefaultDependencyNode) newGraph( "a", "missing", "b" );
+        Dependency dependency = root.getChildren().get( 1 ).getDependency();
+        DefaultDependencyNode node = new DefaultDependencyNode( dependency );
+        node.setRepositories( Arrays.asList( new RemoteRepository( "central", "default", "http://localhost" ) ) );
+        root.getChildren().add( node );
+
+        try
+        {
+            new ParallelArtifactResolver( resolver, session, null ).resolve( root, null );
+            fail( "expected resolution failure" );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            assertEquals( 4, e.getResults().size() );
+            assertFalse( e.getResults().get( 1 ).isResolved() );
+            assertTrue( e.getResults().get( 3 ).isResolved() );
+            assertSame( node, e.getResults().get( 3 ).getRequest().getDependencyNode() );
+        }
+        int requested = 0;
+        for ( int size : batchSizes )
+        {
+            requested += size;
+        }
+        assertEquals( 4, requested );
+    }
+
+    @Test
+    public void testFailureReportsAllResults()
+    {
+        DependencyNode root = newGraph( "a", "b", "missing", "d", "e" );
+
+        try
+        {
+            new ParallelArtifactResolver( resolver, session, null ).resolve( root, null );
+            fail( "expected resolution failure" );
+        }
+        catch ( ArtifactResolutionException e )
+        {
+            assertEquals( 5, e.getResults().size() );
+            assertFalse( e.getResults().get( 2 ).isResolved() );
+            assertTrue( e.getResults().get( 3 ).isResolved() );
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.test.util.TestFileUtils;
+
+/**
+ */
+public class RepositoryRoutingTest
+{
+
+    private File file;
+
+    private RemoteRepository central;
+
+    private RemoteRepository snapshots;
+
+    private RemoteRepository thirdparty;
+
+    private List<RemoteRepository> repos;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        file = new File( TestFileUtils.createTempDir( "routing" ), "routing.properties" );
+        central = new RemoteRepository( "central", "default", "http://localhost/central" );
+        snapshots = new RemoteRepository( "snapshots", "default", "http://localhost/snapshots" );
+        thirdparty = new RemoteRepository( "thirdparty", "default", "http://localhost/thirdparty" );
+        repos = Arrays.asList( central, snapshots, thirdparty );
+    }
+
+    @After
+    public void teardown()
+        throws Exception
+    {
+        TestFileUtils.delete( file.getParentFile() );
+    }
+
+    @Test
+    public void testGetPrefixes()
+    {
+        assertEquals( Arrays.asList( "org.apache.maven.plugins", "org.apache.maven", "org.apache" ),
+                      RepositoryRouting.getPrefixes( "org.apache.maven.plugins" ) );
+        assertEquals( Arrays.asList( "org.apache" ), RepositoryRouting.getPrefixes( "org.apache" ) );
+        assertEquals( Arrays.asList( "junit" ), RepositoryRouting.getPrefixes( "junit" ) );
+    }
+
+    @Test
+    public void testUnknownGroupKeepsDeclaredOrder()
+    {
+        RepositoryRouting routing = new RepositoryRouting( file, null );
+        RepositoryRouting.Route route = routing.route( "org.example", repos, false );
+        assertEquals( Collections.emptyList(), route.preferred );
+        assertEquals( repos, route.fallback );
+    }
+
+    @Test
+    public void testHitsArePreferred()
+    {
+        RepositoryRouting routing = new RepositoryRouting( file, null );
+        routing.hit( "org.example.core", thirdparty );
+        routing.hit( "org.example.core", snapshots );
+        routing.miss( "org.example.core", snapshots );
+
+        RepositoryRouting.Route route = routing.route( "org.example.core", repos, false );
+        assertEquals( Arrays.asList( thirdparty, snapshots ), route.preferred );
+        assertEquals( Arrays.asList( central ), route.fallback );
+
+        // sibling groups keep the declared order unless routing by prefix was requested
+        route = routing.route( "org.example.util", repos, false );
+        assertEquals( Collections.emptyList(), route.preferred );
+        assertEquals( repos, route.fallback );
+
+        route = routing.route( "org.example.util", repos, true );
+        assertEquals( Arrays.asList( thirdparty, snapshots ), route.preferred );
+    }
+
+    @Test
+    public void testMissesAreDemoted()
+    {
+        RepositoryRouting routing = new RepositoryRouting( file, null );
+        for ( int i = 0; i < RepositoryRouting.DEMOTION_THRESHOLD; i++ )
+        {
+            routing.miss( "org.example", central );
+        }
+
+        RepositoryRouting.Route route = routing.route( "org.example", repos, false );
+        assertEquals( Collections.emptyList(), route.preferred );
+        assertEquals( Arrays.asList( snapshots, thirdparty, central ), route.fallback );
+    }
+
+    @Test
+    public void testFlushAndReload()
+    {
+        RepositoryRouting routing = new RepositoryRouting( file, null );
+        routing.hit( "org.example", thirdparty );
+        routing.flush();
+
+        RepositoryRouting reloaded = new RepositoryRouting( file, null );
+        assertEquals( Arrays.asList( thirdparty ), reloaded.route( "org.example", repos, false ).preferred );
+    }
+
+    @Test
+    public void testFlushMergesWithOtherProcesses()
+    {
+        RepositoryRouting routing1 = new RepositoryRouting( file, null );
+        RepositoryRouting routing2 = new RepositoryRouting( file, null );
+        routing1.hit( "org.example", central );
+        routing1.flush();
+        routing2.hit( "org.example", central );
+        routing2.miss( "org.example", central );
+        routing2.flush();
+        routing1.miss( "org.example", central );
+        routing1.flush();
+
+        Properties props = new TrackingFileManager().read( file );
+        assertEquals( "2,2", props.getProperty( "org.example>http://localhost/central/" ) );
+    }
+
+    @Test
+    public void testCountersDecay()
+    {
+        RepositoryRouting routing = new RepositoryRouting( file, null );
+        for ( int i = 0; i < RepositoryRouting.MAX_COUNT; i++ )
+        {
+            routing.hit( "org.example", central );
+        }
+        routing.miss( "org.example", central );
+        routing.flush();
+
+        Properties props = new TrackingFileManager().read( file );
+        assertEquals( "500,1", props.getProperty( "org.example>http://localhost/central/" ) );
+    }
+
+}
@@ -0,0 +1,304 @@
+package org.sonatype.aether.impl.internal;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.collection.CollectRequest;
+import org.sonatype.aether.collection.DependencyGraphTransformer;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.WorkspaceReader;
+import org.sonatype.aether.repository.WorkspaceRepository;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResult;
+import org.sonatype.aether.resolution.DependencyRequest;
+import org.sonatype.aether.resolution.DependencyResult;
+import org.sonatype.aether.spi.log.NullLogger;
+import org.sonatype.aether.test.impl.TestLocalRepositoryManager;
+import org.sonatype.aether.test.impl.TestRepositorySystemSession;
+import org.sonatype.aether.test.util.TestFileUtils;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+import org.sonatype.aether.util.graph.selector.AndDependencySelector;
+import org.sonatype.aether.util.graph.selector.OptionalDependencySelector;
+import org.sonatype.aether.util.graph.selector.ScopeDependencySelector;
+import org.sonatype.aether.util.graph.transformer.ChainedDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.transformer.ConflictMarker;
+import org.sonatype.aether.util.graph.transformer.JavaEffectiveScopeCalculator;
+import org.sonatype.aether.util.repository.DefaultMirrorSelector;
+import org.sonatype.aether.util.version.GenericVersionScheme;
+
+/**
+ */
+public class ResolutionReplayCacheTest
+{
+
+    private DefaultRepositorySystemSession session;
+
+    private RemoteRepository repository;
+
+    private File file;
+
+    private StaticUpdateCheckManager updateCheckManager;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        session = new DefaultRepositorySystemSession();
+        session.setLocalRepositoryManager( new TestLocalRepositoryManager() );
+        repository = new RemoteRepository( "central", "default", "http://localhost/repo" );
+        file = TestFileUtils.createTempFile( "artifact" );
+        updateCheckManager = new StaticUpdateCheckManager( false );
+    }
+
+    @After
+    public void teardown()
+        throws Exception
+    {
+        TestFileUtils.delete( session.getLocalRepository().getBasedir() );
+        TestFileUtils.delete( file );
+    }
+
+    private DependencyRequest newRequest( String coords )
+    {
+        CollectRequest collectRequest =
+            new CollectRequest( new Dependency( new DefaultArtifact( coords ), "compile" ),
+                                Collections.singletonList( repository ) );
+        return new DependencyRequest( collectRequest, null );
+    }
+
+    private ResolutionReplayCache newReplay( RepositorySystemSession session, DependencyRequest request )
+    {
+        return new ResolutionReplayCache( session, request, new StubRemoteRepositoryManager(), updateCheckManager,
+                                          NullLogger.INSTANCE );
+    }
+
+    private DependencyResult newResult( DependencyRequest request )
+        throws Exception
+    {
+        GenericVersionScheme scheme = new GenericVersionScheme();
+
+        DefaultDependencyNode root = new DefaultDependencyNode( request.getCollectRequest().getRoot() );
+        root.setVersion( scheme.parseVersion( "1" ) );
+        root.setVersionConstraint( scheme.parseVersionConstraint( "1" ) );
+
+        DefaultDependencyNode child =
+            new DefaultDependencyNode( new Dependency( new DefaultArtifact( "gid:aid:jar:[1,2)" ).setFile( file ),
+                                                       "runtime", true ) );
+        child.setVersion( scheme.parseVersion( "1.5" ) );
+        child.setVersionConstraint( scheme.parseVersionConstraint( "[1,2)" ) );
+        child.setRepositories( Collections.singletonList( repository ) );
+        root.getChildren().add( child );
+
+        ArtifactResult artifactResult = new ArtifactResult( new ArtifactRequest( child ) );
+        artifactResult.setArtifact( child.getDependency().getArtifact() );
+        artifactResult.setRepository( repository );
+
+        DependencyResult result = new DependencyResult( request );
+        result.setRoot( root );
+        result.setArtifactResults( Collections.singletonList( artifactResult ) );
+        return result;
+    }
+
+    @Test
+    public void testFingerprint()
+    {
+        ResolutionReplayCache replay1 = newReplay( session, newRequest( "gid:aid:1" ) );
+        ResolutionReplayCache replay2 = newReplay( session, newRequest( "gid:aid:1" ) );
+        ResolutionReplayCache replay3 = newReplay( session, newRequest( "gid:aid:2" ) );
+
+        assertNotNull( replay1.getFingerprint() );
+        assertEquals( replay1.getFingerprint(), replay2.getFingerprint() );
+        assertFalse( replay1.getFingerprint().equals( replay3.getFingerprint() ) );
+
+        session.setUserProperty( "key", "value" );
+        ResolutionReplayCache replay4 = newReplay( session, newRequest( "gid:aid:1" ) );
+        assertFalse( replay1.getFingerprint().equals( replay4.getFingerprint() ) );
+
+        DependencyRequest request = new DependencyRequest( new DefaultDependencyNode(), null );
+        assertNull( newReplay( session, request ).getFingerprint() );
+    }
+
+    private static DependencyGraphTransformer newTransformer()
+    {
+        return new ChainedDependencyGraphTransformer( new ConflictMarker(), new JavaEffectiveScopeCalculator() );
+    }
+
+    @Test
+    public void testEquivalentComponentsYieldSameFingerprint()
+    {
+        session.setDependencySelector( new AndDependencySelector( new ScopeDependencySelector( "test", "provided" ),
+                                                                  new OptionalDependencySelector() ) );
+        session.setDependencyGraphTransformer( newTransformer() );
+        ResolutionReplayCache replay1 = newReplay( session, newRequest( "gid:aid:1" ) );
+
+        session.setDependencySelector( new AndDependencySelector( new ScopeDependencySelector( "provided", "test" ),
+                                                                  new OptionalDependencySelector() ) );
+        session.setDependencyGraphTransformer( newTransformer() );
+        ResolutionReplayCache replay2 = newReplay( session, newRequest( "gid:aid:1" ) );
+
+        session.setDependencySelector( new AndDependencySelector( new ScopeDependencySelector( "test" ),
+                                                                  new OptionalDependencySelector() ) );
+        ResolutionReplayCache replay3 = newReplay( session, newRequest( "gid:aid:1" ) );
+
+        assertNotNull( replay1.getFingerprint() );
+        assertEquals( replay1.getFingerprint(), replay2.getFingerprint() );
+        assertFalse( replay1.getFingerprint().equals( replay3.getFingerprint() ) );
+    }
+
+    @Test
+    public void testMirrorSelectorAffectsFingerprint()
+    {
+        ResolutionReplayCache replay1 = newReplay( session, newRequest( "gid:aid:1" ) );
+
+        session.setMirrorSelector( new DefaultMirrorSelector().add( "mirror", "http://localhost/mirror", "default",
+                                                                    false, "*", "*" ) );
+        ResolutionReplayCache replay2 = newReplay( session, newRequest( "gid:aid:1" ) );
+
+        assertNotNull( replay2.getFingerprint() );
+        assertFalse( replay1.getFingerprint().equals( replay2.getFingerprint() ) );
+    }
+
+    @Test
+    public void testWorkspaceReaderDisablesReplay()
+    {
+        session.setWorkspaceReader( new NoWorkspaceReader() );
+        assertNull( newReplay( session, newRequest( "gid:aid:1" ) ).getFingerprint() );
+    }
+
+    @Test
+    public void testAnonymousComponentsDisableReplay()
+        throws Exception
+    {
+        TestRepositorySystemSession session = new TestRepositorySystemSession();
+        assertNull( newReplay( session, newRequest( "gid:aid:1" ) ).getFingerprint() );
+
+        TestFileUtils.delete( session.getLocalRepository().getBasedir() );
+    }
+
+    @Test
+    public void testStoreAndLoad()
+        throws Exception
+    {
+        DependencyRequest request = newRequest( "gid:root:1" );
+        ResolutionReplayCache replay = newReplay( session, request );
+        assertNull( replay.load( request, null ) );
+
+        DependencyResult result = newResult( request );
+        replay.store( result );
+        assertTrue( replay.getReplayFile().isFile() );
+
+        DependencyResult replayed = replay.load( request, null );
+        assertNotNull( replayed );
+        assertSame( request, replayed.getRequest() );
+        assertTrue( replay.matches( result, replayed ) );
+
+        DependencyNode root = replayed.getRoot();
+        assertEquals( "gid:root:jar:1", root.getDependency().getArtifact().toString() );
+        assertEquals( 1, root.getChildren().size() );
+
+        DependencyNode child = root.getChildren().get( 0 );
+        assertSame( child, replayed.getArtifactResults().get( 0 ).getRequest().getDependencyNode() );
+        assertEquals( file, child.getDependency().getArtifact().getFile() );
+        assertEquals( "runtime", child.getDependency().getScope() );
+        assertTrue( child.getDependency().isOptional() );
+        assertEquals( "1.5", child.getVersion().toString() );
+        assertEquals( "[1,2)", child.getVersionConstraint().toString() );
+        assertEquals( Collections.singletonList( repository ), child.getRepositories() );
+        assertEquals( repository, replayed.getArtifactResults().get( 0 ).getRepository() );
+    }
+
+    @Test
+    public void testModifiedFileInvalidatesReplay()
+        throws Exception
+    {
+        DependencyRequest request = newRequest( "gid:root:1" );
+        ResolutionReplayCache replay = newReplay( session, request );
+        replay.store( newResult( request ) );
+
+        file.setLastModified( file.lastModified() - 10000 );
+
+        assertNull( replay.load( request, null ) );
+    }
+
+    @Test
+    public void testUpdatePolicyInvalidatesReplay()
+        throws Exception
+    {
+        DependencyRequest request = newRequest( "gid:root:1" );
+        ResolutionReplayCache replay = newReplay( session, request );
+        replay.store( newResult( request ) );
+        assertNotNull( replay.load( request, null ) );
+
+        updateCheckManager = new StaticUpdateCheckManager( true );
+        replay = newReplay( session, request );
+        assertNull( replay.load( request, null ) );
+    }
+
+    @Test
+    public void testMismatch()
+        throws Exception
+    {
+        DependencyRequest request = newRequest( "gid:root:1" );
+        ResolutionReplayCache replay = newReplay( session, request );
+
+        DependencyResult result1 = newResult( request );
+        DependencyResult result2 = newResult( request );
+        result2.getRoot().getChildren().get( 0 ).setScope( "test" );
+
+        assertTrue( replay.matches( result1, newResult( request ) ) );
+        assertFalse( replay.matches( result1, result2 ) );
+    }
+
+    @Test
+    public void testVerificationSample()
+    {
+        DependencyRequest request = newRequest( "gid:root:1" );
+        ResolutionReplayCache replay = newReplay( session, request );
+        assertFalse( replay.isVerificationDue() );
+
+        session.setConfigProperty( ResolutionReplayCache.CONFIG_PROP_VERIFY, "100" );
+        assertTrue( replay.isVerificationDue() );
+    }
+
+    static class NoWorkspaceReader
+        implements WorkspaceReader
+    {
+
+        public WorkspaceRepository getRepository()
+        {
+            return new WorkspaceRepository();
+        }
+
+        public File findArtifact( Artifact artifact )
+        {
+            return null;
+        }
+
+        public List<String> findVersions( Artifact artifact )
+        {
+            return Collections.emptyList();
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.sonatype.aether.spi.localrepo;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.Collection;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.repository.LocalArtifactRegistration;
+import org.sonatype.aether.repository.LocalRepositoryManager;
+
+/**
+ * A local repository manager that can register several artifacts in one go. Managers that maintain some kind of
+ * index can implement this interface to update their bookkeeping once per batch rather than once per artifact. The
+ * repository system uses this capability when it is offered and otherwise registers the artifacts one by one via
+ * {@link LocalRepositoryManager#add(RepositorySystemSession, LocalArtifactRegistration)}.
+ */
+public interface BatchLocalRepositoryManager
+    extends LocalRepositoryManager
+{
+
+    /**
+     * Registers the specified artifacts with this local repository. The effect must be the same as registering each
+     * artifact individually.
+     * 
+     * @param session The repository system session during which the artifacts were installed/downloaded, must not be
+     *            {@code null}.
+     * @param requests The registration requests, must not be {@code null}.
+     */
+    void add( RepositorySystemSession session, Collection<? extends LocalArtifactRegistration> requests );
+
+}
@@ -0,0 +1,390 @@
+package org.sonatype.aether.util;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sonatype.aether.RepositoryCache;
+import org.sonatype.aether.RepositorySystemSession;
+
+/**
+ * A repository cache with bounded capacity, suitable for use with long-lived caches that are shared among many
+ * repository system sessions. Entries are grouped into namespaces (by default the class of the key) and each namespace
+ * holds entries up to a configurable total weight, evicting the least recently used entries once its capacity is
+ * exceeded. The weight of an entry estimates the size of its data (see {@link #getWeight(Object, Object)}) and is
+ * determined once when the data is put into the cache. Data that grows afterwards, like the object pools the dependency
+ * collector puts into the cache and fills during a collection, is therefore not bounded by this cache, such data is
+ * best referenced softly. Optionally, cached data can be referenced softly to allow the garbage collector to reclaim it
+ * under memory pressure. Basic usage statistics are available via {@link #getStatistics()}.
+ */
+public class BoundedRepositoryCache
+    implements RepositoryCache
+{
+
+    private final ConcurrentMap<Object, Segment> segments = new ConcurrentHashMap<Object, Segment>();
+
+    private final Map<Object, Integer> capacities = new ConcurrentHashMap<Object, Integer>();
+
+    private final int defaultCapacity;
+
+    private final boolean softValues;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache that keeps strongly referenced entries up to a total weight of 1024 per namespace.
+     */
+    public BoundedRepositoryCache()
+    {
+        this( 1024, false );
+    }
+
+    /**
+     * Creates a new cache with the specified default capacity per namespace.
+     * 
+     * @param defaultCapacity The maximum total weight of the entries per namespace, must be positive.
+     * @param softValues {@code true} to reference the cached data softly, {@code false} to reference it strongly.
+     */
+    public BoundedRepositoryCache( int defaultCapacity, boolean softValues )
+    {
+        if ( defaultCapacity <= 0 )
+        {
+            throw new IllegalArgumentException( "capacity must be positive: " + defaultCapacity );
+        }
+        this.defaultCapacity = defaultCapacity;
+        this.softValues = softValues;
+    }
+
+    /**
+     * Sets the capacity for the namespace of the specified key type. The new capacity only affects segments that have
+     * not been accessed yet, i.e. capacities should be configured before the cache is put to use.
+     * 
+     * @param keyType The type of keys whose capacity should be set, must not be {@code null}.
+     * @param capacity The maximum total weight of the entries for keys of the specified type, must be positive.
+     * @return This cache for chaining, never {@code null}.
+     */
+    public BoundedRepositoryCache setCapacity( Class<?> keyType, int capacity )
+    {
+        if ( keyType == null )
+        {
+            throw new IllegalArgumentException( "key type must not be null" );
+        }
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( "capacity must be positive: " + capacity );
+        }
+        capacities.put( keyType, Integer.valueOf( capacity ) );
+        return this;
+    }
+
+    /**
+     * Determines the namespace for the specified key. The default implementation uses the class of the key.
+     * 
+     * @param key The cache key, never {@code null}.
+     * @return The namespace of the key, never {@code null}.
+     */
+    protected Object getNamespace( Object key )
+    {
+        return key.getClass();
+    }
+
+    /**
+     * Estimates the size of the specified data. The default implementation counts the elements of collections, maps and
+     * arrays plus one, and weighs any other data as one.
+     * 
+     * @param key The cache key, never {@code null}.
+     * @param data The cached data, never {@code null}.
+     * @return The weight of the entry, must be positive.
+     */
+    protected int getWeight( Object key, Object data )
+    {
+        if ( data instanceof Collection<?> )
+        {
+            return 1 + ( (Collection<?>) data ).size();
+        }
+        else if ( data instanceof Map<?, ?> )
+        {
+            return 1 + ( (Map<?, ?>) data ).size();
+        }
+        else if ( data instanceof Object[] )
+        {
+            return 1 + ( (Object[]) data ).length;
+        }
+        return 1;
+    }
+
+    private Segment getSegment( Object key )
+    {
+        Object namespace = getNamespace( key );
+        Segment segment = segments.get( namespace );
+        if ( segment == null )
+        {
+            Integer capacity = capacities.get( namespace );
+            segment = new Segment( ( capacity != null ) ? capacity.intValue() : defaultCapacity );
+            Segment existing = segments.putIfAbsent( namespace, segment );
+            if ( existing != null )
+            {
+                segment = existing;
+            }
+        }
+        return segment;
+    }
+
+    public Object get( RepositorySystemSession session, Object key )
+    {
+        Object data = getSegment( key ).get( key );
+        if ( data != null )
+        {
+            hits.incrementAndGet();
+        }
+        else
+        {
+            misses.incrementAndGet();
+        }
+        return data;
+    }
+
+    public void put( RepositorySystemSession session, Object key, Object data )
+    {
+        if ( data != null )
+        {
+            getSegment( key ).put( key, data );
+        }
+    }
+
+    /**
+     * Gets the raw entry for the specified key, i.e. the data or its soft reference, without updating statistics.
+     */
+    Object getEntry( Object key )
+    {
+        return getSegment( key ).getEntry( key );
+    }
+
+    /**
+     * Removes all entries from this cache. The statistics are not reset.
+     */
+    public void clear()
+    {
+        for ( Segment segment : segments.values() )
+        {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Gets the total number of entries currently held by this cache. Softly referenced entries whose data has already
+     * been reclaimed but which have not been purged yet are included in the count.
+     * 
+     * @return The number of cache entries.
+     */
+    public int size()
+    {
+        int size = 0;
+        for ( Segment segment : segments.values() )
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets a snapshot of the usage statistics of this cache.
+     * 
+     * @return The cache statistics, never {@code null}.
+     */
+    public Statistics getStatistics()
+    {
+        return new Statistics( hits.get(), misses.get(), evictions.get() );
+    }
+
+    /**
+     * A snapshot of the usage statistics of a {@link BoundedRepositoryCache}.
+     */
+    public static final class Statistics
+    {
+
+        private final long hitCount;
+
+        private final long missCount;
+
+        private final long evictionCount;
+
+        Statistics( long hitCount, long missCount, long evictionCount )
+        {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        /**
+         * Gets the number of lookups that found cached data.
+         * 
+         * @return The hit count.
+         */
+        public long getHitCount()
+        {
+            return hitCount;
+        }
+
+        /**
+         * Gets the number of lookups that found no cached data.
+         * 
+         * @return The miss count.
+         */
+        public long getMissCount()
+        {
+            return missCount;
+        }
+
+        /**
+         * Gets the number of entries that were evicted due to capacity limits or reclaimed by the garbage collector.
+         * 
+         * @return The eviction count.
+         */
+        public long getEvictionCount()
+        {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount;
+        }
+
+    }
+
+    private final class Segment
+    {
+
+        private final Map<Object, Object> entries;
+
+        private final Map<Object, Integer> weights;
+
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+        private final int capacity;
+
+        private long weight;
+
+        public Segment( int capacity )
+        {
+            this.capacity = capacity;
+            entries = new LinkedHashMap<Object, Object>( Math.min( capacity, 256 ), 0.75f, true );
+            weights = new HashMap<Object, Integer>( Math.min( capacity, 256 ) );
+        }
+
+        public synchronized Object get( Object key )
+        {
+            purge();
+            Object value = entries.get( key );
+            if ( value instanceof ValueRef )
+            {
+                ValueRef valueRef = (ValueRef) value;
+                value = valueRef.get();
+                if ( value == null )
+                {
+                    remove( valueRef );
+                }
+            }
+            return value;
+        }
+
+        synchronized Object getEntry( Object key )
+        {
+            return entries.get( key );
+        }
+
+        public synchronized void put( Object key, Object data )
+        {
+            purge();
+            remove( key );
+            int w = Math.max( 1, getWeight( key, data ) );
+            entries.put( key, softValues ? new ValueRef( key, data, queue ) : data );
+            weights.put( key, Integer.valueOf( w ) );
+            weight += w;
+
+            for ( Iterator<Object> it = entries.keySet().iterator(); weight > capacity && it.hasNext(); )
+            {
+                Object eldest = it.next();
+                it.remove();
+                weight -= weights.remove( eldest ).intValue();
+                evictions.incrementAndGet();
+            }
+        }
+
+        public synchronized void clear()
+        {
+            entries.clear();
+            weights.clear();
+            weight = 0;
+        }
+
+        public synchronized int size()
+        {
+            return entries.size();
+        }
+
+        private void purge()
+        {
+            for ( Reference<?> ref; ( ref = queue.poll() ) != null; )
+            {
+                remove( (ValueRef) ref );
+            }
+        }
+
+        private void remove( ValueRef valueRef )
+        {
+            // the reference might be stale, i.e. its key has already been mapped to new data
+            if ( entries.get( valueRef.key ) == valueRef )
+            {
+                remove( valueRef.key );
+                evictions.incrementAndGet();
+            }
+        }
+
+        private void remove( Object key )
+        {
+            if ( entries.remove( key ) != null )
+            {
+                weight -= weights.remove( key ).intValue();
+            }
+        }
+
+    }
+
+    private static final class ValueRef
+        extends SoftReference<Object>
+    {
+
+        final Object key;
+
+        public ValueRef( Object key, Object value, ReferenceQueue<Object> queue )
+        {
+            super( value, queue );
+            this.key = key;
+        }
+
+    }
+
+}
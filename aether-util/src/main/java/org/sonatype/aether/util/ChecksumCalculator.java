@@ -0,0 +1,154 @@
+package org.sonatype.aether.util;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Calculates checksums for the bytes of a transfer while they are streamed to/from the server, sparing another pass
+ * over the transferred file. The body of a request may be sent more than once (e.g. after an authentication
+ * challenge), so the calculation starts over whenever the data is rewound. If the bytes were not observed in order, the
+ * checksums are considered unavailable.
+ */
+public class ChecksumCalculator
+{
+
+    private final Map<String, Object> digests = new LinkedHashMap<String, Object>();
+
+    private long offset;
+
+    private boolean valid = true;
+
+    /**
+     * Creates a new calculator for the specified algorithms.
+     * 
+     * @param algos The names of checksum algorithms (cf. {@link MessageDigest#getInstance(String)} to use, must not be
+     *            {@code null}.
+     */
+    public ChecksumCalculator( Collection<String> algos )
+    {
+        for ( String algo : algos )
+        {
+            try
+            {
+                digests.put( algo, MessageDigest.getInstance( algo ) );
+            }
+            catch ( NoSuchAlgorithmException e )
+            {
+                digests.put( algo, e );
+            }
+        }
+    }
+
+    /**
+     * Prepares the calculation for data starting at the specified offset of the transfer.
+     * 
+     * @param position The offset of the data that will be passed to {@link #update(ByteBuffer)} next.
+     */
+    public synchronized void seek( long position )
+    {
+        if ( position == 0 )
+        {
+            reset();
+        }
+        else if ( position != offset )
+        {
+            valid = false;
+        }
+    }
+
+    /**
+     * Restarts the calculation from the beginning of the transfer.
+     */
+    public synchronized void reset()
+    {
+        for ( Object digest : digests.values() )
+        {
+            if ( digest instanceof MessageDigest )
+            {
+                ( (MessageDigest) digest ).reset();
+            }
+        }
+        offset = 0;
+        valid = true;
+    }
+
+    /**
+     * Updates the checksums with the remaining bytes of the specified buffer. The buffer position is not changed.
+     * 
+     * @param data The data to process, must not be {@code null}.
+     */
+    public synchronized void update( ByteBuffer data )
+    {
+        for ( Object digest : digests.values() )
+        {
+            if ( digest instanceof MessageDigest )
+            {
+                ( (MessageDigest) digest ).update( data.duplicate() );
+            }
+        }
+        offset += data.remaining();
+    }
+
+    /**
+     * Updates the checksums with the specified bytes.
+     * 
+     * @param bytes The buffer holding the data, must not be {@code null}.
+     * @param off The offset of the data within the buffer.
+     * @param len The number of bytes to process.
+     */
+    public synchronized void update( byte[] bytes, int off, int len )
+    {
+        for ( Object digest : digests.values() )
+        {
+            if ( digest instanceof MessageDigest )
+            {
+                ( (MessageDigest) digest ).update( bytes, off, len );
+            }
+        }
+        offset += len;
+    }
+
+    /**
+     * Gets the checksums of the data seen so far, provided it covers the specified number of bytes.
+     * 
+     * @param length The expected length of the transfer.
+     * @return The checksums indexed by algorithm name (or the exception that prevented their calculation), or
+     *         {@code null} if the data was not observed completely.
+     */
+    public synchronized Map<String, Object> get( long length )
+    {
+        if ( !valid || offset != length )
+        {
+            return null;
+        }
+
+        Map<String, Object> results = new LinkedHashMap<String, Object>();
+        for ( Map.Entry<String, Object> entry : digests.entrySet() )
+        {
+            Object digest = entry.getValue();
+            if ( digest instanceof MessageDigest )
+            {
+                results.put( entry.getKey(), ChecksumUtils.toHexString( ( (MessageDigest) digest ).digest() ) );
+            }
+            else
+            {
+                results.put( entry.getKey(), digest );
+            }
+        }
+        valid = false;
+        return results;
+    }
+
+}
@@ -173,7 +173,7 @@ public class ChecksumUtils
         return results;
     }
 
-    private static String toHexString( byte[] bytes )
+    static String toHexString( byte[] bytes )
     {
         StringBuilder buffer = new StringBuilder( bytes.length * 2 );
 
@@ -12,8 +12,6 @@ import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.sonatype.aether.artifact.Artifact;
 import org.sonatype.aether.artifact.ArtifactType;
@@ -66,18 +64,17 @@ public final class DefaultArtifact
      */
     public DefaultArtifact( String coords, Map<String, String> properties )
     {
-        Pattern p = Pattern.compile( "([^: ]+):([^: ]+)(:([^: ]*)(:([^: ]+))?)?:([^: ]+)" );
-        Matcher m = p.matcher( coords );
-        if ( !m.matches() )
+        String[] tokens = tokenize( coords );
+        if ( tokens == null )
         {
             throw new IllegalArgumentException( "Bad artifact coordinates " + coords
                 + ", expected format is <groupId>:<artifactId>[:<extension>[:<classifier>]]:<version>" );
         }
-        groupId = m.group( 1 );
-        artifactId = m.group( 2 );
-        extension = get( m.group( 4 ), "jar" );
-        classifier = get( m.group( 6 ), "" );
-        version = m.group( 7 );
+        groupId = tokens[0];
+        artifactId = tokens[1];
+        extension = get( tokens[2], "jar" );
+        classifier = get( tokens[3], "" );
+        version = tokens[4];
         file = null;
         this.properties = copy( properties );
     }
@@ -87,6 +84,67 @@ public final class DefaultArtifact
         return ( value == null || value.length() <= 0 ) ? defaultValue : value;
     }
 
+    /**
+     * Splits the specified coordinates into groupId, artifactId, extension, classifier and version. Only the extension
+     * may be empty, missing optional parts are reported as {@code null}.
+     * 
+     * @param coords The artifact coordinates to split, must not be {@code null}.
+     * @return The five coordinate parts or {@code null} if the coordinates are malformed.
+     */
+    private static String[] tokenize( String coords )
+    {
+        int[] colons = new int[4];
+        int count = 0;
+        for ( int i = 0, n = coords.length(); i < n; i++ )
+        {
+            char c = coords.charAt( i );
+            if ( c == ':' )
+            {
+                if ( count >= colons.length )
+                {
+                    return null;
+                }
+                colons[count++] = i;
+            }
+            else if ( c == ' ' )
+            {
+                return null;
+            }
+        }
+        if ( count < 2 )
+        {
+            return null;
+        }
+
+        String[] tokens = new String[5];
+        tokens[0] = token( coords, 0, colons[0], false );
+        tokens[1] = token( coords, colons[0] + 1, colons[1], false );
+        if ( count >= 3 )
+        {
+            tokens[2] = token( coords, colons[1] + 1, colons[2], true );
+        }
+        if ( count >= 4 )
+        {
+            tokens[3] = token( coords, colons[2] + 1, colons[3], false );
+        }
+        tokens[4] = token( coords, colons[count - 1] + 1, coords.length(), false );
+
+        if ( tokens[0] == null || tokens[1] == null || tokens[4] == null || ( count >= 4 && tokens[3] == null ) )
+        {
+            return null;
+        }
+        return tokens;
+    }
+
+    private static String token( String coords, int begin, int end, boolean emptyAllowed )
+    {
+        if ( begin >= end )
+        {
+            return emptyAllowed ? "" : null;
+        }
+        return coords.substring( begin, end );
+    }
+
     /**
      * Creates a new artifact with the specified coordinates and no classifier. Passing {@code null} for any of the
      * coordinates is equivalent to specifying an empty string.
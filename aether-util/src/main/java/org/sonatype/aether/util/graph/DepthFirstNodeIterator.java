@@ -0,0 +1,171 @@
+package org.sonatype.aether.util.graph;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.sonatype.aether.graph.DependencyNode;
+
+/**
+ * An iterator that lazily walks a dependency graph in depth-first order without building a list of the nodes. The
+ * traversal uses an explicit stack and hence supports arbitrarily deep graphs. Nodes can be returned in preorder or
+ * postorder. In unique mode, each node is returned only once regardless how many paths lead to it, just like
+ * {@link PreorderNodeListGenerator} and {@link PostorderNodeListGenerator} do. Otherwise, only cycles are cut and the
+ * memory required for the traversal is bounded by the depth of the graph rather than its size, at the expense of
+ * returning nodes reachable via multiple paths more than once.
+ * 
+ * <pre>
+ * for ( Iterator&lt;DependencyNode&gt; it = new DepthFirstNodeIterator( root, false, true ); it.hasNext(); )
+ * {
+ *     DependencyNode node = it.next();
+ *     ...
+ * }
+ * </pre>
+ */
+public class DepthFirstNodeIterator
+    implements Iterator<DependencyNode>
+{
+
+    private final DependencyNode root;
+
+    private final boolean postorder;
+
+    private final boolean unique;
+
+    private final Map<DependencyNode, Object> visitedNodes;
+
+    private final Stack<Frame> frames = new Stack<Frame>();
+
+    private boolean started;
+
+    private DependencyNode next;
+
+    /**
+     * Creates a new iterator over the specified dependency graph.
+     * 
+     * @param root The root node of the graph to walk, must not be {@code null}.
+     * @param postorder {@code true} to return a node after all its children, {@code false} to return it before them.
+     * @param unique {@code true} to return each node only once, {@code false} to only suppress cycles.
+     */
+    public DepthFirstNodeIterator( DependencyNode root, boolean postorder, boolean unique )
+    {
+        if ( root == null )
+        {
+            throw new IllegalArgumentException( "no root node specified" );
+        }
+        this.root = root;
+        this.postorder = postorder;
+        this.visitedNodes = new IdentityHashMap<DependencyNode, Object>( unique ? 512 : 64 );
+        this.unique = unique;
+    }
+
+    public boolean hasNext()
+    {
+        if ( next == null )
+        {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    public DependencyNode next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+        DependencyNode node = next;
+        next = null;
+        return node;
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Gets the current depth of the traversal, i.e. the number of nodes on the path from the root to the node that was
+     * most recently returned in preorder mode or the parent of the node most recently returned in postorder mode.
+     * 
+     * @return The current traversal depth.
+     */
+    public int getDepth()
+    {
+        return frames.size();
+    }
+
+    private DependencyNode advance()
+    {
+        if ( !started )
+        {
+            started = true;
+            if ( enter( root ) && !postorder )
+            {
+                return root;
+            }
+        }
+
+        while ( !frames.isEmpty() )
+        {
+            Frame frame = frames.peek();
+            if ( frame.children.hasNext() )
+            {
+                DependencyNode child = frame.children.next();
+                if ( enter( child ) && !postorder )
+                {
+                    return child;
+                }
+            }
+            else
+            {
+                frames.pop();
+                if ( !unique )
+                {
+                    visitedNodes.remove( frame.node );
+                }
+                if ( postorder )
+                {
+                    return frame.node;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private boolean enter( DependencyNode node )
+    {
+        if ( visitedNodes.put( node, Boolean.TRUE ) != null )
+        {
+            return false;
+        }
+        frames.push( new Frame( node ) );
+        return true;
+    }
+
+    private static final class Frame
+    {
+
+        final DependencyNode node;
+
+        final Iterator<DependencyNode> children;
+
+        Frame( DependencyNode node )
+        {
+            this.node = node;
+            this.children = node.getChildren().iterator();
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@ import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.sonatype.aether.RepositoryException;
 import org.sonatype.aether.collection.DependencyGraphTransformationContext;
@@ -80,10 +81,21 @@ public class ConflictIdSorter
             return;
         }
 
-        depth++;
+        NodeStack stack = new NodeStack();
+        stack.push( node, depth + 1, id );
 
-        for ( DependencyNode child : node.getChildren() )
+        while ( !stack.isEmpty() )
         {
+            NodeStack.Frame frame = stack.top();
+            if ( !frame.children.hasNext() )
+            {
+                stack.pop();
+                continue;
+            }
+
+            DependencyNode child = frame.children.next();
+            depth = frame.depth;
+
             Object key = conflictIds.get( child );
             ConflictId childId = ids.get( key );
             if ( childId == null )
@@ -96,12 +108,15 @@ public class ConflictIdSorter
                 childId.pullup( depth );
             }
 
-            if ( id != null )
+            if ( frame.data != null )
             {
-                id.add( childId );
+                ( (ConflictId) frame.data ).add( childId );
             }
 
-            buildConflitIdDAG( ids, child, childId, depth, visited, conflictIds );
+            if ( visited.put( child, Boolean.TRUE ) == null )
+            {
+                stack.push( child, depth + 1, childId );
+            }
         }
     }
 
@@ -110,72 +125,74 @@ public class ConflictIdSorter
         List<Object> sorted = new ArrayList<Object>( conflictIds.size() );
 
         RootQueue roots = new RootQueue( conflictIds.size() / 2 );
+        int index = 0;
         for ( ConflictId id : conflictIds )
         {
+            id.index = index++;
             if ( id.inDegree <= 0 )
             {
                 roots.add( id );
             }
         }
 
-        while ( !roots.isEmpty() )
-        {
-            ConflictId root = roots.remove();
-
-            sorted.add( root.key );
-
-            for ( ConflictId child : root.children )
-            {
-                child.inDegree--;
-                if ( child.inDegree == 0 )
-                {
-                    roots.add( child );
-                }
-            }
-        }
+        processRoots( sorted, roots, null );
 
         boolean cycle = sorted.size() < conflictIds.size();
 
-        while ( sorted.size() < conflictIds.size() )
+        if ( cycle )
         {
             // cycle -> deal gracefully with nodes still having positive in-degree
 
-            ConflictId nearest = null;
+            PriorityQueue<CycleCandidate> candidates = new PriorityQueue<CycleCandidate>( 64 );
             for ( ConflictId id : conflictIds )
             {
-                if ( id.inDegree <= 0 )
+                if ( id.inDegree > 0 )
                 {
-                    continue;
+                    candidates.add( new CycleCandidate( id ) );
                 }
-                if ( nearest == null || id.minDepth < nearest.minDepth
-                    || ( id.minDepth == nearest.minDepth && id.inDegree < nearest.inDegree ) )
+            }
+
+            while ( sorted.size() < conflictIds.size() )
+            {
+                CycleCandidate nearest = candidates.remove();
+                if ( nearest.inDegree != nearest.id.inDegree )
                 {
-                    nearest = id;
+                    // stale entry, the id has been sorted meanwhile or is queued again with a lower in-degree
+                    continue;
                 }
+
+                nearest.id.inDegree = 0;
+                roots.add( nearest.id );
+
+                processRoots( sorted, roots, candidates );
             }
+        }
 
-            nearest.inDegree = 0;
-            roots.add( nearest );
+        context.put( TransformationContextKeys.SORTED_CONFLICT_IDS, sorted );
+        context.put( TransformationContextKeys.CYCLIC_CONFLICT_IDS, Boolean.valueOf( cycle ) );
+    }
 
-            while ( !roots.isEmpty() )
-            {
-                ConflictId root = roots.remove();
+    private void processRoots( List<Object> sorted, RootQueue roots, PriorityQueue<CycleCandidate> candidates )
+    {
+        while ( !roots.isEmpty() )
+        {
+            ConflictId root = roots.remove();
 
-                sorted.add( root.key );
+            sorted.add( root.key );
 
-                for ( ConflictId child : root.children )
+            for ( ConflictId child : root.children )
+            {
+                child.inDegree--;
+                if ( child.inDegree == 0 )
                 {
-                    child.inDegree--;
-                    if ( child.inDegree == 0 )
-                    {
-                        roots.add( child );
-                    }
+                    roots.add( child );
+                }
+                else if ( candidates != null && child.inDegree > 0 )
+                {
+                    candidates.add( new CycleCandidate( child ) );
                 }
             }
         }
-
-        context.put( TransformationContextKeys.SORTED_CONFLICT_IDS, sorted );
-        context.put( TransformationContextKeys.CYCLIC_CONFLICT_IDS, Boolean.valueOf( cycle ) );
     }
 
     static final class ConflictId
@@ -189,6 +206,8 @@ public class ConflictIdSorter
 
         int minDepth;
 
+        int index;
+
         public ConflictId( Object key, int depth )
         {
             this.key = key;
@@ -209,13 +228,25 @@ public class ConflictIdSorter
 
         public void pullup( int depth )
         {
-            if ( depth < minDepth )
+            if ( depth >= minDepth )
+            {
+                return;
+            }
+            minDepth = depth;
+
+            List<ConflictId> pending = new ArrayList<ConflictId>();
+            pending.add( this );
+            while ( !pending.isEmpty() )
             {
-                minDepth = depth;
-                depth++;
-                for ( ConflictId child : children )
+                ConflictId id = pending.remove( pending.size() - 1 );
+                int childDepth = id.minDepth + 1;
+                for ( ConflictId child : id.children )
                 {
-                    child.pullup( depth );
+                    if ( childDepth < child.minDepth )
+                    {
+                        child.minDepth = childDepth;
+                        pending.add( child );
+                    }
                 }
             }
         }
@@ -249,6 +280,40 @@ public class ConflictIdSorter
 
     }
 
+    /**
+     * A snapshot of a conflict id with positive in-degree, used to pick the id at which to break a cycle. Candidates are
+     * ordered by depth, then in-degree, then discovery order. Whenever the in-degree of an id drops, a new candidate is
+     * queued, outdated candidates are recognized by their in-degree and skipped.
+     */
+    static final class CycleCandidate
+        implements Comparable<CycleCandidate>
+    {
+
+        final ConflictId id;
+
+        final int inDegree;
+
+        CycleCandidate( ConflictId id )
+        {
+            this.id = id;
+            this.inDegree = id.inDegree;
+        }
+
+        public int compareTo( CycleCandidate that )
+        {
+            if ( id.minDepth != that.id.minDepth )
+            {
+                return ( id.minDepth < that.id.minDepth ) ? -1 : 1;
+            }
+            if ( inDegree != that.inDegree )
+            {
+                return ( inDegree < that.inDegree ) ? -1 : 1;
+            }
+            return ( id.index < that.id.index ) ? -1 : ( ( id.index == that.id.index ) ? 0 : 1 );
+        }
+
+    }
+
     static final class RootQueue
     {
 
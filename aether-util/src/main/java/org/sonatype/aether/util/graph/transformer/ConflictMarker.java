@@ -58,11 +58,39 @@ public class ConflictMarker
         return node;
     }
 
-    private void analyze( DependencyNode node, Map<DependencyNode, Object> nodes, Map<Object, ConflictGroup> groups )
+    private void analyze( DependencyNode root, Map<DependencyNode, Object> nodes, Map<Object, ConflictGroup> groups )
+    {
+        NodeStack stack = new NodeStack();
+
+        if ( analyzeNode( root, nodes, groups ) )
+        {
+            stack.push( root, 0, null );
+        }
+
+        while ( !stack.isEmpty() )
+        {
+            NodeStack.Frame frame = stack.top();
+            if ( frame.children.hasNext() )
+            {
+                DependencyNode child = frame.children.next();
+                if ( analyzeNode( child, nodes, groups ) )
+                {
+                    stack.push( child, 0, null );
+                }
+            }
+            else
+            {
+                stack.pop();
+            }
+        }
+    }
+
+    private boolean analyzeNode( DependencyNode node, Map<DependencyNode, Object> nodes,
+                                 Map<Object, ConflictGroup> groups )
     {
         if ( nodes.put( node, SEEN ) != null )
         {
-            return;
+            return false;
         }
 
         Set<Object> keys = getKeys( node );
@@ -127,10 +155,7 @@ public class ConflictMarker
             }
         }
 
-        for ( DependencyNode child : node.getChildren() )
-        {
-            analyze( child, nodes, groups );
-        }
+        return true;
     }
 
     private Set<Object> merge( Set<Object> keys1, Set<Object> keys2 )
@@ -93,6 +93,34 @@ public class JavaEffectiveScopeCalculator
 
     private void buildConflictGroups( Map<Object, ConflictGroup> groups, DependencyNode node, DependencyNode parent,
                                       Map<?, ?> conflictIds )
+    {
+        NodeStack stack = new NodeStack();
+
+        if ( addToConflictGroup( groups, node, parent, conflictIds ) )
+        {
+            stack.push( node, 0, ( node.getDependency() != null ) ? node : null );
+        }
+
+        while ( !stack.isEmpty() )
+        {
+            NodeStack.Frame frame = stack.top();
+            if ( frame.children.hasNext() )
+            {
+                DependencyNode child = frame.children.next();
+                if ( addToConflictGroup( groups, child, (DependencyNode) frame.data, conflictIds ) )
+                {
+                    stack.push( child, 0, ( child.getDependency() != null ) ? child : null );
+                }
+            }
+            else
+            {
+                stack.pop();
+            }
+        }
+    }
+
+    private boolean addToConflictGroup( Map<Object, ConflictGroup> groups, DependencyNode node, DependencyNode parent,
+                                        Map<?, ?> conflictIds )
     {
         Object key = conflictIds.get( node );
 
@@ -117,14 +145,7 @@ public class JavaEffectiveScopeCalculator
             parents.add( parent );
         }
 
-        if ( !visited )
-        {
-            parent = ( node.getDependency() != null ) ? node : null;
-            for ( DependencyNode child : node.getChildren() )
-            {
-                buildConflictGroups( groups, child, parent, conflictIds );
-            }
-        }
+        return !visited;
     }
 
     private void resolve( ConflictGroup group, Map<?, ?> conflictIds, Set<?> prerequisites )
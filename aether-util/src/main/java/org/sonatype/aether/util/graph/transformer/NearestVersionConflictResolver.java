@@ -23,6 +23,7 @@ import org.sonatype.aether.collection.UnsolvableVersionConflictException;
 import org.sonatype.aether.graph.DependencyFilter;
 import org.sonatype.aether.graph.DependencyNode;
 import org.sonatype.aether.util.graph.PathRecordingDependencyVisitor;
+import org.sonatype.aether.util.version.VersionRangeSet;
 import org.sonatype.aether.version.Version;
 import org.sonatype.aether.version.VersionConstraint;
 
@@ -73,6 +74,37 @@ public class NearestVersionConflictResolver
                                 Map<DependencyNode, Integer> depths, ConflictGroup group, Map<?, ?> conflictIds,
                                 DependencyNode root )
         throws RepositoryException
+    {
+        NodeStack stack = new NodeStack();
+
+        if ( visitNode( node, parent, depth, depths, group, conflictIds, root ) )
+        {
+            stack.push( node, depth, null );
+        }
+
+        while ( !stack.isEmpty() )
+        {
+            NodeStack.Frame frame = stack.top();
+            if ( frame.children.hasNext() )
+            {
+                DependencyNode child = frame.children.next();
+                int childDepth = frame.depth + 1;
+                if ( visitNode( child, frame.node, childDepth, depths, group, conflictIds, root ) )
+                {
+                    stack.push( child, childDepth, null );
+                }
+            }
+            else
+            {
+                stack.pop();
+            }
+        }
+    }
+
+    private boolean visitNode( DependencyNode node, DependencyNode parent, int depth,
+                               Map<DependencyNode, Integer> depths, ConflictGroup group, Map<?, ?> conflictIds,
+                               DependencyNode root )
+        throws RepositoryException
     {
         Integer smallestDepth = depths.get( node );
         if ( smallestDepth == null || smallestDepth.intValue() > depth )
@@ -81,7 +113,7 @@ public class NearestVersionConflictResolver
         }
         else
         {
-            return;
+            return false;
         }
 
         Object key = conflictIds.get( node );
@@ -103,6 +135,7 @@ public class NearestVersionConflictResolver
             {
                 if ( group.constraints.add( constraint ) )
                 {
+                    group.addRanges( constraint );
                     if ( group.version != null && !constraint.containsVersion( group.version ) )
                     {
                         backtrack = true;
@@ -130,20 +163,19 @@ public class NearestVersionConflictResolver
                 {
                     backtrack( group, conflictIds, root );
                 }
-                return;
+                return false;
             }
         }
 
-        depth++;
-
-        for ( DependencyNode child : node.getChildren() )
-        {
-            selectVersion( child, node, depth, depths, group, conflictIds, root );
-        }
+        return true;
     }
 
     private boolean isAcceptable( ConflictGroup group, Version version )
     {
+        if ( group.ranges != null )
+        {
+            return group.ranges.containsVersion( version );
+        }
         for ( VersionConstraint constraint : group.constraints )
         {
             if ( !constraint.containsVersion( version ) )
@@ -244,6 +276,14 @@ public class NearestVersionConflictResolver
 
         final Collection<VersionConstraint> constraints = new HashSet<VersionConstraint>();
 
+        /**
+         * The intersection of all constraints or {@code null} if there are no constraints yet or if some constraint
+         * does not support range sets.
+         */
+        VersionRangeSet ranges;
+
+        boolean rangesSupported = true;
+
         final Map<DependencyNode, Position> candidates = new IdentityHashMap<DependencyNode, Position>( 32 );
 
         Version version;
@@ -260,6 +300,23 @@ public class NearestVersionConflictResolver
             this.position = new Position( null, Integer.MAX_VALUE );
         }
 
+        void addRanges( VersionConstraint constraint )
+        {
+            if ( rangesSupported )
+            {
+                VersionRangeSet set = VersionRangeSet.valueOf( constraint );
+                if ( set == null )
+                {
+                    rangesSupported = false;
+                    ranges = null;
+                }
+                else
+                {
+                    ranges = ( ranges != null ) ? ranges.intersect( set ) : set;
+                }
+            }
+        }
+
         @Override
         public String toString()
         {
@@ -0,0 +1,79 @@
+package org.sonatype.aether.util.graph.transformer;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.Iterator;
+
+import org.sonatype.aether.graph.DependencyNode;
+
+/**
+ * A stack of dependency nodes and their pending children, used to walk a dependency graph depth-first without
+ * recursion. The frames of popped nodes are recycled for subsequent pushes.
+ */
+final class NodeStack
+{
+
+    private Frame[] frames = new Frame[64];
+
+    private int size;
+
+    public boolean isEmpty()
+    {
+        return size <= 0;
+    }
+
+    public Frame top()
+    {
+        return frames[size - 1];
+    }
+
+    public void push( DependencyNode node, int depth, Object data )
+    {
+        if ( size >= frames.length )
+        {
+            Frame[] tmp = new Frame[size + size / 2 + 64];
+            System.arraycopy( frames, 0, tmp, 0, frames.length );
+            frames = tmp;
+        }
+        Frame frame = frames[size];
+        if ( frame == null )
+        {
+            frame = new Frame();
+            frames[size] = frame;
+        }
+        size++;
+
+        frame.node = node;
+        frame.children = node.getChildren().iterator();
+        frame.depth = depth;
+        frame.data = data;
+    }
+
+    public void pop()
+    {
+        Frame frame = frames[--size];
+        frame.node = null;
+        frame.children = null;
+        frame.data = null;
+    }
+
+    static final class Frame
+    {
+
+        DependencyNode node;
+
+        Iterator<DependencyNode> children;
+
+        int depth;
+
+        Object data;
+
+    }
+
+}
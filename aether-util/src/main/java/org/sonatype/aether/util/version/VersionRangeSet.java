@@ -0,0 +1,405 @@
+package org.sonatype.aether.util.version;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.sonatype.aether.version.Version;
+import org.sonatype.aether.version.VersionConstraint;
+import org.sonatype.aether.version.VersionRange;
+
+/**
+ * A normalized union of disjoint version ranges, sorted in ascending order. Unlike a {@link VersionConstraint} which
+ * tests its ranges one after the other, a range set locates the single relevant range via binary search and supports
+ * bulk operations like the selection of the matching versions from a sorted list of versions or the intersection with
+ * other range sets. Range sets are immutable and can only be created for constraints of the
+ * {@link GenericVersionScheme}.
+ */
+public final class VersionRangeSet
+{
+
+    private static final VersionRangeSet EMPTY = new VersionRangeSet( new GenericVersionRange[0] );
+
+    private static final Comparator<GenericVersionRange> LOWER_BOUND_ORDER = new Comparator<GenericVersionRange>()
+    {
+        public int compare( GenericVersionRange range1, GenericVersionRange range2 )
+        {
+            return compareLowerBounds( range1, range2 );
+        }
+    };
+
+    private final GenericVersionRange[] ranges;
+
+    private VersionRangeSet( GenericVersionRange[] ranges )
+    {
+        this.ranges = ranges;
+    }
+
+    /**
+     * Creates a range set matching the same versions as the specified constraint. A constraint without ranges yields a
+     * range set containing only the recommended version of the constraint.
+     * 
+     * @param constraint The version constraint to convert, must not be {@code null}.
+     * @return The range set or {@code null} if the constraint was not created by the {@link GenericVersionScheme}.
+     */
+    public static VersionRangeSet valueOf( VersionConstraint constraint )
+    {
+        Version version = constraint.getVersion();
+        if ( constraint.getRanges().isEmpty() )
+        {
+            if ( version == null )
+            {
+                return EMPTY;
+            }
+            if ( !( version instanceof GenericVersion ) )
+            {
+                return null;
+            }
+            return new VersionRangeSet( new GenericVersionRange[] { new GenericVersionRange( version, true, version,
+                                                                                             true ) } );
+        }
+
+        List<GenericVersionRange> ranges = new ArrayList<GenericVersionRange>( constraint.getRanges().size() );
+        for ( VersionRange range : constraint.getRanges() )
+        {
+            if ( !( range instanceof GenericVersionRange ) )
+            {
+                return null;
+            }
+            ranges.add( (GenericVersionRange) range );
+        }
+        return new VersionRangeSet( normalize( ranges ) );
+    }
+
+    private static GenericVersionRange[] normalize( List<GenericVersionRange> ranges )
+    {
+        Collections.sort( ranges, LOWER_BOUND_ORDER );
+
+        List<GenericVersionRange> merged = new ArrayList<GenericVersionRange>( ranges.size() );
+        GenericVersionRange current = null;
+        for ( GenericVersionRange range : ranges )
+        {
+            if ( current == null )
+            {
+                current = range;
+            }
+            else if ( isConnected( current, range ) )
+            {
+                if ( compareUpperBounds( range, current ) > 0 )
+                {
+                    current =
+                        new GenericVersionRange( current.getLowerBound(), current.isLowerBoundInclusive(),
+                                                 range.getUpperBound(), range.isUpperBoundInclusive() );
+                }
+            }
+            else
+            {
+                merged.add( current );
+                current = range;
+            }
+        }
+        if ( current != null )
+        {
+            merged.add( current );
+        }
+
+        return merged.toArray( new GenericVersionRange[merged.size()] );
+    }
+
+    /**
+     * Determines whether the second range, whose lower bound is not less than the lower bound of the first range,
+     * overlaps or touches the first range such that both can be merged into a single range.
+     */
+    private static boolean isConnected( GenericVersionRange first, GenericVersionRange second )
+    {
+        if ( first.getUpperBound() == null || second.getLowerBound() == null )
+        {
+            return true;
+        }
+        int comparison = second.getLowerBound().compareTo( first.getUpperBound() );
+        return comparison < 0 || ( comparison == 0 && ( first.isUpperBoundInclusive()
+            || second.isLowerBoundInclusive() ) );
+    }
+
+    static int compareLowerBounds( GenericVersionRange range1, GenericVersionRange range2 )
+    {
+        Version bound1 = range1.getLowerBound();
+        Version bound2 = range2.getLowerBound();
+        if ( bound1 == null )
+        {
+            return ( bound2 == null ) ? 0 : -1;
+        }
+        else if ( bound2 == null )
+        {
+            return 1;
+        }
+        int comparison = bound1.compareTo( bound2 );
+        if ( comparison == 0 && range1.isLowerBoundInclusive() != range2.isLowerBoundInclusive() )
+        {
+            comparison = range1.isLowerBoundInclusive() ? -1 : 1;
+        }
+        return comparison;
+    }
+
+    static int compareUpperBounds( GenericVersionRange range1, GenericVersionRange range2 )
+    {
+        Version bound1 = range1.getUpperBound();
+        Version bound2 = range2.getUpperBound();
+        if ( bound1 == null )
+        {
+            return ( bound2 == null ) ? 0 : 1;
+        }
+        else if ( bound2 == null )
+        {
+            return -1;
+        }
+        int comparison = bound1.compareTo( bound2 );
+        if ( comparison == 0 && range1.isUpperBoundInclusive() != range2.isUpperBoundInclusive() )
+        {
+            comparison = range1.isUpperBoundInclusive() ? 1 : -1;
+        }
+        return comparison;
+    }
+
+    private static GenericVersionRange intersect( GenericVersionRange range1, GenericVersionRange range2 )
+    {
+        GenericVersionRange lower = ( compareLowerBounds( range1, range2 ) >= 0 ) ? range1 : range2;
+        GenericVersionRange upper = ( compareUpperBounds( range1, range2 ) <= 0 ) ? range1 : range2;
+
+        if ( lower.getLowerBound() != null && upper.getUpperBound() != null )
+        {
+            int comparison = lower.getLowerBound().compareTo( upper.getUpperBound() );
+            if ( comparison > 0
+                || ( comparison == 0 && !( lower.isLowerBoundInclusive() && upper.isUpperBoundInclusive() ) ) )
+            {
+                return null;
+            }
+        }
+
+        if ( lower == upper )
+        {
+            return lower;
+        }
+        return new GenericVersionRange( lower.getLowerBound(), lower.isLowerBoundInclusive(), upper.getUpperBound(),
+                                        upper.isUpperBoundInclusive() );
+    }
+
+    /**
+     * Gets the disjoint ranges of this set.
+     * 
+     * @return The (read-only) ranges in ascending order, never {@code null}.
+     */
+    public List<VersionRange> getRanges()
+    {
+        return Collections.<VersionRange> unmodifiableList( Arrays.asList( ranges ) );
+    }
+
+    /**
+     * Indicates whether this set matches no version at all.
+     * 
+     * @return {@code true} if this set is empty, {@code false} otherwise.
+     */
+    public boolean isEmpty()
+    {
+        return ranges.length <= 0;
+    }
+
+    /**
+     * Determines whether the specified version is contained in one of the ranges of this set.
+     * 
+     * @param version The version to test, must not be {@code null}.
+     * @return {@code true} if this set contains the specified version, {@code false} otherwise.
+     */
+    public boolean containsVersion( Version version )
+    {
+        int index = -1;
+        for ( int low = 0, high = ranges.length - 1; low <= high; )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( isAboveLowerBound( ranges[mid], version ) )
+            {
+                index = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return index >= 0 && isBelowUpperBound( ranges[index], version );
+    }
+
+    /**
+     * Intersects this set with the specified set.
+     * 
+     * @param other The range set to intersect with, must not be {@code null}.
+     * @return The range set containing the versions contained in both sets, never {@code null}.
+     */
+    public VersionRangeSet intersect( VersionRangeSet other )
+    {
+        List<GenericVersionRange> result = new ArrayList<GenericVersionRange>();
+        for ( int i = 0, j = 0; i < ranges.length && j < other.ranges.length; )
+        {
+            GenericVersionRange range = intersect( ranges[i], other.ranges[j] );
+            if ( range != null )
+            {
+                result.add( range );
+            }
+            if ( compareUpperBounds( ranges[i], other.ranges[j] ) <= 0 )
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        if ( result.isEmpty() )
+        {
+            return EMPTY;
+        }
+        return new VersionRangeSet( result.toArray( new GenericVersionRange[result.size()] ) );
+    }
+
+    /**
+     * Selects the versions contained in this set from the specified list. Instead of testing each version, the bounds
+     * of each range are located via binary search so the cost grows only logarithmically with the number of versions.
+     * 
+     * @param versions The versions to filter, must not be {@code null} and must be sorted in ascending order.
+     * @return The (read-only) matching versions in ascending order, never {@code null}.
+     */
+    public <T extends Version> List<T> filter( List<T> versions )
+    {
+        List<T> result = null;
+        int from = 0;
+        for ( GenericVersionRange range : ranges )
+        {
+            from = findLowerBound( range, versions, from );
+            int to = findUpperBound( range, versions, from );
+            if ( from < to )
+            {
+                if ( result == null )
+                {
+                    result = new ArrayList<T>( to - from );
+                }
+                result.addAll( versions.subList( from, to ) );
+            }
+            from = to;
+        }
+        if ( result == null )
+        {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList( result );
+    }
+
+    /**
+     * Gets the index of the first version at or after the specified index which is not below the lower bound.
+     */
+    private static int findLowerBound( GenericVersionRange range, List<? extends Version> versions, int from )
+    {
+        int low = from;
+        for ( int high = versions.size(); low < high; )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( isAboveLowerBound( range, versions.get( mid ) ) )
+            {
+                high = mid;
+            }
+            else
+            {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the index of the first version at or after the specified index which is above the upper bound.
+     */
+    private static int findUpperBound( GenericVersionRange range, List<? extends Version> versions, int from )
+    {
+        int low = from;
+        for ( int high = versions.size(); low < high; )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( isBelowUpperBound( range, versions.get( mid ) ) )
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isAboveLowerBound( GenericVersionRange range, Version version )
+    {
+        Version bound = range.getLowerBound();
+        if ( bound == null )
+        {
+            return true;
+        }
+        int comparison = bound.compareTo( version );
+        return comparison < 0 || ( comparison == 0 && range.isLowerBoundInclusive() );
+    }
+
+    private static boolean isBelowUpperBound( GenericVersionRange range, Version version )
+    {
+        Version bound = range.getUpperBound();
+        if ( bound == null )
+        {
+            return true;
+        }
+        int comparison = bound.compareTo( version );
+        return comparison > 0 || ( comparison == 0 && range.isUpperBoundInclusive() );
+    }
+
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( obj == this )
+        {
+            return true;
+        }
+        else if ( !( obj instanceof VersionRangeSet ) )
+        {
+            return false;
+        }
+        return Arrays.equals( ranges, ( (VersionRangeSet) obj ).ranges );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode( ranges );
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder( 128 );
+        for ( GenericVersionRange range : ranges )
+        {
+            if ( buffer.length() > 0 )
+            {
+                buffer.append( ',' );
+            }
+            buffer.append( range );
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.sonatype.aether.util;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystemSession;
+
+public class BoundedRepositoryCacheTest
+{
+
+    private RepositorySystemSession session = new DefaultRepositorySystemSession();
+
+    @Test
+    public void testGetPut()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache();
+        assertNull( cache.get( session, "key" ) );
+        cache.put( session, "key", "value" );
+        assertEquals( "value", cache.get( session, "key" ) );
+        cache.put( session, "key", null );
+        assertEquals( "value", cache.get( session, "key" ) );
+
+        BoundedRepositoryCache.Statistics stats = cache.getStatistics();
+        assertEquals( 2, stats.getHitCount() );
+        assertEquals( 1, stats.getMissCount() );
+        assertEquals( 0, stats.getEvictionCount() );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache( 2, false );
+        cache.put( session, "a", "1" );
+        cache.put( session, "b", "2" );
+        cache.get( session, "a" );
+        cache.put( session, "c", "3" );
+
+        assertEquals( 2, cache.size() );
+        assertEquals( "1", cache.get( session, "a" ) );
+        assertNull( cache.get( session, "b" ) );
+        assertEquals( "3", cache.get( session, "c" ) );
+        assertEquals( 1, cache.getStatistics().getEvictionCount() );
+    }
+
+    @Test
+    public void testEvictionByWeight()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache( 4, false );
+        cache.put( session, "a", "1" );
+        cache.put( session, "b", "2" );
+        cache.put( session, "c", Arrays.asList( "x", "y" ) );
+
+        assertEquals( 2, cache.size() );
+        assertNull( cache.get( session, "a" ) );
+        assertEquals( "2", cache.get( session, "b" ) );
+        assertEquals( Arrays.asList( "x", "y" ), cache.get( session, "c" ) );
+        assertEquals( 1, cache.getStatistics().getEvictionCount() );
+
+        cache.put( session, "c", "3" );
+        cache.put( session, "d", "4" );
+        assertEquals( 3, cache.size() );
+        assertEquals( 1, cache.getStatistics().getEvictionCount() );
+    }
+
+    @Test
+    public void testCapacityPerNamespace()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache( 1, false );
+        cache.setCapacity( Integer.class, 3 );
+        for ( int i = 0; i < 3; i++ )
+        {
+            cache.put( session, Integer.valueOf( i ), "int" );
+            cache.put( session, String.valueOf( i ), "string" );
+        }
+
+        assertEquals( 4, cache.size() );
+        assertEquals( "int", cache.get( session, Integer.valueOf( 0 ) ) );
+        assertNull( cache.get( session, "0" ) );
+        assertEquals( "string", cache.get( session, "2" ) );
+    }
+
+    @Test
+    public void testSoftValues()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache( 16, true );
+        Object value = new Object();
+        cache.put( session, "key", value );
+        assertSame( value, cache.get( session, "key" ) );
+    }
+
+    @Test
+    public void testStaleSoftValueDoesNotRemoveReplacement()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache( 16, true );
+        cache.put( session, "key", new Object() );
+        Reference<?> stale = (Reference<?>) cache.getEntry( "key" );
+
+        Object value = new Object();
+        cache.put( session, "key", value );
+
+        // simulate the garbage collection of the replaced data
+        stale.clear();
+        stale.enqueue();
+
+        assertSame( value, cache.get( session, "key" ) );
+        assertEquals( 1, cache.size() );
+        assertEquals( 0, cache.getStatistics().getEvictionCount() );
+    }
+
+    @Test
+    public void testClear()
+    {
+        BoundedRepositoryCache cache = new BoundedRepositoryCache();
+        cache.put( session, "key", "value" );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertNull( cache.get( session, "key" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testInvalidCapacity()
+    {
+        new BoundedRepositoryCache( 0, false );
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.sonatype.aether.util;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sonatype.aether.test.util.TestFileUtils;
+
+/**
+ * 
+ */
+public class ChecksumCalculatorTest
+{
+
+    private static final List<String> ALGOS = Arrays.asList( "SHA-1", "MD5", "UNKNOWN" );
+
+    @After
+    public void tearDown()
+        throws Exception
+    {
+        TestFileUtils.deleteTempFiles();
+    }
+
+    @Test
+    public void testChunkedUpdatesMatchFileChecksums()
+        throws Exception
+    {
+        byte[] data = "the quick brown fox jumps over the lazy dog".getBytes( "UTF-8" );
+        File file = TestFileUtils.createTempFile( data, 1 );
+
+        ChecksumCalculator calculator = new ChecksumCalculator( ALGOS );
+        calculator.update( ByteBuffer.wrap( data, 0, 10 ) );
+        calculator.update( ByteBuffer.wrap( data, 10, data.length - 10 ) );
+
+        Map<String, Object> expected = ChecksumUtils.calc( file, ALGOS );
+        Map<String, Object> actual = calculator.get( data.length );
+        assertNotNull( actual );
+        assertEquals( expected.get( "SHA-1" ), actual.get( "SHA-1" ) );
+        assertEquals( expected.get( "MD5" ), actual.get( "MD5" ) );
+        assertTrue( actual.get( "UNKNOWN" ) instanceof Exception );
+    }
+
+    @Test
+    public void testRewindRestartsCalculation()
+        throws Exception
+    {
+        byte[] data = "some data".getBytes( "UTF-8" );
+        File file = TestFileUtils.createTempFile( data, 1 );
+
+        ChecksumCalculator calculator = new ChecksumCalculator( ALGOS );
+        calculator.update( ByteBuffer.wrap( data, 0, 4 ) );
+        calculator.seek( 0 );
+        calculator.update( ByteBuffer.wrap( data ) );
+
+        assertEquals( ChecksumUtils.calc( file, ALGOS ).get( "SHA-1" ), calculator.get( data.length ).get( "SHA-1" ) );
+    }
+
+    @Test
+    public void testIncompleteOrOutOfOrderDataYieldsNoChecksums()
+        throws Exception
+    {
+        byte[] data = "some data".getBytes( "UTF-8" );
+
+        ChecksumCalculator calculator = new ChecksumCalculator( ALGOS );
+        calculator.update( ByteBuffer.wrap( data, 0, 4 ) );
+        assertNull( calculator.get( data.length ) );
+
+        calculator.reset();
+        calculator.update( ByteBuffer.wrap( data, 0, 4 ) );
+        calculator.seek( 6 );
+        calculator.update( ByteBuffer.wrap( data, 6, data.length - 6 ) );
+        assertNull( calculator.get( data.length ) );
+    }
+
+    @Test
+    public void testUpdateDoesNotConsumeBuffer()
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[] { 1, 2, 3 } );
+        new ChecksumCalculator( ALGOS ).update( buffer );
+        assertEquals( 0, buffer.position() );
+    }
+
+    @Test
+    public void testArrayUpdatesMatchFileChecksums()
+        throws Exception
+    {
+        byte[] data = "the quick brown fox jumps over the lazy dog".getBytes( "UTF-8" );
+        File file = TestFileUtils.createTempFile( data, 1 );
+
+        ChecksumCalculator calculator = new ChecksumCalculator( ALGOS );
+        calculator.update( data, 0, 10 );
+        calculator.update( data, 10, data.length - 10 );
+
+        assertEquals( ChecksumUtils.calc( file, ALGOS ).get( "MD5" ), calculator.get( data.length ).get( "MD5" ) );
+    }
+
+}
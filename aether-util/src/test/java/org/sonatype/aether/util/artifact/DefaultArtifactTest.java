@@ -14,6 +14,8 @@ import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 import org.sonatype.aether.artifact.Artifact;
@@ -78,6 +80,32 @@ public class DefaultArtifactTest
         new DefaultArtifact( "gid:aid" );
     }
 
+    @Test
+    public void testDefaultArtifactStringMatchesCoordinatePattern()
+    {
+        Pattern p = Pattern.compile( "([^: ]+):([^: ]+)(:([^: ]*)(:([^: ]+))?)?:([^: ]+)" );
+        String[] coords =
+            { "gid:aid:ver", "gid:aid:ext:ver", "gid:aid::ver", "gid:aid:ext:cls:ver", "gid:aid::cls:ver", "gid",
+                "gid:aid", "gid:aid:", ":aid:ver", "gid::ver", "gid:aid:ext:cls:ver:x", "gid:aid:ext::ver",
+                "gid:aid:ext:cls:", "gid:aid:e xt:ver", " gid:aid:ver", "gid:aid:ver ", "::", ":::", "::::" };
+        for ( String coord : coords )
+        {
+            Matcher m = p.matcher( coord );
+            try
+            {
+                Artifact a = new DefaultArtifact( coord );
+                assertTrue( coord, m.matches() );
+                assertEquals( coord, m.group( 1 ), a.getGroupId() );
+                assertEquals( coord, m.group( 2 ), a.getArtifactId() );
+                assertEquals( coord, m.group( 7 ), a.getVersion() );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                assertFalse( coord, m.matches() );
+            }
+        }
+    }
+
     @Test
     public void testImmutability()
     {
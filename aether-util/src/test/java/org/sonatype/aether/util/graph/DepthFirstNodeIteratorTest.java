@@ -0,0 +1,105 @@
+package org.sonatype.aether.util.graph;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.test.util.DependencyGraphParser;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+public class DepthFirstNodeIteratorTest
+{
+
+    private DependencyNode parse( String resource )
+        throws Exception
+    {
+        return new DependencyGraphParser( "visitor/ordered-list/" ).parse( resource );
+    }
+
+    private void assertSequence( Iterator<DependencyNode> it, String... expected )
+    {
+        List<String> actual = new ArrayList<String>();
+        while ( it.hasNext() )
+        {
+            actual.add( it.next().getDependency().getArtifact().getArtifactId() );
+        }
+        assertEquals( Arrays.asList( expected ), actual );
+    }
+
+    @Test
+    public void testPreorder()
+        throws Exception
+    {
+        DependencyNode root = parse( "simple.txt" );
+        assertSequence( new DepthFirstNodeIterator( root, false, true ), "a", "b", "c", "d", "e" );
+    }
+
+    @Test
+    public void testPostorder()
+        throws Exception
+    {
+        DependencyNode root = parse( "simple.txt" );
+        assertSequence( new DepthFirstNodeIterator( root, true, true ), "c", "b", "e", "d", "a" );
+    }
+
+    @Test
+    public void testDuplicateSuppression()
+        throws Exception
+    {
+        DependencyNode root = parse( "cycles.txt" );
+        assertSequence( new DepthFirstNodeIterator( root, false, true ), "a", "b", "c", "d", "e" );
+        assertSequence( new DepthFirstNodeIterator( root, true, true ), "c", "b", "e", "d", "a" );
+    }
+
+    @Test
+    public void testCycleSuppressionOnly()
+        throws Exception
+    {
+        DependencyNode root = parse( "cycles.txt" );
+        assertSequence( new DepthFirstNodeIterator( root, false, false ), "a", "b", "c", "d", "b", "c", "e" );
+        assertSequence( new DepthFirstNodeIterator( root, true, false ), "c", "b", "c", "b", "e", "d", "a" );
+    }
+
+    @Test
+    public void testDeepGraph()
+    {
+        DefaultDependencyNode root = null;
+        DefaultDependencyNode parent = null;
+        for ( int i = 0; i < 20000; i++ )
+        {
+            DefaultDependencyNode node =
+                new DefaultDependencyNode( new Dependency( new DefaultArtifact( "gid:aid" + i + ":1" ), "compile" ) );
+            if ( parent == null )
+            {
+                root = node;
+            }
+            else
+            {
+                parent.getChildren().add( node );
+            }
+            parent = node;
+        }
+
+        int count = 0;
+        for ( Iterator<DependencyNode> it = new DepthFirstNodeIterator( root, true, false ); it.hasNext(); it.next() )
+        {
+            count++;
+        }
+        assertEquals( 20000, count );
+    }
+
+}
@@ -12,6 +12,7 @@ import static org.junit.Assert.*;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 import org.junit.Before;
@@ -19,6 +20,7 @@ import org.junit.Test;
 import org.sonatype.aether.collection.DependencyGraphTransformationContext;
 import org.sonatype.aether.graph.DependencyNode;
 import org.sonatype.aether.test.util.DependencyGraphParser;
+import org.sonatype.aether.test.util.NodeBuilder;
 
 /**
  * @author Benjamin Hanzelmann
@@ -122,4 +124,42 @@ public class ConflictIdSorterTest
         expectCycle( false );
     }
 
+    @Test
+    public void testManyCycles()
+        throws Exception
+    {
+        // root
+        // +- a0
+        // |  \- b0
+        // |     \- a0
+        // +- ...
+        // \- a999
+        //    \- b999
+        //       \- a999
+
+        NodeBuilder builder = new NodeBuilder();
+        DependencyNode root = builder.artifactId( null ).build();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            DependencyNode a = builder.artifactId( "a" + i ).build();
+            DependencyNode b = builder.artifactId( "b" + i ).build();
+            b.getChildren().add( builder.artifactId( "a" + i ).build() );
+            a.getChildren().add( b );
+            root.getChildren().add( a );
+        }
+
+        transform( root );
+
+        Map<?, ?> conflictIds = (Map<?, ?>) ctx.get( TransformationContextKeys.CONFLICT_IDS );
+        List<?> sorted = (List<?>) ctx.get( TransformationContextKeys.SORTED_CONFLICT_IDS );
+        assertEquals( 2000, sorted.size() );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            DependencyNode a = root.getChildren().get( i );
+            assertEquals( conflictIds.get( a ), sorted.get( i * 2 ) );
+            assertEquals( conflictIds.get( a.getChildren().get( 0 ) ), sorted.get( i * 2 + 1 ) );
+        }
+        expectCycle( true );
+    }
+
 }
@@ -431,4 +431,44 @@ public class NearestVersionConflictResolverTest
         assertEquals( 0, root.getChildren().get( 1 ).getChildren().size() );
     }
 
+    @Test
+    public void testDeepGraph()
+        throws Exception
+    {
+        // root
+        // +- n0
+        // |  \- n1
+        // |     \- ...
+        // |        \- x:1        # removed in favor of x:2
+        // \- x:2
+
+        DependencyNode root = builder.artifactId( null ).build();
+        DependencyNode parent = root;
+        for ( int i = 0; i < 5000; i++ )
+        {
+            DependencyNode node = builder.artifactId( "n" + i ).version( "1" ).build();
+            parent.getChildren().add( node );
+            parent = node;
+        }
+        parent.getChildren().add( builder.artifactId( "x" ).version( "1" ).build() );
+        DependencyNode x2 = builder.artifactId( "x" ).version( "2" ).build();
+        root.getChildren().add( x2 );
+
+        root =
+            new ChainedDependencyGraphTransformer( new ConflictMarker(), new ConflictIdSorter(),
+                                                   new JavaEffectiveScopeCalculator(),
+                                                   new NearestVersionConflictResolver() ).transformGraph( root,
+                                                                                                          context );
+
+        assertEquals( 2, root.getChildren().size() );
+        assertSame( x2, root.getChildren().get( 1 ) );
+        DependencyNode node = root.getChildren().get( 0 );
+        for ( int i = 1; i < 5000; i++ )
+        {
+            assertEquals( 1, node.getChildren().size() );
+            node = node.getChildren().get( 0 );
+        }
+        assertTrue( node.getChildren().isEmpty() );
+    }
+
 }
@@ -0,0 +1,127 @@
+package org.sonatype.aether.util.version;
+
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sonatype.aether.version.InvalidVersionSpecificationException;
+import org.sonatype.aether.version.Version;
+import org.sonatype.aether.version.VersionConstraint;
+import org.sonatype.aether.version.VersionRange;
+
+public class VersionRangeSetTest
+{
+
+    private final GenericVersionScheme scheme = new GenericVersionScheme();
+
+    private VersionRangeSet parse( String constraint )
+        throws InvalidVersionSpecificationException
+    {
+        return VersionRangeSet.valueOf( scheme.parseVersionConstraint( constraint ) );
+    }
+
+    private List<Version> versions( String... versions )
+    {
+        List<Version> list = new ArrayList<Version>();
+        for ( String version : versions )
+        {
+            list.add( new GenericVersion( version ) );
+        }
+        return list;
+    }
+
+    @Test
+    public void testNormalization()
+        throws Exception
+    {
+        assertEquals( "[1,3)", parse( "[2,3),[1,2]" ).toString() );
+        assertEquals( "[1,3]", parse( "[1,2),[2,3]" ).toString() );
+        assertEquals( "[1,2),(2,3]", parse( "[1,2),(2,3]" ).toString() );
+        assertEquals( "(,)", parse( "(,2],[1,)" ).toString() );
+    }
+
+    @Test
+    public void testContainsVersion()
+        throws Exception
+    {
+        VersionRangeSet set = parse( "[1,2),(2,3],[5,)" );
+        VersionConstraint constraint = scheme.parseVersionConstraint( "[1,2),(2,3],[5,)" );
+        for ( Version version : versions( "0.9", "1", "1.5", "2", "2.1", "3", "3.1", "4.9", "5", "100" ) )
+        {
+            assertEquals( version.toString(), constraint.containsVersion( version ), set.containsVersion( version ) );
+        }
+    }
+
+    @Test
+    public void testRecommendedVersion()
+        throws Exception
+    {
+        VersionRangeSet set = parse( "1.5" );
+        assertTrue( set.containsVersion( new GenericVersion( "1.5" ) ) );
+        assertFalse( set.containsVersion( new GenericVersion( "1.6" ) ) );
+    }
+
+    @Test
+    public void testIntersect()
+        throws Exception
+    {
+        VersionRangeSet set = parse( "[1,4),[6,)" ).intersect( parse( "(2,7]" ) );
+        assertEquals( "(2,4),[6,7]", set.toString() );
+
+        assertTrue( parse( "[1,2)" ).intersect( parse( "[2,3)" ) ).isEmpty() );
+        assertFalse( parse( "[1,2]" ).intersect( parse( "[2,3)" ) ).isEmpty() );
+        assertEquals( "[2,2]", parse( "[1,2]" ).intersect( parse( "[2,3)" ) ).toString() );
+    }
+
+    @Test
+    public void testFilter()
+        throws Exception
+    {
+        List<Version> all = versions( "1", "1.5", "2", "2.5", "3", "4", "5", "6" );
+        assertEquals( versions( "1.5", "2", "4", "5" ), parse( "(1,2],[4,5]" ).filter( all ) );
+        assertEquals( versions( "6" ), parse( "[5.5,)" ).filter( all ) );
+        assertEquals( all, parse( "(,)" ).filter( all ) );
+        assertEquals( versions(), parse( "[7,8]" ).filter( all ) );
+    }
+
+    @Test
+    public void testUnsupportedConstraint()
+    {
+        VersionConstraint constraint = new VersionConstraint()
+        {
+            public Version getVersion()
+            {
+                return null;
+            }
+
+            public List<VersionRange> getRanges()
+            {
+                return Arrays.<VersionRange> asList( new VersionRange()
+                {
+                    public boolean containsVersion( Version version )
+                    {
+                        return true;
+                    }
+                } );
+            }
+
+            public boolean containsVersion( Version version )
+            {
+                return true;
+            }
+        };
+        assertNull( VersionRangeSet.valueOf( constraint ) );
+    }
+
+}